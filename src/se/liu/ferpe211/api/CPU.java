@@ -6,25 +6,40 @@ import se.liu.ferpe211.api.configuration.settings.impl.SettingBoolean;
 import se.liu.ferpe211.api.configuration.settings.impl.SettingDouble;
 import se.liu.ferpe211.api.event.CPUListener;
 import se.liu.ferpe211.api.event.EventType;
+import se.liu.ferpe211.api.event.InstructionObserver;
+import se.liu.ferpe211.api.execution.BlockCache;
+import se.liu.ferpe211.api.execution.EngineType;
+import se.liu.ferpe211.api.execution.ExecutionEngine;
+import se.liu.ferpe211.api.execution.Pacer;
+import se.liu.ferpe211.api.execution.SwitchInterpreter;
+import se.liu.ferpe211.api.memory.MappedMemory;
+import se.liu.ferpe211.api.memory.MemoryDevice;
 import se.liu.ferpe211.api.memory.RAM;
 import se.liu.ferpe211.api.operation.OperationManager;
-import se.liu.ferpe211.api.operation.instruction.InstructionProvider;
 import se.liu.ferpe211.api.register.IndexRegisterType;
 import se.liu.ferpe211.api.register.ProcessorStatus;
 import se.liu.ferpe211.api.register.ProgramCounter;
 import se.liu.ferpe211.api.register.Register;
 import se.liu.ferpe211.api.register.Register8Bit;
+import se.liu.ferpe211.api.register.Register8BitView;
+import se.liu.ferpe211.api.register.RegisterFile;
+import se.liu.ferpe211.api.register.RegisterState;
+import se.liu.ferpe211.api.register.RegisterType;
+import se.liu.ferpe211.api.state.MachineState;
 import se.liu.ferpe211.impl.Emulator;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 
 /**
@@ -34,6 +49,14 @@ import java.util.logging.Level;
  */
 public class CPU
 {
+    private static final String CONFIG_FILE = "config";
+
+    /**
+     * Register state used by the instructions, the register objects below are views of it
+     * @see RegisterFile
+     */
+    private RegisterFile registerFile;
+
     /** Registers */
     private ProgramCounter programCounter;
     private Register8Bit stackPointer;
@@ -43,11 +66,34 @@ public class CPU
     private Register8Bit indexRegisterY;
 
     private volatile boolean executing;
+    private Pacer pacer = null;
+
+    /**
+     * Total amount of instructions and cycles executed since the last reset
+     */
+    private long instructionCount;
+    private long cycleCount;
+
+    /**
+     * Amount of instructions between the summary events fired during a batch, 0 means once per batch
+     * @see #runInstructions(long)
+     */
+    private long notificationInterval;
 
     private RAM memory;
 
     private List<CPUListener> listeners;
 
+    /**
+     * Observers of every instruction, an array since it is read before every instruction while it is not empty
+     */
+    private volatile InstructionObserver[] observers = new InstructionObserver[0];
+
+    /**
+     * Smallest observation interval of the observers, 0 without any observers
+     */
+    private volatile int observationInterval = 0;
+
     private List<Register> registers;
 
     public OperationManager getOperationManager() {
@@ -55,12 +101,55 @@ public class CPU
     }
 
     private OperationManager operationManager;
+    private BlockCache blockCache;
+    private SwitchInterpreter switchInterpreter = null;
+
+    /**
+     * Engine that executes the instructions, either the block cache or the switch interpreter
+     * @see #setEngine(EngineType)
+     */
+    private ExecutionEngine engine;
+    private EngineType engineType;
     private SettingsManager settingsManager;
 
     public SettingsManager getSettingsManager() {
         return settingsManager;
     }
 
+    public BlockCache getBlockCache() {
+        return blockCache;
+    }
+
+    public ExecutionEngine getEngine() {
+        return engine;
+    }
+
+    public EngineType getEngineType() {
+        return engineType;
+    }
+
+    /**
+     * Selects the engine that executes the instructions, both engines give the same results but their speed depends on the
+     * program, see {@link EngineType}
+     * @param engineType engine to use from the next instruction on
+     */
+    public void setEngine(EngineType engineType) {
+        switch (engineType) {
+            case SWITCH -> {
+                if (switchInterpreter == null) {
+                    switchInterpreter = new SwitchInterpreter(this);
+                }
+                engine = switchInterpreter;
+            }
+            default -> engine = blockCache;
+        }
+        this.engineType = engineType;
+    }
+
+    public RegisterFile getRegisterFile() {
+        return registerFile;
+    }
+
     public Register8Bit getStackPointer() {
         return stackPointer;
     }
@@ -100,17 +189,68 @@ public class CPU
         this.executing = executing;
     }
 
+    public boolean isExecuting() {
+        return executing;
+    }
+
+    public long getInstructionCount() {
+        return instructionCount;
+    }
+
+    public long getCycleCount() {
+        return cycleCount;
+    }
+
+    public long getNotificationInterval() {
+        return notificationInterval;
+    }
+
+    /**
+     * Sets how often listeners are notified while a batch is running
+     * @param notificationInterval amount of instructions between {@link EventType#BATCH_EXECUTED} events,
+     *                             0 to only notify once when the batch is done
+     */
+    public void setNotificationInterval(final long notificationInterval) {
+        this.notificationInterval = Math.max(0, notificationInterval);
+    }
+
+    /**
+     * Creates a CPU whose settings are loaded from and saved to config.json in the current directory
+     * @see Builder for creating CPUs without any file I/O
+     */
     public CPU(){
-        Emulator.LOGGER.log(Level.INFO, "Creating CPU");
-        memory = new RAM();
-        programCounter = new ProgramCounter("Program Counter");
-        stackPointer = new Register8Bit("Stack Pointer");
-        accumulator = new Register8Bit("Accumulator");
-        processorStatus = new ProcessorStatus("Processor Status Register");
-        indexRegisterX = new Register8Bit("Index Register X");
-        indexRegisterY = new Register8Bit("Index Register Y");
+        this(CONFIG_FILE, Map.of(), EngineType.BLOCK_CACHE);
+    }
+
+    /**
+     * @param configFile name of the config file without extension, null to keep the settings in memory only
+     * @param settingValues initial setting values by name
+     * @param engineType engine that executes the instructions
+     */
+    private CPU(String configFile, Map<String, ?> settingValues, EngineType engineType){
+        this(configFile, settingValues, engineType, new RAM());
+        this.reset();
+    }
+
+    /**
+     * Creates a CPU around an existing memory, which is left as it is
+     * @see #fork()
+     */
+    private CPU(String configFile, Map<String, ?> settingValues, EngineType engineType, RAM memory){
+        Emulator.LOGGER.log(Level.FINE, "Creating CPU");
+        this.memory = memory;
+        registerFile = new RegisterFile();
+        programCounter = new ProgramCounter("Program Counter", registerFile);
+        stackPointer = new Register8BitView("Stack Pointer", registerFile, RegisterType.STACK_POINTER);
+        accumulator = new Register8BitView("Accumulator", registerFile, RegisterType.ACCUMULATOR);
+        processorStatus = new ProcessorStatus("Processor Status Register", registerFile);
+        indexRegisterX = new Register8BitView("Index Register X", registerFile, RegisterType.INDEX_X);
+        indexRegisterY = new Register8BitView("Index Register Y", registerFile, RegisterType.INDEX_Y);
         executing = false;
-        operationManager = new OperationManager(this);
+        notificationInterval = 0;
+        operationManager = OperationManager.getInstance();
+        blockCache = new BlockCache(this);
+        setEngine(engineType);
 
         registers = new ArrayList<>();
         registers.add(programCounter);
@@ -123,19 +263,110 @@ public class CPU
         listeners = new ArrayList<>();
         settingsManager = new SettingsManager(this);
         this.populateSettings();
-	Config config = new Config("config", settingsManager);
-        this.addListener(config);
-        this.reset();
+        settingsManager.loadSnapshot(settingValues);
+        if (configFile != null) {
+            Config config = new Config(configFile, settingsManager);
+            this.addListener(config);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builder for CPUs that keep their settings in memory
+     * <p>
+     *     A CPU created by the builder never reads or writes a config file, its settings start out from the defaults and the
+     *     values given to the builder. Together with the log file only being created by {@link Emulator#enableFileLogging()}
+     *     this makes creating a CPU free of any file I/O, which matters for tests and batch runners that create a lot of them.
+     * </p>
+     */
+    public static class Builder
+    {
+        private final Map<String, Object> settingValues = new HashMap<>();
+        private EngineType engineType = EngineType.BLOCK_CACHE;
+        private Path memoryFile = null;
+
+        private Builder() {
+        }
+
+        /**
+         * @param name name of the setting
+         * @param value initial value of the setting, must be of the setting's type
+         * @return this builder
+         */
+        public Builder setting(String name, Object value) {
+            settingValues.put(name, value);
+            return this;
+        }
+
+        /**
+         * @param values initial setting values by name, e.g. from {@link SettingsManager#getSnapshot()}
+         * @return this builder
+         */
+        public Builder settings(Map<String, ?> values) {
+            settingValues.putAll(values);
+            return this;
+        }
+
+        /**
+         * @param engineType engine that executes the instructions, {@link EngineType#BLOCK_CACHE} by default
+         * @return this builder
+         */
+        public Builder engine(EngineType engineType) {
+            this.engineType = engineType;
+            return this;
+        }
+
+        /**
+         * Backs the whole memory with a file instead of the heap, see {@link MappedMemory}
+         * The memory starts out with the contents of the file, and is not cleared when the CPU is reset.
+         * @param memoryFile file that holds the memory image, created if it does not exist
+         * @return this builder
+         */
+        public Builder memoryFile(Path memoryFile) {
+            this.memoryFile = memoryFile;
+            return this;
+        }
+
+        /**
+         * @return the new CPU
+         * @throws UncheckedIOException if the memory file can not be mapped
+         */
+        public CPU build() {
+            CPU cpu = new CPU(null, settingValues, engineType);
+            if (memoryFile != null) {
+                RAM memory = cpu.getMemory();
+                try {
+                    memory.map(0, memory.size(), MappedMemory.open(memoryFile, 0, memory.size()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not map memory file " + memoryFile, e);
+                }
+            }
+            return cpu;
+        }
+    }
+
+    /**
+     * The stack of this emulator lives in page zero, not in page one like on a 6502
+     * @param stackPointer value of the stack pointer
+     * @return the address of the stack byte the stack pointer points at
+     */
+    public static int stackAddress(byte stackPointer) {
+        return Byte.toUnsignedInt(stackPointer);
     }
 
     public void pushByte(byte value) {
-        memory.writeByte(Byte.toUnsignedInt(stackPointer.getValue()), value);
-        stackPointer.decrement();
+        byte stack = registerFile.getStackPointer();
+        memory.writeByte(stackAddress(stack), value);
+        registerFile.setStackPointer((byte) (stack - 1));
     }
 
     public byte pullByte() {
-        stackPointer.increment();
-        return memory.readByte(Byte.toUnsignedInt(stackPointer.getValue()));
+        byte stack = (byte) (registerFile.getStackPointer() + 1);
+        registerFile.setStackPointer(stack);
+        return memory.readByte(stackAddress(stack));
     }
 
     /**
@@ -144,8 +375,8 @@ public class CPU
      * where default is 0
      */
     private void populateSettings(){
-        SettingDouble cycleRate = new SettingDouble("CycleRate", "How fast cycles should be executed");
-        settingsManager.register(cycleRate);
+        SettingDouble clockFrequency = new SettingDouble("ClockFrequency", "Clock frequency in Hz, 0 runs unthrottled");
+        settingsManager.register(clockFrequency);
 
         SettingBoolean patching = new SettingBoolean("Patching", "Enable patching of memory");
         settingsManager.register(patching);
@@ -155,85 +386,229 @@ public class CPU
      * Method for resetting the CPU
      * The program counter is reset, clears the processor status flags aswell as sets the stackpointer
      * The memory is also initilized here.
+     * A run started by {@link #executeThread()} is stopped first.
      */
     public void reset(){
-        programCounter.setValue(0x0000);
-        stackPointer.setValue((byte) 0xFF);
-        processorStatus.setValue((byte) 0x0000);
+        stop();
+        registerFile.setProgramCounter(0x0000);
+        registerFile.setStackPointer((byte) 0xFF);
+        registerFile.setStatus((byte) 0x0000);
 
-        executing = false;
+        instructionCount = 0;
+        cycleCount = 0;
 
         this.memory.init();
         notifyListeners(EventType.CPU_RESET);
 
     }
 
+    /**
+     * Captures the registers, counters, memory and device states, see {@link MachineState}
+     * This costs a copy of the memory, so it is cheap enough to take checkpoints while a program runs.
+     * @return the current state
+     */
+    public MachineState snapshot() {
+        Map<Integer, byte[]> deviceStates = new HashMap<>();
+        MemoryDevice previous = null;
+        for (int address = 0; address < memory.size(); address += RAM.PAGE_SIZE) {
+            MemoryDevice device = memory.getDevice(address);
+            if (device != null && device != previous) {
+                byte[] deviceState = device.saveState();
+                if (deviceState != null) {
+                    deviceStates.put(address, deviceState);
+                }
+            }
+            previous = device;
+        }
+        return new MachineState(RegisterState.capture(registerFile), instructionCount, cycleCount, memory.getData(),
+                                Map.copyOf(deviceStates));
+    }
+
+    /**
+     * Creates a copy of this CPU that continues from the current state independently of it
+     * The memory is forked with {@link RAM#fork()}, so this only copies the page table, and the parent and the child only
+     * copy the pages they write to afterwards. The child keeps its settings in memory, has no listeners, uses the same
+     * engine and shares the devices of this CPU. Forking must not happen while this CPU is executing in another thread, but
+     * afterwards the parent and the child may run in different threads.
+     * @return the new CPU
+     */
+    public CPU fork() {
+        CPU child = new CPU(null, settingsManager.getSnapshot(), engineType, memory.fork());
+        RegisterState.capture(registerFile).applyTo(child.registerFile);
+        child.instructionCount = instructionCount;
+        child.cycleCount = cycleCount;
+        child.notificationInterval = notificationInterval;
+        return child;
+    }
+
+    /**
+     * Puts the CPU back into a state taken with {@link #snapshot()}, possibly of another CPU
+     * A run started by {@link #executeThread()} is stopped first. Only the pages of memory that differ from the state are
+     * written, so blocks decoded from the other pages stay valid. Device states are restored to the devices that are
+     * mapped at the same addresses, and are ignored where no device is mapped.
+     * @param state state to restore
+     */
+    public void restore(MachineState state) {
+        stop();
+        state.registers().applyTo(registerFile);
+        instructionCount = state.instructionCount();
+        cycleCount = state.cycleCount();
+        memory.restore(state.memory());
+        for (Map.Entry<Integer, byte[]> entry : state.deviceStates().entrySet()) {
+            MemoryDevice device = memory.getDevice(entry.getKey());
+            if (device != null) {
+                device.restoreState(entry.getValue());
+            }
+        }
+        notifyListeners(EventType.MEMORY_CHANGED);
+    }
+
     /**
      * Method for executing next instruction in memory with respect to the program counter
      * @return the amount of cycles that the instruction takes to execute
-     * @see #executeThread() to see how the cycles are used to simulate cycle delay based on cyclerate
+     * @see Pacer to see how the cycles are used to keep the clock frequency
      */
     public int executeNextInstruction(){
-            byte instructionByte = memory.readByte(programCounter.getValue());
-            programCounter.increment();
-            InstructionProvider instruction = operationManager.getInstruction(instructionByte);
-            instruction.execute();
+            int cycles = step();
             notifyListeners(EventType.INSTRUCTION_EXECUTED);
-            return instruction.getCycles();
+            return cycles;
     }
 
     /**
-     * Method for executing the instructions in the memory until we reach BREAK
-     * A seperate thread is constructed in orer to simulate the delay for each instruction based on their cycles
-     * The new thread runs an executor service which keeps scheduling itself until executing is false
-     * the thread then monitors the shutdown of the executorservice in order to keep it alive until its actually shutdown since
-     * ExecutorServic is autoclosable since java 19.
-     * and the cycle rate defined in settings.
+     * Executes the next instruction without notifying any listeners
+     * @return the amount of cycles that the instruction takes to execute
+     * @see #setEngine(EngineType) for how the instruction is executed
      */
-    public void executeThread() {
-        executing = true;
-        double cycleRateDouble = (double) settingsManager.getSetting("cyclerate").getValue();
-        int cycleRate = (int) Math.round(cycleRateDouble);
-        Thread schedulerThread = new Thread(() -> {
-            try (ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor()) {
-                Runnable task = new Runnable()
-                {
-                    @Override public void run() {
-                        if (executing) {
-                            int cycles = executeNextInstruction();
-                            scheduler.schedule(this, (long) cycles * cycleRate, TimeUnit.MILLISECONDS);
-                        } else {
-                            scheduler.shutdown();
-                        }
-                    }
-                };
+    private int step(){
+        for (InstructionObserver observer : observers) {
+            observer.beforeInstruction(this);
+        }
+        int cycles = engine.step();
+        instructionCount++;
+        cycleCount += cycles;
+        return cycles;
+    }
 
-                scheduler.schedule(task, 0, TimeUnit.MILLISECONDS);
+    /**
+     * Method for executing a batch of instructions in a tight loop
+     * Listeners are not notified per instruction, instead a single {@link EventType#BATCH_EXECUTED} event is fired when the
+     * batch is done, and one every {@link #getNotificationInterval()} instructions if an interval is set.
+     * The batch ends early when BREAK is reached or execution is stopped, which leaves {@link #isExecuting()} false.
+     * Instructions are executed by the selected {@link ExecutionEngine}, by default a basic block at a time where the limits
+     * allow it with hot blocks compiled to JVM bytecode, see {@link BlockCache}.
+     * @param count maximum amount of instructions to execute
+     * @return the amount of instructions that were executed
+     */
+    public long runInstructions(long count){
+        long startInstructions = instructionCount;
+        runBatch(count, Long.MAX_VALUE, null);
+        return instructionCount - startInstructions;
+    }
 
-                while (!scheduler.isTerminated()) {
-                    try {
-                        scheduler.awaitTermination(1, TimeUnit.SECONDS);
-                    } catch (InterruptedException e) {
-                        Emulator.LOGGER.log(Level.SEVERE, "Couldnt terminate execution thread successfully: " + e);
-                        Thread.currentThread().interrupt();
-                        break;
+    /**
+     * Method for executing instructions until a budget of cycles has been used
+     * The instruction that crosses the budget is executed in full, so slightly more cycles than the budget may be used.
+     * @param budget amount of cycles to execute
+     * @return the amount of cycles that were executed
+     * @see #runInstructions(long) for how listeners are notified
+     */
+    public long runCycles(long budget){
+        long startCycles = cycleCount;
+        runBatch(Long.MAX_VALUE, budget, null);
+        return cycleCount - startCycles;
+    }
+
+    /**
+     * Method for executing instructions until a condition holds
+     * The condition is tested before every instruction, so nothing is executed if it already holds.
+     * @param condition condition to stop at
+     * @return the amount of instructions that were executed
+     * @see #runInstructions(long) for how listeners are notified
+     */
+    public long runUntil(Predicate<CPU> condition){
+        long startInstructions = instructionCount;
+        runBatch(Long.MAX_VALUE, Long.MAX_VALUE, condition);
+        return instructionCount - startInstructions;
+    }
+
+    private void runBatch(final long instructionLimit, final long cycleLimit, final Predicate<CPU> condition){
+        executing = true;
+        long instructions = 0;
+        long cycles = 0;
+        long notified = 0;
+        while (executing && instructions < instructionLimit && cycles < cycleLimit) {
+            if (condition != null || observationInterval == 1) {
+                if (condition != null && condition.test(this)) {
+                    break;
+                }
+                cycles += step();
+                instructions++;
+            } else {
+                // Without a condition the engine runs on its own, bounded so that notifications still land on the interval
+                long maxInstructions = instructionLimit - instructions;
+                if (notificationInterval > 0) {
+                    maxInstructions = Math.min(maxInstructions, notificationInterval - (instructions - notified));
+                }
+                int interval = observationInterval;
+                if (interval > 0) {
+                    maxInstructions = Math.min(maxInstructions, interval);
+                    for (InstructionObserver observer : observers) {
+                        observer.beforeInstruction(this);
                     }
                 }
-
+                long executed = engine.run(maxInstructions, cycleLimit - cycles);
+                long executedCycles = engine.getLastCycles();
+                instructions += executed;
+                cycles += executedCycles;
+                instructionCount += executed;
+                cycleCount += executedCycles;
+            }
+            if (notificationInterval > 0 && instructions - notified >= notificationInterval) {
+                notified = instructions;
+                notifyListeners(EventType.BATCH_EXECUTED);
             }
-        });
-        schedulerThread.start();
+        }
+        if (notified != instructions || instructions == 0) {
+            notifyListeners(EventType.BATCH_EXECUTED);
+        }
+    }
+
+    /**
+     * Method for executing the instructions in the memory until we reach BREAK
+     * Execution happens on a separate thread which is paced to the clock frequency defined in settings,
+     * a frequency of 0 runs the CPU unthrottled.
+     * A run that is already in progress is stopped before the new one starts.
+     * @see Pacer for how the clock frequency is kept
+     */
+    public synchronized void executeThread() {
+        stopPacer();
+        double frequency = (double) settingsManager.getSetting("clockfrequency").getValue();
+        pacer = new Pacer(this, frequency);
+        pacer.start();
+    }
+
+    /**
+     * Stops a run started by {@link #executeThread()} and waits for it to finish
+     */
+    public synchronized void stop() {
+        stopPacer();
+        executing = false;
+    }
+
+    private void stopPacer() {
+        if (pacer != null) {
+            pacer.stop();
+            pacer = null;
+        }
     }
 
     /**
      * Method for executing the instructions in the memory until we reach BREAK
      * This is done on the main thread and is mainly used in the tests
+     * @see #runInstructions(long) for how listeners are notified
      */
     public void execute(){
-        executing = true;
-        while (executing) {
-            this.executeNextInstruction();
-        }
+        runInstructions(Long.MAX_VALUE);
     }
 
     /**
@@ -241,12 +616,24 @@ public class CPU
      * @param file to be loaded into memory
      */
     public void loadFile(File file){
+        loadFile(file, 0);
+    }
+
+    /**
+     * Method for loading a binary file into memory at a given address
+     * @param file to be loaded into memory
+     * @param origin address of the first byte of the file
+     * @return true if the file was loaded
+     */
+    public boolean loadFile(File file, int origin){
 	try {
 	    byte[] bytes = Files.readAllBytes(file.toPath());
-            this.getMemory().setData(bytes);
+            this.getMemory().load(origin, bytes);
             notifyListeners(EventType.MEMORY_CHANGED);
-	} catch (IOException e) {
+            return true;
+	} catch (IOException | IllegalArgumentException e) {
             Emulator.LOGGER.log(Level.SEVERE, "Error loading binary file", e);
+            return false;
 	}
     }
 
@@ -256,9 +643,7 @@ public class CPU
      */
     public void dump(File file){
         try (FileOutputStream fileOutputStream = new FileOutputStream(file)) {
-            for (byte b : memory.getData()) {
-                fileOutputStream.write(b);
-            }
+            fileOutputStream.write(memory.getData());
             Emulator.LOGGER.log(Level.INFO,"Data written to file successfully.");
         } catch (IOException e) {
             Emulator.LOGGER.log(Level.SEVERE, "Error writing to file", e);
@@ -266,7 +651,7 @@ public class CPU
     }
 
     public void notifyListeners(EventType eventType) {
-        Emulator.LOGGER.log(Level.INFO, "Event Recived: " + eventType);
+        Emulator.LOGGER.log(Level.FINE, "Event received: {0}", eventType);
         for (CPUListener listener : listeners) {
             listener.cpuChanged(eventType);
         }
@@ -276,4 +661,59 @@ public class CPU
         listeners.add(listener);
     }
 
+    public void removeListener(CPUListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Adds an observer that is called between instructions, at least as often as its observation interval asks for
+     * @param observer observer to add
+     * @throws IllegalStateException if the observer rewinds execution while another needs it to be linear, or the other way
+     * around
+     * @see InstructionObserver
+     */
+    public synchronized void addObserver(InstructionObserver observer) {
+        for (InstructionObserver other : observers) {
+            if ((observer.rewindsExecution() && other.needsLinearExecution())
+                || (observer.needsLinearExecution() && other.rewindsExecution()))
+            {
+                throw new IllegalStateException(observer.getClass().getSimpleName() + " can not be combined with "
+                                                + other.getClass().getSimpleName());
+            }
+        }
+        observers = Arrays.copyOf(observers, observers.length + 1);
+        observers[observers.length - 1] = observer;
+        updateObservationInterval();
+    }
+
+    public synchronized void removeObserver(InstructionObserver observer) {
+        observers = Arrays.stream(observers).filter(other -> other != observer).toArray(InstructionObserver[]::new);
+        updateObservationInterval();
+    }
+
+    private void updateObservationInterval() {
+        observationInterval = Arrays.stream(observers).mapToInt(InstructionObserver::getObservationInterval).min().orElse(0);
+    }
+
+    /**
+     * Sets the counters back, for observers that undo instructions
+     * @param instructionCount amount of instructions executed since the last reset
+     * @param cycleCount amount of cycles executed since the last reset
+     */
+    void setCounts(long instructionCount, long cycleCount) {
+        this.instructionCount = instructionCount;
+        this.cycleCount = cycleCount;
+    }
+
+    /**
+     * Executes instructions one at a time without notifying listeners, for observers that replay instructions they undid
+     * Observers see the replayed instructions like any other.
+     * @param count amount of instructions to execute
+     */
+    void replay(long count) {
+        for (long i = 0; i < count; i++) {
+            step();
+        }
+    }
+
 }
@@ -0,0 +1,82 @@
+package se.liu.ferpe211.api;
+
+import se.liu.ferpe211.api.execution.EngineType;
+import se.liu.ferpe211.api.register.RegisterFile;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Pool of CPUs for batch runs that execute a lot of small programs one after another
+ * <p>
+ *     Building a CPU sets up its registers, settings and execution engine, which costs far more than running a test
+ *     vector of a few hundred instructions. A pool builds its CPUs once and hands them out again after resetting them, and
+ *     since {@link se.liu.ferpe211.api.memory.RAM#init()} only clears the pages a program wrote to, a returned CPU is ready
+ *     again after clearing a few pages.
+ * </p>
+ * <p>
+ *     A borrowed CPU is in the same state as a newly built one: registers cleared, memory cleared and the engine of the
+ *     builder selected. Listeners and memory mappings added by a borrower are not undone, so the CPUs of a pool are meant to
+ *     be used without them. The pool is thread safe, every thread can borrow its own CPUs.
+ * </p>
+ */
+public class CPUPool
+{
+    private final CPU.Builder builder;
+    private final EngineType engineType;
+    private final Deque<CPU> idle = new ArrayDeque<>();
+
+    /**
+     * @param builder builder that creates the CPUs of the pool, must not map a memory file since every CPU would share it
+     * @param size amount of CPUs to build up front, at least one, more are built when they are all borrowed
+     */
+    public CPUPool(final CPU.Builder builder, final int size) {
+	this.builder = builder;
+	CPU first = builder.build();
+	this.engineType = first.getEngineType();
+	idle.push(first);
+	for (int i = 1; i < size; i++) {
+	    idle.push(builder.build());
+	}
+    }
+
+    /**
+     * @return an idle CPU, or a new one if every CPU of the pool is borrowed
+     */
+    public CPU borrow() {
+	synchronized (idle) {
+	    if (!idle.isEmpty()) {
+		return idle.pop();
+	    }
+	}
+	return builder.build();
+    }
+
+    /**
+     * Resets a CPU and makes it available to the next {@link #borrow()}, the CPU must not be used after this
+     * @param cpu CPU that was borrowed from this pool
+     */
+    public void giveBack(final CPU cpu) {
+	cpu.reset();
+	RegisterFile registers = cpu.getRegisterFile();
+	registers.setAccumulator((byte) 0);
+	registers.setIndexX((byte) 0);
+	registers.setIndexY((byte) 0);
+	cpu.setNotificationInterval(0);
+	if (cpu.getEngineType() != engineType) {
+	    cpu.setEngine(engineType);
+	}
+	synchronized (idle) {
+	    idle.push(cpu);
+	}
+    }
+
+    /**
+     * @return the amount of CPUs that are waiting to be borrowed
+     */
+    public int getIdleCount() {
+	synchronized (idle) {
+	    return idle.size();
+	}
+    }
+}
@@ -0,0 +1,253 @@
+package se.liu.ferpe211.api;
+
+import se.liu.ferpe211.api.event.CPUListener;
+import se.liu.ferpe211.api.event.EventType;
+import se.liu.ferpe211.api.event.InstructionObserver;
+import se.liu.ferpe211.api.memory.RAM;
+import se.liu.ferpe211.api.memory.WriteRecorder;
+import se.liu.ferpe211.api.register.RegisterFile;
+
+/**
+ * Records the execution of a CPU so that instructions can be undone again, for stepping backwards in the debugger
+ * <p>
+ *     The buffer keeps checkpoints of the registers and the counts, at most {@link #CHECKPOINT_INTERVAL} instructions apart
+ *     and before every single step, and a log of the value every write to the memory overwrote. Going back to an instruction
+ *     undoes the logged writes down to the checkpoint before it in reverse order, restores the registers of the checkpoint
+ *     and executes the few instructions from there again. So a step back costs at most one checkpoint interval of
+ *     instructions no matter how long ago the instruction was executed, while full speed runs keep executing whole compiled
+ *     blocks in between the checkpoints.
+ * </p>
+ * <p>
+ *     Everything is stored in primitive ring arrays that are allocated once, so recording allocates nothing. When the rings
+ *     are full the oldest checkpoints are dropped. The buffer is cleared when the memory is loaded or restored and when the
+ *     CPU is reset, since those changes can not be undone instruction by instruction. Executing instructions again assumes
+ *     they do the same thing the second time, which does not hold for devices whose reads have side effects.
+ * </p>
+ */
+public class RewindBuffer implements InstructionObserver, WriteRecorder, CPUListener
+{
+    /**
+     * Most instructions between two checkpoints during a run, and so the most instructions a step back executes again
+     */
+    public static final int CHECKPOINT_INTERVAL = 64;
+
+    /**
+     * Room for writes per checkpoint, most instructions write nothing
+     */
+    private static final int WRITES_PER_CHECKPOINT = 4;
+
+    private final CPU cpu;
+    private final int capacity;
+    private final int checkpointMask;
+    private final int writeCapacity;
+    private final int writeMask;
+
+    /**
+     * State at every checkpoint, by position in the ring
+     */
+    private final int[] programCounters;
+    private final byte[] accumulators;
+    private final byte[] indexX;
+    private final byte[] indexY;
+    private final byte[] stackPointers;
+    private final byte[] statuses;
+    private final long[] instructionCounts;
+    private final long[] cycleCounts;
+
+    /**
+     * Position in the write ring of the first write after every checkpoint
+     */
+    private final long[] firstWrites;
+
+    private final int[] writeAddresses;
+    private final byte[] writeValues;
+
+    /**
+     * Positions that only ever grow, the recorded checkpoints are those from the tail up to the head
+     */
+    private long tail = 0;
+    private long head = 0;
+    private long writeHead = 0;
+
+    private boolean recording = false;
+    private boolean undoing = false;
+
+    /**
+     * @param cpu CPU to record
+     * @param capacity amount of checkpoints to keep, rounded up to a power of two
+     */
+    public RewindBuffer(final CPU cpu, final int capacity) {
+	this.cpu = cpu;
+	this.capacity = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+	this.checkpointMask = this.capacity - 1;
+	this.writeCapacity = this.capacity * WRITES_PER_CHECKPOINT;
+	this.writeMask = writeCapacity - 1;
+	programCounters = new int[this.capacity];
+	accumulators = new byte[this.capacity];
+	indexX = new byte[this.capacity];
+	indexY = new byte[this.capacity];
+	stackPointers = new byte[this.capacity];
+	statuses = new byte[this.capacity];
+	instructionCounts = new long[this.capacity];
+	cycleCounts = new long[this.capacity];
+	firstWrites = new long[this.capacity];
+	writeAddresses = new int[writeCapacity];
+	writeValues = new byte[writeCapacity];
+    }
+
+    /**
+     * Starts recording, from here on every executed instruction can be undone
+     * @throws IllegalStateException if a trace recorder is recording the same CPU, see
+     * {@link se.liu.ferpe211.api.event.InstructionObserver#needsLinearExecution()}
+     */
+    public void start() {
+	if (!recording) {
+	    cpu.addObserver(this);
+	    recording = true;
+	    clear();
+	    cpu.getMemory().addWriteRecorder(this);
+	    cpu.addListener(this);
+	}
+    }
+
+    public void stop() {
+	if (recording) {
+	    recording = false;
+	    cpu.removeObserver(this);
+	    cpu.removeListener(this);
+	    cpu.getMemory().removeWriteRecorder(this);
+	}
+    }
+
+    public boolean isRecording() {
+	return recording;
+    }
+
+    public void clear() {
+	tail = 0;
+	head = 0;
+	writeHead = 0;
+    }
+
+    /**
+     * @return the amount of instructions that can be undone
+     */
+    public int size() {
+	dropOverwritten();
+	if (head == tail) {
+	    return 0;
+	}
+	return (int) Math.min(cpu.getInstructionCount() - instructionCounts[(int) tail & checkpointMask], Integer.MAX_VALUE);
+    }
+
+    @Override public int getObservationInterval() {
+	return CHECKPOINT_INTERVAL;
+    }
+
+    @Override public boolean rewindsExecution() {
+	return true;
+    }
+
+    @Override public void beforeInstruction(final CPU cpu) {
+	long instructionCount = cpu.getInstructionCount();
+	// Nothing was executed since the last checkpoint, which is replaced rather than kept twice
+	if (head != tail && instructionCounts[(int) (head - 1) & checkpointMask] == instructionCount) {
+	    head--;
+	} else if (head - tail == capacity) {
+	    tail++;
+	}
+	int index = (int) head & checkpointMask;
+	RegisterFile registers = cpu.getRegisterFile();
+	programCounters[index] = registers.getProgramCounter();
+	accumulators[index] = registers.getAccumulator();
+	indexX[index] = registers.getIndexX();
+	indexY[index] = registers.getIndexY();
+	stackPointers[index] = registers.getStackPointer();
+	statuses[index] = registers.getStatus();
+	instructionCounts[index] = instructionCount;
+	cycleCounts[index] = cpu.getCycleCount();
+	firstWrites[index] = writeHead;
+	head++;
+    }
+
+    @Override public void beforeWrite(final int address, final byte previous) {
+	if (undoing) {
+	    return;
+	}
+	int index = (int) writeHead & writeMask;
+	writeAddresses[index] = address;
+	writeValues[index] = previous;
+	writeHead++;
+    }
+
+    /**
+     * Drops the checkpoints whose first writes were overwritten in the write ring, which can no longer be gone back to
+     * This is only done when the checkpoints are used, which keeps recording a write down to a few stores.
+     */
+    private void dropOverwritten() {
+	while (tail < head && firstWrites[(int) tail & checkpointMask] < writeHead - writeCapacity) {
+	    tail++;
+	}
+    }
+
+    /**
+     * Undoes the last executed instruction, the CPU must not be executing
+     * @return false if there was no instruction to undo
+     */
+    public boolean stepBack() {
+	return rewind(1) == 1;
+    }
+
+    /**
+     * Undoes the last instructions, the CPU must not be executing
+     * @param count amount of instructions to undo
+     * @return the amount of instructions that were undone, less than count if fewer were recorded
+     */
+    public int rewind(final int count) {
+	int undone = Math.min(Math.max(count, 0), size());
+	if (undone == 0) {
+	    return 0;
+	}
+	long target = cpu.getInstructionCount() - undone;
+	while (instructionCounts[(int) (head - 1) & checkpointMask] > target) {
+	    head--;
+	}
+	int index = (int) (head - 1) & checkpointMask;
+
+	RAM memory = cpu.getMemory();
+	undoing = true;
+	try {
+	    while (writeHead > firstWrites[index]) {
+		writeHead--;
+		int write = (int) writeHead & writeMask;
+		memory.writeByte(writeAddresses[write], writeValues[write]);
+	    }
+	} finally {
+	    undoing = false;
+	}
+
+	RegisterFile registers = cpu.getRegisterFile();
+	registers.setProgramCounter(programCounters[index]);
+	registers.setAccumulator(accumulators[index]);
+	registers.setIndexX(indexX[index]);
+	registers.setIndexY(indexY[index]);
+	registers.setStackPointer(stackPointers[index]);
+	registers.setStatus(statuses[index]);
+	cpu.setCounts(instructionCounts[index], cycleCounts[index]);
+	// Leaves a checkpoint before each of the executed instructions, so further steps back need no execution
+	cpu.replay(target - instructionCounts[index]);
+
+	cpu.notifyListeners(EventType.INSTRUCTIONS_UNDONE);
+	return undone;
+    }
+
+    /**
+     * Clears the buffer on changes that are not made by instructions
+     * @see CPUListener#cpuChanged(EventType)
+     */
+    @Override public void cpuChanged(final EventType eventType) {
+	if (eventType == EventType.CPU_RESET || eventType == EventType.MEMORY_CHANGED) {
+	    clear();
+	}
+    }
+}
@@ -12,24 +12,66 @@ import se.liu.ferpe211.impl.Emulator;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 
 /**
  * Class for saving and loading configurations of {@link se.liu.ferpe211.api.configuration.settings.Setting}'s
  * The config is stored in a json file configFile, this file is defined in the constructor
+ * <p>
+ *     Saving happens on a background writer thread and only when settings change. A burst of changes is coalesced into
+ *     a single write {@link #SAVE_DELAY_MS} milliseconds after the first of them, see {@link #cpuChanged(EventType)}.
+ *     Pending saves are flushed when the JVM shuts down.
+ * </p>
  */
 public class Config implements CPUListener
 {
+    /**
+     * Delay between the first setting change in a burst and the write to disk
+     */
+    private static final long SAVE_DELAY_MS = 250;
+
+    /**
+     * Writer thread shared by every config, it is a daemon thread so it never keeps the JVM alive
+     */
+    private static final ScheduledExecutorService WRITER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+	Thread thread = new Thread(runnable, "Config writer");
+	thread.setDaemon(true);
+	return thread;
+    });
+
+    /**
+     * Configs that have a save scheduled, these are flushed by a shutdown hook
+     */
+    private static final Set<Config> PENDING_CONFIGS = ConcurrentHashMap.newKeySet();
+
+    static {
+	Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+	    for (Config config : PENDING_CONFIGS) {
+		config.flush();
+	    }
+	}, "Config shutdown flush"));
+    }
 
     private String configFile;
     private SettingsManager settingsManager;
     private Gson gson;
+    private final AtomicBoolean savePending = new AtomicBoolean(false);
 
     public Config(final String configFile, final SettingsManager settingsManager) {
 	this.configFile = configFile;
@@ -70,29 +112,65 @@ public class Config implements CPUListener
 
     /**
      * Method for saving settings values to config file
-     * A temporary json file is created to test writing before actually writing to the main config file due to prevent corruptation
-     * of the config file
+     * The settings are written to a temporary json file which is then moved over the main config file, so the config file
+     * is never left half written. The move is atomic where the file system supports it.
      */
-    private void save() {
+    private synchronized void save() {
 	String settingJson = gson.toJson(settingsManager.getSettings().values());
+	Path tempPath = Paths.get(configFile + ".temp.json");
+	Path configPath = Paths.get(configFile + ".json");
 
 	//tries to write to temp file
-	try (PrintWriter writer = new PrintWriter(new FileWriter(configFile + ".temp.json"))) {
-	    writer.println(settingJson);
-	}catch (IOException e){
-	    Emulator.LOGGER.log(Level.SEVERE, "Encountered exception when trying to write to temp config file: "+ e);
+	try {
+	    Files.writeString(tempPath, settingJson + System.lineSeparator(), StandardCharsets.UTF_8);
+	} catch (IOException e) {
+	    Emulator.LOGGER.log(Level.SEVERE, "Encountered exception when trying to write to temp config file: " + e);
 	    return;
 	}
 
-	try (PrintWriter writer = new PrintWriter(new FileWriter(configFile + ".json"))) {
-	    writer.println(settingJson);
+	try {
+	    try {
+		Files.move(tempPath, configPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	    } catch (AtomicMoveNotSupportedException e) {
+		Files.move(tempPath, configPath, StandardCopyOption.REPLACE_EXISTING);
+	    }
 	} catch (IOException e) {
 	    Emulator.LOGGER.log(Level.SEVERE, "Encountered exception when trying to write to config file: " + e);
 	}
+    }
+
+    /**
+     * Schedules a save on the writer thread unless one is already pending
+     * The pending flag is cleared before the settings are serialized, so a change made while writing schedules another save.
+     */
+    private void scheduleSave() {
+	if (savePending.compareAndSet(false, true)) {
+	    PENDING_CONFIGS.add(this);
+	    WRITER.schedule(this::writePendingSave, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+	}
+    }
+
+    private void writePendingSave() {
+	if (savePending.compareAndSet(true, false)) {
+	    PENDING_CONFIGS.remove(this);
+	    save();
+	}
+    }
 
+    /**
+     * Writes a pending save immediately on the calling thread instead of waiting for the writer thread
+     */
+    public void flush() {
+	writePendingSave();
     }
 
+    /**
+     * Only setting changes are persisted, every other event leaves the config file untouched
+     * @param eventType type of event that occurred
+     */
     @Override public void cpuChanged(final EventType eventType) {
-	this.save();
+	if (eventType == EventType.SETTINGS_CHANGED) {
+	    scheduleSave();
+	}
     }
 }
@@ -6,7 +6,6 @@ import se.liu.ferpe211.impl.Emulator;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Optional;
 import java.util.logging.Level;
 
 /**
@@ -40,11 +39,54 @@ public class SettingsManager
      */
     public <T> void setSettingValue(String name, T value) {
 	Setting<?> setting = getSetting(name);
+	if (setting == null) {
+	    Emulator.LOGGER.log(Level.SEVERE, "Unknown setting: " + name);
+	    return;
+	}
+	if (assignValue(setting, value)) {
+	    cpu.notifyListeners(EventType.SETTINGS_CHANGED);
+	    Emulator.LOGGER.log(Level.INFO, setting.getName() + " - " + setting.getDescription() + ": now has value " + setting.getValue());
+	}
+    }
+
+    /**
+     * Sets the values of several settings at once without notifying listeners or logging the changes,
+     * used to set up a CPU from an in-memory snapshot
+     * @param values setting values by name
+     * @see #getSnapshot()
+     */
+    public void loadSnapshot(Map<String, ?> values) {
+	for (Map.Entry<String, ?> entry : values.entrySet()) {
+	    Setting<?> setting = getSetting(entry.getKey());
+	    if (setting == null) {
+		Emulator.LOGGER.log(Level.SEVERE, "Unknown setting: " + entry.getKey());
+	    } else {
+		assignValue(setting, entry.getValue());
+	    }
+	}
+    }
+
+    /**
+     * @return the current value of every setting by name
+     */
+    public Map<String, Object> getSnapshot() {
+	Map<String, Object> values = new HashMap<>();
+	for (Setting<?> setting : settings.values()) {
+	    values.put(setting.getName(), setting.getValue());
+	}
+	return values;
+    }
+
+    /**
+     * Validates the type of the value and sets it
+     * @return true if the value was of the correct type and has been set
+     */
+    private <T> boolean assignValue(Setting<?> setting, T value) {
 	/**
 	 * Here we check if the typeParameterClass field in the target setting is equal to the class of value
 	 * This is done to safely cast the setting to setting of correct type T
 	 */
-	if (setting != null && setting.getTypeParameterClass() == value.getClass()) {
+	if (setting.getTypeParameterClass() == value.getClass()) {
 	    /**
 	     * We can then conclude that the generic type T is a support type of Setting
 	     * @see Setting
@@ -53,12 +95,10 @@ public class SettingsManager
 	    @SuppressWarnings("unchecked")
 	    Setting<T> typedSetting = (Setting<T>) setting;
 	    typedSetting.setValue(value);
-	    cpu.notifyListeners(EventType.SETTINGS_CHANGED);
-	    Emulator.LOGGER.log(Level.INFO, setting.getName() + " - " + setting.getDescription() + ": now has value " + setting.getValue());
-	}else {
-	    String settingName = Optional.ofNullable(setting.getName()).orElse("Undefined setting");
-	    Emulator.LOGGER.log(Level.SEVERE, "Value is of wrong type for setting: " + settingName);
+	    return true;
 	}
+	Emulator.LOGGER.log(Level.SEVERE, "Value is of wrong type for setting: " + setting.getName());
+	return false;
     }
 
     public Map<String, Setting<?>> getSettings(){
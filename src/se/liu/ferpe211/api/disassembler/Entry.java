@@ -23,13 +23,13 @@ public class Entry
 
     public Entry(int address, CPU cpu){
 	RAM memory = cpu.getMemory();
-       byte opCodeByte = memory.readByte(address);
+       byte opCodeByte = memory.peekByte(address);
 	this.opCode = OpCodeMapper.getOpCodeFromByte(opCodeByte);
 	Instruction instruction = cpu.getOperationManager().getInstruction(opCodeByte);
 	this.offset = (byte) instruction.getSize();
 	args = new ArrayList<>();
 	   for (int i = 1; i < offset; i++) {
-		    args.add(memory.readByte(address+i));
+		    args.add(memory.peekByte(address+i));
 	   }
 
    }
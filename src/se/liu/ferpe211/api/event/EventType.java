@@ -5,8 +5,10 @@ package se.liu.ferpe211.api.event;
  */
 public enum EventType {
     INSTRUCTION_EXECUTED,
+    BATCH_EXECUTED,
     MEMORY_ACCESS,
     MEMORY_CHANGED,
     SETTINGS_CHANGED,
-    CPU_RESET
+    CPU_RESET,
+    INSTRUCTIONS_UNDONE
 }
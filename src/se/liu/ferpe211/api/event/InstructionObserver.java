@@ -0,0 +1,47 @@
+package se.liu.ferpe211.api.event;
+
+import se.liu.ferpe211.api.CPU;
+
+/**
+ * Interface for classes that need to see the state of the CPU between instructions, e.g. to record the execution
+ * <p>
+ *     Unlike {@link CPUListener}s, observers are called during batches too. An observer that needs to see every single
+ *     instruction makes the CPU execute one instruction at a time instead of handing whole blocks to its engine, so it slows
+ *     execution down and should only be added while it is needed. Observers that only need to see the CPU every so often
+ *     return a larger {@link #getObservationInterval()}, which lets the engine execute whole blocks in between.
+ * </p>
+ * @see CPU#addObserver(InstructionObserver)
+ */
+public interface InstructionObserver
+{
+    /**
+     * Called right before an instruction is executed, the program counter points at its opcode
+     * @param cpu CPU that is about to execute the instruction
+     */
+    public void beforeInstruction(CPU cpu);
+
+    /**
+     * @return the most instructions that may be executed between two calls of {@link #beforeInstruction(CPU)}, calls can
+     * come more often than that, e.g. when single stepping
+     */
+    public default int getObservationInterval() {
+	return 1;
+    }
+
+    /**
+     * @return true if the observer sets the CPU back to earlier instructions and executes them again, like a
+     * {@link se.liu.ferpe211.api.RewindBuffer}
+     */
+    public default boolean rewindsExecution() {
+	return false;
+    }
+
+    /**
+     * @return true if the observer needs every instruction to be executed exactly once, like a
+     * {@link se.liu.ferpe211.api.trace.TraceRecorder}, which can not be combined with an observer that
+     * {@link #rewindsExecution()}
+     */
+    public default boolean needsLinearExecution() {
+	return false;
+    }
+}
@@ -0,0 +1,139 @@
+package se.liu.ferpe211.api.execution;
+
+import se.liu.ferpe211.api.CPU;
+import se.liu.ferpe211.api.memory.RAM;
+import se.liu.ferpe211.api.register.RegisterState;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+/**
+ * Runs large amounts of independent programs in parallel
+ * <p>
+ *     Jobs are spread over a work stealing {@link ForkJoinPool}. Every worker thread owns a single {@link CPU} that is reused
+ *     for all the jobs it runs, so the cost of constructing a CPU is only paid once per thread. By default these CPUs are
+ *     built with {@link CPU#builder()} so they never touch the config file. Before a job runs, the memory of the worker's
+ *     CPU is cleared, the job's memory image is copied in and the registers are set to the job's initial values. Workers
+ *     never share any state, which lets the throughput scale with the amount of cores.
+ * </p>
+ */
+public class BatchExecutor implements AutoCloseable
+{
+    /**
+     * Largest amount of jobs a task runs itself instead of splitting them up further
+     */
+    private static final int SPLIT_THRESHOLD = 8;
+
+    private final ForkJoinPool pool;
+    private final ThreadLocal<CPU> workerCpu;
+
+    /**
+     * A program to execute
+     * @param image memory image of the program
+     * @param origin address the image is copied to
+     * @param registers initial register values
+     * @param cycleLimit amount of cycles after which the program is stopped if it has not reached BREAK, 0 for no limit
+     */
+    public record Job(byte[] image, int origin, RegisterState registers, long cycleLimit)
+    {
+	/**
+	 * A program loaded at address 0 that starts from the reset state
+	 */
+	public Job(final byte[] image, final long cycleLimit) {
+	    this(image, 0, RegisterState.RESET, cycleLimit);
+	}
+    }
+
+    /**
+     * Outcome of a {@link Job}
+     * @param registers register values when the program stopped
+     * @param instructions amount of instructions executed
+     * @param cycles amount of cycles executed
+     * @param halted true if the program stopped by itself, false if it hit the cycle limit
+     */
+    public record Result(RegisterState registers, long instructions, long cycles, boolean halted)
+    {
+    }
+
+    /**
+     * Creates an executor with one worker per available processor
+     */
+    public BatchExecutor() {
+	this(Runtime.getRuntime().availableProcessors(), () -> CPU.builder().build());
+    }
+
+    /**
+     * @param parallelism amount of worker threads
+     * @param cpuFactory creates the CPU of each worker thread
+     */
+    public BatchExecutor(final int parallelism, final Supplier<CPU> cpuFactory) {
+	this.pool = new ForkJoinPool(parallelism);
+	this.workerCpu = ThreadLocal.withInitial(cpuFactory);
+    }
+
+    /**
+     * Executes jobs in parallel and waits for all of them to finish
+     * @param jobs jobs to execute
+     * @return the results in the same order as the jobs
+     */
+    public List<Result> execute(final List<Job> jobs) {
+	Result[] results = new Result[jobs.size()];
+	pool.invoke(new JobRange(jobs, results, 0, jobs.size()));
+	return Arrays.asList(results);
+    }
+
+    private Result run(final Job job) {
+	CPU cpu = workerCpu.get();
+	RAM memory = cpu.getMemory();
+	memory.init();
+	memory.load(job.origin(), job.image());
+	job.registers().applyTo(cpu.getRegisterFile());
+
+	long startInstructions = cpu.getInstructionCount();
+	long cycles = cpu.runCycles(job.cycleLimit() > 0 ? job.cycleLimit() : Long.MAX_VALUE);
+	return new Result(RegisterState.capture(cpu.getRegisterFile()), cpu.getInstructionCount() - startInstructions, cycles,
+			  !cpu.isExecuting());
+    }
+
+    /**
+     * Stops the worker threads once the jobs already submitted are done
+     */
+    @Override public void close() {
+	pool.shutdown();
+    }
+
+    /**
+     * Task that runs the jobs in a range of indices, splitting the range in half until it is small enough
+     */
+    private class JobRange extends RecursiveAction
+    {
+	private static final long serialVersionUID = 1L;
+
+	// Tasks are never serialized, they only live in the pool
+	private final transient List<Job> jobs;
+	private final transient Result[] results;
+	private final int from;
+	private final int to;
+
+	private JobRange(final List<Job> jobs, final Result[] results, final int from, final int to) {
+	    this.jobs = jobs;
+	    this.results = results;
+	    this.from = from;
+	    this.to = to;
+	}
+
+	@Override protected void compute() {
+	    if (to - from <= SPLIT_THRESHOLD) {
+		for (int i = from; i < to; i++) {
+		    results[i] = run(jobs.get(i));
+		}
+		return;
+	    }
+	    int middle = (from + to) >>> 1;
+	    invokeAll(new JobRange(jobs, results, from, middle), new JobRange(jobs, results, middle, to));
+	}
+    }
+}
@@ -0,0 +1,329 @@
+package se.liu.ferpe211.api.execution;
+
+import se.liu.ferpe211.api.CPU;
+import se.liu.ferpe211.api.memory.MemoryDevice;
+import se.liu.ferpe211.api.memory.MemoryWatcher;
+import se.liu.ferpe211.api.memory.RAM;
+import se.liu.ferpe211.api.operation.OperationManager;
+import se.liu.ferpe211.api.operation.instruction.Instruction;
+import se.liu.ferpe211.api.register.RegisterFile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Cache of decoded basic blocks used to execute instructions without decoding them again every time
+ * <p>
+ *     A block is a straight-line run of instructions that ends at the first instruction that may continue somewhere else,
+ *     see {@link Instruction#endsBlock()}. The first time execution reaches an address the block starting there is decoded
+ *     once into arrays of handlers and operands, after which executing an instruction of the block is a matter of setting the
+ *     program counter and calling the handler with its operands.
+ * </p>
+ * <p>
+ *     Execution is tiered. Blocks start out interpreted by calling the handlers of their instructions from the arrays, and
+ *     {@link #run(long, long)} counts how often each block is entered. Once a block has been entered
+ *     {@link #getCompileThreshold()} times it is translated to JVM bytecode by the {@link BlockCompiler} and runs as a single
+ *     method from then on.
+ * </p>
+ * <p>
+ *     Blocks are invalidated by writes to the bytes they were decoded from. The cache watches the memory pages that contain
+ *     blocks, and a write to one of those pages drops every block that covers the written address. Invalidation is checked
+ *     before every instruction, so code that modifies the instructions right after itself still behaves as on the real CPU.
+ *     An invalidated block is simply decoded again, and compiled again once it is hot.
+ * </p>
+ */
+public class BlockCache implements ExecutionEngine, MemoryWatcher
+{
+    private static final int ADDRESS_SPACE = 0x10000;
+    private static final int MAX_BLOCK_LENGTH = 32;
+    private static final int DEFAULT_COMPILE_THRESHOLD = 1000;
+    private static final int BYTE_MASK = 0xFF;
+    private static final int BYTE_SIZE = 8;
+
+    private final CPU cpu;
+    private final RAM memory;
+    private final RegisterFile registers;
+    private final OperationManager operationManager;
+
+    /**
+     * Blocks by start address, allocated on first use so CPUs that never run stay cheap to create
+     */
+    private DecodedBlock[] blocks = null;
+
+    /**
+     * Blocks that cover each memory page, a block spanning two pages is in both lists
+     */
+    private final List<List<DecodedBlock>> blocksByPage = new ArrayList<>();
+
+    /**
+     * Block of the previous instruction and the index of the next instruction in it
+     */
+    private DecodedBlock current = null;
+    private int index = 0;
+
+    /**
+     * Amount of instructions and cycles executed by the last call to {@link #run(long, long)}
+     */
+    private long lastInstructions = 0;
+    private long lastCycles = 0;
+    private long blockCycles = 0;
+
+    private int compileThreshold = DEFAULT_COMPILE_THRESHOLD;
+    private int compiledBlocks = 0;
+
+    /**
+     * Scratch space for decoding a block
+     */
+    private final Instruction[] decodedInstructions = new Instruction[MAX_BLOCK_LENGTH];
+    private final int[] decodedAddresses = new int[MAX_BLOCK_LENGTH];
+    private final byte[] decodedOp8 = new byte[MAX_BLOCK_LENGTH];
+    private final int[] decodedOp16 = new int[MAX_BLOCK_LENGTH];
+
+    public BlockCache(final CPU cpu) {
+	this.cpu = cpu;
+	this.memory = cpu.getMemory();
+	this.registers = cpu.getRegisterFile();
+	this.operationManager = cpu.getOperationManager();
+	for (int page = 0; page < RAM.PAGE_COUNT; page++) {
+	    blocksByPage.add(null);
+	}
+	memory.setWatcher(this);
+    }
+
+    @Override public int step() {
+	int address = registers.getProgramCounter();
+	DecodedBlock block = current;
+	if (block == null || !block.valid || index >= block.length || block.addresses[index] != address) {
+	    block = lookup(address);
+	    current = block;
+	    index = 0;
+	    if (block == null) {
+		return interpret(address);
+	    }
+	}
+
+	int i = index++;
+	Instruction instruction = block.instructions[i];
+	registers.setProgramCounter(block.addresses[i] + instruction.getSize());
+	instruction.execute(cpu, block.op8[i], block.op16[i]);
+	return instruction.getCycles();
+    }
+
+    /**
+     * Executes instructions block by block until a limit is reached or execution is stopped, compiling blocks when they are hot
+     * @see ExecutionEngine#run(long, long)
+     */
+    @Override public long run(final long maxInstructions, final long cycleBudget) {
+	long instructions = 0;
+	long cycles = 0;
+	do {
+	    instructions += runBlock(maxInstructions - instructions, cycleBudget - cycles);
+	    cycles += blockCycles;
+	} while (instructions < maxInstructions && cycles < cycleBudget && cpu.isExecuting());
+	lastInstructions = instructions;
+	lastCycles = cycles;
+	return instructions;
+    }
+
+    /**
+     * Executes instructions of the block at the program counter until the end of the block or until a limit is reached
+     * @return the amount of instructions that were executed, the amount of cycles is left in {@link #blockCycles}
+     */
+    private int runBlock(final long maxInstructions, final long cycleBudget) {
+	int address = registers.getProgramCounter();
+	DecodedBlock block = current;
+	int start = index;
+	if (block == null || !block.valid || start >= block.length || block.addresses[start] != address) {
+	    start = 0;
+	    // Loops that consist of a single block come back to its start, which needs no lookup
+	    if (block == null || !block.valid || block.start != address) {
+		block = lookup(address);
+		current = block;
+		if (block == null) {
+		    blockCycles = interpret(address);
+		    return 1;
+		}
+	    }
+	}
+
+	if (start == 0) {
+	    if (block.compiled == null && ++block.entries == compileThreshold) {
+		block.compiled = BlockCompiler.compile(block, cpu);
+		if (block.compiled != null) {
+		    compiledBlocks++;
+		}
+	    }
+	    // The compiled block always runs to its end, so it is only used when every limit allows that
+	    if (block.compiled != null && block.length <= maxInstructions && block.cyclesBefore[block.length - 1] < cycleBudget) {
+		int executed = block.compiled.run();
+		index = executed;
+		blockCycles = block.cyclesBefore[executed];
+		return executed;
+	    }
+	}
+
+	int i = start;
+	long cycles = 0;
+	while (i < block.length && i - start < maxInstructions && cycles < cycleBudget) {
+	    Instruction instruction = block.instructions[i];
+	    registers.setProgramCounter(block.addresses[i] + instruction.getSize());
+	    instruction.execute(cpu, block.op8[i], block.op16[i]);
+	    cycles += instruction.getCycles();
+	    i++;
+	    if (!block.valid) {
+		break;
+	    }
+	}
+	index = i;
+	blockCycles = cycles;
+	return i - start;
+    }
+
+    public long getLastInstructions() {
+	return lastInstructions;
+    }
+
+    @Override public long getLastCycles() {
+	return lastCycles;
+    }
+
+    public int getCompileThreshold() {
+	return compileThreshold;
+    }
+
+    /**
+     * @param compileThreshold amount of times a block is entered before it is compiled, 0 to never compile
+     */
+    public void setCompileThreshold(final int compileThreshold) {
+	this.compileThreshold = Math.max(0, compileThreshold);
+    }
+
+    /**
+     * @return the amount of blocks compiled so far, including ones that have since been invalidated
+     */
+    public int getCompiledBlocks() {
+	return compiledBlocks;
+    }
+
+    /**
+     * Fetches, decodes and executes a single instruction without the cache, used where no block can be decoded
+     */
+    private int interpret(final int address) {
+	byte opcode = memory.readByte(address);
+	registers.setProgramCounter(address + 1);
+	Instruction instruction = operationManager.getInstruction(opcode);
+	instruction.execute(cpu);
+	return instruction.getCycles();
+    }
+
+    private DecodedBlock lookup(final int address) {
+	DecodedBlock[] table = blocks;
+	if (table != null && table[address] != null) {
+	    return table[address];
+	}
+	return decodeAndStore(address);
+    }
+
+    /**
+     * Slow path of {@link #lookup(int)}, synchronized with {@link #memoryChanged(int, int)} since memory may be edited from
+     * another thread, e.g. the GUI, while the CPU runs
+     */
+    private synchronized DecodedBlock decodeAndStore(final int address) {
+	if (blocks == null) {
+	    blocks = new DecodedBlock[ADDRESS_SPACE];
+	}
+	DecodedBlock block = blocks[address];
+	if (block == null) {
+	    block = decode(address);
+	    if (block != null) {
+		blocks[address] = block;
+		for (int page = block.start >>> RAM.PAGE_SHIFT; page <= (block.end - 1) >>> RAM.PAGE_SHIFT; page++) {
+		    List<DecodedBlock> pageBlocks = blocksByPage.get(page);
+		    if (pageBlocks == null) {
+			pageBlocks = new ArrayList<>();
+			blocksByPage.set(page, pageBlocks);
+		    }
+		    pageBlocks.add(block);
+		    memory.setPageWatched(page, true);
+		}
+	    }
+	}
+	return block;
+    }
+
+    /**
+     * Decodes the block starting at an address
+     * Blocks never cover pages of devices other than plain memory, since reading such a device may have side effects and
+     * its contents may change without any write from the CPU. Code on those pages is always fetched and decoded again.
+     * @return the block, or null if not even the first instruction fits in memory outside of device pages
+     */
+    private DecodedBlock decode(final int start) {
+	int address = start;
+	int length = 0;
+	while (length < MAX_BLOCK_LENGTH && address < ADDRESS_SPACE && isDecodable(address)) {
+	    Instruction instruction = operationManager.getInstruction(memory.readByte(address));
+	    int size = instruction.getSize();
+	    if (address + size > ADDRESS_SPACE || !isDecodable(address + size - 1)) {
+		break;
+	    }
+	    decodedInstructions[length] = instruction;
+	    decodedAddresses[length] = address;
+	    decodedOp8[length] = size > 1 ? memory.readByte(address + 1) : 0;
+	    decodedOp16[length] = size > 2 ? ((memory.readByte(address + 2) & BYTE_MASK) << BYTE_SIZE) |
+					     (memory.readByte(address + 1) & BYTE_MASK) : 0;
+	    address += size;
+	    length++;
+	    if (instruction.endsBlock()) {
+		break;
+	    }
+	}
+	if (length == 0) {
+	    return null;
+	}
+	return new DecodedBlock(start, address, length, Arrays.copyOf(decodedInstructions, length),
+			 Arrays.copyOf(decodedAddresses, length), Arrays.copyOf(decodedOp8, length),
+			 Arrays.copyOf(decodedOp16, length));
+    }
+
+    private boolean isDecodable(final int address) {
+	MemoryDevice device = memory.getDevice(address);
+	return device == null || device.isPlainMemory();
+    }
+
+    /**
+     * Drops every block decoded from the changed addresses
+     * @see MemoryWatcher#memoryChanged(int, int)
+     */
+    @Override public synchronized void memoryChanged(final int start, final int end) {
+	if (blocks == null) {
+	    return;
+	}
+	for (int page = start >>> RAM.PAGE_SHIFT; page <= (end - 1) >>> RAM.PAGE_SHIFT; page++) {
+	    List<DecodedBlock> pageBlocks = blocksByPage.get(page);
+	    if (pageBlocks == null) {
+		continue;
+	    }
+	    // Backwards since invalidating a block removes it from this list
+	    for (int i = pageBlocks.size() - 1; i >= 0; i--) {
+		DecodedBlock block = pageBlocks.get(i);
+		if (block.start < end && start < block.end) {
+		    invalidate(block);
+		}
+	    }
+	}
+    }
+
+    private void invalidate(final DecodedBlock block) {
+	block.valid = false;
+	blocks[block.start] = null;
+	for (int page = block.start >>> RAM.PAGE_SHIFT; page <= (block.end - 1) >>> RAM.PAGE_SHIFT; page++) {
+	    List<DecodedBlock> pageBlocks = blocksByPage.get(page);
+	    pageBlocks.remove(block);
+	    if (pageBlocks.isEmpty()) {
+		blocksByPage.set(page, null);
+		memory.setPageWatched(page, false);
+	    }
+	}
+    }
+}
@@ -0,0 +1,132 @@
+package se.liu.ferpe211.api.execution;
+
+import se.liu.ferpe211.api.CPU;
+import se.liu.ferpe211.api.operation.instruction.Instruction;
+import se.liu.ferpe211.api.register.RegisterFile;
+import se.liu.ferpe211.impl.Emulator;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Modifier;
+import java.util.logging.Level;
+
+/**
+ * Translates hot {@link DecodedBlock}s to JVM bytecode
+ * <p>
+ *     Every block becomes a hidden class whose {@link CompiledBlock#run()} method is the straight-line sequence of the block's
+ *     instructions. For each instruction it sets the program counter and calls the instruction's handler with the CPU and its
+ *     operands as constants. The handlers are final fields of their exact type, so every call site in the generated code only
+ *     ever sees one receiver and the JIT of the JVM inlines the handlers into a single compiled method for the whole block. After every
+ *     instruction but the last the block checks if it has been invalidated, and returns early if so.
+ * </p>
+ * <p>
+ *     Hidden classes are not referenced by their class loader, so the code of invalidated blocks is unloaded once the blocks
+ *     are no longer reachable.
+ * </p>
+ */
+final class BlockCompiler
+{
+    private static final String CLASS_NAME = "se/liu/ferpe211/api/execution/CompiledBlockImpl";
+    private static final String OBJECT = "java/lang/Object";
+    private static final String COMPILED_BLOCK = internalName(CompiledBlock.class);
+    private static final String DECODED_BLOCK = internalName(DecodedBlock.class);
+    private static final String CPU_TYPE = internalName(CPU.class);
+    private static final String REGISTER_FILE = internalName(RegisterFile.class);
+    private static final String INSTRUCTION = internalName(Instruction.class);
+
+    private static final String CPU_FIELD = "cpu";
+    private static final String REGISTERS_FIELD = "registers";
+    private static final String BLOCK_FIELD = "block";
+    private static final String HANDLER_FIELD = "handler";
+
+    private static final String CONSTRUCTOR_TYPE =
+	    "(" + descriptor(CPU_TYPE) + descriptor(REGISTER_FILE) + descriptor(DECODED_BLOCK) + "[" + descriptor(INSTRUCTION) + ")V";
+    private static final String EXECUTE_TYPE = "(" + descriptor(CPU_TYPE) + "BI)V";
+    private static final int CONSTRUCTOR_MAX_STACK = 3;
+    private static final int CONSTRUCTOR_MAX_LOCALS = 5;
+    private static final int RUN_MAX_STACK = 4;
+    private static final int RUN_MAX_LOCALS = 1;
+
+    private static boolean failureLogged = false;
+
+    private BlockCompiler() {}
+
+    /**
+     * @param block block to compile
+     * @param cpu CPU the instructions of the block work on
+     * @return the compiled block, or null if it could not be compiled in which case it keeps being interpreted
+     */
+    static CompiledBlock compile(final DecodedBlock block, final CPU cpu) {
+	try {
+	    byte[] bytes = generate(block);
+	    Class<?> compiledClass = MethodHandles.lookup().defineHiddenClass(bytes, true).lookupClass();
+	    return (CompiledBlock) compiledClass.getConstructor(CPU.class, RegisterFile.class, DecodedBlock.class,
+								 Instruction[].class)
+		    .newInstance(cpu, cpu.getRegisterFile(), block, block.instructions);
+	} catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+	    logFailure(e);
+	    return null;
+	}
+    }
+
+    private static synchronized void logFailure(final Throwable e) {
+	if (!failureLogged) {
+	    failureLogged = true;
+	    Emulator.LOGGER.log(Level.WARNING, "Could not compile block, falling back to the interpreter", e);
+	}
+    }
+
+    private static byte[] generate(final DecodedBlock block) {
+	ClassFileWriter writer = new ClassFileWriter(CLASS_NAME, OBJECT, COMPILED_BLOCK);
+	String[] handlerTypes = new String[block.length];
+	writer.field(ClassFileWriter.ACC_PRIVATE | ClassFileWriter.ACC_FINAL, CPU_FIELD, descriptor(CPU_TYPE));
+	writer.field(ClassFileWriter.ACC_PRIVATE | ClassFileWriter.ACC_FINAL, REGISTERS_FIELD, descriptor(REGISTER_FILE));
+	writer.field(ClassFileWriter.ACC_PRIVATE | ClassFileWriter.ACC_FINAL, BLOCK_FIELD, descriptor(DECODED_BLOCK));
+	for (int i = 0; i < block.length; i++) {
+	    Class<?> handlerClass = block.instructions[i].getClass();
+	    handlerTypes[i] = Modifier.isPublic(handlerClass.getModifiers()) ? internalName(handlerClass) : INSTRUCTION;
+	    writer.field(ClassFileWriter.ACC_PRIVATE | ClassFileWriter.ACC_FINAL, HANDLER_FIELD + i, descriptor(handlerTypes[i]));
+	}
+
+	ClassFileWriter.Code constructor = writer.method(ClassFileWriter.ACC_PUBLIC, "<init>", CONSTRUCTOR_TYPE);
+	constructor.aload(0).invokespecial(OBJECT, "<init>", "()V");
+	constructor.aload(0).aload(1).putfield(CLASS_NAME, CPU_FIELD, descriptor(CPU_TYPE));
+	constructor.aload(0).aload(2).putfield(CLASS_NAME, REGISTERS_FIELD, descriptor(REGISTER_FILE));
+	constructor.aload(0).aload(3).putfield(CLASS_NAME, BLOCK_FIELD, descriptor(DECODED_BLOCK));
+	for (int i = 0; i < block.length; i++) {
+	    constructor.aload(0).aload(4).pushInt(i).aaload().checkcast(handlerTypes[i])
+		    .putfield(CLASS_NAME, HANDLER_FIELD + i, descriptor(handlerTypes[i]));
+	}
+	constructor.vreturn().end(CONSTRUCTOR_MAX_STACK, CONSTRUCTOR_MAX_LOCALS);
+
+	ClassFileWriter.Code run = writer.method(ClassFileWriter.ACC_PUBLIC, "run", "()I");
+	for (int i = 0; i < block.length; i++) {
+	    Instruction instruction = block.instructions[i];
+	    run.aload(0).getfield(CLASS_NAME, REGISTERS_FIELD, descriptor(REGISTER_FILE))
+		    .pushInt(block.addresses[i] + instruction.getSize())
+		    .invokevirtual(REGISTER_FILE, "setProgramCounter", "(I)V");
+	    run.aload(0).getfield(CLASS_NAME, HANDLER_FIELD + i, descriptor(handlerTypes[i]))
+		    .aload(0).getfield(CLASS_NAME, CPU_FIELD, descriptor(CPU_TYPE))
+		    .pushInt(block.op8[i])
+		    .pushInt(block.op16[i])
+		    .invokevirtual(handlerTypes[i], "execute", EXECUTE_TYPE);
+	    if (i < block.length - 1) {
+		run.aload(0).getfield(CLASS_NAME, BLOCK_FIELD, descriptor(DECODED_BLOCK))
+			.getfield(DECODED_BLOCK, "valid", "Z");
+		int branch = run.ifne();
+		run.pushInt(i + 1).ireturn();
+		run.label(branch);
+	    }
+	}
+	run.pushInt(block.length).ireturn().end(RUN_MAX_STACK, RUN_MAX_LOCALS);
+
+	return writer.toByteArray();
+    }
+
+    private static String internalName(final Class<?> type) {
+	return type.getName().replace('.', '/');
+    }
+
+    private static String descriptor(final String internalName) {
+	return "L" + internalName + ";";
+    }
+}
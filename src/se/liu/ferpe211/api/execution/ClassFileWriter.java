@@ -0,0 +1,368 @@
+package se.liu.ferpe211.api.execution;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal writer for JVM class files, supporting just what the {@link BlockCompiler} generates
+ * <p>
+ *     Classes consist of fields and methods whose code only ever branches forward to points where the operand stack is empty
+ *     and the locals are those of the method entry, so every stack map frame is a same frame.
+ * </p>
+ * @see <a href="https://docs.oracle.com/javase/specs/jvms/se21/html/jvms-4.html">JVMS - The class File Format</a>
+ */
+final class ClassFileWriter
+{
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_PRIVATE = 0x0002;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int VERSION_JAVA_8 = 52;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private static final int MAX_SAME_FRAME_DELTA = 63;
+    private static final int SAME_FRAME_EXTENDED = 251;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final Map<String, Integer> poolIndices = new HashMap<>();
+    private int poolCount = 1;
+
+    private final int thisClass;
+    private final int superClass;
+    private final List<Integer> interfaces = new ArrayList<>();
+    private final ByteArrayOutputStream members = new ByteArrayOutputStream();
+    private int fieldCount = 0;
+    private final List<byte[]> methods = new ArrayList<>();
+
+    /**
+     * @param name internal name of the class, e.g. {@code se/liu/Example}
+     * @param superName internal name of the super class
+     * @param interfaceNames internal names of the implemented interfaces
+     */
+    ClassFileWriter(final String name, final String superName, final String... interfaceNames) {
+	thisClass = classRef(name);
+	superClass = classRef(superName);
+	for (String interfaceName : interfaceNames) {
+	    interfaces.add(classRef(interfaceName));
+	}
+    }
+
+    void field(final int access, final String name, final String descriptor) {
+	try {
+	    DataOutputStream out = new DataOutputStream(members);
+	    out.writeShort(access);
+	    out.writeShort(utf8(name));
+	    out.writeShort(utf8(descriptor));
+	    out.writeShort(0);
+	} catch (IOException e) {
+	    throw new UncheckedIOException(e);
+	}
+	fieldCount++;
+    }
+
+    /**
+     * Starts a new method, the method is added to the class by {@link Code#end(int, int)}
+     */
+    Code method(final int access, final String name, final String descriptor) {
+	return new Code(access, utf8(name), utf8(descriptor));
+    }
+
+    byte[] toByteArray() {
+	try {
+	    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	    DataOutputStream out = new DataOutputStream(bytes);
+	    out.writeInt(MAGIC);
+	    out.writeShort(0);
+	    out.writeShort(VERSION_JAVA_8);
+	    out.writeShort(poolCount);
+	    poolBytes.writeTo(out);
+	    out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+	    out.writeShort(thisClass);
+	    out.writeShort(superClass);
+	    out.writeShort(interfaces.size());
+	    for (int index : interfaces) {
+		out.writeShort(index);
+	    }
+	    out.writeShort(fieldCount);
+	    members.writeTo(out);
+	    out.writeShort(methods.size());
+	    for (byte[] method : methods) {
+		out.write(method);
+	    }
+	    out.writeShort(0);
+	    return bytes.toByteArray();
+	} catch (IOException e) {
+	    throw new UncheckedIOException(e);
+	}
+    }
+
+    int utf8(final String value) {
+	return constant("U" + value, () -> {
+	    pool.writeByte(CONSTANT_UTF8);
+	    pool.writeUTF(value);
+	});
+    }
+
+    int integer(final int value) {
+	return constant("I" + value, () -> {
+	    pool.writeByte(CONSTANT_INTEGER);
+	    pool.writeInt(value);
+	});
+    }
+
+    int classRef(final String name) {
+	int nameIndex = utf8(name);
+	return constant("C" + name, () -> {
+	    pool.writeByte(CONSTANT_CLASS);
+	    pool.writeShort(nameIndex);
+	});
+    }
+
+    int fieldRef(final String owner, final String name, final String descriptor) {
+	return memberRef(CONSTANT_FIELDREF, owner, name, descriptor);
+    }
+
+    int methodRef(final String owner, final String name, final String descriptor) {
+	return memberRef(CONSTANT_METHODREF, owner, name, descriptor);
+    }
+
+    private int memberRef(final int tag, final String owner, final String name, final String descriptor) {
+	int ownerIndex = classRef(owner);
+	int nameIndex = utf8(name);
+	int descriptorIndex = utf8(descriptor);
+	int nameAndType = constant("N" + name + ":" + descriptor, () -> {
+	    pool.writeByte(CONSTANT_NAME_AND_TYPE);
+	    pool.writeShort(nameIndex);
+	    pool.writeShort(descriptorIndex);
+	});
+	return constant(tag + owner + "." + name + ":" + descriptor, () -> {
+	    pool.writeByte(tag);
+	    pool.writeShort(ownerIndex);
+	    pool.writeShort(nameAndType);
+	});
+    }
+
+    private int constant(final String key, final PoolEntry entry) {
+	Integer index = poolIndices.get(key);
+	if (index != null) {
+	    return index;
+	}
+	try {
+	    entry.write();
+	} catch (IOException e) {
+	    throw new UncheckedIOException(e);
+	}
+	index = poolCount++;
+	poolIndices.put(key, index);
+	return index;
+    }
+
+    private interface PoolEntry
+    {
+	public void write() throws IOException;
+    }
+
+    /**
+     * Bytecode of a single method
+     */
+    final class Code
+    {
+	private static final int ALOAD = 0x19;
+	private static final int ALOAD_0 = 0x2a;
+	private static final int ICONST_0 = 0x03;
+	private static final int BIPUSH = 0x10;
+	private static final int SIPUSH = 0x11;
+	private static final int LDC_W = 0x13;
+	private static final int AALOAD = 0x32;
+	private static final int IFNE = 0x9a;
+	private static final int IRETURN = 0xac;
+	private static final int RETURN = 0xb1;
+	private static final int GETFIELD = 0xb4;
+	private static final int PUTFIELD = 0xb5;
+	private static final int INVOKEVIRTUAL = 0xb6;
+	private static final int INVOKESPECIAL = 0xb7;
+	private static final int CHECKCAST = 0xc0;
+	private static final int MAX_ICONST = 5;
+	private static final int MAX_ALOAD_N = 3;
+
+	private final int access;
+	private final int name;
+	private final int descriptor;
+	private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+	private final List<Integer> frameOffsets = new ArrayList<>();
+
+	private Code(final int access, final int name, final int descriptor) {
+	    this.access = access;
+	    this.name = name;
+	    this.descriptor = descriptor;
+	}
+
+	Code aload(final int local) {
+	    if (local <= MAX_ALOAD_N) {
+		code.write(ALOAD_0 + local);
+	    } else {
+		code.write(ALOAD);
+		code.write(local);
+	    }
+	    return this;
+	}
+
+	Code pushInt(final int value) {
+	    if (value >= -1 && value <= MAX_ICONST) {
+		code.write(ICONST_0 + value);
+	    } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+		code.write(BIPUSH);
+		code.write(value);
+	    } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+		code.write(SIPUSH);
+		writeShort(value);
+	    } else {
+		code.write(LDC_W);
+		writeShort(integer(value));
+	    }
+	    return this;
+	}
+
+	Code aaload() {
+	    code.write(AALOAD);
+	    return this;
+	}
+
+	Code checkcast(final String type) {
+	    code.write(CHECKCAST);
+	    writeShort(classRef(type));
+	    return this;
+	}
+
+	Code getfield(final String owner, final String field, final String type) {
+	    code.write(GETFIELD);
+	    writeShort(fieldRef(owner, field, type));
+	    return this;
+	}
+
+	Code putfield(final String owner, final String field, final String type) {
+	    code.write(PUTFIELD);
+	    writeShort(fieldRef(owner, field, type));
+	    return this;
+	}
+
+	Code invokevirtual(final String owner, final String method, final String type) {
+	    code.write(INVOKEVIRTUAL);
+	    writeShort(methodRef(owner, method, type));
+	    return this;
+	}
+
+	Code invokespecial(final String owner, final String method, final String type) {
+	    code.write(INVOKESPECIAL);
+	    writeShort(methodRef(owner, method, type));
+	    return this;
+	}
+
+	/**
+	 * Emits an ifne whose target is the next label placed with {@link #label(int)}
+	 * @return position of the branch to pass to {@link #label(int)}
+	 */
+	int ifne() {
+	    int position = code.size();
+	    code.write(IFNE);
+	    writeShort(0);
+	    return position;
+	}
+
+	/**
+	 * Places the target of a branch at the current position, the operand stack must be empty here
+	 * @param branch position returned by {@link #ifne()}
+	 */
+	Code label(final int branch) {
+	    int offset = code.size() - branch;
+	    byte[] bytes = code.toByteArray();
+	    bytes[branch + 1] = (byte) (offset >> Byte.SIZE);
+	    bytes[branch + 2] = (byte) offset;
+	    code.reset();
+	    code.write(bytes, 0, bytes.length);
+	    frameOffsets.add(bytes.length);
+	    return this;
+	}
+
+	Code ireturn() {
+	    code.write(IRETURN);
+	    return this;
+	}
+
+	Code vreturn() {
+	    code.write(RETURN);
+	    return this;
+	}
+
+	/**
+	 * Adds the method to the class
+	 */
+	void end(final int maxStack, final int maxLocals) {
+	    try {
+		ByteArrayOutputStream frames = new ByteArrayOutputStream();
+		DataOutputStream frameOut = new DataOutputStream(frames);
+		int previous = -1;
+		for (int offset : frameOffsets) {
+		    int delta = offset - previous - 1;
+		    if (delta <= MAX_SAME_FRAME_DELTA) {
+			frameOut.writeByte(delta);
+		    } else {
+			frameOut.writeByte(SAME_FRAME_EXTENDED);
+			frameOut.writeShort(delta);
+		    }
+		    previous = offset;
+		}
+
+		ByteArrayOutputStream attribute = new ByteArrayOutputStream();
+		DataOutputStream attributeOut = new DataOutputStream(attribute);
+		attributeOut.writeShort(maxStack);
+		attributeOut.writeShort(maxLocals);
+		attributeOut.writeInt(code.size());
+		code.writeTo(attributeOut);
+		attributeOut.writeShort(0);
+		if (frameOffsets.isEmpty()) {
+		    attributeOut.writeShort(0);
+		} else {
+		    attributeOut.writeShort(1);
+		    attributeOut.writeShort(utf8("StackMapTable"));
+		    attributeOut.writeInt(2 + frames.size());
+		    attributeOut.writeShort(frameOffsets.size());
+		    frames.writeTo(attributeOut);
+		}
+
+		ByteArrayOutputStream method = new ByteArrayOutputStream();
+		DataOutputStream methodOut = new DataOutputStream(method);
+		methodOut.writeShort(access);
+		methodOut.writeShort(name);
+		methodOut.writeShort(descriptor);
+		methodOut.writeShort(1);
+		methodOut.writeShort(utf8("Code"));
+		methodOut.writeInt(attribute.size());
+		attribute.writeTo(methodOut);
+		methods.add(method.toByteArray());
+	    } catch (IOException e) {
+		throw new UncheckedIOException(e);
+	    }
+	}
+
+	private void writeShort(final int value) {
+	    code.write(value >> Byte.SIZE);
+	    code.write(value);
+	}
+    }
+}
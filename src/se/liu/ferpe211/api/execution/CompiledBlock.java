@@ -0,0 +1,15 @@
+package se.liu.ferpe211.api.execution;
+
+/**
+ * A {@link DecodedBlock} translated to JVM bytecode by the {@link BlockCompiler}
+ */
+interface CompiledBlock
+{
+    /**
+     * Executes the instructions of the block in order
+     * Execution stops early if the block is invalidated by one of its own instructions, so the rest of the block can be
+     * decoded again from the modified memory.
+     * @return the amount of instructions that were executed
+     */
+    public int run();
+}
@@ -0,0 +1,53 @@
+package se.liu.ferpe211.api.execution;
+
+import se.liu.ferpe211.api.operation.instruction.Instruction;
+
+/**
+ * A basic block decoded by the {@link BlockCache}, the arrays hold one entry per instruction
+ * <p>
+ *     The fields are package private since code generated by the {@link BlockCompiler} reads {@link #valid} directly.
+ * </p>
+ */
+final class DecodedBlock
+{
+    final int start;
+    final int end;
+    final int length;
+    final Instruction[] instructions;
+    final int[] addresses;
+    final byte[] op8;
+    final int[] op16;
+
+    /**
+     * Amount of cycles used by the instructions before each index, with the total of the block as the last entry
+     */
+    final long[] cyclesBefore;
+
+    /**
+     * Cleared when the memory the block was decoded from is written to, volatile since the write may come from another
+     * thread than the one running the block, e.g. the GUI editing memory
+     */
+    volatile boolean valid = true;
+
+    /**
+     * Amount of times execution entered the block at its start, used to decide when to compile it
+     */
+    int entries = 0;
+    CompiledBlock compiled = null;
+
+    DecodedBlock(final int start, final int end, final int length, final Instruction[] instructions, final int[] addresses,
+		 final byte[] op8, final int[] op16)
+    {
+	this.start = start;
+	this.end = end;
+	this.length = length;
+	this.instructions = instructions;
+	this.addresses = addresses;
+	this.op8 = op8;
+	this.op16 = op16;
+	this.cyclesBefore = new long[length + 1];
+	for (int i = 0; i < length; i++) {
+	    cyclesBefore[i + 1] = cyclesBefore[i] + instructions[i].getCycles();
+	}
+    }
+}
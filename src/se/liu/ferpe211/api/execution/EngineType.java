@@ -0,0 +1,21 @@
+package se.liu.ferpe211.api.execution;
+
+/**
+ * Enum for the available {@link ExecutionEngine}s
+ * @see se.liu.ferpe211.api.CPU#setEngine(EngineType)
+ */
+public enum EngineType
+{
+    /**
+     * Instructions are decoded once per basic block and executed by their {@link se.liu.ferpe211.api.operation.instruction.Instruction}
+     * handlers, hot blocks are compiled to JVM bytecode
+     * @see BlockCache
+     */
+    BLOCK_CACHE,
+
+    /**
+     * Every instruction is fetched and executed by a single switch on its opcode
+     * @see SwitchInterpreter
+     */
+    SWITCH
+}
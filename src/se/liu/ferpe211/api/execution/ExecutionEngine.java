@@ -0,0 +1,31 @@
+package se.liu.ferpe211.api.execution;
+
+/**
+ * Strategy for fetching, decoding and executing the instructions of a {@link se.liu.ferpe211.api.CPU}
+ * <p>
+ *     Engines only change how instructions are executed, never what they do, so every engine leaves the registers and the
+ *     memory in the same state for the same program. Which one is faster depends on the program, see {@link EngineType}.
+ * </p>
+ */
+public interface ExecutionEngine
+{
+    /**
+     * Executes the instruction at the program counter
+     * @return the amount of cycles that the instruction takes to execute
+     */
+    public int step();
+
+    /**
+     * Executes instructions until a limit is reached or execution is stopped, at least one instruction is always executed
+     * @param maxInstructions maximum amount of instructions to execute, at least 1
+     * @param cycleBudget amount of cycles after which no further instruction is started, at least 1
+     * @return the amount of instructions that were executed
+     * @see #getLastCycles()
+     */
+    public long run(long maxInstructions, long cycleBudget);
+
+    /**
+     * @return the amount of cycles executed by the last call to {@link #run(long, long)}
+     */
+    public long getLastCycles();
+}
@@ -0,0 +1,159 @@
+package se.liu.ferpe211.api.execution;
+
+import se.liu.ferpe211.api.CPU;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a {@link CPU} on a background thread at a target clock frequency
+ * <p>
+ *     Execution happens in slices of {@link #SLICE_NANOS} worth of emulated time. After each slice the pacer waits until the
+ *     wall clock has caught up with the emulated clock, by parking the thread for most of the remaining time and spinning on
+ *     {@link System#nanoTime()} for the last part of it. Deadlines are computed from the start of the run and the total amount
+ *     of cycles executed, so rounding and oversleeping never accumulate into drift. If the host falls behind by more than
+ *     {@link #MAX_LAG_NANOS} the pacer gives up on the missed time instead of trying to catch up in a burst.
+ * </p>
+ * <p>
+ *     A frequency of 0 (or below) is turbo mode where the CPU runs as fast as the host allows.
+ * </p>
+ */
+public class Pacer
+{
+    private static final double NANOS_PER_SECOND = 1.0e9;
+    static final long SLICE_NANOS = 10_000_000L;
+    private static final long SPIN_THRESHOLD_NANOS = 200_000L;
+    static final long MAX_LAG_NANOS = 100_000_000L;
+    private static final long TURBO_SLICE_INSTRUCTIONS = 100_000L;
+
+    /**
+     * Source of the time a paced run keeps up with, tests replace it to pace against simulated time
+     */
+    interface Clock
+    {
+	long nanoTime();
+
+	/**
+	 * Returns once the clock has reached the deadline or the current thread is interrupted
+	 */
+	void waitUntil(long deadline);
+    }
+
+    private static final Clock SYSTEM_CLOCK = new Clock()
+    {
+	@Override public long nanoTime() {
+	    return System.nanoTime();
+	}
+
+	@Override public void waitUntil(final long deadline) {
+	    long remaining;
+	    while ((remaining = deadline - System.nanoTime()) > 0) {
+		if (remaining > SPIN_THRESHOLD_NANOS) {
+		    LockSupport.parkNanos(remaining - SPIN_THRESHOLD_NANOS);
+		} else {
+		    Thread.onSpinWait();
+		}
+		if (Thread.currentThread().isInterrupted()) {
+		    return;
+		}
+	    }
+	}
+    };
+
+    private final CPU cpu;
+    private final double frequency;
+    private final Clock clock;
+    private volatile boolean running;
+    private Thread thread = null;
+
+    /**
+     * @param cpu CPU to execute
+     * @param frequency target clock frequency in Hz, 0 for turbo mode
+     */
+    public Pacer(final CPU cpu, final double frequency) {
+	this(cpu, frequency, SYSTEM_CLOCK);
+    }
+
+    Pacer(final CPU cpu, final double frequency, final Clock clock) {
+	this.cpu = cpu;
+	this.frequency = frequency;
+	this.clock = clock;
+    }
+
+    public double getFrequency() {
+	return frequency;
+    }
+
+    public boolean isTurbo() {
+	return frequency <= 0;
+    }
+
+    public boolean isRunning() {
+	return running;
+    }
+
+    /**
+     * Starts executing on a new thread, execution continues until BREAK is reached or {@link #stop()} is called
+     */
+    public synchronized void start() {
+	if (running) {
+	    return;
+	}
+	running = true;
+	thread = new Thread(this::run, "CPU pacer");
+	thread.setDaemon(true);
+	thread.start();
+    }
+
+    /**
+     * Stops execution and waits for the execution thread to finish its current slice
+     */
+    public synchronized void stop() {
+	running = false;
+	cpu.setExecuting(false);
+	if (thread != null && thread != Thread.currentThread()) {
+	    try {
+		thread.join();
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+	    }
+	}
+	thread = null;
+    }
+
+    private void run() {
+	if (isTurbo()) {
+	    while (running && !Thread.currentThread().isInterrupted()) {
+		cpu.runInstructions(TURBO_SLICE_INSTRUCTIONS);
+		if (!cpu.isExecuting()) {
+		    break;
+		}
+	    }
+	} else {
+	    runPaced();
+	}
+	running = false;
+    }
+
+    private void runPaced() {
+	double nanosPerCycle = NANOS_PER_SECOND / frequency;
+	long sliceCycles = Math.max(1, Math.round(SLICE_NANOS / nanosPerCycle));
+	long start = clock.nanoTime();
+	long emulatedCycles = 0;
+
+	while (running && !Thread.currentThread().isInterrupted()) {
+	    emulatedCycles += cpu.runCycles(sliceCycles);
+	    if (!cpu.isExecuting()) {
+		break;
+	    }
+
+	    long deadline = start + (long) (emulatedCycles * nanosPerCycle);
+	    long lag = clock.nanoTime() - deadline;
+	    if (lag > MAX_LAG_NANOS) {
+		// The host cannot keep up, move the baseline forward instead of bursting to catch up
+		start += lag;
+	    } else {
+		clock.waitUntil(deadline);
+	    }
+	}
+    }
+}
@@ -0,0 +1,770 @@
+package se.liu.ferpe211.api.execution;
+
+import se.liu.ferpe211.api.CPU;
+import se.liu.ferpe211.api.memory.RAM;
+import se.liu.ferpe211.api.operation.OperationManager;
+import se.liu.ferpe211.api.operation.instruction.Instruction;
+import se.liu.ferpe211.api.register.ProcessorFlag;
+import se.liu.ferpe211.api.register.RegisterFile;
+import se.liu.ferpe211.api.register.RegisterType;
+
+/**
+ * Engine that executes every instruction with a single switch on its opcode
+ * <p>
+ *     The {@link BlockCache} executes instructions through their {@link Instruction} handlers, a virtual call with more than
+ *     15 possible receivers where the handlers in turn switch on their addressing mode and variant. This engine has one case
+ *     per opcode instead, with the addressing mode and the operation of the instruction spelled out in the case, so executing
+ *     an instruction is one table jump on the opcode followed by straight-line code. There is no decoding ahead of time and
+ *     so nothing to invalidate when memory changes.
+ * </p>
+ * <p>
+ *     The cases reproduce the handlers exactly, including the quirks of the emulated instruction set such as the size of the
+ *     transfer instructions and the carry of ADC. Opcodes without a case, i.e. the illegal ones, are executed by their
+ *     handler from the {@link OperationManager}.
+ * </p>
+ */
+public class SwitchInterpreter implements ExecutionEngine
+{
+    private static final int BYTE_MASK = 0xFF;
+    private static final int BYTE_SIZE = 8;
+    private static final int OVERFLOW_BIT = 0x40;
+
+    private final CPU cpu;
+    private final RAM memory;
+    private final RegisterFile registers;
+    private final OperationManager operationManager;
+
+    private long lastCycles = 0;
+
+    public SwitchInterpreter(final CPU cpu) {
+	this.cpu = cpu;
+	this.memory = cpu.getMemory();
+	this.registers = cpu.getRegisterFile();
+	this.operationManager = cpu.getOperationManager();
+    }
+
+    @Override public long run(final long maxInstructions, final long cycleBudget) {
+	long instructions = 0;
+	long cycles = 0;
+	do {
+	    cycles += step();
+	    instructions++;
+	} while (instructions < maxInstructions && cycles < cycleBudget && cpu.isExecuting());
+	lastCycles = cycles;
+	return instructions;
+    }
+
+    @Override public long getLastCycles() {
+	return lastCycles;
+    }
+
+    /**
+     * Executes the instruction at the program counter
+     * Every case advances the program counter past the operands of its instruction before performing the operation, as the
+     * handlers do. The operands start at {@code pc}.
+     * @return the amount of cycles that the instruction takes to execute
+     */
+    @Override public int step() {
+	int address = registers.getProgramCounter();
+	int opcode = memory.readByte(address) & BYTE_MASK;
+	int pc = address + 1;
+	return switch (opcode) {
+	    case 0xA9 -> { // LDA #
+		registers.setProgramCounter(pc + 1);
+		loadAccumulator(memory.readByte(pc));
+		yield 2;
+	    }
+	    case 0xA5 -> { // LDA zp
+		registers.setProgramCounter(pc + 1);
+		loadAccumulator(memory.readByte(zeroPage(pc)));
+		yield 3;
+	    }
+	    case 0xB5 -> { // LDA zp,X
+		registers.setProgramCounter(pc + 1);
+		loadAccumulator(memory.readByte(zeroPageX(pc)));
+		yield 4;
+	    }
+	    case 0xAD -> { // LDA abs
+		registers.setProgramCounter(pc + 2);
+		loadAccumulator(memory.readByte(absolute(pc)));
+		yield 4;
+	    }
+	    case 0xBD -> { // LDA abs,X
+		registers.setProgramCounter(pc + 2);
+		loadAccumulator(memory.readByte(absoluteX(pc)));
+		yield 4;
+	    }
+	    case 0xB9 -> { // LDA abs,Y
+		registers.setProgramCounter(pc + 2);
+		loadAccumulator(memory.readByte(absoluteY(pc)));
+		yield 4;
+	    }
+	    case 0xA1 -> { // LDA (zp,X)
+		registers.setProgramCounter(pc + 1);
+		loadAccumulator(memory.readByte(indirectX(pc)));
+		yield 6;
+	    }
+	    case 0xB1 -> { // LDA (zp),Y
+		registers.setProgramCounter(pc + 1);
+		loadAccumulator(memory.readByte(indirectY(pc)));
+		yield 5;
+	    }
+	    case 0xA2 -> { // LDX #
+		registers.setProgramCounter(pc + 1);
+		loadIndexX(memory.readByte(pc));
+		yield 2;
+	    }
+	    case 0xA6 -> { // LDX zp
+		registers.setProgramCounter(pc + 1);
+		loadIndexX(memory.readByte(zeroPage(pc)));
+		yield 3;
+	    }
+	    case 0xB6 -> { // LDX zp,Y
+		registers.setProgramCounter(pc + 1);
+		loadIndexX(memory.readByte(zeroPageY(pc)));
+		yield 4;
+	    }
+	    case 0xAE -> { // LDX abs
+		registers.setProgramCounter(pc + 2);
+		loadIndexX(memory.readByte(absolute(pc)));
+		yield 4;
+	    }
+	    case 0xBE -> { // LDX abs,Y
+		registers.setProgramCounter(pc + 2);
+		loadIndexX(memory.readByte(absoluteY(pc)));
+		yield 4;
+	    }
+	    case 0xA0 -> { // LDY #
+		registers.setProgramCounter(pc + 1);
+		loadIndexY(memory.readByte(pc));
+		yield 2;
+	    }
+	    case 0xA4 -> { // LDY zp
+		registers.setProgramCounter(pc + 1);
+		loadIndexY(memory.readByte(zeroPage(pc)));
+		yield 3;
+	    }
+	    case 0xB4 -> { // LDY zp,X
+		registers.setProgramCounter(pc + 1);
+		loadIndexY(memory.readByte(zeroPageX(pc)));
+		yield 4;
+	    }
+	    case 0xAC -> { // LDY abs
+		registers.setProgramCounter(pc + 2);
+		loadIndexY(memory.readByte(absolute(pc)));
+		yield 4;
+	    }
+	    case 0xBC -> { // LDY abs,X
+		registers.setProgramCounter(pc + 2);
+		loadIndexY(memory.readByte(absoluteX(pc)));
+		yield 4;
+	    }
+	    case 0x85 -> { // STA zp
+		registers.setProgramCounter(pc + 1);
+		memory.writeByte(zeroPage(pc), registers.getAccumulator());
+		yield 3;
+	    }
+	    case 0x95 -> { // STA zp,X
+		registers.setProgramCounter(pc + 1);
+		memory.writeByte(zeroPageX(pc), registers.getAccumulator());
+		yield 4;
+	    }
+	    case 0x8D -> { // STA abs
+		registers.setProgramCounter(pc + 2);
+		memory.writeByte(absolute(pc), registers.getAccumulator());
+		yield 4;
+	    }
+	    case 0x9D -> { // STA abs,X
+		registers.setProgramCounter(pc + 2);
+		memory.writeByte(absoluteX(pc), registers.getAccumulator());
+		yield 5;
+	    }
+	    case 0x99 -> { // STA abs,Y
+		registers.setProgramCounter(pc + 2);
+		memory.writeByte(absoluteY(pc), registers.getAccumulator());
+		yield 5;
+	    }
+	    case 0x81 -> { // STA (zp,X)
+		registers.setProgramCounter(pc + 1);
+		memory.writeByte(indirectX(pc), registers.getAccumulator());
+		yield 6;
+	    }
+	    case 0x91 -> { // STA (zp),Y
+		registers.setProgramCounter(pc + 1);
+		memory.writeByte(indirectY(pc), registers.getAccumulator());
+		yield 6;
+	    }
+	    case 0x86 -> { // STX zp
+		registers.setProgramCounter(pc + 1);
+		memory.writeByte(zeroPage(pc), registers.getIndexX());
+		yield 3;
+	    }
+	    case 0x96 -> { // STX zp,Y
+		registers.setProgramCounter(pc + 1);
+		memory.writeByte(zeroPageY(pc), registers.getIndexX());
+		yield 4;
+	    }
+	    case 0x8E -> { // STX abs
+		registers.setProgramCounter(pc + 2);
+		memory.writeByte(absolute(pc), registers.getIndexX());
+		yield 4;
+	    }
+	    case 0x84 -> { // STY zp
+		registers.setProgramCounter(pc + 1);
+		memory.writeByte(zeroPage(pc), registers.getIndexY());
+		yield 3;
+	    }
+	    case 0x94 -> { // STY zp,X
+		registers.setProgramCounter(pc + 1);
+		memory.writeByte(zeroPageX(pc), registers.getIndexY());
+		yield 4;
+	    }
+	    case 0x8C -> { // STY abs
+		registers.setProgramCounter(pc + 2);
+		memory.writeByte(absolute(pc), registers.getIndexY());
+		yield 4;
+	    }
+	    case 0x69 -> { // ADC #
+		registers.setProgramCounter(pc + 1);
+		addWithCarry(memory.readByte(pc));
+		yield 2;
+	    }
+	    case 0x65 -> { // ADC zp
+		registers.setProgramCounter(pc + 1);
+		addWithCarry(memory.readByte(zeroPage(pc)));
+		yield 3;
+	    }
+	    case 0x75 -> { // ADC zp,X
+		registers.setProgramCounter(pc + 1);
+		addWithCarry(memory.readByte(zeroPageX(pc)));
+		yield 4;
+	    }
+	    case 0x6D -> { // ADC abs
+		registers.setProgramCounter(pc + 2);
+		addWithCarry(memory.readByte(absolute(pc)));
+		yield 4;
+	    }
+	    case 0x7D -> { // ADC abs,X
+		registers.setProgramCounter(pc + 2);
+		addWithCarry(memory.readByte(absoluteX(pc)));
+		yield 4;
+	    }
+	    case 0x79 -> { // ADC abs,Y
+		registers.setProgramCounter(pc + 2);
+		addWithCarry(memory.readByte(absoluteY(pc)));
+		yield 4;
+	    }
+	    case 0x61 -> { // ADC (zp,X)
+		registers.setProgramCounter(pc + 1);
+		addWithCarry(memory.readByte(indirectX(pc)));
+		yield 6;
+	    }
+	    case 0x71 -> { // ADC (zp),Y
+		registers.setProgramCounter(pc + 1);
+		addWithCarry(memory.readByte(indirectY(pc)));
+		yield 5;
+	    }
+	    case 0xE9 -> { // SBC #
+		registers.setProgramCounter(pc + 1);
+		subtractWithCarry(memory.readByte(pc));
+		yield 2;
+	    }
+	    case 0xE5 -> { // SBC zp
+		registers.setProgramCounter(pc + 1);
+		subtractWithCarry(memory.readByte(zeroPage(pc)));
+		yield 3;
+	    }
+	    case 0xF5 -> { // SBC zp,X
+		registers.setProgramCounter(pc + 1);
+		subtractWithCarry(memory.readByte(zeroPageX(pc)));
+		yield 4;
+	    }
+	    case 0xED -> { // SBC abs
+		registers.setProgramCounter(pc + 2);
+		subtractWithCarry(memory.readByte(absolute(pc)));
+		yield 4;
+	    }
+	    case 0xFD -> { // SBC abs,X
+		registers.setProgramCounter(pc + 2);
+		subtractWithCarry(memory.readByte(absoluteX(pc)));
+		yield 4;
+	    }
+	    case 0xF9 -> { // SBC abs,Y
+		registers.setProgramCounter(pc + 2);
+		subtractWithCarry(memory.readByte(absoluteY(pc)));
+		yield 4;
+	    }
+	    case 0xE1 -> { // SBC (zp,X)
+		registers.setProgramCounter(pc + 1);
+		subtractWithCarry(memory.readByte(indirectX(pc)));
+		yield 6;
+	    }
+	    case 0xF1 -> { // SBC (zp),Y
+		registers.setProgramCounter(pc + 1);
+		subtractWithCarry(memory.readByte(indirectY(pc)));
+		yield 5;
+	    }
+	    case 0xC9 -> { // CMP #
+		registers.setProgramCounter(pc + 1);
+		compare(registers.getAccumulator(), memory.readByte(pc));
+		yield 2;
+	    }
+	    case 0xC5 -> { // CMP zp
+		registers.setProgramCounter(pc + 1);
+		compare(registers.getAccumulator(), memory.readByte(zeroPage(pc)));
+		yield 3;
+	    }
+	    case 0xD5 -> { // CMP zp,X
+		registers.setProgramCounter(pc + 1);
+		compare(registers.getAccumulator(), memory.readByte(zeroPageX(pc)));
+		yield 4;
+	    }
+	    case 0xCD -> { // CMP abs
+		registers.setProgramCounter(pc + 2);
+		compare(registers.getAccumulator(), memory.readByte(absolute(pc)));
+		yield 4;
+	    }
+	    case 0xDD -> { // CMP abs,X
+		registers.setProgramCounter(pc + 2);
+		compare(registers.getAccumulator(), memory.readByte(absoluteX(pc)));
+		yield 4;
+	    }
+	    case 0xD9 -> { // CMP abs,Y
+		registers.setProgramCounter(pc + 2);
+		compare(registers.getAccumulator(), memory.readByte(absoluteY(pc)));
+		yield 4;
+	    }
+	    case 0xC1 -> { // CMP (zp,X)
+		registers.setProgramCounter(pc + 1);
+		compare(registers.getAccumulator(), memory.readByte(indirectX(pc)));
+		yield 6;
+	    }
+	    case 0xD1 -> { // CMP (zp),Y
+		registers.setProgramCounter(pc + 1);
+		compare(registers.getAccumulator(), memory.readByte(indirectY(pc)));
+		yield 5;
+	    }
+	    case 0xE0 -> { // CPX #
+		registers.setProgramCounter(pc + 1);
+		compare(registers.getIndexX(), memory.readByte(pc));
+		yield 2;
+	    }
+	    case 0xE4 -> { // CPX zp
+		registers.setProgramCounter(pc + 1);
+		compare(registers.getIndexX(), memory.readByte(zeroPage(pc)));
+		yield 3;
+	    }
+	    case 0xEC -> { // CPX abs
+		registers.setProgramCounter(pc + 2);
+		compare(registers.getIndexX(), memory.readByte(absolute(pc)));
+		yield 4;
+	    }
+	    case 0xC0 -> { // CPY #
+		registers.setProgramCounter(pc + 1);
+		compare(registers.getIndexY(), memory.readByte(pc));
+		yield 2;
+	    }
+	    case 0xC4 -> { // CPY zp
+		registers.setProgramCounter(pc + 1);
+		compare(registers.getIndexY(), memory.readByte(zeroPage(pc)));
+		yield 3;
+	    }
+	    case 0xCC -> { // CPY abs
+		registers.setProgramCounter(pc + 2);
+		compare(registers.getIndexY(), memory.readByte(absolute(pc)));
+		yield 4;
+	    }
+	    case 0x29 -> { // AND #
+		registers.setProgramCounter(pc + 1);
+		and(memory.readByte(pc));
+		yield 2;
+	    }
+	    case 0x25 -> { // AND zp
+		registers.setProgramCounter(pc + 1);
+		and(memory.readByte(zeroPage(pc)));
+		yield 3;
+	    }
+	    case 0x35 -> { // AND zp,X
+		registers.setProgramCounter(pc + 1);
+		and(memory.readByte(zeroPageX(pc)));
+		yield 4;
+	    }
+	    case 0x2D -> { // AND abs
+		registers.setProgramCounter(pc + 2);
+		and(memory.readByte(absolute(pc)));
+		yield 4;
+	    }
+	    case 0x3D -> { // AND abs,X
+		registers.setProgramCounter(pc + 2);
+		and(memory.readByte(absoluteX(pc)));
+		yield 4;
+	    }
+	    case 0x39 -> { // AND abs,Y
+		registers.setProgramCounter(pc + 2);
+		and(memory.readByte(absoluteY(pc)));
+		yield 4;
+	    }
+	    case 0x21 -> { // AND (zp,X)
+		registers.setProgramCounter(pc + 1);
+		and(memory.readByte(indirectX(pc)));
+		yield 6;
+	    }
+	    case 0x31 -> { // AND (zp),Y
+		registers.setProgramCounter(pc + 1);
+		and(memory.readByte(indirectY(pc)));
+		yield 5;
+	    }
+	    case 0x49 -> { // EOR #
+		registers.setProgramCounter(pc + 1);
+		exclusiveOr(memory.readByte(pc));
+		yield 2;
+	    }
+	    case 0x45 -> { // EOR zp
+		registers.setProgramCounter(pc + 1);
+		exclusiveOr(memory.readByte(zeroPage(pc)));
+		yield 3;
+	    }
+	    case 0x55 -> { // EOR zp,X
+		registers.setProgramCounter(pc + 1);
+		exclusiveOr(memory.readByte(zeroPageX(pc)));
+		yield 4;
+	    }
+	    case 0x4D -> { // EOR abs
+		registers.setProgramCounter(pc + 2);
+		exclusiveOr(memory.readByte(absolute(pc)));
+		yield 4;
+	    }
+	    case 0x5D -> { // EOR abs,X
+		registers.setProgramCounter(pc + 2);
+		exclusiveOr(memory.readByte(absoluteX(pc)));
+		yield 4;
+	    }
+	    case 0x59 -> { // EOR abs,Y
+		registers.setProgramCounter(pc + 2);
+		exclusiveOr(memory.readByte(absoluteY(pc)));
+		yield 4;
+	    }
+	    case 0x41 -> { // EOR (zp,X)
+		registers.setProgramCounter(pc + 1);
+		exclusiveOr(memory.readByte(indirectX(pc)));
+		yield 6;
+	    }
+	    case 0x51 -> { // EOR (zp),Y
+		registers.setProgramCounter(pc + 1);
+		exclusiveOr(memory.readByte(indirectY(pc)));
+		yield 5;
+	    }
+	    case 0x09 -> { // ORA #
+		registers.setProgramCounter(pc + 1);
+		inclusiveOr(memory.readByte(pc));
+		yield 2;
+	    }
+	    case 0x05 -> { // ORA zp
+		registers.setProgramCounter(pc + 1);
+		inclusiveOr(memory.readByte(zeroPage(pc)));
+		yield 3;
+	    }
+	    case 0x15 -> { // ORA zp,X
+		registers.setProgramCounter(pc + 1);
+		inclusiveOr(memory.readByte(zeroPageX(pc)));
+		yield 4;
+	    }
+	    case 0x0D -> { // ORA abs
+		registers.setProgramCounter(pc + 2);
+		inclusiveOr(memory.readByte(absolute(pc)));
+		yield 4;
+	    }
+	    case 0x1D -> { // ORA abs,X
+		registers.setProgramCounter(pc + 2);
+		inclusiveOr(memory.readByte(absoluteX(pc)));
+		yield 4;
+	    }
+	    case 0x19 -> { // ORA abs,Y
+		registers.setProgramCounter(pc + 2);
+		inclusiveOr(memory.readByte(absoluteY(pc)));
+		yield 4;
+	    }
+	    case 0x01 -> { // ORA (zp,X)
+		registers.setProgramCounter(pc + 1);
+		inclusiveOr(memory.readByte(indirectX(pc)));
+		yield 6;
+	    }
+	    case 0x11 -> { // ORA (zp),Y
+		registers.setProgramCounter(pc + 1);
+		inclusiveOr(memory.readByte(indirectY(pc)));
+		yield 5;
+	    }
+	    case 0x24 -> { // BIT zp
+		registers.setProgramCounter(pc + 1);
+		bitTest(memory.readByte(zeroPage(pc)));
+		yield 3;
+	    }
+	    case 0x2C -> { // BIT abs
+		registers.setProgramCounter(pc + 2);
+		bitTest(memory.readByte(absolute(pc)));
+		yield 4;
+	    }
+	    case 0x90 -> { // BCC
+		branch(pc, !registers.getFlag(ProcessorFlag.CARRY));
+		yield 2;
+	    }
+	    case 0xB0 -> { // BCS
+		branch(pc, registers.getFlag(ProcessorFlag.CARRY));
+		yield 2;
+	    }
+	    case 0xF0 -> { // BEQ
+		branch(pc, registers.getFlag(ProcessorFlag.ZERO));
+		yield 2;
+	    }
+	    case 0x30 -> { // BMI
+		branch(pc, registers.getFlag(ProcessorFlag.NEGATIVE));
+		yield 2;
+	    }
+	    case 0xD0 -> { // BNE
+		branch(pc, !registers.getFlag(ProcessorFlag.ZERO));
+		yield 2;
+	    }
+	    case 0x10 -> { // BPL
+		branch(pc, !registers.getFlag(ProcessorFlag.NEGATIVE));
+		yield 2;
+	    }
+	    case 0x50 -> { // BVC
+		branch(pc, !registers.getFlag(ProcessorFlag.OVERFLOW));
+		yield 2;
+	    }
+	    case 0x70 -> { // BVS
+		branch(pc, registers.getFlag(ProcessorFlag.OVERFLOW));
+		yield 2;
+	    }
+	    case 0x4C -> { // JMP abs
+		registers.setProgramCounter(absolute(pc));
+		yield 3;
+	    }
+	    case 0x6C -> { // JMP (abs)
+		registers.setProgramCounter(indirect(absolute(pc)));
+		yield 5;
+	    }
+	    case 0xAA -> { // TAX
+		registers.setProgramCounter(pc + 1);
+		transfer(registers.getAccumulator(), RegisterType.INDEX_X);
+		yield 2;
+	    }
+	    case 0xA8 -> { // TAY
+		registers.setProgramCounter(pc + 1);
+		transfer(registers.getAccumulator(), RegisterType.INDEX_Y);
+		yield 2;
+	    }
+	    case 0x8A -> { // TXA
+		registers.setProgramCounter(pc + 1);
+		transfer(registers.getIndexX(), RegisterType.ACCUMULATOR);
+		yield 2;
+	    }
+	    case 0x98 -> { // TYA
+		registers.setProgramCounter(pc + 1);
+		transfer(registers.getIndexY(), RegisterType.ACCUMULATOR);
+		yield 2;
+	    }
+	    case 0xBA -> { // TSX
+		registers.setProgramCounter(pc + 1);
+		transfer(registers.getStackPointer(), RegisterType.INDEX_X);
+		yield 2;
+	    }
+	    case 0x9A -> { // TXS
+		registers.setProgramCounter(pc + 1);
+		transfer(registers.getIndexX(), RegisterType.STACK_POINTER);
+		yield 2;
+	    }
+	    case 0x48 -> { // PHA
+		registers.setProgramCounter(pc);
+		cpu.pushByte(registers.getAccumulator());
+		yield 4;
+	    }
+	    case 0x68 -> { // PLA
+		registers.setProgramCounter(pc);
+		loadAccumulator(cpu.pullByte());
+		yield 4;
+	    }
+	    case 0x08 -> { // PHP
+		registers.setProgramCounter(pc);
+		cpu.pushByte(registers.getStatus());
+		yield 4;
+	    }
+	    case 0x28 -> { // PLP
+		registers.setProgramCounter(pc);
+		registers.setStatus(cpu.pullByte());
+		yield 4;
+	    }
+	    case 0x18 -> { // CLC
+		registers.setProgramCounter(pc);
+		registers.setFlag(ProcessorFlag.CARRY, false);
+		yield 2;
+	    }
+	    case 0xD8 -> { // CLD
+		registers.setProgramCounter(pc);
+		registers.setFlag(ProcessorFlag.DECIMAL_MODE, false);
+		yield 2;
+	    }
+	    case 0x58 -> { // CLI
+		registers.setProgramCounter(pc);
+		registers.setFlag(ProcessorFlag.INTERRUPT_DISABLE, false);
+		yield 2;
+	    }
+	    case 0xB8 -> { // CLV
+		registers.setProgramCounter(pc);
+		registers.setFlag(ProcessorFlag.OVERFLOW, false);
+		yield 2;
+	    }
+	    case 0x38 -> { // SEC
+		registers.setProgramCounter(pc);
+		registers.setFlag(ProcessorFlag.CARRY, true);
+		yield 2;
+	    }
+	    case 0xF8 -> { // SED
+		registers.setProgramCounter(pc);
+		registers.setFlag(ProcessorFlag.DECIMAL_MODE, true);
+		yield 2;
+	    }
+	    case 0x78 -> { // SEI
+		registers.setProgramCounter(pc);
+		registers.setFlag(ProcessorFlag.INTERRUPT_DISABLE, true);
+		yield 2;
+	    }
+	    case 0xEA -> { // NOP
+		registers.setProgramCounter(pc);
+		yield 2;
+	    }
+	    case 0x00 -> { // BRK
+		registers.setProgramCounter(pc);
+		cpu.setExecuting(false);
+		yield 7;
+	    }
+
+	    default -> {
+		registers.setProgramCounter(pc);
+		Instruction instruction = operationManager.getInstruction((byte) opcode);
+		instruction.execute(cpu);
+		yield instruction.getCycles();
+	    }
+	};
+    }
+
+    private int zeroPage(final int pc) {
+	return memory.readByte(pc) & BYTE_MASK;
+    }
+
+    private int zeroPageX(final int pc) {
+	return (memory.readByte(pc) + registers.getIndexX()) & BYTE_MASK;
+    }
+
+    private int zeroPageY(final int pc) {
+	return (memory.readByte(pc) + registers.getIndexY()) & BYTE_MASK;
+    }
+
+    private int absolute(final int pc) {
+	return ((memory.readByte(pc + 1) & BYTE_MASK) << BYTE_SIZE) | (memory.readByte(pc) & BYTE_MASK);
+    }
+
+    private int absoluteX(final int pc) {
+	return absolute(pc) + (registers.getIndexX() & BYTE_MASK);
+    }
+
+    private int absoluteY(final int pc) {
+	return absolute(pc) + (registers.getIndexY() & BYTE_MASK);
+    }
+
+    /**
+     * Target of JMP (abs), the pointer is read little endian from the given address
+     */
+    private int indirect(final int pointer) {
+	return ((memory.readByte(pointer + 1) & BYTE_MASK) << BYTE_SIZE) | (memory.readByte(pointer) & BYTE_MASK);
+    }
+
+    /**
+     * The pointer is read from the zero page, its high byte wraps around to $00 when the pointer is at $FF
+     */
+    private int indirectX(final int pc) {
+	int zeroPage = zeroPageX(pc);
+	byte low = memory.readByte(zeroPage);
+	byte high = memory.readByte((zeroPage + 1) & BYTE_MASK);
+	return (high & BYTE_MASK) << BYTE_SIZE | (low & BYTE_MASK);
+    }
+
+    /**
+     * Y is added unsigned to the pointer read from the zero page, see {@link #indirectX(int)}
+     */
+    private int indirectY(final int pc) {
+	int zeroPage = zeroPage(pc);
+	byte low = memory.readByte(zeroPage);
+	byte high = memory.readByte((zeroPage + 1) & BYTE_MASK);
+	return ((high & BYTE_MASK) << BYTE_SIZE | (low & BYTE_MASK)) + Byte.toUnsignedInt(registers.getIndexY());
+    }
+
+    private void loadAccumulator(final byte value) {
+	registers.setAccumulator(value);
+	registers.setNegativeZero(value);
+    }
+
+    private void loadIndexX(final byte value) {
+	registers.setIndexX(value);
+	registers.setNegativeZero(value);
+    }
+
+    private void loadIndexY(final byte value) {
+	registers.setIndexY(value);
+	registers.setNegativeZero(value);
+    }
+
+    private void transfer(final byte value, final RegisterType target) {
+	registers.set(target, value);
+	registers.setNegativeZero(value);
+    }
+
+    private void addWithCarry(final byte operand) {
+	int sum = operand + registers.getAccumulator() + (registers.getFlag(ProcessorFlag.CARRY) ? 1 : 0);
+	boolean overflow = sum < Byte.MIN_VALUE || sum > Byte.MAX_VALUE;
+	registers.setFlag(ProcessorFlag.OVERFLOW, overflow);
+	registers.setFlag(ProcessorFlag.CARRY, overflow);
+	loadAccumulator((byte) sum);
+    }
+
+    private void subtractWithCarry(final byte operand) {
+	int difference = registers.getAccumulator() - operand - (registers.getFlag(ProcessorFlag.CARRY) ? 0 : 1);
+	boolean overflow = difference < Byte.MIN_VALUE || difference > Byte.MAX_VALUE;
+	registers.setFlag(ProcessorFlag.OVERFLOW, overflow);
+	registers.setFlag(ProcessorFlag.CARRY, !overflow);
+	loadAccumulator((byte) difference);
+    }
+
+    private void compare(final byte register, final byte operand) {
+	registers.setFlag(ProcessorFlag.CARRY, register >= operand);
+	registers.setNegativeZero((byte) (register - operand));
+    }
+
+    private void and(final byte operand) {
+	loadAccumulator((byte) (registers.getAccumulator() & operand));
+    }
+
+    private void exclusiveOr(final byte operand) {
+	loadAccumulator((byte) (registers.getAccumulator() ^ operand));
+    }
+
+    private void inclusiveOr(final byte operand) {
+	loadAccumulator((byte) (registers.getAccumulator() | operand));
+    }
+
+    private void bitTest(final byte operand) {
+	registers.setFlag(ProcessorFlag.ZERO, (registers.getAccumulator() & operand) == 0);
+	registers.setFlag(ProcessorFlag.NEGATIVE, operand < 0);
+	registers.setFlag(ProcessorFlag.OVERFLOW, (operand & OVERFLOW_BIT) != 0);
+    }
+
+    /**
+     * The offset is relative to the address after the branch instruction
+     */
+    private void branch(final int pc, final boolean condition) {
+	registers.setProgramCounter(pc + 1);
+	if (condition) {
+	    registers.setProgramCounter(memory.readByte(pc) + pc + 1);
+	}
+    }
+}
@@ -0,0 +1,48 @@
+package se.liu.ferpe211.api.memory;
+
+import java.util.Arrays;
+
+/**
+ * Set of pages that changed since a consumer of the {@link RAM} last looked at them
+ * <p>
+ *     Every consumer, e.g. the memory view of the GUI, gets its own tracker from {@link RAM#trackDirtyPages()} so taking the
+ *     dirty pages of one consumer does not hide changes from another. A new tracker starts out with every page dirty, so
+ *     the first {@link #takeDirtyPages()} reads the whole memory once and later ones only what changed.
+ * </p>
+ */
+public final class DirtyPageTracker
+{
+    /**
+     * Amount of longs in a bitmap with one bit per page
+     */
+    public final static int WORDS = RAM.PAGE_COUNT / Long.SIZE;
+
+    private final RAM memory;
+
+    /**
+     * Pages that changed since the last take, only accessed while holding the lock of the memory
+     */
+    final long[] pending = new long[WORDS];
+
+    DirtyPageTracker(final RAM memory) {
+	this.memory = memory;
+	Arrays.fill(pending, -1L);
+    }
+
+    /**
+     * Atomically returns and clears the pages that changed since the last call
+     * @return bitmap where bit {@code page % 64} of word {@code page / 64} is set if the page changed
+     */
+    public long[] takeDirtyPages() {
+	return memory.takeDirtyPages(this);
+    }
+
+    /**
+     * @param dirtyPages bitmap returned by {@link #takeDirtyPages()}
+     * @param page page to check
+     * @return true if the page is marked in the bitmap
+     */
+    public static boolean isDirty(final long[] dirtyPages, final int page) {
+	return (dirtyPages[page / Long.SIZE] & (1L << page)) != 0;
+    }
+}
@@ -0,0 +1,75 @@
+package se.liu.ferpe211.api.memory;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory backed by a file that is mapped into the address space of the JVM
+ * <p>
+ *     The memory is read and written in place in the page cache of the operating system, so the image in the file is always
+ *     the current one. It survives a crash of the JVM, and other processes can inspect it while the CPU runs by mapping
+ *     the same file, without anything being copied. {@link #flush()} forces the image to the disk.
+ * </p>
+ * <p>
+ *     The memory is mapped into {@link RAM} like any other device. It behaves like plain RAM though, so the block cache
+ *     still decodes and compiles code stored in it. Accesses are a little slower than to pages of plain RAM.
+ * </p>
+ */
+public class MappedMemory implements MemoryDevice, Flushable
+{
+    private final MappedByteBuffer buffer;
+    private final int origin;
+
+    private MappedMemory(final MappedByteBuffer buffer, final int origin) {
+	this.buffer = buffer;
+	this.origin = origin;
+    }
+
+    /**
+     * Maps a file, which is created or extended as needed, existing contents are kept
+     * @param file file that holds the memory image
+     * @param origin address the first byte of the file is mapped at
+     * @param length amount of bytes to map
+     * @return the mapped memory, to be mapped into {@link RAM} at origin
+     * @throws IOException if the file can not be opened or mapped
+     */
+    public static MappedMemory open(final Path file, final int origin, final int length) throws IOException {
+	try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+						    StandardOpenOption.WRITE))
+	{
+	    // The mapping stays valid after the channel is closed
+	    return new MappedMemory(channel.map(FileChannel.MapMode.READ_WRITE, 0, length), origin);
+	}
+    }
+
+    /**
+     * @return a read only view of the memory that shares its contents, for inspecting it without copying
+     */
+    public ByteBuffer getBuffer() {
+	return buffer.asReadOnlyBuffer();
+    }
+
+    @Override public byte read(final int address) {
+	return buffer.get(address - origin);
+    }
+
+    @Override public void write(final int address, final byte value) {
+	buffer.put(address - origin, value);
+    }
+
+    @Override public boolean isPlainMemory() {
+	return true;
+    }
+
+    /**
+     * Writes the changes to the memory to the disk
+     */
+    @Override public void flush() {
+	buffer.force();
+    }
+}
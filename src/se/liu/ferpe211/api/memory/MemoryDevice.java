@@ -0,0 +1,58 @@
+package se.liu.ferpe211.api.memory;
+
+/**
+ * Interface for peripherals that are mapped into the address space of the CPU
+ * <p>
+ *     Devices are mapped a whole page at a time with {@link RAM#map(int, int, MemoryDevice)}. Every read and write of the CPU
+ *     to a mapped page is handed to the device, which is given the full address so one device can serve several pages.
+ * </p>
+ */
+public interface MemoryDevice
+{
+    /**
+     * Called when the CPU reads from a mapped address, the read may have side effects such as clearing a status register
+     * @param address absolute address that is read
+     * @return the value at the address
+     */
+    public byte read(int address);
+
+    /**
+     * Called when the CPU writes to a mapped address
+     * @param address absolute address that is written
+     * @param value value that is written
+     */
+    public void write(int address, byte value);
+
+    /**
+     * Reads a value without any side effects, used to show the memory, e.g. in the disassembler
+     * @param address absolute address that is read
+     * @return the value at the address
+     */
+    public default byte peek(int address) {
+	return read(address);
+    }
+
+    /**
+     * @return true if the device behaves like RAM, i.e. reads have no side effects and the values only change when written,
+     * which allows the block cache to decode and keep code that is stored in the device
+     */
+    public default boolean isPlainMemory() {
+	return false;
+    }
+
+    /**
+     * Saves the state of the device besides the values that can be read with {@link #peek(int)}, e.g. its registers
+     * @return the state, or null if the device has none
+     * @see se.liu.ferpe211.api.CPU#snapshot()
+     */
+    public default byte[] saveState() {
+	return null;
+    }
+
+    /**
+     * Restores a state returned by {@link #saveState()} of this kind of device
+     * @param state state to restore
+     */
+    public default void restoreState(byte[] state) {
+    }
+}
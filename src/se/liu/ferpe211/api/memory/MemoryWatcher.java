@@ -0,0 +1,15 @@
+package se.liu.ferpe211.api.memory;
+
+/**
+ * Interface for classes that need to know when memory they depend on is changed
+ * @see RAM#setWatcher(MemoryWatcher)
+ */
+public interface MemoryWatcher
+{
+    /**
+     * Called after memory has been changed
+     * @param start first address that changed
+     * @param end address after the last one that changed
+     */
+    public void memoryChanged(int start, int end);
+}
@@ -2,56 +2,443 @@ package se.liu.ferpe211.api.memory;
 
 import se.liu.ferpe211.impl.Emulator;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.logging.Level;
 
 /**
- * Represents Random Access Memory (RAM) in a computer system.
- * This class provides functionality related to RAM.
+ * Represents the memory of the system as seen by the CPU
+ * <p>
+ *     The address space is split into pages of {@link #PAGE_SIZE} bytes that are looked up in a page table. Pages of plain
+ *     RAM map straight to their backing array, so an access to them is one lookup in the table and one in the page.
+ *     Pages can instead be mapped to a {@link MemoryDevice}, in which case every access is handed to the device. Only the
+ *     accesses to device pages pay for the dispatch, plain RAM never checks for devices.
+ * </p>
+ * <p>
+ *     Writes go through a second table of the pages that may be written in place. It leaves out device pages and the pages
+ *     that are shared with a copy of the memory made by {@link #fork()}. Both copies keep reading the shared arrays at full
+ *     speed, and the first write of either copy to a shared page copies just that page. Forking thus costs the page table
+ *     rather than the whole memory, and every copy only pays for the pages it actually writes.
+ * </p>
+ * <p>
+ *     Addresses wrap around at 16 bits as on the real 6502, e.g. indexing past $FFFF continues at $0000, so an access can
+ *     never be out of range. Wrapping is a single mask rather than a range check, which lets the JIT drop the bounds
+ *     checks of the page table and keeps exception paths out of the accesses.
+ * </p>
+ * <p>
+ *     Everything that accesses the memory on behalf of the CPU goes through this class: instructions, the stack and the
+ *     execution engines. The disassembler and the GUI use {@link #peekByte(int)}, which does not trigger any side
+ *     effects of devices.
+ * </p>
+ * <p>
+ *     Every write marks its page as dirty, and consumers read and clear the dirty pages as a bitmap through a
+ *     {@link DirtyPageTracker} to process only the pages that changed since they last looked instead of the whole memory.
+ * </p>
  */
 public class RAM
 {
     private final static int BYTES_PER_KB = 1024;
     private final static int MEM_SIZE = BYTES_PER_KB * 64;
+    public final static int ADDRESS_MASK = MEM_SIZE - 1;
+    public final static int PAGE_SHIFT = 8;
+    public final static int PAGE_SIZE = 1 << PAGE_SHIFT;
+    public final static int PAGE_MASK = PAGE_SIZE - 1;
+    public final static int PAGE_COUNT = MEM_SIZE / PAGE_SIZE;
+    private final static VarHandle PAGE_FLAGS = MethodHandles.arrayElementVarHandle(byte[].class);
 
+    /**
+     * Flags of {@link #pageFlags}, a written page is marked with both at once
+     */
+    private final static byte DIRTY = 1;
+    private final static byte WRITTEN = 2;
+    private final static byte CHANGED = DIRTY | WRITTEN;
+
+    /**
+     * Backing array of every page, null for pages mapped to a device
+     */
+    private final byte[][] pages = new byte[PAGE_COUNT][];
+
+    /**
+     * Backing array of every page that may be written in place, null for device pages and pages shared with a fork
+     */
+    private final byte[][] writablePages = new byte[PAGE_COUNT][];
+
+    /**
+     * Table that {@link #writeByte(int, byte)} looks pages up in, the writable pages or a table without any pages while
+     * recorders are added, which sends every write down the slow path where it is recorded
+     */
+    private byte[][] writeTable = writablePages;
+    private final static byte[][] NO_PAGES = new byte[PAGE_COUNT][];
+    private WriteRecorder[] recorders = new WriteRecorder[0];
+
+    /**
+     * Device of every page, null for pages of plain RAM
+     */
+    private final MemoryDevice[] devices = new MemoryDevice[PAGE_COUNT];
+
+    /**
+     * Watcher told about writes to the pages marked in watchedPages and about every bulk change of the memory
+     */
+    private MemoryWatcher watcher = null;
+    private final boolean[] watchedPages = new boolean[PAGE_COUNT];
+
+    /**
+     * Flags of every page, {@link #DIRTY} if the page changed since the trackers last took the dirty pages and
+     * {@link #WRITTEN} if it changed since it was last cleared by {@link #init()}
+     * A byte per page rather than a bit, so a write marks its page with a plain store instead of a read-modify-write.
+     * The flags are cleared atomically, so a write racing with a take is never lost.
+     */
+    private final byte[] pageFlags = new byte[PAGE_COUNT];
+    private final List<DirtyPageTracker> trackers = new ArrayList<>();
+
+    public RAM() {
+	Emulator.LOGGER.log(Level.FINE, "RAM created with " + MEM_SIZE + " bytes");
+	for (int page = 0; page < PAGE_COUNT; page++) {
+	    pages[page] = new byte[PAGE_SIZE];
+	    writablePages[page] = pages[page];
+	}
+    }
+
+    private RAM(final RAM parent) {
+	Emulator.LOGGER.log(Level.FINE, "RAM forked");
+	System.arraycopy(parent.pages, 0, pages, 0, PAGE_COUNT);
+	System.arraycopy(parent.devices, 0, devices, 0, PAGE_COUNT);
+	for (int page = 0; page < PAGE_COUNT; page++) {
+	    pageFlags[page] = (byte) (parent.pageFlags[page] & WRITTEN);
+	}
+    }
+
+    /**
+     * Copies the memory, sharing every page of RAM between the copies until one of them writes to it
+     * The copy has the same contents and devices, devices are shared rather than copied since their state is their own.
+     * Forking must not happen while another thread writes to this memory.
+     * @return the copy, which starts out without watcher, write recorders or dirty page trackers
+     */
+    public RAM fork() {
+	Arrays.fill(writablePages, null);
+	return new RAM(this);
+    }
+
+    /**
+     * Copies the whole memory into a new array, device pages are read with {@link MemoryDevice#peek(int)}
+     * @return the contents of the memory
+     */
     public byte[] getData() {
+	byte[] data = new byte[MEM_SIZE];
+	for (int page = 0; page < PAGE_COUNT; page++) {
+	    int start = page << PAGE_SHIFT;
+	    if (pages[page] != null) {
+		System.arraycopy(pages[page], 0, data, start, PAGE_SIZE);
+	    } else {
+		for (int address = start; address < start + PAGE_SIZE; address++) {
+		    data[address] = devices[page].peek(address);
+		}
+	    }
+	}
 	return data;
     }
 
+    /**
+     * Replaces the contents of the whole memory
+     * @param data new contents, as many bytes as the memory has
+     */
     public void setData(final byte[] data) {
-	this.data = data;
+	if (data.length != MEM_SIZE) {
+	    throw new IllegalArgumentException("Data does not match the memory size");
+	}
+	load(0, data);
     }
 
-    private byte[] data;
+    /**
+     * Sets the watcher that is told about changes to the memory, single byte writes are only reported for watched pages
+     * @param watcher watcher to notify, null for none
+     * @see #setPageWatched(int, boolean)
+     */
+    public void setWatcher(final MemoryWatcher watcher) {
+	this.watcher = watcher;
+	Arrays.fill(watchedPages, false);
+    }
 
-    public RAM() {
-	Emulator.LOGGER.log(Level.INFO, "RAM created with " + MEM_SIZE + " bytes");
-	data = new byte[MEM_SIZE];
+    public void setPageWatched(final int page, final boolean watched) {
+	watchedPages[page] = watched;
+    }
+
+    /**
+     * Adds a recorder that is told the previous value of every byte written with {@link #writeByte(int, byte)}
+     * Recording moves every write to the slow path of the page table, so writes cost nothing extra without recorders.
+     * @param recorder recorder to notify
+     */
+    public void addWriteRecorder(final WriteRecorder recorder) {
+	recorders = Arrays.copyOf(recorders, recorders.length + 1);
+	recorders[recorders.length - 1] = recorder;
+	writeTable = NO_PAGES;
+    }
+
+    /**
+     * Removes a recorder added with {@link #addWriteRecorder(WriteRecorder)}, writes take the fast path again once the last
+     * one is removed
+     * @param recorder recorder to stop notifying
+     */
+    public void removeWriteRecorder(final WriteRecorder recorder) {
+	recorders = Arrays.stream(recorders).filter(other -> other != recorder).toArray(WriteRecorder[]::new);
+	if (recorders.length == 0) {
+	    writeTable = writablePages;
+	}
+    }
+
+    /**
+     * Starts tracking the pages that are changed for a new consumer
+     * @return tracker with every page marked dirty
+     */
+    public synchronized DirtyPageTracker trackDirtyPages() {
+	DirtyPageTracker tracker = new DirtyPageTracker(this);
+	trackers.add(tracker);
+	return tracker;
+    }
+
+    public synchronized void stopTracking(final DirtyPageTracker tracker) {
+	trackers.remove(tracker);
+    }
+
+    /**
+     * Moves the pages written since the last take to every tracker, then returns and clears the pages of one of them
+     * @see DirtyPageTracker#takeDirtyPages()
+     */
+    synchronized long[] takeDirtyPages(final DirtyPageTracker tracker) {
+	for (int page = 0; page < PAGE_COUNT; page++) {
+	    if ((pageFlags[page] & DIRTY) != 0 && ((byte) PAGE_FLAGS.getAndBitwiseAnd(pageFlags, page, (byte) ~DIRTY) & DIRTY) != 0) {
+		for (DirtyPageTracker other : trackers) {
+		    other.pending[page / Long.SIZE] |= 1L << page;
+		}
+	    }
+	}
+	long[] taken = tracker.pending.clone();
+	Arrays.fill(tracker.pending, 0L);
+	return taken;
+    }
+
+    /**
+     * Maps a range of pages to a device, the RAM that was there before is dropped
+     * @param address first address of the range, must be at the start of a page
+     * @param length length of the range in bytes, must be a multiple of the page size
+     * @param device device that handles every access to the range
+     */
+    public void map(final int address, final int length, final MemoryDevice device) {
+	checkPageRange(address, length);
+	for (int page = address >>> PAGE_SHIFT; page < (address + length) >>> PAGE_SHIFT; page++) {
+	    pages[page] = null;
+	    writablePages[page] = null;
+	    devices[page] = device;
+	}
+	rangeChanged(address, address + length);
+    }
+
+    /**
+     * Maps a range of pages back to RAM, which starts out cleared
+     * @param address first address of the range, must be at the start of a page
+     * @param length length of the range in bytes, must be a multiple of the page size
+     */
+    public void unmap(final int address, final int length) {
+	checkPageRange(address, length);
+	for (int page = address >>> PAGE_SHIFT; page < (address + length) >>> PAGE_SHIFT; page++) {
+	    if (devices[page] != null) {
+		pages[page] = new byte[PAGE_SIZE];
+		writablePages[page] = pages[page];
+	    }
+	    devices[page] = null;
+	}
+	rangeChanged(address, address + length);
+    }
+
+    /**
+     * @param address address to look up
+     * @return the device mapped at the address, or null if the address is plain RAM
+     */
+    public MemoryDevice getDevice(final int address) {
+	return devices[(address & ADDRESS_MASK) >>> PAGE_SHIFT];
     }
 
     public int size() {
 	return MEM_SIZE;
     }
 
+    /**
+     * @param address address to read, wrapped around to 16 bits
+     */
     public byte readByte(final int address) {
-	if (address < 0 || address >= MEM_SIZE) {
-	    throw new IllegalArgumentException("Invalid memory address");
+	int wrapped = address & ADDRESS_MASK;
+	byte[] page = pages[wrapped >>> PAGE_SHIFT];
+	if (page != null) {
+	    return page[wrapped & PAGE_MASK];
+	}
+	return devices[wrapped >>> PAGE_SHIFT].read(wrapped);
+    }
+
+    /**
+     * Reads a byte without triggering any side effects of a device, for showing the memory rather than executing it
+     * @see MemoryDevice#peek(int)
+     */
+    public byte peekByte(final int address) {
+	int wrapped = address & ADDRESS_MASK;
+	byte[] page = pages[wrapped >>> PAGE_SHIFT];
+	if (page != null) {
+	    return page[wrapped & PAGE_MASK];
 	}
-	return data[address];
+	return devices[wrapped >>> PAGE_SHIFT].peek(wrapped);
     }
 
+    /**
+     * @param address address to write, wrapped around to 16 bits
+     * @param value value to write
+     */
     public void writeByte(final int address, final byte value) {
-	if (address < 0 || address >= MEM_SIZE) {
-	    throw new IllegalArgumentException("Invalid memory address");
+	int wrapped = address & ADDRESS_MASK;
+	byte[] page = writeTable[wrapped >>> PAGE_SHIFT];
+	if (page != null) {
+	    page[wrapped & PAGE_MASK] = value;
+	} else {
+	    writeSlow(wrapped, value);
+	}
+	pageFlags[wrapped >>> PAGE_SHIFT] = CHANGED;
+	if (watchedPages[wrapped >>> PAGE_SHIFT]) {
+	    watcher.memoryChanged(wrapped, wrapped + 1);
 	}
-	data[address] = value;
     }
 
+    /**
+     * Copies a program into memory, the rest of the memory is left as is
+     * Bytes that fall on device pages are written to the devices.
+     * @param origin address of the first byte
+     * @param bytes bytes to copy
+     */
+    public void load(final int origin, final byte[] bytes) {
+	if (origin < 0 || origin + bytes.length > MEM_SIZE) {
+	    throw new IllegalArgumentException("Program does not fit in memory");
+	}
+	int address = origin;
+	int end = origin + bytes.length;
+	while (address < end) {
+	    int page = address >>> PAGE_SHIFT;
+	    int chunk = Math.min(end, (page + 1) << PAGE_SHIFT) - address;
+	    if (pages[page] != null) {
+		System.arraycopy(bytes, address - origin, makeWritable(page), address & PAGE_MASK, chunk);
+	    } else {
+		for (int i = address; i < address + chunk; i++) {
+		    devices[page].write(i, bytes[i - origin]);
+		}
+	    }
+	    address += chunk;
+	}
+	rangeChanged(origin, end);
+    }
+
+    /**
+     * Sets the memory back to an image taken with {@link #getData()}, only the pages that differ from it are written
+     * Pages of devices are only written if the device is plain memory, other devices restore their own state.
+     * @param data contents to restore, as many bytes as the memory has
+     * @see MemoryDevice#restoreState(byte[])
+     */
+    public void restore(final byte[] data) {
+	if (data.length != MEM_SIZE) {
+	    throw new IllegalArgumentException("Data does not match the memory size");
+	}
+	for (int page = 0; page < PAGE_COUNT; page++) {
+	    int start = page << PAGE_SHIFT;
+	    int end = start + PAGE_SIZE;
+	    if (pages[page] != null) {
+		if (!Arrays.equals(pages[page], 0, PAGE_SIZE, data, start, end)) {
+		    System.arraycopy(data, start, makeWritable(page), 0, PAGE_SIZE);
+		    rangeChanged(start, end);
+		}
+	    } else if (devices[page].isPlainMemory()) {
+		boolean changed = false;
+		for (int address = start; address < end; address++) {
+		    if (devices[page].peek(address) != data[address]) {
+			devices[page].write(address, data[address]);
+			changed = true;
+		    }
+		}
+		if (changed) {
+		    rangeChanged(start, end);
+		}
+	    }
+	}
+    }
+
+    /**
+     * Clears every page of RAM, devices are left as they are so e.g. a {@link MappedMemory} keeps its image
+     * Only the pages that were changed since the last clear are filled, the others are still all zero. Resetting after a
+     * small program thus costs a few pages rather than the whole memory, and only those pages are reported as changed.
+     */
     public void init() {
-	for (int i = 0; i < MEM_SIZE; i++) {
-	    data[i] = 0;
+	for (int page = 0; page < PAGE_COUNT; page++) {
+	    if ((pageFlags[page] & WRITTEN) != 0 && pages[page] != null) {
+		// The flag is cleared first so a write that races with the clear keeps its page marked
+		PAGE_FLAGS.getAndBitwiseAnd(pageFlags, page, (byte) ~WRITTEN);
+		if (writablePages[page] != null) {
+		    Arrays.fill(pages[page], (byte) 0);
+		} else {
+		    pages[page] = new byte[PAGE_SIZE];
+		    writablePages[page] = pages[page];
+		}
+		PAGE_FLAGS.getAndBitwiseOr(pageFlags, page, DIRTY);
+		if (watcher != null) {
+		    watcher.memoryChanged(page << PAGE_SHIFT, (page + 1) << PAGE_SHIFT);
+		}
+	    }
 	}
     }
 
+    /**
+     * Writes a byte that can not be written in place, to a device, to a page shared with a fork or while recording
+     */
+    private void writeSlow(final int address, final byte value) {
+	int page = address >>> PAGE_SHIFT;
+	MemoryDevice device = devices[page];
+	if (device != null) {
+	    for (WriteRecorder recorder : recorders) {
+		recorder.beforeWrite(address, device.peek(address));
+	    }
+	    device.write(address, value);
+	} else {
+	    byte[] writable = makeWritable(page);
+	    for (WriteRecorder recorder : recorders) {
+		recorder.beforeWrite(address, writable[address & PAGE_MASK]);
+	    }
+	    writable[address & PAGE_MASK] = value;
+	}
+    }
 
+    /**
+     * Gives a page of RAM its own copy if it is still shared with a fork
+     * @return the backing array of the page, which may be written
+     */
+    private byte[] makeWritable(final int page) {
+	if (writablePages[page] == null) {
+	    pages[page] = pages[page].clone();
+	    writablePages[page] = pages[page];
+	}
+	return writablePages[page];
+    }
 
+    /**
+     * Marks the pages of a bulk change dirty and tells the watcher about it
+     */
+    private void rangeChanged(final int start, final int end) {
+	for (int page = start >>> PAGE_SHIFT; page < (end + PAGE_MASK) >>> PAGE_SHIFT; page++) {
+	    PAGE_FLAGS.getAndBitwiseOr(pageFlags, page, CHANGED);
+	}
+	if (watcher != null) {
+	    watcher.memoryChanged(start, end);
+	}
+    }
+
+    private static void checkPageRange(final int address, final int length) {
+	if (address < 0 || length < 0 || address + length > MEM_SIZE || (address & PAGE_MASK) != 0 || (length & PAGE_MASK) != 0) {
+	    throw new IllegalArgumentException("Range must be whole pages within the memory");
+	}
+    }
 }
@@ -0,0 +1,15 @@
+package se.liu.ferpe211.api.memory;
+
+/**
+ * Interface for classes that need the value a byte had before it was written, e.g. to undo the write later
+ * @see RAM#addWriteRecorder(WriteRecorder)
+ */
+public interface WriteRecorder
+{
+    /**
+     * Called before a byte is written through {@link RAM#writeByte(int, byte)}
+     * @param address address that is about to be written, wrapped around to 16 bits
+     * @param previous value at the address before the write, read with {@link RAM#peekByte(int)}
+     */
+    public void beforeWrite(int address, byte previous);
+}
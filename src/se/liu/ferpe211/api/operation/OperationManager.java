@@ -1,6 +1,5 @@
 package se.liu.ferpe211.api.operation;
 
-import se.liu.ferpe211.api.CPU;
 import se.liu.ferpe211.api.operation.instruction.Instruction;
 import se.liu.ferpe211.api.operation.instruction.impl.ADD;
 import se.liu.ferpe211.api.operation.instruction.impl.CLEAR;
@@ -19,202 +18,242 @@ import se.liu.ferpe211.api.operation.instruction.impl.logical.ORA;
 import se.liu.ferpe211.api.operation.instruction.impl.stack.STACK;
 import se.liu.ferpe211.api.operation.instruction.impl.stack.StackMode;
 import se.liu.ferpe211.api.operation.instruction.impl.system.BREAK;
+import se.liu.ferpe211.api.operation.instruction.impl.system.ILLEGAL;
 import se.liu.ferpe211.api.operation.instruction.impl.system.NOP;
 import se.liu.ferpe211.api.operation.instruction.impl.transfer.TRANSFER;
 import se.liu.ferpe211.api.operation.instruction.impl.transfer.TransferMode;
-import se.liu.ferpe211.api.register.IndexRegisterType;
 import se.liu.ferpe211.api.register.ProcessorFlag;
-import se.liu.ferpe211.api.register.Register8Bit;
+import se.liu.ferpe211.api.register.RegisterType;
+import se.liu.ferpe211.impl.Emulator;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.logging.Level;
 
 /**
  * Manager class for mapping byte values to their corresponding instruction implementations.
  * This class provides functionality for decoding byte values into executable instructions.
+ * <p>
+ *     Decoding is a plain array load: the dispatch table has one slot for every possible opcode, indexed by its unsigned value.
+ *     Slots without a supported instruction hold an {@link ILLEGAL} handler, so a decoded instruction is never null.
+ * </p>
+ * <p>
+ *     Instructions are stateless, so there is a single immutable dispatch table that every CPU in the JVM shares, see
+ *     {@link #getInstance()}. Thousands of CPUs running in parallel then decode to the same few hundred objects instead of
+ *     each having its own copies.
+ * </p>
  *
  * @see Instruction
  */
 public class OperationManager
 {
+    private final static int OPCODE_COUNT = 256;
+    private final static int BYTE_MASK = 0xFF;
+    private final static int ILLEGAL_CYCLES = 2;
 
-    private Map<Byte, Instruction> operationMap;
+    private static final OperationManager INSTANCE = new OperationManager();
 
-    public OperationManager(CPU cpu){
-	operationMap = new HashMap<>();
-	Register8Bit accumulator = cpu.getAccumulator();
-	Register8Bit indexRegisterY = cpu.getIndexRegister(IndexRegisterType.Y);
-	Register8Bit indexRegisterX = cpu.getIndexRegister(IndexRegisterType.X);
+    private final Instruction[] dispatchTable;
+
+    /**
+     * @return the dispatch table shared by every CPU
+     */
+    public static OperationManager getInstance() {
+	return INSTANCE;
+    }
+
+    private OperationManager(){
+	dispatchTable = new Instruction[OPCODE_COUNT];
+	RegisterType accumulator = RegisterType.ACCUMULATOR;
+	RegisterType indexRegisterY = RegisterType.INDEX_Y;
+	RegisterType indexRegisterX = RegisterType.INDEX_X;
 
 	//LDA
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.LDA_IM), new LOAD(cpu, 2, AddressingMode.IMMEDIATE,2, accumulator)); // LDA_IM
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.LDA_ZP), new LOAD(cpu, 3, AddressingMode.ZERO_PAGE,2, accumulator)); // LDA_ZP
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.LDA_ZPX), new LOAD(cpu, 4, AddressingMode.ZERO_PAGE_X,2, accumulator)); // LDA_ZPX
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.LDA_ABS), new LOAD(cpu, 4, AddressingMode.ABSOLUTE,3, accumulator)); // LDA_ABS
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.LDA_ABSX), new LOAD(cpu, 4, AddressingMode.ABSOLUTE_X,3, accumulator)); // LDA_ABSX
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.LDA_ABSY), new LOAD(cpu, 4, AddressingMode.ABSOLUTE_Y,3, accumulator)); // LDA_ABSY
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.LDA_INDX), new LOAD(cpu, 6, AddressingMode.INDIRECT_X,2, accumulator)); // LDA_INDX
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.LDA_INDY), new LOAD(cpu, 5, AddressingMode.INDIRECT_Y,2, accumulator)); // LDA_INDY
+	register(OpCodeMapper.getByteFromOpCode(OpCode.LDA_IM), new LOAD(2, AddressingMode.IMMEDIATE,2, accumulator)); // LDA_IM
+	register(OpCodeMapper.getByteFromOpCode(OpCode.LDA_ZP), new LOAD(3, AddressingMode.ZERO_PAGE,2, accumulator)); // LDA_ZP
+	register(OpCodeMapper.getByteFromOpCode(OpCode.LDA_ZPX), new LOAD(4, AddressingMode.ZERO_PAGE_X,2, accumulator)); // LDA_ZPX
+	register(OpCodeMapper.getByteFromOpCode(OpCode.LDA_ABS), new LOAD(4, AddressingMode.ABSOLUTE,3, accumulator)); // LDA_ABS
+	register(OpCodeMapper.getByteFromOpCode(OpCode.LDA_ABSX), new LOAD(4, AddressingMode.ABSOLUTE_X,3, accumulator)); // LDA_ABSX
+	register(OpCodeMapper.getByteFromOpCode(OpCode.LDA_ABSY), new LOAD(4, AddressingMode.ABSOLUTE_Y,3, accumulator)); // LDA_ABSY
+	register(OpCodeMapper.getByteFromOpCode(OpCode.LDA_INDX), new LOAD(6, AddressingMode.INDIRECT_X,2, accumulator)); // LDA_INDX
+	register(OpCodeMapper.getByteFromOpCode(OpCode.LDA_INDY), new LOAD(5, AddressingMode.INDIRECT_Y,2, accumulator)); // LDA_INDY
 
 	//LDX
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.LDX_IM), new LOAD(cpu, 2, AddressingMode.IMMEDIATE,2, indexRegisterX)); // LDX_IM
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.LDX_ZP), new LOAD(cpu, 3, AddressingMode.ZERO_PAGE,2, indexRegisterX)); // LDX_ZP
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.LDX_ZPY), new LOAD(cpu, 4, AddressingMode.ZERO_PAGE_Y,2, indexRegisterX)); // LDX_ZPY
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.LDX_ABS), new LOAD(cpu, 4, AddressingMode.ABSOLUTE,3, indexRegisterX)); // LDX_ABS
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.LDX_ABSY), new LOAD(cpu, 4, AddressingMode.ABSOLUTE_Y,3, indexRegisterX)); // LDX_ABSY
+	register(OpCodeMapper.getByteFromOpCode(OpCode.LDX_IM), new LOAD(2, AddressingMode.IMMEDIATE,2, indexRegisterX)); // LDX_IM
+	register(OpCodeMapper.getByteFromOpCode(OpCode.LDX_ZP), new LOAD(3, AddressingMode.ZERO_PAGE,2, indexRegisterX)); // LDX_ZP
+	register(OpCodeMapper.getByteFromOpCode(OpCode.LDX_ZPY), new LOAD(4, AddressingMode.ZERO_PAGE_Y,2, indexRegisterX)); // LDX_ZPY
+	register(OpCodeMapper.getByteFromOpCode(OpCode.LDX_ABS), new LOAD(4, AddressingMode.ABSOLUTE,3, indexRegisterX)); // LDX_ABS
+	register(OpCodeMapper.getByteFromOpCode(OpCode.LDX_ABSY), new LOAD(4, AddressingMode.ABSOLUTE_Y,3, indexRegisterX)); // LDX_ABSY
 
 	// LDY
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.LDY_IM), new LOAD(cpu, 2, AddressingMode.IMMEDIATE, 2, indexRegisterY)); // LDY_IM
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.LDY_ZP), new LOAD(cpu, 3, AddressingMode.ZERO_PAGE, 2, indexRegisterY)); // LDY_ZP
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.LDY_ZPX), new LOAD(cpu, 4, AddressingMode.ZERO_PAGE_X, 2, indexRegisterY)); // LDY_ZPX
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.LDY_ABS), new LOAD(cpu, 4, AddressingMode.ABSOLUTE, 3, indexRegisterY)); // LDY_ABS
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.LDY_ABSX), new LOAD(cpu, 4, AddressingMode.ABSOLUTE_X, 3, indexRegisterY)); // LDY_ABSX
+	register(OpCodeMapper.getByteFromOpCode(OpCode.LDY_IM), new LOAD(2, AddressingMode.IMMEDIATE, 2, indexRegisterY)); // LDY_IM
+	register(OpCodeMapper.getByteFromOpCode(OpCode.LDY_ZP), new LOAD(3, AddressingMode.ZERO_PAGE, 2, indexRegisterY)); // LDY_ZP
+	register(OpCodeMapper.getByteFromOpCode(OpCode.LDY_ZPX), new LOAD(4, AddressingMode.ZERO_PAGE_X, 2, indexRegisterY)); // LDY_ZPX
+	register(OpCodeMapper.getByteFromOpCode(OpCode.LDY_ABS), new LOAD(4, AddressingMode.ABSOLUTE, 3, indexRegisterY)); // LDY_ABS
+	register(OpCodeMapper.getByteFromOpCode(OpCode.LDY_ABSX), new LOAD(4, AddressingMode.ABSOLUTE_X, 3, indexRegisterY)); // LDY_ABSX
 
 	//STA
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.STA_ZP), new STORE(cpu, 3, AddressingMode.ZERO_PAGE, 2, accumulator)); // STA_ZP
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.STA_ZPX), new STORE(cpu, 4, AddressingMode.ZERO_PAGE_X,2, accumulator)); // STA_ZPX
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.STA_ABS), new STORE(cpu, 4, AddressingMode.ABSOLUTE,3, accumulator)); // STA_ABS
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.STA_ABSX), new STORE(cpu, 5, AddressingMode.ABSOLUTE_X,3, accumulator)); // STA_ABSX
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.STA_ABSY), new STORE(cpu, 5, AddressingMode.ABSOLUTE_Y,3, accumulator)); // STA_ABSY
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.STA_INDX), new STORE(cpu, 6, AddressingMode.INDIRECT_X,2, accumulator)); // STA_INDX
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.STA_INDY), new STORE(cpu, 6, AddressingMode.INDIRECT_Y,2, accumulator)); // STA_INDY
+	register(OpCodeMapper.getByteFromOpCode(OpCode.STA_ZP), new STORE(3, AddressingMode.ZERO_PAGE, 2, accumulator)); // STA_ZP
+	register(OpCodeMapper.getByteFromOpCode(OpCode.STA_ZPX), new STORE(4, AddressingMode.ZERO_PAGE_X,2, accumulator)); // STA_ZPX
+	register(OpCodeMapper.getByteFromOpCode(OpCode.STA_ABS), new STORE(4, AddressingMode.ABSOLUTE,3, accumulator)); // STA_ABS
+	register(OpCodeMapper.getByteFromOpCode(OpCode.STA_ABSX), new STORE(5, AddressingMode.ABSOLUTE_X,3, accumulator)); // STA_ABSX
+	register(OpCodeMapper.getByteFromOpCode(OpCode.STA_ABSY), new STORE(5, AddressingMode.ABSOLUTE_Y,3, accumulator)); // STA_ABSY
+	register(OpCodeMapper.getByteFromOpCode(OpCode.STA_INDX), new STORE(6, AddressingMode.INDIRECT_X,2, accumulator)); // STA_INDX
+	register(OpCodeMapper.getByteFromOpCode(OpCode.STA_INDY), new STORE(6, AddressingMode.INDIRECT_Y,2, accumulator)); // STA_INDY
 
 	//STX
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.STX_ZP), new STORE(cpu, 3, AddressingMode.ZERO_PAGE, 2, indexRegisterX)); // STX_ZP
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.STX_ZPY), new STORE(cpu, 4, AddressingMode.ZERO_PAGE_Y, 2, indexRegisterX)); // STX_ZPY
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.STX_ABS), new STORE(cpu, 4, AddressingMode.ABSOLUTE, 3, indexRegisterX)); // STX_ABS
+	register(OpCodeMapper.getByteFromOpCode(OpCode.STX_ZP), new STORE(3, AddressingMode.ZERO_PAGE, 2, indexRegisterX)); // STX_ZP
+	register(OpCodeMapper.getByteFromOpCode(OpCode.STX_ZPY), new STORE(4, AddressingMode.ZERO_PAGE_Y, 2, indexRegisterX)); // STX_ZPY
+	register(OpCodeMapper.getByteFromOpCode(OpCode.STX_ABS), new STORE(4, AddressingMode.ABSOLUTE, 3, indexRegisterX)); // STX_ABS
 
 	//STY
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.STY_ZP), new STORE(cpu, 3, AddressingMode.ZERO_PAGE, 2, indexRegisterY)); // STY_ZP
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.STY_ZPX), new STORE(cpu, 4, AddressingMode.ZERO_PAGE_X, 2, indexRegisterY)); // STY_ZPX
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.STY_ABS), new STORE(cpu, 4, AddressingMode.ABSOLUTE, 3, indexRegisterY)); // STY_ABS
+	register(OpCodeMapper.getByteFromOpCode(OpCode.STY_ZP), new STORE(3, AddressingMode.ZERO_PAGE, 2, indexRegisterY)); // STY_ZP
+	register(OpCodeMapper.getByteFromOpCode(OpCode.STY_ZPX), new STORE(4, AddressingMode.ZERO_PAGE_X, 2, indexRegisterY)); // STY_ZPX
+	register(OpCodeMapper.getByteFromOpCode(OpCode.STY_ABS), new STORE(4, AddressingMode.ABSOLUTE, 3, indexRegisterY)); // STY_ABS
 
 	//ADC
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.ADC_IM), new ADD(cpu, 2, AddressingMode.IMMEDIATE, 2)); // ADC_IM
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.ADC_ZP), new ADD(cpu, 3, AddressingMode.ZERO_PAGE, 2)); // ADC_ZP
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.ADC_ZPX), new ADD(cpu, 4, AddressingMode.ZERO_PAGE_X, 2)); // ADC_ZPX
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.ADC_ABS), new ADD(cpu, 4, AddressingMode.ABSOLUTE, 3)); // ADC_ABS
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.ADC_ABSX), new ADD(cpu, 4, AddressingMode.ABSOLUTE_X, 3)); // ADC_ABSX
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.ADC_ABSY), new ADD(cpu, 4, AddressingMode.ABSOLUTE_Y, 3)); // ADC_ABSY
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.ADC_INDX), new ADD(cpu, 6, AddressingMode.INDIRECT_X, 2)); // ADC_INDX
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.ADC_INDY), new ADD(cpu, 5, AddressingMode.INDIRECT_Y, 2)); // ADC_INDY
+	register(OpCodeMapper.getByteFromOpCode(OpCode.ADC_IM), new ADD(2, AddressingMode.IMMEDIATE, 2)); // ADC_IM
+	register(OpCodeMapper.getByteFromOpCode(OpCode.ADC_ZP), new ADD(3, AddressingMode.ZERO_PAGE, 2)); // ADC_ZP
+	register(OpCodeMapper.getByteFromOpCode(OpCode.ADC_ZPX), new ADD(4, AddressingMode.ZERO_PAGE_X, 2)); // ADC_ZPX
+	register(OpCodeMapper.getByteFromOpCode(OpCode.ADC_ABS), new ADD(4, AddressingMode.ABSOLUTE, 3)); // ADC_ABS
+	register(OpCodeMapper.getByteFromOpCode(OpCode.ADC_ABSX), new ADD(4, AddressingMode.ABSOLUTE_X, 3)); // ADC_ABSX
+	register(OpCodeMapper.getByteFromOpCode(OpCode.ADC_ABSY), new ADD(4, AddressingMode.ABSOLUTE_Y, 3)); // ADC_ABSY
+	register(OpCodeMapper.getByteFromOpCode(OpCode.ADC_INDX), new ADD(6, AddressingMode.INDIRECT_X, 2)); // ADC_INDX
+	register(OpCodeMapper.getByteFromOpCode(OpCode.ADC_INDY), new ADD(5, AddressingMode.INDIRECT_Y, 2)); // ADC_INDY
 
 	//SBC
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.SBC_IM), new SUB(cpu, 2, AddressingMode.IMMEDIATE, 2)); // SBC_IM
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.SBC_ZP), new SUB(cpu, 3, AddressingMode.ZERO_PAGE, 2)); // SBC_ZP
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.SBC_ZPX), new SUB(cpu, 4, AddressingMode.ZERO_PAGE_X, 2)); // SBC_ZPX
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.SBC_ABS), new SUB(cpu, 4, AddressingMode.ABSOLUTE, 3)); // SBC_ABS
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.SBC_ABSX), new SUB(cpu, 4, AddressingMode.ABSOLUTE_X, 3)); // SBC_ABSX
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.SBC_ABSY), new SUB(cpu, 4, AddressingMode.ABSOLUTE_Y, 3)); // SBC_ABSY
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.SBC_INDX), new SUB(cpu, 6, AddressingMode.INDIRECT_X, 2)); // SBC_INDX
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.SBC_INDY), new SUB(cpu, 5, AddressingMode.INDIRECT_Y, 2)); // SBC_INDY
+	register(OpCodeMapper.getByteFromOpCode(OpCode.SBC_IM), new SUB(2, AddressingMode.IMMEDIATE, 2)); // SBC_IM
+	register(OpCodeMapper.getByteFromOpCode(OpCode.SBC_ZP), new SUB(3, AddressingMode.ZERO_PAGE, 2)); // SBC_ZP
+	register(OpCodeMapper.getByteFromOpCode(OpCode.SBC_ZPX), new SUB(4, AddressingMode.ZERO_PAGE_X, 2)); // SBC_ZPX
+	register(OpCodeMapper.getByteFromOpCode(OpCode.SBC_ABS), new SUB(4, AddressingMode.ABSOLUTE, 3)); // SBC_ABS
+	register(OpCodeMapper.getByteFromOpCode(OpCode.SBC_ABSX), new SUB(4, AddressingMode.ABSOLUTE_X, 3)); // SBC_ABSX
+	register(OpCodeMapper.getByteFromOpCode(OpCode.SBC_ABSY), new SUB(4, AddressingMode.ABSOLUTE_Y, 3)); // SBC_ABSY
+	register(OpCodeMapper.getByteFromOpCode(OpCode.SBC_INDX), new SUB(6, AddressingMode.INDIRECT_X, 2)); // SBC_INDX
+	register(OpCodeMapper.getByteFromOpCode(OpCode.SBC_INDY), new SUB(5, AddressingMode.INDIRECT_Y, 2)); // SBC_INDY
 
 	//CMP
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.CMP_IM), new CMP(cpu, 2, AddressingMode.IMMEDIATE, 2, accumulator)); // CMP_IM
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.CMP_ZP), new CMP(cpu, 3, AddressingMode.ZERO_PAGE, 2, accumulator)); // CMP_ZP
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.CMP_ZPX), new CMP(cpu, 4, AddressingMode.ZERO_PAGE_X, 2, accumulator)); // CMP_ZPX
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.CMP_ABS), new CMP(cpu, 4, AddressingMode.ABSOLUTE, 3, accumulator)); // CMP_ABS
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.CMP_ABSX), new CMP(cpu, 4, AddressingMode.ABSOLUTE_X, 3, accumulator)); // CMP_ABSX
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.CMP_ABSY), new CMP(cpu, 4, AddressingMode.ABSOLUTE_Y, 3, accumulator)); // CMP_ABSY
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.CMP_INDX), new CMP(cpu, 6, AddressingMode.INDIRECT_X, 2, accumulator)); // CMP_INDX
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.CMP_INDY), new CMP(cpu, 5, AddressingMode.INDIRECT_Y, 2, accumulator)); // CMP_INDY
+	register(OpCodeMapper.getByteFromOpCode(OpCode.CMP_IM), new CMP(2, AddressingMode.IMMEDIATE, 2, accumulator)); // CMP_IM
+	register(OpCodeMapper.getByteFromOpCode(OpCode.CMP_ZP), new CMP(3, AddressingMode.ZERO_PAGE, 2, accumulator)); // CMP_ZP
+	register(OpCodeMapper.getByteFromOpCode(OpCode.CMP_ZPX), new CMP(4, AddressingMode.ZERO_PAGE_X, 2, accumulator)); // CMP_ZPX
+	register(OpCodeMapper.getByteFromOpCode(OpCode.CMP_ABS), new CMP(4, AddressingMode.ABSOLUTE, 3, accumulator)); // CMP_ABS
+	register(OpCodeMapper.getByteFromOpCode(OpCode.CMP_ABSX), new CMP(4, AddressingMode.ABSOLUTE_X, 3, accumulator)); // CMP_ABSX
+	register(OpCodeMapper.getByteFromOpCode(OpCode.CMP_ABSY), new CMP(4, AddressingMode.ABSOLUTE_Y, 3, accumulator)); // CMP_ABSY
+	register(OpCodeMapper.getByteFromOpCode(OpCode.CMP_INDX), new CMP(6, AddressingMode.INDIRECT_X, 2, accumulator)); // CMP_INDX
+	register(OpCodeMapper.getByteFromOpCode(OpCode.CMP_INDY), new CMP(5, AddressingMode.INDIRECT_Y, 2, accumulator)); // CMP_INDY
 
 	//CPX
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.CPX_IM), new CMP(cpu, 2, AddressingMode.IMMEDIATE, 2, indexRegisterX));
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.CPX_ZP), new CMP(cpu, 3, AddressingMode.ZERO_PAGE, 2, indexRegisterX));
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.CPX_ABS), new CMP(cpu, 4, AddressingMode.ABSOLUTE, 3, indexRegisterX));
+	register(OpCodeMapper.getByteFromOpCode(OpCode.CPX_IM), new CMP(2, AddressingMode.IMMEDIATE, 2, indexRegisterX));
+	register(OpCodeMapper.getByteFromOpCode(OpCode.CPX_ZP), new CMP(3, AddressingMode.ZERO_PAGE, 2, indexRegisterX));
+	register(OpCodeMapper.getByteFromOpCode(OpCode.CPX_ABS), new CMP(4, AddressingMode.ABSOLUTE, 3, indexRegisterX));
 
 	//CPY
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.CPY_IM), new CMP(cpu, 2, AddressingMode.IMMEDIATE, 2, indexRegisterY));
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.CPY_ZP), new CMP(cpu, 3, AddressingMode.ZERO_PAGE, 2, indexRegisterY));
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.CPY_ABS), new CMP(cpu, 4, AddressingMode.ABSOLUTE, 3, indexRegisterY));
+	register(OpCodeMapper.getByteFromOpCode(OpCode.CPY_IM), new CMP(2, AddressingMode.IMMEDIATE, 2, indexRegisterY));
+	register(OpCodeMapper.getByteFromOpCode(OpCode.CPY_ZP), new CMP(3, AddressingMode.ZERO_PAGE, 2, indexRegisterY));
+	register(OpCodeMapper.getByteFromOpCode(OpCode.CPY_ABS), new CMP(4, AddressingMode.ABSOLUTE, 3, indexRegisterY));
 
 	//BRANCHES
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.BCC), new BRANCH(cpu, 2, AddressingMode.RELATIVE, 2, BranchMode.CARRY_CLEAR)); // BCC
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.BCS), new BRANCH(cpu, 2, AddressingMode.RELATIVE, 2, BranchMode.CARRY_SET)); // BCS
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.BEQ), new BRANCH(cpu, 2, AddressingMode.RELATIVE, 2, BranchMode.EQUAL)); // BEQ
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.BMI), new BRANCH(cpu, 2, AddressingMode.RELATIVE, 2, BranchMode.MINUS)); // BMI
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.BNE), new BRANCH(cpu, 2, AddressingMode.RELATIVE, 2, BranchMode.NOT_EQUAL)); // BNE
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.BPL), new BRANCH(cpu, 2, AddressingMode.RELATIVE, 2, BranchMode.POSITIVE)); // BPL
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.BVC), new BRANCH(cpu, 2, AddressingMode.RELATIVE, 2, BranchMode.OVERFLOW_CLEAR)); // BVC
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.BVS), new BRANCH(cpu, 2, AddressingMode.RELATIVE, 2, BranchMode.OVERFLOW_SET)); // BVS
+	register(OpCodeMapper.getByteFromOpCode(OpCode.BCC), new BRANCH(2, AddressingMode.RELATIVE, 2, BranchMode.CARRY_CLEAR)); // BCC
+	register(OpCodeMapper.getByteFromOpCode(OpCode.BCS), new BRANCH(2, AddressingMode.RELATIVE, 2, BranchMode.CARRY_SET)); // BCS
+	register(OpCodeMapper.getByteFromOpCode(OpCode.BEQ), new BRANCH(2, AddressingMode.RELATIVE, 2, BranchMode.EQUAL)); // BEQ
+	register(OpCodeMapper.getByteFromOpCode(OpCode.BMI), new BRANCH(2, AddressingMode.RELATIVE, 2, BranchMode.MINUS)); // BMI
+	register(OpCodeMapper.getByteFromOpCode(OpCode.BNE), new BRANCH(2, AddressingMode.RELATIVE, 2, BranchMode.NOT_EQUAL)); // BNE
+	register(OpCodeMapper.getByteFromOpCode(OpCode.BPL), new BRANCH(2, AddressingMode.RELATIVE, 2, BranchMode.POSITIVE)); // BPL
+	register(OpCodeMapper.getByteFromOpCode(OpCode.BVC), new BRANCH(2, AddressingMode.RELATIVE, 2, BranchMode.OVERFLOW_CLEAR)); // BVC
+	register(OpCodeMapper.getByteFromOpCode(OpCode.BVS), new BRANCH(2, AddressingMode.RELATIVE, 2, BranchMode.OVERFLOW_SET)); // BVS
 
 	//JMP
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.JMP_ABS), new JUMP(cpu, 3, AddressingMode.ABSOLUTE)); // JMP_ABS
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.JMP_IND), new JUMP(cpu, 5, AddressingMode.INDIRECT)); // JMP_IND
+	register(OpCodeMapper.getByteFromOpCode(OpCode.JMP_ABS), new JUMP(3, AddressingMode.ABSOLUTE)); // JMP_ABS
+	register(OpCodeMapper.getByteFromOpCode(OpCode.JMP_IND), new JUMP(5, AddressingMode.INDIRECT)); // JMP_IND
 
 	//TRANSFER
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.TAX), new TRANSFER(cpu, 2, AddressingMode.IMPLIED, 2, accumulator, indexRegisterX, TransferMode.REGISTER)); //TAX
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.TAY), new TRANSFER(cpu, 2, AddressingMode.IMPLIED, 2, accumulator, indexRegisterY,TransferMode.REGISTER)); //TAY
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.TXA), new TRANSFER(cpu, 2, AddressingMode.IMPLIED, 2, indexRegisterX, accumulator,TransferMode.REGISTER)); //TXA
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.TYA), new TRANSFER(cpu, 2, AddressingMode.IMPLIED, 2, indexRegisterY, accumulator, TransferMode.REGISTER)); //TYA
+	register(OpCodeMapper.getByteFromOpCode(OpCode.TAX), new TRANSFER(2, AddressingMode.IMPLIED, 2, accumulator, indexRegisterX, TransferMode.REGISTER)); //TAX
+	register(OpCodeMapper.getByteFromOpCode(OpCode.TAY), new TRANSFER(2, AddressingMode.IMPLIED, 2, accumulator, indexRegisterY,TransferMode.REGISTER)); //TAY
+	register(OpCodeMapper.getByteFromOpCode(OpCode.TXA), new TRANSFER(2, AddressingMode.IMPLIED, 2, indexRegisterX, accumulator,TransferMode.REGISTER)); //TXA
+	register(OpCodeMapper.getByteFromOpCode(OpCode.TYA), new TRANSFER(2, AddressingMode.IMPLIED, 2, indexRegisterY, accumulator, TransferMode.REGISTER)); //TYA
 
 	//STACK_TRANSFER
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.TSX), new TRANSFER(cpu, 2, AddressingMode.IMPLIED, 2, indexRegisterX, null, TransferMode.FROM_STACK)); //TSX
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.TXS), new TRANSFER(cpu, 2, AddressingMode.IMPLIED, 2, indexRegisterX, null, TransferMode.TO_STACK)); //TXS
+	register(OpCodeMapper.getByteFromOpCode(OpCode.TSX), new TRANSFER(2, AddressingMode.IMPLIED, 2, indexRegisterX, null, TransferMode.FROM_STACK)); //TSX
+	register(OpCodeMapper.getByteFromOpCode(OpCode.TXS), new TRANSFER(2, AddressingMode.IMPLIED, 2, indexRegisterX, null, TransferMode.TO_STACK)); //TXS
 
 	//PUSH PULL
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.PHA), new STACK(cpu, 4, AddressingMode.IMPLIED, 1, StackMode.PUSH_ACCUMULATOR)); // PHA
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.PLA), new STACK(cpu, 4, AddressingMode.IMPLIED, 1, StackMode.PULL_ACCUMULATOR)); // PLA
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.PHP), new STACK(cpu, 4, AddressingMode.IMPLIED, 1, StackMode.PUSH_PROCESSOR_STATUS)); // PHP
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.PLP), new STACK(cpu, 4, AddressingMode.IMPLIED, 1, StackMode.PULL_PROCESSOR_STATUS)); // PLP
+	register(OpCodeMapper.getByteFromOpCode(OpCode.PHA), new STACK(4, AddressingMode.IMPLIED, 1, StackMode.PUSH_ACCUMULATOR)); // PHA
+	register(OpCodeMapper.getByteFromOpCode(OpCode.PLA), new STACK(4, AddressingMode.IMPLIED, 1, StackMode.PULL_ACCUMULATOR)); // PLA
+	register(OpCodeMapper.getByteFromOpCode(OpCode.PHP), new STACK(4, AddressingMode.IMPLIED, 1, StackMode.PUSH_PROCESSOR_STATUS)); // PHP
+	register(OpCodeMapper.getByteFromOpCode(OpCode.PLP), new STACK(4, AddressingMode.IMPLIED, 1, StackMode.PULL_PROCESSOR_STATUS)); // PLP
 
 	//AND
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.AND_IM), new AND(cpu, 2, AddressingMode.IMMEDIATE, 2)); // AND_IM
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.AND_ZP), new AND(cpu, 3, AddressingMode.ZERO_PAGE, 2)); // AND_ZP
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.AND_ZPX), new AND(cpu, 4, AddressingMode.ZERO_PAGE_X, 2)); // AND_ZPX
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.AND_ABS), new AND(cpu, 4, AddressingMode.ABSOLUTE, 3)); // AND_ABS
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.AND_ABSX), new AND(cpu, 4, AddressingMode.ABSOLUTE_X, 3)); // AND_ABSX
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.AND_ABSY), new AND(cpu, 4, AddressingMode.ABSOLUTE_Y, 3)); // AND_ABSY
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.AND_INDX), new AND(cpu, 6, AddressingMode.INDIRECT_X, 2)); // AND_INDX
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.AND_INDY), new AND(cpu, 5, AddressingMode.INDIRECT_Y, 2)); // AND_INDY
+	register(OpCodeMapper.getByteFromOpCode(OpCode.AND_IM), new AND(2, AddressingMode.IMMEDIATE, 2)); // AND_IM
+	register(OpCodeMapper.getByteFromOpCode(OpCode.AND_ZP), new AND(3, AddressingMode.ZERO_PAGE, 2)); // AND_ZP
+	register(OpCodeMapper.getByteFromOpCode(OpCode.AND_ZPX), new AND(4, AddressingMode.ZERO_PAGE_X, 2)); // AND_ZPX
+	register(OpCodeMapper.getByteFromOpCode(OpCode.AND_ABS), new AND(4, AddressingMode.ABSOLUTE, 3)); // AND_ABS
+	register(OpCodeMapper.getByteFromOpCode(OpCode.AND_ABSX), new AND(4, AddressingMode.ABSOLUTE_X, 3)); // AND_ABSX
+	register(OpCodeMapper.getByteFromOpCode(OpCode.AND_ABSY), new AND(4, AddressingMode.ABSOLUTE_Y, 3)); // AND_ABSY
+	register(OpCodeMapper.getByteFromOpCode(OpCode.AND_INDX), new AND(6, AddressingMode.INDIRECT_X, 2)); // AND_INDX
+	register(OpCodeMapper.getByteFromOpCode(OpCode.AND_INDY), new AND(5, AddressingMode.INDIRECT_Y, 2)); // AND_INDY
 
 	//EOR
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.EOR_IM), new EOR(cpu, 2, AddressingMode.IMMEDIATE, 2)); // EOR_IM
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.EOR_ZP), new EOR(cpu, 3, AddressingMode.ZERO_PAGE, 2)); // EOR_ZP
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.EOR_ZPX), new EOR(cpu, 4, AddressingMode.ZERO_PAGE_X, 2)); // EOR_ZPX
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.EOR_ABS), new EOR(cpu, 4, AddressingMode.ABSOLUTE, 3)); // EOR_ABS
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.EOR_ABSX), new EOR(cpu, 4, AddressingMode.ABSOLUTE_X, 3)); // EOR_ABSX
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.EOR_ABSY), new EOR(cpu, 4, AddressingMode.ABSOLUTE_Y, 3)); // EOR_ABSY
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.EOR_INDX), new EOR(cpu, 6, AddressingMode.INDIRECT_X, 2)); // EOR_INDX
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.EOR_INDY), new EOR(cpu, 5, AddressingMode.INDIRECT_Y, 2)); // EOR_INDY
+	register(OpCodeMapper.getByteFromOpCode(OpCode.EOR_IM), new EOR(2, AddressingMode.IMMEDIATE, 2)); // EOR_IM
+	register(OpCodeMapper.getByteFromOpCode(OpCode.EOR_ZP), new EOR(3, AddressingMode.ZERO_PAGE, 2)); // EOR_ZP
+	register(OpCodeMapper.getByteFromOpCode(OpCode.EOR_ZPX), new EOR(4, AddressingMode.ZERO_PAGE_X, 2)); // EOR_ZPX
+	register(OpCodeMapper.getByteFromOpCode(OpCode.EOR_ABS), new EOR(4, AddressingMode.ABSOLUTE, 3)); // EOR_ABS
+	register(OpCodeMapper.getByteFromOpCode(OpCode.EOR_ABSX), new EOR(4, AddressingMode.ABSOLUTE_X, 3)); // EOR_ABSX
+	register(OpCodeMapper.getByteFromOpCode(OpCode.EOR_ABSY), new EOR(4, AddressingMode.ABSOLUTE_Y, 3)); // EOR_ABSY
+	register(OpCodeMapper.getByteFromOpCode(OpCode.EOR_INDX), new EOR(6, AddressingMode.INDIRECT_X, 2)); // EOR_INDX
+	register(OpCodeMapper.getByteFromOpCode(OpCode.EOR_INDY), new EOR(5, AddressingMode.INDIRECT_Y, 2)); // EOR_INDY
 
 	//ORA
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.ORA_IM), new ORA(cpu, 2, AddressingMode.IMMEDIATE, 2)); // ORA_IM
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.ORA_ZP), new ORA(cpu, 3, AddressingMode.ZERO_PAGE, 2)); // ORA_ZP
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.ORA_ZPX), new ORA(cpu, 4, AddressingMode.ZERO_PAGE_X, 2)); // ORA_ZPX
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.ORA_ABS), new ORA(cpu, 4, AddressingMode.ABSOLUTE, 3)); // ORA_ABS
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.ORA_ABSX), new ORA(cpu, 4, AddressingMode.ABSOLUTE_X, 3)); // ORA_ABSX
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.ORA_ABSY), new ORA(cpu, 4, AddressingMode.ABSOLUTE_Y, 3)); // ORA_ABSY
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.ORA_INDX), new ORA(cpu, 6, AddressingMode.INDIRECT_X, 2)); // ORA_INDX
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.ORA_INDY), new ORA(cpu, 5, AddressingMode.INDIRECT_Y, 2)); // ORA_INDY
+	register(OpCodeMapper.getByteFromOpCode(OpCode.ORA_IM), new ORA(2, AddressingMode.IMMEDIATE, 2)); // ORA_IM
+	register(OpCodeMapper.getByteFromOpCode(OpCode.ORA_ZP), new ORA(3, AddressingMode.ZERO_PAGE, 2)); // ORA_ZP
+	register(OpCodeMapper.getByteFromOpCode(OpCode.ORA_ZPX), new ORA(4, AddressingMode.ZERO_PAGE_X, 2)); // ORA_ZPX
+	register(OpCodeMapper.getByteFromOpCode(OpCode.ORA_ABS), new ORA(4, AddressingMode.ABSOLUTE, 3)); // ORA_ABS
+	register(OpCodeMapper.getByteFromOpCode(OpCode.ORA_ABSX), new ORA(4, AddressingMode.ABSOLUTE_X, 3)); // ORA_ABSX
+	register(OpCodeMapper.getByteFromOpCode(OpCode.ORA_ABSY), new ORA(4, AddressingMode.ABSOLUTE_Y, 3)); // ORA_ABSY
+	register(OpCodeMapper.getByteFromOpCode(OpCode.ORA_INDX), new ORA(6, AddressingMode.INDIRECT_X, 2)); // ORA_INDX
+	register(OpCodeMapper.getByteFromOpCode(OpCode.ORA_INDY), new ORA(5, AddressingMode.INDIRECT_Y, 2)); // ORA_INDY
 
 	//BIT
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.BIT_ZP), new BIT(cpu, 3, AddressingMode.ZERO_PAGE, 2)); // BIT_ZP
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.BIT_ABS), new BIT(cpu, 4, AddressingMode.ABSOLUTE, 3)); // BIT_ABS
+	register(OpCodeMapper.getByteFromOpCode(OpCode.BIT_ZP), new BIT(3, AddressingMode.ZERO_PAGE, 2)); // BIT_ZP
+	register(OpCodeMapper.getByteFromOpCode(OpCode.BIT_ABS), new BIT(4, AddressingMode.ABSOLUTE, 3)); // BIT_ABS
 
 	//CLEAR
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.CLC), new CLEAR(cpu, 2, AddressingMode.IMPLIED, 1, ProcessorFlag.CARRY)); // CLEAR CARRY FLAG
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.CLD), new CLEAR(cpu, 2, AddressingMode.IMPLIED, 1, ProcessorFlag.DECIMAL_MODE)); // CLEAR DECIMAL FLAG
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.CLI), new CLEAR(cpu, 2, AddressingMode.IMPLIED, 1, ProcessorFlag.INTERRUPT_DISABLE)); // CLEAR INTERRUPT_DISABLE
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.CLV), new CLEAR(cpu, 2, AddressingMode.IMPLIED, 1, ProcessorFlag.OVERFLOW)); // CLEAR OVERFLOW
+	register(OpCodeMapper.getByteFromOpCode(OpCode.CLC), new CLEAR(2, AddressingMode.IMPLIED, 1, ProcessorFlag.CARRY)); // CLEAR CARRY FLAG
+	register(OpCodeMapper.getByteFromOpCode(OpCode.CLD), new CLEAR(2, AddressingMode.IMPLIED, 1, ProcessorFlag.DECIMAL_MODE)); // CLEAR DECIMAL FLAG
+	register(OpCodeMapper.getByteFromOpCode(OpCode.CLI), new CLEAR(2, AddressingMode.IMPLIED, 1, ProcessorFlag.INTERRUPT_DISABLE)); // CLEAR INTERRUPT_DISABLE
+	register(OpCodeMapper.getByteFromOpCode(OpCode.CLV), new CLEAR(2, AddressingMode.IMPLIED, 1, ProcessorFlag.OVERFLOW)); // CLEAR OVERFLOW
 
 	//SET
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.SEC), new SET(cpu, 2, AddressingMode.IMPLIED, 1, ProcessorFlag.CARRY)); // SET CARRY FLAG
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.SED), new SET(cpu, 2, AddressingMode.IMPLIED, 1, ProcessorFlag.DECIMAL_MODE)); // SET DECIMAL FLAG
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.SEI), new SET(cpu, 2, AddressingMode.IMPLIED, 1, ProcessorFlag.INTERRUPT_DISABLE)); // SET INTERRUPT_DISABLE
+	register(OpCodeMapper.getByteFromOpCode(OpCode.SEC), new SET(2, AddressingMode.IMPLIED, 1, ProcessorFlag.CARRY)); // SET CARRY FLAG
+	register(OpCodeMapper.getByteFromOpCode(OpCode.SED), new SET(2, AddressingMode.IMPLIED, 1, ProcessorFlag.DECIMAL_MODE)); // SET DECIMAL FLAG
+	register(OpCodeMapper.getByteFromOpCode(OpCode.SEI), new SET(2, AddressingMode.IMPLIED, 1, ProcessorFlag.INTERRUPT_DISABLE)); // SET INTERRUPT_DISABLE
 
 
 
 	//NOP
-	operationMap.put((byte) 0xEA, new NOP(cpu, 2, AddressingMode.IMPLIED));
+	register((byte) 0xEA, new NOP(2, AddressingMode.IMPLIED));
 	//BRK
-	operationMap.put(OpCodeMapper.getByteFromOpCode(OpCode.BRK), new BREAK(cpu, 7, AddressingMode.IMPLIED));
-
+	register(OpCodeMapper.getByteFromOpCode(OpCode.BRK), new BREAK(7, AddressingMode.IMPLIED));
+
+	//Every remaining slot decodes to an illegal opcode
+	for (int opcode = 0; opcode < OPCODE_COUNT; opcode++) {
+	    if (dispatchTable[opcode] == null) {
+		dispatchTable[opcode] = new ILLEGAL(ILLEGAL_CYCLES, (byte) opcode);
+	    }
+	}
+    }
 
+    /**
+     * Places an instruction in the dispatch table slot of its opcode
+     * @param opcode byte value the instruction is decoded from
+     * @param instruction implementation to execute for the opcode
+     */
+    private void register(byte opcode, Instruction instruction) {
+	int index = opcode & BYTE_MASK;
+	if (dispatchTable[index] != null) {
+	    Emulator.LOGGER.log(Level.SEVERE, String.format("Opcode %02X is already registered, overwriting it", index));
+	}
+	dispatchTable[index] = instruction;
     }
+
     public Instruction getInstruction(byte opcode) {
-	return operationMap.getOrDefault(opcode, null);
+	return dispatchTable[opcode & BYTE_MASK];
     }
 
 }
@@ -3,64 +3,130 @@ package se.liu.ferpe211.api.operation.instruction;
 import se.liu.ferpe211.api.CPU;
 import se.liu.ferpe211.api.memory.RAM;
 import se.liu.ferpe211.api.operation.AddressingMode;
-import se.liu.ferpe211.api.register.IndexRegisterType;
 import se.liu.ferpe211.api.register.ProcessorFlag;
+import se.liu.ferpe211.api.register.RegisterFile;
 import se.liu.ferpe211.impl.Emulator;
 
 import java.util.logging.Level;
 
 /**
  * Abstract super class for generic instructions in the processor
+ * <p>
+ *     Instructions hold nothing but their immutable description, the CPU they work on is passed to every call and the operands
+ *     are decoded into locals. A single instance of every instruction is shared by all CPUs, see
+ *     {@link se.liu.ferpe211.api.operation.OperationManager}, and may be executed from any number of threads at once.
+ * </p>
  */
 public abstract class Instruction implements InstructionProvider
 {
     protected final int cycles;
-    protected CPU cpu;
-    private int size;
-    protected AddressingMode mode;
+    private final int size;
+    protected final AddressingMode mode;
     private final static byte BYTE_SIZE = 8;
     private final static short BYTE_MASK = 0xFF;
-    private final static int MAX_ARGS = 2;
+    private final static int MAX_SIZE = 3;
+    private final static int ADDRESS_MASK = 0xFFFF;
     private static final byte LAST_BIT = (byte) 0x80;
 
-    /**
-     * Operands for the instruction
-     * @see Instruction#setOperands(byte[])
-     */
-    private byte op8;
-    private int op16;
-
-    protected Instruction(CPU cpu, int cycles, AddressingMode mode, int size){
-        this.cpu= cpu;
+    protected Instruction(int cycles, AddressingMode mode, int size){
         this.cycles = cycles;
         this.mode = mode;
         this.size = size;
+        if (size < 1 || size > MAX_SIZE) {
+            Emulator.LOGGER.log(Level.SEVERE, "Invalid instruction size: " + size);
+        }
+    }
+
+    /**
+     * Reads the operand bytes following the opcode straight from memory and then advances the program counter past them in a
+     * single step, before performing the operation.
+     * Operands that the instruction does not have are 0.
+     * Nothing is allocated here since this runs once for every executed instruction.
+     * @param cpu CPU whose program counter points at the first operand byte
+     */
+    public void execute(CPU cpu) {
+        RAM memory = cpu.getMemory();
+        RegisterFile registers = cpu.getRegisterFile();
+        int address = registers.getProgramCounter();
+        byte op8 = 0;
+        int op16 = 0;
+        switch (size) {
+            case 2 -> op8 = memory.readByte(address);
+            case 3 -> {
+                op8 = memory.readByte(address);
+                op16 = ((memory.readByte(address + 1) & BYTE_MASK) << BYTE_SIZE) | (op8 & BYTE_MASK);
+            }
+        }
+        registers.setProgramCounter(address + size - 1);
+        this.performOperation(cpu, op8, op16);
     }
 
-    public void execute() {
-        byte[] bytes = this.fetchOperandBytes();
-        this.setOperands(bytes);
-        this.performOperation();
+    /**
+     * Executes the instruction with operands that were decoded ahead of time
+     * The program counter must already point past the instruction, as it does after {@link #execute(CPU)} decoded the operands
+     * @param cpu CPU to execute the instruction on
+     * @param op8 first operand byte
+     * @param op16 both operand bytes as an address, 0 for instructions of size 2 or less
+     * @see se.liu.ferpe211.api.execution.BlockCache
+     */
+    public void execute(CPU cpu, byte op8, int op16) {
+        this.performOperation(cpu, op8, op16);
+    }
+
+    /**
+     * @return true if the instruction may continue execution somewhere else than the next instruction, or stop it,
+     * which ends a basic block
+     */
+    public boolean endsBlock() {
+        return false;
     }
 
     /**
      * Utility method for instructions to effectivly fetch operand
      * @return operand
      */
-    protected byte fetchOperand(){
+    protected byte fetchOperand(CPU cpu, byte op8, int op16){
         return switch (mode){
             case IMMEDIATE -> op8;
-            default -> cpu.getMemory().readByte(this.getAddress());
+            default -> cpu.getMemory().readByte(this.getAddress(cpu, op8, op16));
         };
     }
 
+    /**
+     * @return true if the instruction reads its operand with {@link #fetchOperand(CPU, byte, int)}, which is read from
+     * memory unless it is immediate
+     */
+    public boolean readsOperand() {
+        return false;
+    }
+
+    /**
+     * Computes the address the operand is read from without triggering side effects of devices, for recording the execution
+     * Must be called before the instruction is executed, with the operands it is executed with.
+     * @return the address the operand is read from, or -1 if the instruction does not read an operand from memory
+     */
+    public int peekOperandAddress(CPU cpu, byte op8, int op16){
+        if (!readsOperand() || mode == AddressingMode.IMMEDIATE) {
+            return -1;
+        }
+        return getAddress(cpu, op8, op16, true) & ADDRESS_MASK;
+    }
+
     /**
      * Utility method for instructions to fetch effective address
      * @return address
      */
-    protected int getAddress(){
-        byte registerX = cpu.getIndexRegister(IndexRegisterType.X).getValue();
-        byte registerY = cpu.getIndexRegister(IndexRegisterType.Y).getValue();
+    protected int getAddress(CPU cpu, byte op8, int op16){
+        return getAddress(cpu, op8, op16, false);
+    }
+
+    /**
+     * @param peek true to read the pointers of indirect modes with {@link RAM#peekByte(int)}
+     */
+    private int getAddress(CPU cpu, byte op8, int op16, boolean peek){
+        RegisterFile registers = cpu.getRegisterFile();
+        byte registerX = registers.getIndexX();
+        byte registerY = registers.getIndexY();
         RAM memory = cpu.getMemory();
 
         return switch (mode){
@@ -77,28 +143,29 @@ public abstract class Instruction implements InstructionProvider
              */
             case ABSOLUTE_Y -> op16 + Byte.toUnsignedInt(registerY);
             case INDIRECT -> {
-                byte targetAddressL = memory.readByte(op16);
-                byte targetAddressH = memory.readByte(op16 + 1);
+                byte targetAddressL = peek ? memory.peekByte(op16) : memory.readByte(op16);
+                byte targetAddressH = peek ? memory.peekByte(op16 + 1) : memory.readByte(op16 + 1);
 
                 int targetAddress = ((targetAddressH & BYTE_MASK) << BYTE_SIZE) | (targetAddressL & BYTE_MASK);
                 yield targetAddress;
             }
             case INDIRECT_X -> {
                 int zpX = Byte.toUnsignedInt((byte) (op8 + registerX));
-                byte low = memory.readByte(zpX);
-                byte high = memory.readByte(zpX+1);
-                int indirectAddress = (high << BYTE_SIZE) | low;
+                // The pointer stays in the zero page, a pointer at $FF has its high byte at $00
+                byte low = peek ? memory.peekByte(zpX) : memory.readByte(zpX);
+                byte high = peek ? memory.peekByte((zpX + 1) & BYTE_MASK) : memory.readByte((zpX + 1) & BYTE_MASK);
+                int indirectAddress = ((high & BYTE_MASK) << BYTE_SIZE) | (low & BYTE_MASK);
                 yield indirectAddress;
             }
             case INDIRECT_Y -> {
                 int zp = Byte.toUnsignedInt(op8);
-                byte low = memory.readByte(zp);
-                byte high = memory.readByte(zp+1);
-                int indirectAddress = (high << BYTE_SIZE) | low;
-                int indirectAddressY = indirectAddress + registerY;
+                byte low = peek ? memory.peekByte(zp) : memory.readByte(zp);
+                byte high = peek ? memory.peekByte((zp + 1) & BYTE_MASK) : memory.readByte((zp + 1) & BYTE_MASK);
+                int indirectAddress = ((high & BYTE_MASK) << BYTE_SIZE) | (low & BYTE_MASK);
+                int indirectAddressY = indirectAddress + Byte.toUnsignedInt(registerY);
                 yield indirectAddressY;
             }
-            case RELATIVE -> op8+cpu.getProgramCounter().getValue();
+            case RELATIVE -> op8+registers.getProgramCounter();
             default -> {
                 String error = "Invalid addressing mode for fetching a effective memory address: "+mode;
                 Emulator.LOGGER.log(Level.SEVERE, error);
@@ -107,43 +174,25 @@ public abstract class Instruction implements InstructionProvider
         };
     }
 
-    /**
-     * Method for fetching input bytes for an instruction into a byte[]
-     * @return byte[] input bytes
-     */
-    private byte[] fetchOperandBytes(){
-        byte[] bytes = new byte[size-1];
-        for (int i = 0; i < this.size-1; i++) {
-            byte value = cpu.getMemory().readByte(cpu.getProgramCounter().getValue());
-            cpu.getProgramCounter().increment();
-            bytes[i] = value;
-        }
-    return bytes;}
-
-    /**
-     * Sets operands Op8 and Op16 to their respective byte values
-     * If byte is not defined its by default set to 0
-     * @param bytes
-     */
-    public void setOperands(byte[] bytes) {
-        if (bytes.length > MAX_ARGS) {
-            Emulator.LOGGER.log(Level.SEVERE, "Invalid instruction size");
-        }
-        op8 = bytes.length >= 1 ? bytes[0] : 0;
-        op16 = bytes.length == MAX_ARGS ? ((bytes[1] & BYTE_MASK) << BYTE_SIZE) | (bytes[0] & BYTE_MASK) : 0;
-    }
-
     @Override
     public int getCycles(){
         return cycles;
     }
     public int getSize() {return size;}
 
-    protected void verifyNegativeFlag(byte value){
-        cpu.getProcessorStatus().setFlag(ProcessorFlag.NEGATIVE, (value & LAST_BIT) != 0);
+    /**
+     * Updates both the negative and the zero flag from the same result, the flags are evaluated lazily
+     * @see RegisterFile#setNegativeZero(byte)
+     */
+    protected static void updateNegativeZeroFlags(RegisterFile registers, byte value){
+        registers.setNegativeZero(value);
+    }
+
+    protected static void verifyNegativeFlag(RegisterFile registers, byte value){
+        registers.setFlag(ProcessorFlag.NEGATIVE, (value & LAST_BIT) != 0);
     }
 
-    protected void verifyZeroFlag(byte value){
-        cpu.getProcessorStatus().setFlag(ProcessorFlag.ZERO, value == 0);
+    protected static void verifyZeroFlag(RegisterFile registers, byte value){
+        registers.setFlag(ProcessorFlag.ZERO, value == 0);
     }
 }
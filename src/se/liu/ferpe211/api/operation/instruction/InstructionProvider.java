@@ -1,17 +1,20 @@
 package se.liu.ferpe211.api.operation.instruction;
 
+import se.liu.ferpe211.api.CPU;
+
 /**
  * Interface for the abstract class {@link Instruction}
  *
  * <p>
- *     This interface provides the method {@link #execute()} which is called by the {@link se.liu.ferpe211.api.operation.Operation}
- *     class to perform the instruction.
+ *     This interface provides the method {@link #execute(CPU)} which is called by the execution engines of the CPU to perform
+ *     the instruction. Implementations are stateless, the CPU to work on is passed in and the operands are locals, so one
+ *     instance can be shared by every CPU.
  * </p>
  *
  */
 public interface InstructionProvider
 {
-    public abstract void performOperation();
-    public void execute();
+    public abstract void performOperation(CPU cpu, byte op8, int op16);
+    public void execute(CPU cpu);
     public int getCycles();
 }
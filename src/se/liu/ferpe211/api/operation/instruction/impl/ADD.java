@@ -5,7 +5,7 @@ import se.liu.ferpe211.api.operation.AddressingMode;
 import se.liu.ferpe211.api.operation.instruction.Instruction;
 import se.liu.ferpe211.api.operation.instruction.InstructionProvider;
 import se.liu.ferpe211.api.register.ProcessorFlag;
-import se.liu.ferpe211.api.register.ProcessorStatus;
+import se.liu.ferpe211.api.register.RegisterFile;
 
 /**
  * Implementation of the ADC instruction present in the 6502 instruction set.
@@ -13,32 +13,33 @@ import se.liu.ferpe211.api.register.ProcessorStatus;
  */
 public class ADD extends Instruction
 {
-    public ADD(final CPU cpu, final int cycles, final AddressingMode mode, final int size) {
-	super(cpu, cycles, mode, size);
+    public ADD(final int cycles, final AddressingMode mode, final int size) {
+	super(cycles, mode, size);
     }
 
 
     /**
      * The ADC instruction adds the content of memory location to the accumulator with the carry bit.
-     * @see InstructionProvider#performOperation()
+     * @see InstructionProvider#performOperation(CPU, byte, int)
      */
-    @Override public void performOperation() {
-	byte operand = fetchOperand();
-	byte dataRegister = cpu.getAccumulator().getValue();
-	byte carry = cpu.getProcessorStatus().getFlag(ProcessorFlag.CARRY) ? (byte)1 : (byte)0;
+    @Override public void performOperation(final CPU cpu, final byte op8, final int op16) {
+	RegisterFile registers = cpu.getRegisterFile();
+	byte operand = fetchOperand(cpu, op8, op16);
+	byte dataRegister = registers.getAccumulator();
+	byte carry = registers.getFlag(ProcessorFlag.CARRY) ? (byte)1 : (byte)0;
 	int sum = (operand + dataRegister + carry);
 	byte finalSum = (byte) (operand + dataRegister + carry);
 	boolean overflow= (sum < Byte.MIN_VALUE || sum > Byte.MAX_VALUE);
-	ProcessorStatus processorStatus = cpu.getProcessorStatus();
 
-	processorStatus.setFlag(ProcessorFlag.OVERFLOW,overflow);
-	processorStatus.setFlag(ProcessorFlag.CARRY, overflow);
-	cpu.getAccumulator().setValue(finalSum);
+	registers.setFlag(ProcessorFlag.OVERFLOW,overflow);
+	registers.setFlag(ProcessorFlag.CARRY, overflow);
+	registers.setAccumulator(finalSum);
 
-	verifyNegativeFlag(finalSum);
-	verifyZeroFlag(finalSum);
+	updateNegativeZeroFlags(registers, finalSum);
 
     }
 
-
+    @Override public boolean readsOperand() {
+	return true;
+    }
 }
@@ -4,19 +4,17 @@ import se.liu.ferpe211.api.CPU;
 import se.liu.ferpe211.api.operation.AddressingMode;
 import se.liu.ferpe211.api.operation.instruction.Instruction;
 import se.liu.ferpe211.api.register.ProcessorFlag;
-import se.liu.ferpe211.api.register.ProcessorStatus;
 
 public class CLEAR extends Instruction
 {
-    private ProcessorFlag flag;
+    private final ProcessorFlag flag;
 
-    public CLEAR(final CPU cpu, final int cycles, final AddressingMode mode, final int size, ProcessorFlag flag) {
-	super(cpu, cycles, mode, size);
+    public CLEAR(final int cycles, final AddressingMode mode, final int size, ProcessorFlag flag) {
+	super(cycles, mode, size);
 	this.flag = flag;
     }
 
-    @Override public void performOperation() {
-	ProcessorStatus processorStatus = cpu.getProcessorStatus();
-	processorStatus.setFlag(flag,false);
+    @Override public void performOperation(final CPU cpu, final byte op8, final int op16) {
+	cpu.getRegisterFile().setFlag(flag,false);
     }
 }
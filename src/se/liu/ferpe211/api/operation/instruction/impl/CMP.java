@@ -4,7 +4,8 @@ import se.liu.ferpe211.api.CPU;
 import se.liu.ferpe211.api.operation.AddressingMode;
 import se.liu.ferpe211.api.operation.instruction.Instruction;
 import se.liu.ferpe211.api.register.ProcessorFlag;
-import se.liu.ferpe211.api.register.Register8Bit;
+import se.liu.ferpe211.api.register.RegisterFile;
+import se.liu.ferpe211.api.register.RegisterType;
 
 /**
  * Implementation of the CMP instruction present in the 6502 instruction set.
@@ -13,22 +14,27 @@ import se.liu.ferpe211.api.register.Register8Bit;
  */
 public class CMP extends Instruction
 {
-    private Register8Bit targetRegister;
+    private final RegisterType targetRegister;
 
-    public CMP(final CPU cpu, final int cycles, final AddressingMode mode, final int size, Register8Bit register8Bit) {
-	super(cpu, cycles, mode, size);
-	this.targetRegister=register8Bit;
+    public CMP(final int cycles, final AddressingMode mode, final int size, RegisterType registerType) {
+	super(cycles, mode, size);
+	this.targetRegister=registerType;
     }
 
-    @Override public void performOperation() {
-	byte operand = fetchOperand();
-	int result = targetRegister.getValue() - operand;
+    @Override public void performOperation(final CPU cpu, final byte op8, final int op16) {
+	RegisterFile registers = cpu.getRegisterFile();
+	byte operand = fetchOperand(cpu, op8, op16);
+	byte registerValue = registers.get(targetRegister);
+	int result = registerValue - operand;
 
-	cpu.getProcessorStatus().setFlag(ProcessorFlag.CARRY, targetRegister.getValue() >= operand);
+	registers.setFlag(ProcessorFlag.CARRY, registerValue >= operand);
 
-	verifyNegativeFlag((byte) result);
-	verifyZeroFlag((byte) result);
+	updateNegativeZeroFlags(registers, (byte) result);
 
 
     }
+
+    @Override public boolean readsOperand() {
+	return true;
+    }
 }
@@ -11,15 +11,19 @@ import se.liu.ferpe211.api.operation.instruction.InstructionProvider;
  */
 public class JUMP extends Instruction
 {
-    public JUMP(final CPU cpu, final int cycles, final AddressingMode mode) {
-	super(cpu, cycles, mode, 3);
+    public JUMP(final int cycles, final AddressingMode mode) {
+	super(cycles, mode, 3);
     }
 
     /**
      * The JUMP instruction jumps to a new location in memory.
-     * @see InstructionProvider#performOperation()
+     * @see InstructionProvider#performOperation(CPU, byte, int)
      */
-    @Override public void performOperation() {
-	cpu.getProgramCounter().setValue(getAddress());
+    @Override public void performOperation(final CPU cpu, final byte op8, final int op16) {
+	cpu.getRegisterFile().setProgramCounter(getAddress(cpu, op8, op16));
+    }
+
+    @Override public boolean endsBlock() {
+	return true;
     }
 }
@@ -4,7 +4,8 @@ import se.liu.ferpe211.api.CPU;
 import se.liu.ferpe211.api.operation.AddressingMode;
 import se.liu.ferpe211.api.operation.instruction.Instruction;
 import se.liu.ferpe211.api.operation.instruction.InstructionProvider;
-import se.liu.ferpe211.api.register.Register8Bit;
+import se.liu.ferpe211.api.register.RegisterFile;
+import se.liu.ferpe211.api.register.RegisterType;
 
 /**
  * Implementation of the LDX, LDA and LDY instruction present in the 6502 instruction set.
@@ -15,25 +16,27 @@ public class LOAD extends Instruction
     /**
      * Target register for the LDA, LDX and LDY instruction.
      */
-    private Register8Bit targetRegister;
+    private final RegisterType targetRegister;
 
-    public LOAD(final CPU cpu, final int cycles, final AddressingMode mode,int size, Register8Bit register8Bit) {
-	super(cpu, cycles, mode, size);
-	this.targetRegister=register8Bit;
+    public LOAD(final int cycles, final AddressingMode mode,int size, RegisterType registerType) {
+	super(cycles, mode, size);
+	this.targetRegister=registerType;
     }
 
     /**
      * The LOAD instruction loads a value into a register.
-     * @see InstructionProvider#performOperation()
+     * @see InstructionProvider#performOperation(CPU, byte, int)
      */
-    @Override public void performOperation() {
-	byte operand = fetchOperand();
-	this.targetRegister.setValue(operand);
+    @Override public void performOperation(final CPU cpu, final byte op8, final int op16) {
+	RegisterFile registers = cpu.getRegisterFile();
+	byte operand = fetchOperand(cpu, op8, op16);
+	registers.set(targetRegister, operand);
 
-	verifyZeroFlag(operand);
-	verifyNegativeFlag(operand);
+	updateNegativeZeroFlags(registers, operand);
 
     }
 
-
+    @Override public boolean readsOperand() {
+	return true;
+    }
 }
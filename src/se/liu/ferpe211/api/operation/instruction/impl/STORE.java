@@ -3,7 +3,8 @@ package se.liu.ferpe211.api.operation.instruction.impl;
 import se.liu.ferpe211.api.CPU;
 import se.liu.ferpe211.api.operation.AddressingMode;
 import se.liu.ferpe211.api.operation.instruction.Instruction;
-import se.liu.ferpe211.api.register.Register8Bit;
+import se.liu.ferpe211.api.register.RegisterFile;
+import se.liu.ferpe211.api.register.RegisterType;
 
 /**
  * Implementation of the STX, STA and STY instruction present in the 6502 instruction set.
@@ -14,16 +15,17 @@ public class STORE extends Instruction
     /**
      * Target register for the STA, STX and STY instruction.
      */
-    private Register8Bit targetRegister;
+    private final RegisterType targetRegister;
 
-    public STORE(final CPU cpu, final int cycles, final AddressingMode mode,int size, Register8Bit register8Bit) {
-	super(cpu, cycles, mode,size);
-	this.targetRegister = register8Bit;
+    public STORE(final int cycles, final AddressingMode mode,int size, RegisterType registerType) {
+	super(cycles, mode,size);
+	this.targetRegister = registerType;
     }
 
-    @Override public void performOperation() {
-	byte data = targetRegister.getValue();
-	int address = getAddress();
+    @Override public void performOperation(final CPU cpu, final byte op8, final int op16) {
+	RegisterFile registers = cpu.getRegisterFile();
+	byte data = registers.get(targetRegister);
+	int address = getAddress(cpu, op8, op16);
 	cpu.getMemory().writeByte(address, data);
     }
 
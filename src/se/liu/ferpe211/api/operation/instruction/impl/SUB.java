@@ -5,6 +5,7 @@ import se.liu.ferpe211.api.operation.AddressingMode;
 import se.liu.ferpe211.api.operation.instruction.Instruction;
 import se.liu.ferpe211.api.operation.instruction.InstructionProvider;
 import se.liu.ferpe211.api.register.ProcessorFlag;
+import se.liu.ferpe211.api.register.RegisterFile;
 
 /**
  * Implementation of the SBC instruction present in the 6502 instruction set.
@@ -12,32 +13,36 @@ import se.liu.ferpe211.api.register.ProcessorFlag;
  */
 public class SUB extends Instruction
 {
-    public SUB(final CPU cpu, final int cycles, final AddressingMode mode, final int size) {
-	super(cpu, cycles, mode, size);
+    public SUB(final int cycles, final AddressingMode mode, final int size) {
+	super(cycles, mode, size);
     }
 
     /**
      * The SBC instruction subtracts the content of memory location from the accumulator with borrow.
      *
-     * @see InstructionProvider#performOperation()
+     * @see InstructionProvider#performOperation(CPU, byte, int)
      */
     @Override
-    public void performOperation() {
-	byte operand = fetchOperand();
-	byte accumulatorValue = cpu.getAccumulator().getValue();
-	byte carry = cpu.getProcessorStatus().getFlag(ProcessorFlag.CARRY) ? (byte) 1 : (byte) 0;
+    public void performOperation(final CPU cpu, final byte op8, final int op16) {
+	RegisterFile registers = cpu.getRegisterFile();
+	byte operand = fetchOperand(cpu, op8, op16);
+	byte accumulatorValue = registers.getAccumulator();
+	byte carry = registers.getFlag(ProcessorFlag.CARRY) ? (byte) 1 : (byte) 0;
 
 	//A-M-(1-C)
 	int difference = (accumulatorValue - operand - (1 - carry));
 	boolean overflow = (difference < Byte.MIN_VALUE || difference > Byte.MAX_VALUE);
-	cpu.getProcessorStatus().setFlag(ProcessorFlag.OVERFLOW, overflow);
-	cpu.getProcessorStatus().setFlag(ProcessorFlag.CARRY, !overflow);
-	cpu.getAccumulator().setValue((byte) difference);
+	registers.setFlag(ProcessorFlag.OVERFLOW, overflow);
+	registers.setFlag(ProcessorFlag.CARRY, !overflow);
+	registers.setAccumulator((byte) difference);
 
-	verifyZeroFlag((byte) difference);
-	verifyNegativeFlag((byte) difference);
+	updateNegativeZeroFlags(registers, (byte) difference);
 
 
 
     }
+
+    @Override public boolean readsOperand() {
+	return true;
+    }
 }
@@ -4,7 +4,7 @@ import se.liu.ferpe211.api.CPU;
 import se.liu.ferpe211.api.operation.AddressingMode;
 import se.liu.ferpe211.api.operation.instruction.Instruction;
 import se.liu.ferpe211.api.register.ProcessorFlag;
-import se.liu.ferpe211.api.register.ProcessorStatus;
+import se.liu.ferpe211.api.register.RegisterFile;
 
 /**
  * Implementation of the BRANCH instructions present in the 6502 instruction set.
@@ -16,38 +16,42 @@ public class BRANCH extends Instruction
      * Stores current branch mode (which condition to branch)
      * @see BranchMode for more info
      */
-    private BranchMode branchMode;
+    private final BranchMode branchMode;
 
-    public BRANCH(final CPU cpu, final int cycles, final AddressingMode mode, final int size, BranchMode branchMode) {
-	super(cpu, cycles, mode, size);
+    public BRANCH(final int cycles, final AddressingMode mode, final int size, BranchMode branchMode) {
+	super(cycles, mode, size);
 	this.branchMode = branchMode;
     }
 
-    @Override public void performOperation() {
+    @Override public void performOperation(final CPU cpu, final byte op8, final int op16) {
+	RegisterFile registers = cpu.getRegisterFile();
 	boolean condition = false;
-	ProcessorStatus processorStatus = cpu.getProcessorStatus();
 	switch (branchMode){
 	    case EQUAL ->
-		condition = processorStatus.getFlag(ProcessorFlag.ZERO);
+		condition = registers.getFlag(ProcessorFlag.ZERO);
 	    case NOT_EQUAL ->
-		condition = !processorStatus.getFlag(ProcessorFlag.ZERO);
+		condition = !registers.getFlag(ProcessorFlag.ZERO);
 	    case MINUS ->
-		    condition = processorStatus.getFlag(ProcessorFlag.NEGATIVE);
+		    condition = registers.getFlag(ProcessorFlag.NEGATIVE);
 	    case POSITIVE ->
-		    condition = !processorStatus.getFlag(ProcessorFlag.NEGATIVE);
+		    condition = !registers.getFlag(ProcessorFlag.NEGATIVE);
 	    case CARRY_SET ->
-		    condition = processorStatus.getFlag(ProcessorFlag.CARRY);
+		    condition = registers.getFlag(ProcessorFlag.CARRY);
 	    case CARRY_CLEAR ->
-		    condition = !processorStatus.getFlag(ProcessorFlag.CARRY);
+		    condition = !registers.getFlag(ProcessorFlag.CARRY);
 	    case OVERFLOW_SET ->
-		    condition = processorStatus.getFlag(ProcessorFlag.OVERFLOW);
+		    condition = registers.getFlag(ProcessorFlag.OVERFLOW);
 	    case OVERFLOW_CLEAR ->
-		    condition = !processorStatus.getFlag(ProcessorFlag.OVERFLOW);
+		    condition = !registers.getFlag(ProcessorFlag.OVERFLOW);
 	}
 
 	if(condition){
-	    cpu.getProgramCounter().setValue(getAddress());
+	    registers.setProgramCounter(getAddress(cpu, op8, op16));
 	}
 	
     }
+
+    @Override public boolean endsBlock() {
+	return true;
+    }
 }
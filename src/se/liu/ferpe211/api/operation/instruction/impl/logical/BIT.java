@@ -4,24 +4,30 @@ import se.liu.ferpe211.api.CPU;
 import se.liu.ferpe211.api.operation.AddressingMode;
 import se.liu.ferpe211.api.operation.instruction.Instruction;
 import se.liu.ferpe211.api.register.ProcessorFlag;
+import se.liu.ferpe211.api.register.RegisterFile;
 
 public class BIT extends Instruction
 {
-    public BIT(final CPU cpu, final int cycles, final AddressingMode mode, final int size) {
-	super(cpu, cycles, mode, size);
+    public BIT(final int cycles, final AddressingMode mode, final int size) {
+	super(cycles, mode, size);
     }
 
     @Override
-    public void performOperation() {
-	byte accumulator = cpu.getAccumulator().getValue();
-	byte operand = fetchOperand();
+    public void performOperation(final CPU cpu, final byte op8, final int op16) {
+	RegisterFile registers = cpu.getRegisterFile();
+	byte accumulator = registers.getAccumulator();
+	byte operand = fetchOperand(cpu, op8, op16);
 	byte result = (byte) (accumulator & operand);
 
 	// Update the ZERO flag
-	verifyZeroFlag(result);
-	verifyNegativeFlag(operand);
+	verifyZeroFlag(registers, result);
+	verifyNegativeFlag(registers, operand);
 
 	// Update the OVERFLOW flag (bit 6 of the operand)
-	cpu.getProcessorStatus().setFlag(ProcessorFlag.OVERFLOW, (operand & 0x40) != 0);
+	registers.setFlag(ProcessorFlag.OVERFLOW, (operand & 0x40) != 0);
+    }
+
+    @Override public boolean readsOperand() {
+	return true;
     }
 }
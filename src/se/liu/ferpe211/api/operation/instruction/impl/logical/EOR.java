@@ -3,21 +3,26 @@ package se.liu.ferpe211.api.operation.instruction.impl.logical;
 import se.liu.ferpe211.api.CPU;
 import se.liu.ferpe211.api.operation.AddressingMode;
 import se.liu.ferpe211.api.operation.instruction.Instruction;
+import se.liu.ferpe211.api.register.RegisterFile;
 
 public class EOR extends Instruction
 {
-    public EOR(final CPU cpu, final int cycles, final AddressingMode mode, final int size) {
-	super(cpu, cycles, mode, size);
+    public EOR(final int cycles, final AddressingMode mode, final int size) {
+	super(cycles, mode, size);
     }
 
     @Override
-    public void performOperation() {
-	byte accumulator = cpu.getAccumulator().getValue();
-	byte operand = fetchOperand();
+    public void performOperation(final CPU cpu, final byte op8, final int op16) {
+	RegisterFile registers = cpu.getRegisterFile();
+	byte accumulator = registers.getAccumulator();
+	byte operand = fetchOperand(cpu, op8, op16);
 	byte result = (byte) (accumulator ^ operand);
 
-	cpu.getAccumulator().setValue(result);
-	verifyNegativeFlag(result);
-	verifyZeroFlag(result);
+	registers.setAccumulator(result);
+	updateNegativeZeroFlags(registers, result);
+    }
+
+    @Override public boolean readsOperand() {
+	return true;
     }
 }
@@ -3,37 +3,38 @@ package se.liu.ferpe211.api.operation.instruction.impl.stack;
 import se.liu.ferpe211.api.CPU;
 import se.liu.ferpe211.api.operation.AddressingMode;
 import se.liu.ferpe211.api.operation.instruction.Instruction;
+import se.liu.ferpe211.api.register.RegisterFile;
 
 public class STACK extends Instruction
 {
-    private StackMode stackMode;
-    public STACK(final CPU cpu, final int cycles, final AddressingMode mode, final int size, StackMode stackMode) {
-	super(cpu, cycles, mode, size);
+    private final StackMode stackMode;
+    public STACK(final int cycles, final AddressingMode mode, final int size, StackMode stackMode) {
+	super(cycles, mode, size);
 	this.stackMode = stackMode;
     }
 
     @Override
-    public void performOperation() {
+    public void performOperation(final CPU cpu, final byte op8, final int op16) {
+	RegisterFile registers = cpu.getRegisterFile();
 	byte value;
 
 	switch (stackMode) {
 	    case PUSH_ACCUMULATOR:
-		value = cpu.getAccumulator().getValue();
+		value = registers.getAccumulator();
 		cpu.pushByte(value);
 		break;
 	    case PUSH_PROCESSOR_STATUS:
-		value = cpu.getProcessorStatus().getValue();
+		value = registers.getStatus();
 		cpu.pushByte(value);
 		break;
 	    case PULL_ACCUMULATOR:
 		value = cpu.pullByte();
-		cpu.getAccumulator().setValue(value);
-		verifyNegativeFlag(value);
-		verifyZeroFlag(value);
+		registers.setAccumulator(value);
+		updateNegativeZeroFlags(registers, value);
 		break;
 	    case PULL_PROCESSOR_STATUS:
 		value = cpu.pullByte();
-		cpu.getProcessorStatus().setValue(value);
+		registers.setStatus(value);
 		break;
 	}
     }
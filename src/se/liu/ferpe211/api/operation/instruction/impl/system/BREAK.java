@@ -11,15 +11,19 @@ import se.liu.ferpe211.api.operation.instruction.InstructionProvider;
  */
 public class BREAK extends Instruction
 {
-    public BREAK(final CPU cpu, final int cycles, final AddressingMode mode) {
-	super(cpu, cycles, mode, 1);
+    public BREAK(final int cycles, final AddressingMode mode) {
+	super(cycles, mode, 1);
     }
 
     /**
      * The BREAK instruction causes a software interrupt.
-     * @see InstructionProvider#performOperation()
+     * @see InstructionProvider#performOperation(CPU, byte, int)
      */
-    @Override public void performOperation() {
+    @Override public void performOperation(final CPU cpu, final byte op8, final int op16) {
         cpu.setExecuting(false);
     }
+
+    @Override public boolean endsBlock() {
+	return true;
+    }
 }
@@ -0,0 +1,38 @@
+package se.liu.ferpe211.api.operation.instruction.impl.system;
+
+import se.liu.ferpe211.api.CPU;
+import se.liu.ferpe211.api.operation.AddressingMode;
+import se.liu.ferpe211.api.operation.instruction.Instruction;
+import se.liu.ferpe211.api.operation.instruction.InstructionProvider;
+import se.liu.ferpe211.impl.Emulator;
+
+import java.util.logging.Level;
+
+/**
+ * Handler for byte values that do not decode to any instruction supported by the emulator.
+ * It occupies every undefined slot of the dispatch table in {@link se.liu.ferpe211.api.operation.OperationManager}
+ * so that decoding never yields null, and halts the CPU when reached much like the JAM opcodes of the real 6502.
+ */
+public class ILLEGAL extends Instruction
+{
+    private final byte opcode;
+
+    public ILLEGAL(final int cycles, final byte opcode) {
+	super(cycles, AddressingMode.IMPLIED, 1);
+	this.opcode = opcode;
+    }
+
+    /**
+     * Stops execution and reports the offending opcode together with the address it was fetched from.
+     * @see InstructionProvider#performOperation(CPU, byte, int)
+     */
+    @Override public void performOperation(final CPU cpu, final byte op8, final int op16) {
+	int address = cpu.getRegisterFile().getProgramCounter() - 1;
+	Emulator.LOGGER.log(Level.SEVERE, String.format("Illegal opcode %02X at address %04X", opcode, address));
+	cpu.setExecuting(false);
+    }
+
+    @Override public boolean endsBlock() {
+	return true;
+    }
+}
@@ -11,15 +11,15 @@ import se.liu.ferpe211.api.operation.instruction.InstructionProvider;
  */
 public class NOP extends Instruction
 {
-    public NOP(CPU cpu, int cycles, AddressingMode mode){
-	super(cpu, cycles, mode,1);
+    public NOP(int cycles, AddressingMode mode){
+	super(cycles, mode,1);
     }
 
     /**
      * The NOP instruction does nothing, so it is a no-op.
-     * @see InstructionProvider#performOperation()
+     * @see InstructionProvider#performOperation(CPU, byte, int)
      */
-    @Override public void performOperation() {
+    @Override public void performOperation(final CPU cpu, final byte op8, final int op16) {
 	//No operation
     }
 }
@@ -3,41 +3,40 @@ package se.liu.ferpe211.api.operation.instruction.impl.transfer;
 import se.liu.ferpe211.api.CPU;
 import se.liu.ferpe211.api.operation.AddressingMode;
 import se.liu.ferpe211.api.operation.instruction.Instruction;
-import se.liu.ferpe211.api.register.Register8Bit;
+import se.liu.ferpe211.api.register.RegisterFile;
+import se.liu.ferpe211.api.register.RegisterType;
 
 public class TRANSFER extends Instruction
 {
-    private Register8Bit sourceRegister;
-    private Register8Bit targetRegister;
-    private TransferMode transferMode;
+    private final RegisterType sourceRegister;
+    private final RegisterType targetRegister;
+    private final TransferMode transferMode;
 
-    public TRANSFER(final CPU cpu, final int cycles, final AddressingMode mode, final int size, Register8Bit sourceRegister, Register8Bit targetRegister, TransferMode transferMode) {
-	super(cpu, cycles, mode, size);
+    public TRANSFER(final int cycles, final AddressingMode mode, final int size, RegisterType sourceRegister, RegisterType targetRegister, TransferMode transferMode) {
+	super(cycles, mode, size);
 	this.sourceRegister = sourceRegister;
 	this.targetRegister = targetRegister;
 	this.transferMode = transferMode;
     }
 
     @Override
-    public void performOperation() {
-	byte value = sourceRegister.getValue();
+    public void performOperation(final CPU cpu, final byte op8, final int op16) {
+	RegisterFile registers = cpu.getRegisterFile();
+	byte value = registers.get(sourceRegister);
 
 	switch (transferMode) {
 	    case REGISTER -> {
-		targetRegister.setValue(value);
-		verifyNegativeFlag(value);
-		verifyZeroFlag(value);
+		registers.set(targetRegister, value);
+		updateNegativeZeroFlags(registers, value);
 	    }
 	    case TO_STACK -> {
-		cpu.getStackPointer().setValue(value);
-		verifyNegativeFlag(value);
-		verifyZeroFlag(value);
+		registers.setStackPointer(value);
+		updateNegativeZeroFlags(registers, value);
 	    }
 	    case FROM_STACK -> {
-		byte stack = cpu.getStackPointer().getValue();
-		sourceRegister.setValue(stack);
-		verifyNegativeFlag(stack);
-		verifyZeroFlag(stack);
+		byte stack = registers.getStackPointer();
+		registers.set(sourceRegister, stack);
+		updateNegativeZeroFlags(registers, stack);
 	    }
 	}
     }
@@ -15,12 +15,21 @@ public enum ProcessorFlag {
     NEGATIVE(7); // 0 = Positive, 1 = Negative
 
     private final int bitPosition;
+    private final byte mask;
 
     ProcessorFlag(int bitPosition) {
 	this.bitPosition = bitPosition;
+	this.mask = (byte) (1 << bitPosition);
     }
 
     public int getBitPosition() {
 	return bitPosition;
     }
+
+    /**
+     * @return the processor status value with only this flag set
+     */
+    public byte getMask() {
+	return mask;
+    }
 }
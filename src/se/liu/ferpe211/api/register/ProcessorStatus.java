@@ -20,13 +20,28 @@ package se.liu.ferpe211.api.register;
  */
 public class ProcessorStatus extends Register8Bit
 {
+    private final RegisterFile registerFile;
 
-    public ProcessorStatus(final String name) {
+    /**
+     * The status register is a view of the status byte in the register file
+     * @param name name of the register
+     * @param registerFile register file that stores the value
+     */
+    public ProcessorStatus(final String name, final RegisterFile registerFile) {
 	super(name);
+	this.registerFile = registerFile;
+    }
+
+    @Override public void setValue(final byte value) {
+	registerFile.setStatus(value);
+    }
+
+    @Override public byte getValue() {
+	return registerFile.getStatus();
     }
 
     public boolean getFlag(ProcessorFlag processorFlag){
-	return ((this.getValue() >> processorFlag.getBitPosition()) & 1) != 0;
+	return registerFile.getFlag(processorFlag);
     }
 
     /**
@@ -35,34 +50,7 @@ public class ProcessorStatus extends Register8Bit
      * @param value The value to set the flag to.
      */
     public void setFlag(ProcessorFlag processorFlag, boolean value) {
-	// 1   : 00000001
-	// mask: 00001000 (if getBitPosition returned 3 (DECIMAL_MODE))
-	byte mask = (byte) (1 << processorFlag.getBitPosition());
-	byte registerValue = this.getValue();
-	if (value) {
-	    // Value: X X X X X X X X
-	    // Mask:  0 0 0 0 1 0 0 0
-	    // AFTER: X X X X 1 X X X
-	    /**
-	     * Regarding the readability::ImplicitNumericConversion warning in the code report
-	     * If were to write this line as registerValue = (byte) (registerValue | mask) which the code report wants me to,
-	     * a new severe warning appears readability::ReplaceAssignmentWithOperatorAssignment and prompts me to simplify the line to
-	     * registerValue |= mask
-	     */
-	    registerValue |= mask;
-	} else {
-	    // Value: X X X X X X X X
-	    // Mask:  1 1 1 1 0 1 1 1 (since mask is inverted)
-	    // AFTER: X X X X 0 X X X
-	    /**
-	     * Regarding the readability::ImplicitNumericConversion warning in the code report
-	     * If were to write this line as registerValue = (byte) (registerValue & ~mask) which the code report wants me to,
-	     * a new severe warning appears readability::ReplaceAssignmentWithOperatorAssignment and prompts me to simplify the line to
-	     * registerValue &= ~mask
-	     */
-	    registerValue &= (byte) ~mask;
-	}
-	this.setValue(registerValue);
+	registerFile.setFlag(processorFlag, value);
     }
 
     @Override
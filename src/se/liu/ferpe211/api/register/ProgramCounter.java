@@ -3,11 +3,23 @@ package se.liu.ferpe211.api.register;
 /**
  * Represents the Program Counter register.
  * It is a 16-bit register used to hold the current execution address in the program.
+ * The value is stored in a {@link RegisterFile}, this class is a view of it.
  */
 public class ProgramCounter extends Register16Bit
 {
-    public ProgramCounter(final String name) {
+    private final RegisterFile registerFile;
+
+    public ProgramCounter(final String name, final RegisterFile registerFile) {
 	super(name);
+	this.registerFile = registerFile;
+    }
+
+    @Override public void setValue(final int value) {
+	registerFile.setProgramCounter(value);
+    }
+
+    @Override public int getValue() {
+	return registerFile.getProgramCounter();
     }
 
     public void increment(){
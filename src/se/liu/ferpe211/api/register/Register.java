@@ -18,7 +18,7 @@ public abstract class Register {
      */
     protected Register(String name) {
 	this.name = name;
-	Emulator.LOGGER.log(Level.INFO, "Register " + name + " created");
+	Emulator.LOGGER.log(Level.FINE, "Register {0} created", name);
     }
 
 
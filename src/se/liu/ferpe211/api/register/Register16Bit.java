@@ -22,7 +22,7 @@ public class Register16Bit extends Register
     }
 
     @Override public String toString() {
-	return String.format("%s: %04X",name,value);
+	return String.format("%s: %04X",name,getValue());
     }
 
 
@@ -20,14 +20,14 @@ public class Register8Bit extends Register
     }
 
     public void increment() {
-	value++;
+	setValue((byte) (getValue() + 1));
     }
     public void decrement() {
-	value--;
+	setValue((byte) (getValue() - 1));
     }
 
     @Override public String toString() {
-	return String.format("%s: %04X",name,value);
+	return String.format("%s: %04X",name,getValue());
     }
 
 }
@@ -0,0 +1,25 @@
+package se.liu.ferpe211.api.register;
+
+/**
+ * An 8 bit register whose value is stored in a {@link RegisterFile}
+ * Reading and writing the view reads and writes the register file, so the view always shows the current CPU state.
+ */
+public class Register8BitView extends Register8Bit
+{
+    private final RegisterFile registerFile;
+    private final RegisterType registerType;
+
+    public Register8BitView(final String name, final RegisterFile registerFile, final RegisterType registerType) {
+	super(name);
+	this.registerFile = registerFile;
+	this.registerType = registerType;
+    }
+
+    @Override public void setValue(final byte value) {
+	registerFile.set(registerType, value);
+    }
+
+    @Override public byte getValue() {
+	return registerFile.get(registerType);
+    }
+}
@@ -0,0 +1,162 @@
+package se.liu.ferpe211.api.register;
+
+/**
+ * Compact storage for the complete register state of the CPU
+ * <p>
+ *     Every register is a primitive field, so instructions read and write the CPU state without going through
+ *     {@link Register} objects. This keeps the interpreter loop free of indirections and lets the JIT hold the registers
+ *     in machine registers while executing. The {@link Register} objects of the CPU are views of this state that are
+ *     used by the GUI and the tests.
+ * </p>
+ * <p>
+ *     The negative and zero flags are evaluated lazily. Instructions that update both from the same result only store that
+ *     result with {@link #setNegativeZero(byte)}, and the flags are derived from it when the status is read.
+ * </p>
+ */
+public class RegisterFile
+{
+    private byte accumulator;
+    private byte indexX;
+    private byte indexY;
+    private byte stackPointer;
+    private byte status;
+    private int programCounter;
+
+    private static final int ADDRESS_MASK = 0xFFFF;
+    private static final byte NEGATIVE_MASK = ProcessorFlag.NEGATIVE.getMask();
+    private static final byte ZERO_MASK = ProcessorFlag.ZERO.getMask();
+    private static final byte NEGATIVE_ZERO_MASK = (byte) (NEGATIVE_MASK | ZERO_MASK);
+
+    /**
+     * Result the negative and zero flags are derived from while {@link #nzPending} is set,
+     * the N and Z bits stored in {@link #status} are stale during that time
+     */
+    private byte nzResult;
+    private boolean nzPending;
+
+    public byte getAccumulator() {
+	return accumulator;
+    }
+
+    public void setAccumulator(final byte accumulator) {
+	this.accumulator = accumulator;
+    }
+
+    public byte getIndexX() {
+	return indexX;
+    }
+
+    public void setIndexX(final byte indexX) {
+	this.indexX = indexX;
+    }
+
+    public byte getIndexY() {
+	return indexY;
+    }
+
+    public void setIndexY(final byte indexY) {
+	this.indexY = indexY;
+    }
+
+    public byte getStackPointer() {
+	return stackPointer;
+    }
+
+    public void setStackPointer(final byte stackPointer) {
+	this.stackPointer = stackPointer;
+    }
+
+    public byte getStatus() {
+	if (!nzPending) {
+	    return status;
+	}
+	byte negative = (byte) (nzResult & NEGATIVE_MASK);
+	byte zero = nzResult == 0 ? ZERO_MASK : 0;
+	return (byte) ((status & ~NEGATIVE_ZERO_MASK) | negative | zero);
+    }
+
+    public void setStatus(final byte status) {
+	this.status = status;
+	nzPending = false;
+    }
+
+    /**
+     * Updates the negative and zero flags from the result of an operation without touching the status byte.
+     * The flags are materialised once something reads them.
+     * @param result value the flags should reflect
+     */
+    public void setNegativeZero(final byte result) {
+	nzResult = result;
+	nzPending = true;
+    }
+
+    public int getProgramCounter() {
+	return programCounter;
+    }
+
+    /**
+     * @param programCounter new value, wrapped around to 16 bits like the addresses of the memory
+     */
+    public void setProgramCounter(final int programCounter) {
+	this.programCounter = programCounter & ADDRESS_MASK;
+    }
+
+    public boolean getFlag(final ProcessorFlag processorFlag) {
+	return (getStatus() & processorFlag.getMask()) != 0;
+    }
+
+    /**
+     * Sets the value of a flag in the processor status register.
+     * @param processorFlag The flag to set.
+     * @param value The value to set the flag to.
+     */
+    public void setFlag(final ProcessorFlag processorFlag, final boolean value) {
+	if (nzPending && (processorFlag.getMask() & NEGATIVE_ZERO_MASK) != 0) {
+	    // Materialise both lazy flags first so the one not being set keeps its value
+	    status = getStatus();
+	    nzPending = false;
+	}
+	// 1   : 00000001
+	// mask: 00001000 (if getBitPosition returned 3 (DECIMAL_MODE))
+	if (value) {
+	    // Value: X X X X X X X X
+	    // Mask:  0 0 0 0 1 0 0 0
+	    // AFTER: X X X X 1 X X X
+	    status |= processorFlag.getMask();
+	} else {
+	    // Value: X X X X X X X X
+	    // Mask:  1 1 1 1 0 1 1 1 (since mask is inverted)
+	    // AFTER: X X X X 0 X X X
+	    status &= (byte) ~processorFlag.getMask();
+	}
+    }
+
+    /**
+     * Reads one of the 8 bit registers selected by type, used by instructions that work on different registers
+     * e.g. LDA, LDX and LDY
+     * @param registerType register to read
+     * @return value of the register
+     */
+    public byte get(final RegisterType registerType) {
+	return switch (registerType) {
+	    case ACCUMULATOR -> accumulator;
+	    case INDEX_X -> indexX;
+	    case INDEX_Y -> indexY;
+	    case STACK_POINTER -> stackPointer;
+	};
+    }
+
+    /**
+     * Writes one of the 8 bit registers selected by type
+     * @param registerType register to write
+     * @param value new value of the register
+     */
+    public void set(final RegisterType registerType, final byte value) {
+	switch (registerType) {
+	    case ACCUMULATOR -> accumulator = value;
+	    case INDEX_X -> indexX = value;
+	    case INDEX_Y -> indexY = value;
+	    case STACK_POINTER -> stackPointer = value;
+	}
+    }
+}
@@ -0,0 +1,40 @@
+package se.liu.ferpe211.api.register;
+
+/**
+ * Immutable copy of the values in a {@link RegisterFile}
+ * @param programCounter value of the program counter
+ * @param accumulator value of the accumulator
+ * @param indexX value of index register X
+ * @param indexY value of index register Y
+ * @param stackPointer value of the stack pointer
+ * @param status value of the processor status register
+ */
+public record RegisterState(int programCounter, byte accumulator, byte indexX, byte indexY, byte stackPointer, byte status)
+{
+    /**
+     * Register values right after {@link se.liu.ferpe211.api.CPU#reset()}
+     */
+    public static final RegisterState RESET = new RegisterState(0x0000, (byte) 0, (byte) 0, (byte) 0, (byte) 0xFF, (byte) 0);
+
+    /**
+     * @param registers register file to copy
+     * @return the current values of the register file
+     */
+    public static RegisterState capture(final RegisterFile registers) {
+	return new RegisterState(registers.getProgramCounter(), registers.getAccumulator(), registers.getIndexX(),
+				 registers.getIndexY(), registers.getStackPointer(), registers.getStatus());
+    }
+
+    /**
+     * Writes these values to a register file
+     * @param registers register file to overwrite
+     */
+    public void applyTo(final RegisterFile registers) {
+	registers.setProgramCounter(programCounter);
+	registers.setAccumulator(accumulator);
+	registers.setIndexX(indexX);
+	registers.setIndexY(indexY);
+	registers.setStackPointer(stackPointer);
+	registers.setStatus(status);
+    }
+}
@@ -0,0 +1,13 @@
+package se.liu.ferpe211.api.register;
+
+/**
+ * Enum for the 8 bit registers that instructions can read from and write to
+ * @see RegisterFile#get(RegisterType) for their use
+ */
+public enum RegisterType
+{
+    ACCUMULATOR,
+    INDEX_X,
+    INDEX_Y,
+    STACK_POINTER
+}
@@ -0,0 +1,24 @@
+package se.liu.ferpe211.api.state;
+
+import se.liu.ferpe211.api.register.RegisterState;
+
+import java.util.Map;
+
+/**
+ * Complete state of a machine at one point in time, taken with {@link se.liu.ferpe211.api.CPU#snapshot()}
+ * <p>
+ *     The memory is a copy of the whole address space as seen by {@link se.liu.ferpe211.api.memory.RAM#getData()}, so it also
+ *     holds the contents of device pages. Devices that keep state besides their contents save it themselves, see
+ *     {@link se.liu.ferpe211.api.memory.MemoryDevice#saveState()}. The arrays are shared rather than copied and must not be
+ *     modified, which keeps taking and restoring a snapshot down to copying the memory once.
+ * </p>
+ * @param registers values of the registers
+ * @param instructionCount amount of instructions executed since the last reset
+ * @param cycleCount amount of cycles executed since the last reset
+ * @param memory contents of the whole memory
+ * @param deviceStates saved state of every device that has any, by the first address the device is mapped at
+ */
+public record MachineState(RegisterState registers, long instructionCount, long cycleCount, byte[] memory,
+			   Map<Integer, byte[]> deviceStates)
+{
+}
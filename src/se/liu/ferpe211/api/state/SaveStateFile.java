@@ -0,0 +1,176 @@
+package se.liu.ferpe211.api.state;
+
+import se.liu.ferpe211.api.register.RegisterState;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Reads and writes {@link MachineState}s as binary save state files
+ * <p>
+ *     A file starts with a header of the magic number {@code JCPS}, the format version, flags and the length of the payload.
+ *     The payload holds the registers, the instruction and cycle counts, the memory and the device states, all big endian.
+ *     If the {@link #COMPRESSED} flag is set the payload is deflated. The header and the payload are written with a single
+ *     gathering write and read with a single bulk read of the channel.
+ * </p>
+ * <p>
+ *     Files of other versions are rejected, the version is to be increased whenever the layout of the payload changes.
+ * </p>
+ */
+public final class SaveStateFile
+{
+    private static final int MAGIC = 0x4A435053;
+    private static final short VERSION = 1;
+    private static final short COMPRESSED = 0x0001;
+    private static final int HEADER_SIZE = Integer.BYTES + Short.BYTES + Short.BYTES + Integer.BYTES;
+    private static final int EIGHT_BIT_REGISTERS = 5;
+    private static final int REGISTERS_SIZE = Short.BYTES + EIGHT_BIT_REGISTERS * Byte.BYTES;
+    private static final int ADDRESS_MASK = 0xFFFF;
+    private static final int MIN_DEFLATE_BUFFER = 1024;
+
+    private SaveStateFile() {}
+
+    /**
+     * @param state state to save
+     * @param file file to write, replaced if it exists
+     * @param compress true to deflate the payload, which shrinks mostly empty memory a lot at the cost of some time
+     * @throws IOException if the file can not be written
+     */
+    public static void write(final MachineState state, final Path file, final boolean compress) throws IOException {
+	ByteBuffer payload = encode(state);
+	int length = payload.remaining();
+	if (compress) {
+	    payload = deflate(payload);
+	}
+	ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+	header.putInt(MAGIC).putShort(VERSION).putShort(compress ? COMPRESSED : 0).putInt(length).flip();
+
+	try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						    StandardOpenOption.TRUNCATE_EXISTING))
+	{
+	    ByteBuffer[] buffers = { header, payload };
+	    while (payload.hasRemaining()) {
+		channel.write(buffers);
+	    }
+	}
+    }
+
+    /**
+     * @param file file written by {@link #write(MachineState, Path, boolean)}
+     * @return the saved state
+     * @throws IOException if the file can not be read, is not a save state or is of another version
+     */
+    public static MachineState read(final Path file) throws IOException {
+	ByteBuffer contents;
+	try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+	    contents = ByteBuffer.allocate((int) Math.min(channel.size(), Integer.MAX_VALUE));
+	    while (contents.hasRemaining()) {
+		if (channel.read(contents) < 0) {
+		    break;
+		}
+	    }
+	}
+	contents.flip();
+
+	try {
+	    if (contents.remaining() < HEADER_SIZE || contents.getInt() != MAGIC) {
+		throw new IOException(file + " is not a save state");
+	    }
+	    short version = contents.getShort();
+	    if (version != VERSION) {
+		throw new IOException(file + " is a save state of unsupported version " + version);
+	    }
+	    short flags = contents.getShort();
+	    int length = contents.getInt();
+	    ByteBuffer payload = (flags & COMPRESSED) != 0 ? inflate(contents, length) : contents;
+	    return decode(payload);
+	} catch (BufferUnderflowException | NegativeArraySizeException | IllegalArgumentException | DataFormatException e) {
+	    throw new IOException(file + " is a damaged save state", e);
+	}
+    }
+
+    private static ByteBuffer encode(final MachineState state) {
+	int size = REGISTERS_SIZE + Long.BYTES + Long.BYTES + Integer.BYTES + state.memory().length + Integer.BYTES;
+	for (byte[] deviceState : state.deviceStates().values()) {
+	    size += Integer.BYTES + Integer.BYTES + deviceState.length;
+	}
+	ByteBuffer buffer = ByteBuffer.allocate(size);
+	RegisterState registers = state.registers();
+	buffer.putShort((short) registers.programCounter()).put(registers.accumulator()).put(registers.indexX())
+		.put(registers.indexY()).put(registers.stackPointer()).put(registers.status());
+	buffer.putLong(state.instructionCount()).putLong(state.cycleCount());
+	buffer.putInt(state.memory().length).put(state.memory());
+	buffer.putInt(state.deviceStates().size());
+	for (Map.Entry<Integer, byte[]> entry : state.deviceStates().entrySet()) {
+	    buffer.putInt(entry.getKey()).putInt(entry.getValue().length).put(entry.getValue());
+	}
+	return buffer.flip();
+    }
+
+    private static MachineState decode(final ByteBuffer buffer) {
+	RegisterState registers = new RegisterState(buffer.getShort() & ADDRESS_MASK, buffer.get(), buffer.get(), buffer.get(),
+						    buffer.get(), buffer.get());
+	long instructionCount = buffer.getLong();
+	long cycleCount = buffer.getLong();
+	byte[] memory = new byte[buffer.getInt()];
+	buffer.get(memory);
+	int deviceCount = buffer.getInt();
+	Map<Integer, byte[]> deviceStates = new HashMap<>();
+	for (int i = 0; i < deviceCount; i++) {
+	    int address = buffer.getInt();
+	    byte[] deviceState = new byte[buffer.getInt()];
+	    buffer.get(deviceState);
+	    deviceStates.put(address, deviceState);
+	}
+	return new MachineState(registers, instructionCount, cycleCount, memory, Map.copyOf(deviceStates));
+    }
+
+    private static ByteBuffer deflate(final ByteBuffer payload) {
+	Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+	try {
+	    deflater.setInput(payload);
+	    deflater.finish();
+	    ByteBuffer compressed = ByteBuffer.allocate(Math.max(payload.remaining() / 2, MIN_DEFLATE_BUFFER));
+	    while (!deflater.finished()) {
+		if (!compressed.hasRemaining()) {
+		    compressed = ByteBuffer.allocate(compressed.capacity() * 2).put(compressed.flip());
+		}
+		deflater.deflate(compressed);
+	    }
+	    return compressed.flip();
+	} finally {
+	    deflater.end();
+	}
+    }
+
+    private static ByteBuffer inflate(final ByteBuffer compressed, final int length) throws DataFormatException {
+	Inflater inflater = new Inflater();
+	try {
+	    inflater.setInput(compressed);
+	    ByteBuffer payload = ByteBuffer.allocate(length);
+	    while (payload.hasRemaining() && !inflater.finished()) {
+		long read = inflater.getBytesRead();
+		int inflated = inflater.inflate(payload);
+		if (inflater.needsDictionary()) {
+		    throw new DataFormatException("Payload needs a preset dictionary");
+		}
+		// Anything else that neither reads nor inflates a byte would do the same forever
+		if (inflated == 0 && inflater.getBytesRead() == read) {
+		    throw new DataFormatException(inflater.needsInput() ? "Payload ends early" : "Payload can not be inflated");
+		}
+	    }
+	    return payload.flip();
+	} finally {
+	    inflater.end();
+	}
+    }
+}
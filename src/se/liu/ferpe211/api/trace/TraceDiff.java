@@ -0,0 +1,98 @@
+package se.liu.ferpe211.api.trace;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.stream.IntStream;
+
+/**
+ * Finds the first instruction where two traces of the same program differ, e.g. traces recorded with two execution engines,
+ * two builds of the emulator or two input images
+ * <p>
+ *     The traces are aligned by instruction count, so they may start at different instructions as long as they share some.
+ *     The shared records are compared as raw bytes in windows of {@link #WINDOW_RECORDS} records, which are mapped on their
+ *     own and compared on every core at once, a wave of windows at a time in trace order. Only the windows of the current
+ *     wave are mapped and the operating system drops pages of earlier ones as it needs the memory, so traces far larger
+ *     than the memory of the machine are compared at the speed the disk reads them.
+ * </p>
+ */
+public final class TraceDiff
+{
+    /**
+     * Amount of records compared as one unit of parallel work
+     */
+    static final int WINDOW_RECORDS = TraceRecorder.CHUNK_RECORDS;
+
+    private static final long NO_DIVERGENCE = -1;
+
+    /**
+     * First instruction where two traces differ
+     * @param instruction instruction count of the first record that differs
+     * @param firstRecord index of the record in the first trace, its amount of records if it ended before the instruction
+     * @param secondRecord index of the record in the second trace, its amount of records if it ended before the instruction
+     */
+    public record Divergence(long instruction, long firstRecord, long secondRecord)
+    {
+    }
+
+    private TraceDiff() {}
+
+    /**
+     * @param first trace to compare
+     * @param second trace to compare with
+     * @return the first instruction where the traces differ or where one of them ends before the other, null if they hold
+     * the same records for every instruction they share and end at the same instruction
+     * @throws IOException if the records can not be read
+     * @throws IllegalArgumentException if the traces share no instructions
+     */
+    public static Divergence findDivergence(final TraceReader first, final TraceReader second) throws IOException {
+	long start = Math.max(first.getFirstInstruction(), second.getFirstInstruction());
+	long firstEnd = first.getFirstInstruction() + first.getCount();
+	long secondEnd = second.getFirstInstruction() + second.getCount();
+	long end = Math.min(firstEnd, secondEnd);
+	if (start >= end) {
+	    throw new IllegalArgumentException("The traces share no instructions");
+	}
+
+	int parallelism = Runtime.getRuntime().availableProcessors();
+	long waveRecords = (long) parallelism * WINDOW_RECORDS;
+	for (long wave = start; wave < end; wave += waveRecords) {
+	    long waveStart = wave;
+	    int windows = (int) Math.min(parallelism, (end - wave + WINDOW_RECORDS - 1) / WINDOW_RECORDS);
+	    long[] divergences;
+	    try {
+		divergences = IntStream.range(0, windows).parallel()
+			.mapToLong(window -> compareWindow(first, second, waveStart + (long) window * WINDOW_RECORDS, end))
+			.toArray();
+	    } catch (UncheckedIOException e) {
+		throw e.getCause();
+	    }
+	    // Windows are in trace order, so the first one that differs holds the first divergence
+	    for (long instruction : divergences) {
+		if (instruction != NO_DIVERGENCE) {
+		    return divergence(first, second, instruction);
+		}
+	    }
+	}
+	return firstEnd == secondEnd ? null : divergence(first, second, end);
+    }
+
+    /**
+     * @return the instruction of the first record in the window that differs, {@link #NO_DIVERGENCE} if there is none
+     */
+    private static long compareWindow(final TraceReader first, final TraceReader second, final long from, final long end) {
+	int records = (int) Math.min(WINDOW_RECORDS, end - from);
+	try {
+	    ByteBuffer firstRecords = first.mapRecords(from - first.getFirstInstruction(), records);
+	    ByteBuffer secondRecords = second.mapRecords(from - second.getFirstInstruction(), records);
+	    int mismatch = firstRecords.mismatch(secondRecords);
+	    return mismatch < 0 ? NO_DIVERGENCE : from + mismatch / TraceRecorder.RECORD_SIZE;
+	} catch (IOException e) {
+	    throw new UncheckedIOException("Could not map records of the traces", e);
+	}
+    }
+
+    private static Divergence divergence(final TraceReader first, final TraceReader second, final long instruction) {
+	return new Divergence(instruction, instruction - first.getFirstInstruction(), instruction - second.getFirstInstruction());
+    }
+}
@@ -0,0 +1,271 @@
+package se.liu.ferpe211.api.trace;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Index of a trace for finding records by what their instruction did without reading the whole trace
+ * <p>
+ *     The index is built while the trace is recorded, see {@link TraceRecorder#create(se.liu.ferpe211.api.CPU, Path, Path)}.
+ *     It holds a posting list of record indices for every {@link Posting} and key: the records executed at every address,
+ *     the records that read or wrote every address and the records whose instruction changed a register to every value.
+ *     Reads are the operands read from memory by loads, arithmetic, logic and compares, writes are every byte written to the
+ *     memory including the stack.
+ * </p>
+ * <p>
+ *     The file starts with a header of the magic number {@code JCPI}, the format version and the amount of postings, which
+ *     is -1 until the recording is closed. It is followed by a directory with the position of the postings of every key,
+ *     one entry per key whether it has postings or not, and the postings of all keys one after another as record indices,
+ *     ascending per key.
+ * </p>
+ * <p>
+ *     A query reads the directory entry of its key and finds the record in the postings of the key by binary search, so it
+ *     reads a few pages of the file no matter how long the trace is. The postings are mapped in windows as they are first
+ *     used. An index is not thread safe, threads that query the same index each open their own.
+ * </p>
+ */
+public class TraceIndex implements Closeable
+{
+    /**
+     * Kinds of postings, every kind has its own keys
+     */
+    public enum Posting
+    {
+	/**
+	 * Records executed at an address, keyed by the program counter
+	 */
+	EXECUTED(ADDRESSES),
+
+	/**
+	 * Records whose instruction read its operand from an address, keyed by the address
+	 */
+	READ(ADDRESSES),
+
+	/**
+	 * Records whose instruction wrote to an address, keyed by the address
+	 */
+	WRITTEN(ADDRESSES),
+
+	/**
+	 * Records whose instruction changed the accumulator, keyed by the new value
+	 */
+	ACCUMULATOR(VALUES),
+
+	/**
+	 * Records whose instruction changed index register X, keyed by the new value
+	 */
+	INDEX_X(VALUES),
+
+	/**
+	 * Records whose instruction changed index register Y, keyed by the new value
+	 */
+	INDEX_Y(VALUES);
+
+	private final int keys;
+
+	Posting(final int keys) {
+	    this.keys = keys;
+	}
+
+	/**
+	 * @return the amount of keys of the posting, keys go from 0 up to but not including it
+	 */
+	public int getKeys() {
+	    return keys;
+	}
+    }
+
+    /**
+     * Suffix of the index file of a trace, by convention it is kept next to the trace
+     */
+    public static final String FILE_SUFFIX = ".idx";
+
+    static final int MAGIC = 0x4A435049;
+    static final short VERSION = 2;
+    static final int HEADER_SIZE = 16;
+    static final int COUNT_OFFSET = 8;
+    static final long INCOMPLETE = -1;
+
+    private static final int ADDRESSES = 0x10000;
+    private static final int VALUES = 0x100;
+    private static final int KEYS_PER_POSTING = ADDRESSES;
+    static final int KEYS = Posting.values().length * KEYS_PER_POSTING;
+
+    static final long DIRECTORY_POSITION = HEADER_SIZE;
+    static final long POSTINGS_POSITION = DIRECTORY_POSITION + (KEYS + 1L) * Long.BYTES;
+
+    /**
+     * Postings per mapped window of the postings, windows are aligned so a posting never crosses two
+     */
+    static final int WINDOW_POSTINGS = 1 << 27;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer directory;
+    private final MappedByteBuffer[] windows;
+
+    private TraceIndex(final FileChannel channel, final MappedByteBuffer directory, final long postingCount) {
+	this.channel = channel;
+	this.directory = directory;
+	this.windows = new MappedByteBuffer[(int) ((postingCount + WINDOW_POSTINGS - 1) / WINDOW_POSTINGS)];
+    }
+
+    /**
+     * @param file index written while recording a trace
+     * @return the index, which must be closed to release the file
+     * @throws IOException if the file can not be read, is not a complete index or is of another version
+     */
+    public static TraceIndex open(final Path file) throws IOException {
+	FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+	try {
+	    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+	    while (header.hasRemaining()) {
+		if (channel.read(header, header.position()) < 0) {
+		    break;
+		}
+	    }
+	    header.flip();
+	    if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+		throw new IOException(file + " is not a trace index");
+	    }
+	    short version = header.getShort();
+	    if (version != VERSION) {
+		throw new IOException(file + " is a trace index of unsupported version " + version);
+	    }
+	    long postingCount = header.getLong(COUNT_OFFSET);
+	    if (postingCount == INCOMPLETE) {
+		throw new IOException(file + " is an incomplete trace index, the recording was not closed");
+	    }
+	    if (postingCount < 0 || POSTINGS_POSITION + postingCount * Long.BYTES > channel.size()) {
+		throw new IOException(file + " is a damaged trace index");
+	    }
+	    MappedByteBuffer directory = channel.map(FileChannel.MapMode.READ_ONLY, DIRECTORY_POSITION,
+						     POSTINGS_POSITION - DIRECTORY_POSITION);
+	    return new TraceIndex(channel, directory, postingCount);
+	} catch (IOException e) {
+	    channel.close();
+	    throw e;
+	}
+    }
+
+    /**
+     * @throws IllegalArgumentException if the key is not an address for postings of addresses or a byte for postings of
+     * values
+     */
+    static int key(final Posting posting, final int key) {
+	if (key < 0 || key >= posting.getKeys()) {
+	    throw new IllegalArgumentException(String.format("%X is not a key of %s postings, which go up to %X", key, posting,
+							     posting.getKeys() - 1));
+	}
+	return posting.ordinal() * KEYS_PER_POSTING + key;
+    }
+
+    /**
+     * @param posting kind of posting
+     * @param key address or value to look up
+     * @return the amount of records with the posting
+     * @throws IllegalArgumentException if the key is out of the range of the posting, see {@link Posting#getKeys()}
+     */
+    public long count(final Posting posting, final int key) {
+	int packed = key(posting, key);
+	return start(packed + 1) - start(packed);
+    }
+
+    /**
+     * @param posting kind of posting
+     * @param key address or value to look up
+     * @param from lowest record to consider
+     * @return the first record from the given one with the posting, -1 if there is none
+     * @throws IllegalArgumentException if the key is out of the range of the posting, see {@link Posting#getKeys()}
+     */
+    public long findFirst(final Posting posting, final int key, final long from) {
+	int packed = key(posting, key);
+	long end = start(packed + 1);
+	long index = lowerBound(start(packed), end, from);
+	return index < end ? posting(index) : -1;
+    }
+
+    /**
+     * @param posting kind of posting
+     * @param key address or value to look up
+     * @param before record to look before, the whole trace is searched for {@link Long#MAX_VALUE}
+     * @return the last record before the given one with the posting, -1 if there is none
+     * @throws IllegalArgumentException if the key is out of the range of the posting, see {@link Posting#getKeys()}
+     */
+    public long findLast(final Posting posting, final int key, final long before) {
+	int packed = key(posting, key);
+	long start = start(packed);
+	long index = lowerBound(start, start(packed + 1), before);
+	return index > start ? posting(index - 1) : -1;
+    }
+
+    /**
+     * @param posting kind of posting
+     * @param key address or value to look up
+     * @return every record with the posting in ascending order, use {@link #findFirst(Posting, int, long)} to go through
+     * postings one at a time instead
+     * @throws IllegalArgumentException if the key is out of the range of the posting, see {@link Posting#getKeys()}
+     */
+    public long[] findAll(final Posting posting, final int key) {
+	int packed = key(posting, key);
+	long start = start(packed);
+	long[] records = new long[Math.toIntExact(start(packed + 1) - start)];
+	for (int i = 0; i < records.length; i++) {
+	    records[i] = posting(start + i);
+	}
+	return records;
+    }
+
+    /**
+     * @return the index of the first posting of a key, which is also the end of the postings of the key before it
+     */
+    private long start(final int packedKey) {
+	return directory.getLong(packedKey * Long.BYTES);
+    }
+
+    /**
+     * @return the index of the first posting in the range whose record is at or after the given one, the end of the range
+     * if there is none
+     */
+    private long lowerBound(final long start, final long end, final long record) {
+	long low = start;
+	long high = end;
+	while (low < high) {
+	    long middle = (low + high) >>> 1;
+	    if (posting(middle) < record) {
+		low = middle + 1;
+	    } else {
+		high = middle;
+	    }
+	}
+	return low;
+    }
+
+    private long posting(final long index) {
+	int window = (int) (index / WINDOW_POSTINGS);
+	if (windows[window] == null) {
+	    long start = (long) window * WINDOW_POSTINGS;
+	    long postings = Math.min(WINDOW_POSTINGS, postingCount() - start);
+	    try {
+		windows[window] = channel.map(FileChannel.MapMode.READ_ONLY, POSTINGS_POSITION + start * Long.BYTES,
+					      postings * Long.BYTES);
+	    } catch (IOException e) {
+		throw new UncheckedIOException("Could not map postings of the trace index", e);
+	    }
+	}
+	return windows[window].getLong((int) (index % WINDOW_POSTINGS) * Long.BYTES);
+    }
+
+    private long postingCount() {
+	return start(KEYS);
+    }
+
+    @Override public void close() throws IOException {
+	channel.close();
+    }
+}
@@ -0,0 +1,315 @@
+package se.liu.ferpe211.api.trace;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Builds the index of a trace while it is recorded, see {@link TraceIndex} for the layout and the queries
+ * <p>
+ *     Postings are collected as packed longs of their key and record in an array. When it is full the array is handed to a
+ *     background thread, which sorts it by key with a counting sort and appends it as a segment to a temporary file next to
+ *     the index, while the recording continues in a second array. Sorting is stable and postings are added in record order,
+ *     so the records of every key in a segment are ascending. When the index is closed the segments are merged in record
+ *     order into one list of postings per key and the temporary file is deleted.
+ * </p>
+ */
+final class TraceIndexWriter implements Closeable
+{
+    /**
+     * Amount of postings in a full segment
+     */
+    static final int SEGMENT_POSTINGS = 1 << 21;
+
+    /**
+     * Suffix of the temporary file the segments are written to until they are merged
+     */
+    private static final String SEGMENTS_SUFFIX = ".segments";
+    private static final int DIRECTORY_ENTRY_SIZE = 3 * Integer.BYTES;
+    private static final int RECORD_BITS = 40;
+    private static final long RECORD_MASK = (1L << RECORD_BITS) - 1;
+    private static final int BYTE_MASK = 0xFF;
+
+    /**
+     * Thread shared by every index that sorts and writes the full segments, it is a daemon thread so it never keeps the JVM
+     * alive
+     */
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(runnable -> {
+	Thread thread = new Thread(runnable, "Trace index writer");
+	thread.setDaemon(true);
+	return thread;
+    });
+
+    /**
+     * Position and contents of a segment in the temporary file, a directory of the keys in it followed by their records
+     * @param offset position of the segment
+     * @param keyCount amount of keys in the directory
+     * @param postingCount amount of postings
+     */
+    private record Segment(long offset, int keyCount, int postingCount)
+    {
+    }
+
+    private final FileChannel channel;
+    private final FileChannel segmentChannel;
+    private long[] postings = new long[SEGMENT_POSTINGS];
+    private long[] spare = new long[SEGMENT_POSTINGS];
+    private int size = 0;
+    private Future<?> writing = CompletableFuture.completedFuture(null);
+
+    /**
+     * State of the writer thread, the segments written so far and the buffers used to sort them
+     */
+    private final List<Segment> segments = new ArrayList<>();
+    private long position = 0;
+    private final int[] starts = new int[TraceIndex.KEYS + 1];
+    private ByteBuffer segmentBuffer = null;
+
+    /**
+     * Registers of the last recorded instruction, to find the instructions that change them
+     */
+    private long lastRecord = -1;
+    private byte lastAccumulator;
+    private byte lastIndexX;
+    private byte lastIndexY;
+
+    private TraceIndexWriter(final FileChannel channel, final FileChannel segmentChannel) throws IOException {
+	this.channel = channel;
+	this.segmentChannel = segmentChannel;
+	ByteBuffer header = ByteBuffer.allocate(TraceIndex.HEADER_SIZE);
+	header.putInt(TraceIndex.MAGIC).putShort(TraceIndex.VERSION).putShort((short) 0).putLong(TraceIndex.INCOMPLETE).flip();
+	while (header.hasRemaining()) {
+	    channel.write(header, header.position());
+	}
+    }
+
+    static TraceIndexWriter create(final Path file) throws IOException {
+	FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+					       StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+	FileChannel segmentChannel = null;
+	try {
+	    segmentChannel = FileChannel.open(Path.of(file + SEGMENTS_SUFFIX), StandardOpenOption.CREATE,
+					      StandardOpenOption.READ, StandardOpenOption.WRITE,
+					      StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.DELETE_ON_CLOSE);
+	    return new TraceIndexWriter(channel, segmentChannel);
+	} catch (IOException e) {
+	    if (segmentChannel != null) {
+		segmentChannel.close();
+	    }
+	    channel.close();
+	    throw e;
+	}
+    }
+
+    /**
+     * Indexes the instruction of a record, called before it is executed
+     * @param record index of the record in the trace
+     * @param programCounter address of the instruction
+     * @param readAddress address the instruction reads its operand from, -1 if none
+     */
+    void instruction(final long record, final int programCounter, final int readAddress, final byte accumulator,
+		     final byte indexX, final byte indexY)
+    {
+	registersBefore(record, accumulator, indexX, indexY);
+	add(TraceIndex.Posting.EXECUTED, programCounter, record);
+	if (readAddress >= 0) {
+	    add(TraceIndex.Posting.READ, readAddress, record);
+	}
+    }
+
+    /**
+     * Indexes a write of the instruction of a record
+     */
+    void write(final long record, final int address) {
+	add(TraceIndex.Posting.WRITTEN, address, record);
+    }
+
+    /**
+     * Indexes the changes of the registers made by the instruction before a record, or by the last one when closing
+     * @param record record whose registers are given, the first record after the last recorded instruction when closing
+     */
+    void registersBefore(final long record, final byte accumulator, final byte indexX, final byte indexY) {
+	if (lastRecord >= 0 && lastRecord == record - 1) {
+	    if (accumulator != lastAccumulator) {
+		add(TraceIndex.Posting.ACCUMULATOR, accumulator & BYTE_MASK, lastRecord);
+	    }
+	    if (indexX != lastIndexX) {
+		add(TraceIndex.Posting.INDEX_X, indexX & BYTE_MASK, lastRecord);
+	    }
+	    if (indexY != lastIndexY) {
+		add(TraceIndex.Posting.INDEX_Y, indexY & BYTE_MASK, lastRecord);
+	    }
+	}
+	lastRecord = record;
+	lastAccumulator = accumulator;
+	lastIndexX = indexX;
+	lastIndexY = indexY;
+    }
+
+    private void add(final TraceIndex.Posting posting, final int key, final long record) {
+	postings[size++] = (long) TraceIndex.key(posting, key) << RECORD_BITS | record;
+	if (size == postings.length) {
+	    flush();
+	}
+    }
+
+    /**
+     * Hands the collected postings to the writer thread, waiting for the previous segment if it is not written yet
+     */
+    private void flush() {
+	if (size == 0) {
+	    return;
+	}
+	waitForWriter();
+	long[] full = postings;
+	int count = size;
+	postings = spare;
+	spare = full;
+	size = 0;
+	writing = WRITER.submit(() -> {
+	    writeSegment(full, count);
+	    return null;
+	});
+    }
+
+    private void waitForWriter() {
+	try {
+	    writing.get();
+	} catch (ExecutionException e) {
+	    throw new UncheckedIOException("Could not write the trace index", new IOException(e.getCause()));
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new UncheckedIOException("Interrupted while writing the trace index", new InterruptedIOException());
+	}
+    }
+
+    /**
+     * Sorts postings by key and appends them as a segment to the temporary file, runs on the writer thread
+     */
+    private void writeSegment(final long[] postings, final int count) throws IOException {
+	Arrays.fill(starts, 0);
+	for (int i = 0; i < count; i++) {
+	    starts[(int) (postings[i] >>> RECORD_BITS) + 1]++;
+	}
+	int keyCount = 0;
+	for (int key = 1; key <= TraceIndex.KEYS; key++) {
+	    if (starts[key] != 0) {
+		keyCount++;
+	    }
+	    starts[key] += starts[key - 1];
+	}
+
+	int postingsOffset = keyCount * DIRECTORY_ENTRY_SIZE;
+	int length = postingsOffset + count * Long.BYTES;
+	if (segmentBuffer == null || segmentBuffer.capacity() < length) {
+	    segmentBuffer = ByteBuffer.allocate(length);
+	}
+	ByteBuffer buffer = segmentBuffer.clear().limit(length);
+	for (int key = 0; key < TraceIndex.KEYS; key++) {
+	    int start = starts[key];
+	    int end = starts[key + 1];
+	    if (end != start) {
+		buffer.putInt(key).putInt(start).putInt(end - start);
+	    }
+	}
+	for (int i = 0; i < count; i++) {
+	    int key = (int) (postings[i] >>> RECORD_BITS);
+	    buffer.putLong(postingsOffset + starts[key]++ * Long.BYTES, postings[i] & RECORD_MASK);
+	}
+
+	buffer.position(0);
+	while (buffer.hasRemaining()) {
+	    segmentChannel.write(buffer, position + buffer.position());
+	}
+	segments.add(new Segment(position, keyCount, count));
+	position += length;
+    }
+
+    /**
+     * Writes the remaining postings and merges the segments into the index, which can be queried after this
+     * @throws IOException if the index can not be written
+     */
+    @Override public void close() throws IOException {
+	try (channel; segmentChannel) {
+	    flush();
+	    waitForWriter();
+	    long postingCount = merge();
+	    ByteBuffer count = ByteBuffer.allocate(Long.BYTES).putLong(0, postingCount);
+	    channel.write(count, TraceIndex.COUNT_OFFSET);
+	} catch (UncheckedIOException e) {
+	    throw e.getCause();
+	}
+    }
+
+    /**
+     * Writes the directory of the index and copies the records of every segment after the records of the key that earlier
+     * segments hold
+     * @return the amount of postings in the index
+     */
+    private long merge() throws IOException {
+	long[] cursors = new long[TraceIndex.KEYS + 1];
+	for (Segment segment : segments) {
+	    ByteBuffer directory = segmentChannel.map(FileChannel.MapMode.READ_ONLY, segment.offset(),
+						      (long) segment.keyCount() * DIRECTORY_ENTRY_SIZE);
+	    for (int i = 0; i < segment.keyCount(); i++) {
+		int key = directory.getInt();
+		directory.getInt();
+		cursors[key + 1] += directory.getInt();
+	    }
+	}
+	for (int key = 1; key <= TraceIndex.KEYS; key++) {
+	    cursors[key] += cursors[key - 1];
+	}
+	long postingCount = cursors[TraceIndex.KEYS];
+
+	ByteBuffer directory = ByteBuffer.allocate(cursors.length * Long.BYTES);
+	directory.asLongBuffer().put(cursors);
+	while (directory.hasRemaining()) {
+	    channel.write(directory, TraceIndex.DIRECTORY_POSITION + directory.position());
+	}
+
+	MappedByteBuffer[] windows = new MappedByteBuffer[(int) ((postingCount + TraceIndex.WINDOW_POSTINGS - 1) /
+								TraceIndex.WINDOW_POSTINGS)];
+	for (Segment segment : segments) {
+	    int postingsOffset = segment.keyCount() * DIRECTORY_ENTRY_SIZE;
+	    ByteBuffer buffer = segmentChannel.map(FileChannel.MapMode.READ_ONLY, segment.offset(),
+						   postingsOffset + (long) segment.postingCount() * Long.BYTES);
+	    for (int i = 0; i < segment.keyCount(); i++) {
+		int key = buffer.getInt(i * DIRECTORY_ENTRY_SIZE);
+		int start = buffer.getInt(i * DIRECTORY_ENTRY_SIZE + Integer.BYTES);
+		int count = buffer.getInt(i * DIRECTORY_ENTRY_SIZE + 2 * Integer.BYTES);
+		for (int posting = start; posting < start + count; posting++) {
+		    long index = cursors[key]++;
+		    int window = (int) (index / TraceIndex.WINDOW_POSTINGS);
+		    if (windows[window] == null) {
+			long windowStart = (long) window * TraceIndex.WINDOW_POSTINGS;
+			long windowPostings = Math.min(TraceIndex.WINDOW_POSTINGS, postingCount - windowStart);
+			windows[window] = channel.map(FileChannel.MapMode.READ_WRITE,
+						      TraceIndex.POSTINGS_POSITION + windowStart * Long.BYTES,
+						      windowPostings * Long.BYTES);
+		    }
+		    windows[window].putLong((int) (index % TraceIndex.WINDOW_POSTINGS) * Long.BYTES,
+					    buffer.getLong(postingsOffset + posting * Long.BYTES));
+		}
+	    }
+	}
+	for (MappedByteBuffer window : windows) {
+	    window.force();
+	}
+	return postingCount;
+    }
+}
@@ -0,0 +1,195 @@
+package se.liu.ferpe211.api.trace;
+
+import se.liu.ferpe211.api.register.RegisterState;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the records of a trace written by {@link TraceRecorder}
+ * <p>
+ *     The file is mapped read only in chunks that are mapped as they are first used, so any record of a trace larger than
+ *     the heap is read in place without reading the ones before it. Records are addressed by their index in the trace and
+ *     every field is read on its own, which allocates nothing. A reader is not thread safe, threads that read the same
+ *     trace each open their own.
+ * </p>
+ */
+public class TraceReader implements Closeable
+{
+    private static final int ADDRESS_MASK = 0xFFFF;
+    private static final int BYTE_MASK = 0xFF;
+    private static final int BYTE_SIZE = 8;
+
+    private final FileChannel channel;
+    private final long first;
+    private final long count;
+    private final MappedByteBuffer[] chunks;
+
+    private TraceReader(final FileChannel channel, final long first, final long count) {
+	this.channel = channel;
+	this.first = first;
+	this.count = count;
+	this.chunks = new MappedByteBuffer[(int) ((count + TraceRecorder.CHUNK_RECORDS - 1) / TraceRecorder.CHUNK_RECORDS)];
+    }
+
+    /**
+     * @param file trace written by {@link TraceRecorder}
+     * @return a reader of the trace, which must be closed to release the file
+     * @throws IOException if the file can not be read, is not a trace or is of another version
+     */
+    public static TraceReader open(final Path file) throws IOException {
+	FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+	try {
+	    MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+						  Math.min(channel.size(), TraceRecorder.HEADER_SIZE));
+	    if (header.remaining() < TraceRecorder.HEADER_SIZE || header.getInt() != TraceRecorder.MAGIC) {
+		throw new IOException(file + " is not a trace");
+	    }
+	    short version = header.getShort();
+	    if (version != TraceRecorder.VERSION || header.getShort() != TraceRecorder.RECORD_SIZE) {
+		throw new IOException(file + " is a trace of unsupported version " + version);
+	    }
+	    long first = header.getLong(TraceRecorder.FIRST_OFFSET);
+	    long count = header.getLong(TraceRecorder.COUNT_OFFSET);
+	    if (count < 0 || TraceRecorder.HEADER_SIZE + count * TraceRecorder.RECORD_SIZE > channel.size()) {
+		throw new IOException(file + " is a damaged trace");
+	    }
+	    return new TraceReader(channel, first, count);
+	} catch (IOException e) {
+	    channel.close();
+	    throw e;
+	}
+    }
+
+    /**
+     * @return the amount of records in the trace
+     */
+    public long getCount() {
+	return count;
+    }
+
+    /**
+     * @return the instruction count of the CPU at the first record, record n is instruction {@code getFirstInstruction() + n}
+     */
+    public long getFirstInstruction() {
+	return first;
+    }
+
+    public long getCycleCount(final long record) {
+	return chunk(record).getLong(offset(record) + TraceRecorder.CYCLES_OFFSET);
+    }
+
+    public int getProgramCounter(final long record) {
+	return chunk(record).getShort(offset(record) + TraceRecorder.PC_OFFSET) & ADDRESS_MASK;
+    }
+
+    public byte getOpcode(final long record) {
+	return chunk(record).get(offset(record) + TraceRecorder.OPCODE_OFFSET);
+    }
+
+    /**
+     * @param record index of the record
+     * @return the operand bytes of the instruction as a little endian address, like they are read by the instruction
+     */
+    public int getOperands(final long record) {
+	MappedByteBuffer chunk = chunk(record);
+	int offset = offset(record) + TraceRecorder.OPERANDS_OFFSET;
+	return (chunk.get(offset) & BYTE_MASK) | (chunk.get(offset + 1) & BYTE_MASK) << BYTE_SIZE;
+    }
+
+    public byte getAccumulator(final long record) {
+	return chunk(record).get(offset(record) + TraceRecorder.ACCUMULATOR_OFFSET);
+    }
+
+    public byte getIndexX(final long record) {
+	return chunk(record).get(offset(record) + TraceRecorder.INDEX_X_OFFSET);
+    }
+
+    public byte getIndexY(final long record) {
+	return chunk(record).get(offset(record) + TraceRecorder.INDEX_Y_OFFSET);
+    }
+
+    public byte getStackPointer(final long record) {
+	return chunk(record).get(offset(record) + TraceRecorder.STACK_POINTER_OFFSET);
+    }
+
+    public byte getStatus(final long record) {
+	return chunk(record).get(offset(record) + TraceRecorder.STATUS_OFFSET);
+    }
+
+    /**
+     * @param record index of the record
+     * @return the registers right before the instruction of the record
+     */
+    public RegisterState getRegisters(final long record) {
+	return new RegisterState(getProgramCounter(record), getAccumulator(record), getIndexX(record), getIndexY(record),
+				 getStackPointer(record), getStatus(record));
+    }
+
+    /**
+     * Finds a record by its cycle count with a binary search, the cycle counts of a trace only increase
+     * @param cycle cycle count to look for
+     * @return the first record at or after the cycle, the amount of records if the trace ends before it
+     */
+    public long findRecordAtCycle(final long cycle) {
+	long low = 0;
+	long high = count;
+	while (low < high) {
+	    long middle = (low + high) >>> 1;
+	    if (getCycleCount(middle) < cycle) {
+		low = middle + 1;
+	    } else {
+		high = middle;
+	    }
+	}
+	return low;
+    }
+
+    /**
+     * Maps a range of records on its own rather than as part of the chunks of the reader, so it can be used from any thread
+     * and the mapping is released once the buffer is no longer used
+     * @param record index of the first record
+     * @param records amount of records, at most {@link TraceRecorder#CHUNK_RECORDS}
+     * @return the records as they are laid out in the file
+     * @throws IOException if the records can not be mapped
+     */
+    MappedByteBuffer mapRecords(final long record, final int records) throws IOException {
+	if (record < 0 || records < 0 || records > TraceRecorder.CHUNK_RECORDS || record + records > count) {
+	    throw new IndexOutOfBoundsException("Records " + record + " to " + (record + records) + " are not in a trace of "
+						+ count + " records");
+	}
+	return channel.map(FileChannel.MapMode.READ_ONLY, TraceRecorder.HEADER_SIZE + record * TraceRecorder.RECORD_SIZE,
+			   (long) records * TraceRecorder.RECORD_SIZE);
+    }
+
+    private MappedByteBuffer chunk(final long record) {
+	if (record < 0 || record >= count) {
+	    throw new IndexOutOfBoundsException("Record " + record + " is not in a trace of " + count + " records");
+	}
+	int index = (int) (record / TraceRecorder.CHUNK_RECORDS);
+	if (chunks[index] == null) {
+	    long start = (long) index * TraceRecorder.CHUNK_RECORDS;
+	    long records = Math.min(TraceRecorder.CHUNK_RECORDS, count - start);
+	    long position = TraceRecorder.HEADER_SIZE + start * TraceRecorder.RECORD_SIZE;
+	    try {
+		chunks[index] = channel.map(FileChannel.MapMode.READ_ONLY, position, records * TraceRecorder.RECORD_SIZE);
+	    } catch (IOException e) {
+		throw new UncheckedIOException("Could not map records of the trace", e);
+	    }
+	}
+	return chunks[index];
+    }
+
+    private static int offset(final long record) {
+	return (int) (record % TraceRecorder.CHUNK_RECORDS) * TraceRecorder.RECORD_SIZE;
+    }
+
+    @Override public void close() throws IOException {
+	channel.close();
+    }
+}
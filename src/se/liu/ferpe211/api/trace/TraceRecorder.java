@@ -0,0 +1,323 @@
+package se.liu.ferpe211.api.trace;
+
+import se.liu.ferpe211.api.CPU;
+import se.liu.ferpe211.api.event.InstructionObserver;
+import se.liu.ferpe211.api.memory.RAM;
+import se.liu.ferpe211.api.memory.WriteRecorder;
+import se.liu.ferpe211.api.operation.OperationManager;
+import se.liu.ferpe211.api.operation.instruction.Instruction;
+import se.liu.ferpe211.api.register.RegisterFile;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Records every instruction a CPU executes to a binary trace file, which is read with {@link TraceReader}
+ * <p>
+ *     A trace starts with a header of the magic number {@code JCPT}, the format version, the size of a record, the
+ *     instruction count of the first record and the amount of records. Every instruction is then recorded as a fixed width
+ *     record of the state right before it: the cycle count, the program counter, the opcode and its operands and the
+ *     registers, all big endian. Operands the instruction does not have are 0. The n-th record is the instruction
+ *     {@code first + n}, so records can be found without reading the ones before them.
+ * </p>
+ * <p>
+ *     The file is written through memory mappings of {@link #CHUNK_RECORDS} records at a time, so recording an instruction
+ *     is three stores into the page cache and the operating system writes the trace to disk in the background. The next
+ *     chunk is mapped and its pages faulted in by a background thread while the current one is filled. The amount
+ *     of records in the header is kept current, so the trace of a run that crashed can still be read. While recording
+ *     the CPU executes one instruction at a time, see {@link InstructionObserver}. Nothing is recorded, and nothing is
+ *     slowed down, before {@link #start()} and after {@link #close()}.
+ * </p>
+ * <p>
+ *     A recorder can also build a {@link TraceIndex} of the trace as it records, which is complete once the recorder is
+ *     closed.
+ * </p>
+ */
+public class TraceRecorder implements InstructionObserver, WriteRecorder, Closeable
+{
+    static final int MAGIC = 0x4A435054;
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 24;
+    static final int RECORD_SIZE = 24;
+    static final int COUNT_OFFSET = 16;
+    static final int FIRST_OFFSET = 8;
+
+    /**
+     * Offsets of the fields within a record, the bytes after the status are reserved and 0
+     */
+    static final int CYCLES_OFFSET = 0;
+    static final int PC_OFFSET = 8;
+    static final int OPCODE_OFFSET = 10;
+    static final int OPERANDS_OFFSET = 11;
+    static final int ACCUMULATOR_OFFSET = 13;
+    static final int INDEX_X_OFFSET = 14;
+    static final int INDEX_Y_OFFSET = 15;
+    static final int STACK_POINTER_OFFSET = 16;
+    static final int STATUS_OFFSET = 17;
+
+    /**
+     * Amount of records that are mapped at once, 48 MiB
+     */
+    static final int CHUNK_RECORDS = 1 << 21;
+
+    /**
+     * Positions of the fields within the second and third long of a record
+     */
+    private static final int PC_SHIFT = 48;
+    private static final int OPCODE_SHIFT = 40;
+    private static final int OPERAND1_SHIFT = 32;
+    private static final int OPERAND2_SHIFT = 24;
+    private static final int ACCUMULATOR_SHIFT = 16;
+    private static final int INDEX_X_SHIFT = 8;
+    private static final int STACK_POINTER_SHIFT = 56;
+    private static final int STATUS_SHIFT = 48;
+
+    private static final long CHUNK_SIZE = (long) CHUNK_RECORDS * RECORD_SIZE;
+
+    /**
+     * Distance between the bytes written to fault in a new chunk, at most the page size of the operating system
+     */
+    private static final int TOUCH_STRIDE = 4096;
+
+    private static final int OPCODES = 256;
+    private static final int BYTE_MASK = 0xFF;
+    private static final int ADDRESS_MASK = 0xFFFF;
+
+    private final CPU cpu;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final TraceIndexWriter index;
+
+    /**
+     * Size of the instruction of every opcode, 1 for opcodes without one
+     */
+    private final byte[] sizes = new byte[OPCODES];
+
+    /**
+     * Instruction of every opcode that reads an operand, null for the others
+     */
+    private final Instruction[] readingInstructions = new Instruction[OPCODES];
+
+    /**
+     * Thread shared by every recorder that maps the next chunk while the current one is filled, it is a daemon thread so it
+     * never keeps the JVM alive
+     */
+    private static final ExecutorService MAPPER = Executors.newSingleThreadExecutor(runnable -> {
+	Thread thread = new Thread(runnable, "Trace mapper");
+	thread.setDaemon(true);
+	return thread;
+    });
+
+    private MappedByteBuffer chunk = null;
+    private Future<MappedByteBuffer> nextChunk;
+    private long count = 0;
+    private boolean recording = false;
+
+    private TraceRecorder(final CPU cpu, final FileChannel channel, final TraceIndexWriter index) throws IOException {
+	this.cpu = cpu;
+	this.channel = channel;
+	this.index = index;
+	this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+	header.putInt(MAGIC).putShort(VERSION).putShort((short) RECORD_SIZE);
+	header.putLong(FIRST_OFFSET, cpu.getInstructionCount()).putLong(COUNT_OFFSET, 0);
+	OperationManager operationManager = cpu.getOperationManager();
+	for (int opcode = 0; opcode < OPCODES; opcode++) {
+	    Instruction instruction = operationManager.getInstruction((byte) opcode);
+	    sizes[opcode] = (byte) (instruction != null ? instruction.getSize() : 1);
+	    if (instruction != null && instruction.readsOperand()) {
+		readingInstructions[opcode] = instruction;
+	    }
+	}
+	nextChunk = MAPPER.submit(() -> mapChunk(HEADER_SIZE));
+    }
+
+    /**
+     * Creates a trace file for a CPU, recording begins with {@link #start()}
+     * @param cpu CPU to record
+     * @param file file to write the trace to, replaced if it exists
+     * @return the recorder, which must be closed to release the file
+     * @throws IOException if the file can not be created or mapped
+     */
+    public static TraceRecorder create(final CPU cpu, final Path file) throws IOException {
+	return create(cpu, file, null);
+    }
+
+    /**
+     * Creates a trace file and an index of it for a CPU, recording begins with {@link #start()}
+     * @param cpu CPU to record
+     * @param file file to write the trace to, replaced if it exists
+     * @param indexFile file to write the index to, replaced if it exists, null for none
+     * @return the recorder, which must be closed to release the files and complete the index
+     * @throws IOException if the files can not be created or mapped
+     */
+    public static TraceRecorder create(final CPU cpu, final Path file, final Path indexFile) throws IOException {
+	FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+					       StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+	TraceIndexWriter index = null;
+	try {
+	    if (indexFile != null) {
+		index = TraceIndexWriter.create(indexFile);
+	    }
+	    return new TraceRecorder(cpu, channel, index);
+	} catch (IOException e) {
+	    channel.close();
+	    if (index != null) {
+		index.close();
+	    }
+	    throw e;
+	}
+    }
+
+    /**
+     * Starts recording, the first record is the next instruction the CPU executes
+     * @throws IllegalStateException if a rewind buffer is recording the same CPU, see
+     * {@link se.liu.ferpe211.api.event.InstructionObserver#needsLinearExecution()}
+     */
+    public void start() {
+	if (!recording) {
+	    cpu.addObserver(this);
+	    recording = true;
+	    if (count == 0) {
+		header.putLong(FIRST_OFFSET, cpu.getInstructionCount());
+	    }
+	    if (index != null) {
+		cpu.getMemory().addWriteRecorder(this);
+	    }
+	}
+    }
+
+    /**
+     * Stops recording until the next {@link #start()}, the instructions executed in between are missing from the trace
+     */
+    public void stop() {
+	if (recording) {
+	    recording = false;
+	    cpu.removeObserver(this);
+	    if (index != null) {
+		cpu.getMemory().removeWriteRecorder(this);
+		// Registers are only compared to the next record while recording, the last instruction is compared to them now
+		RegisterFile registers = cpu.getRegisterFile();
+		index.registersBefore(count, registers.getAccumulator(), registers.getIndexX(), registers.getIndexY());
+	    }
+	}
+    }
+
+    /**
+     * @return true between {@link #start()} and {@link #stop()}
+     */
+    public boolean isRecording() {
+	return recording;
+    }
+
+    /**
+     * @return the amount of instructions recorded so far
+     */
+    public long getCount() {
+	return count;
+    }
+
+    /**
+     * Record n must be instruction {@link TraceReader#getFirstInstruction()} + n, which instructions that are undone and
+     * executed again would break
+     */
+    @Override public boolean needsLinearExecution() {
+	return true;
+    }
+
+    @Override public void beforeInstruction(final CPU cpu) {
+	if (chunk == null || !chunk.hasRemaining()) {
+	    mapNextChunk();
+	}
+	RAM memory = cpu.getMemory();
+	RegisterFile registers = cpu.getRegisterFile();
+	int address = registers.getProgramCounter();
+	byte opcode = memory.peekByte(address);
+	int size = sizes[opcode & BYTE_MASK];
+	long operand1 = size > 1 ? memory.peekByte(address + 1) & BYTE_MASK : 0;
+	long operand2 = size > 2 ? memory.peekByte(address + 2) & BYTE_MASK : 0;
+	// The fields are packed into longs, which writes the same big endian layout in three stores instead of eleven
+	chunk.putLong(cpu.getCycleCount());
+	chunk.putLong((long) (address & ADDRESS_MASK) << PC_SHIFT | (long) (opcode & BYTE_MASK) << OPCODE_SHIFT
+		      | operand1 << OPERAND1_SHIFT | operand2 << OPERAND2_SHIFT
+		      | (long) (registers.getAccumulator() & BYTE_MASK) << ACCUMULATOR_SHIFT
+		      | (registers.getIndexX() & BYTE_MASK) << INDEX_X_SHIFT | (registers.getIndexY() & BYTE_MASK));
+	chunk.putLong((long) (registers.getStackPointer() & BYTE_MASK) << STACK_POINTER_SHIFT
+		      | (long) (registers.getStatus() & BYTE_MASK) << STATUS_SHIFT);
+	if (index != null) {
+	    Instruction reading = readingInstructions[opcode & BYTE_MASK];
+	    int readAddress = reading != null
+			      ? reading.peekOperandAddress(cpu, (byte) operand1, (int) (operand2 << Byte.SIZE | operand1)) : -1;
+	    index.instruction(count, address, readAddress, registers.getAccumulator(), registers.getIndexX(),
+			      registers.getIndexY());
+	}
+	count++;
+	header.putLong(COUNT_OFFSET, count);
+    }
+
+    /**
+     * Indexes the writes of the instruction that was recorded last
+     * @see WriteRecorder#beforeWrite(int, byte)
+     */
+    @Override public void beforeWrite(final int address, final byte previous) {
+	if (count > 0) {
+	    index.write(count - 1, address);
+	}
+    }
+
+    private void mapNextChunk() {
+	try {
+	    chunk = nextChunk.get();
+	} catch (ExecutionException e) {
+	    throw new UncheckedIOException("Could not extend the trace", new IOException(e.getCause()));
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new UncheckedIOException("Interrupted while extending the trace", new InterruptedIOException());
+	}
+	long next = HEADER_SIZE + (count + CHUNK_RECORDS) * RECORD_SIZE;
+	nextChunk = MAPPER.submit(() -> mapChunk(next));
+    }
+
+    /**
+     * Maps a chunk and faults in its pages, which costs the emulation thread a lot more when done a record at a time
+     */
+    private MappedByteBuffer mapChunk(final long position) throws IOException {
+	MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, position, CHUNK_SIZE);
+	for (int offset = 0; offset < mapped.capacity(); offset += TOUCH_STRIDE) {
+	    mapped.put(offset, (byte) 0);
+	}
+	return mapped;
+    }
+
+    /**
+     * Stops recording, cuts the file down to the recorded instructions and completes the index
+     * @throws IOException if the file can not be truncated or the index can not be written
+     */
+    @Override public void close() throws IOException {
+	stop();
+	if (index != null) {
+	    index.close();
+	}
+	chunk = null;
+	// The mapper must be done with the file before it is cut
+	try {
+	    nextChunk.get();
+	} catch (ExecutionException e) {
+	    // The chunk would be cut off anyway
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	}
+	try (channel) {
+	    channel.truncate(HEADER_SIZE + count * RECORD_SIZE);
+	}
+    }
+}
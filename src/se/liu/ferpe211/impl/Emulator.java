@@ -21,9 +21,12 @@ public class Emulator
      * Represents a logger for the Emulator class.
      * The logger is used to log messages and exceptions
      * It is a static final logger initialized with the name of the Emulator class.
+     * Nothing is written to a log file until {@link #enableFileLogging()} is called.
      */
     public static final Logger LOGGER = createLogger();
 
+    private static boolean fileLogging = false;
+
     private CPU cpu;
     private Disassembler disassembler;
 
@@ -42,13 +45,25 @@ public class Emulator
 
     /**
      * Method for creating a logger object.
-     * The logger is created with the name of the Emulator class.
-     * The logger is configured to log to a file named "logfile-YYYY-MM-DD_HH-MM-SS.log" in the "logs" directory.
+     * The logger is created with the name of the Emulator class and only logs to the console until file logging is enabled.
      * @return Logger
      */
     private static Logger createLogger() {
 	Logger logger = Logger.getLogger(Emulator.class.getName());
 	logger.setLevel(Level.INFO);
+	return logger;
+    }
+
+    /**
+     * Method for making the logger write to a file as well.
+     * The log file is named "logfile-YYYY-MM-DD_HH-MM-SS.log" and placed in the "logs" directory, which is created if needed.
+     * This is done by the GUI, the library itself never creates any files on its own. Calling it again has no effect.
+     */
+    public static synchronized void enableFileLogging() {
+	if (fileLogging) {
+	    return;
+	}
+	fileLogging = true;
 
 	try {
 	    File logDir = new File("logs");
@@ -65,13 +80,9 @@ public class Emulator
 
 	    FileHandler fileHandler = new FileHandler(fileName);
 	    fileHandler.setFormatter(new SimpleFormatter());
-	    logger.addHandler(fileHandler);
+	    LOGGER.addHandler(fileHandler);
 	} catch (IOException e) {
-	    logger.log(Level.SEVERE, "Error initializing file handler", e);
+	    LOGGER.log(Level.SEVERE, "Error initializing file handler", e);
 	}
-	return logger;
     }
-
-
-
 }
@@ -0,0 +1,280 @@
+package se.liu.ferpe211.impl;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import se.liu.ferpe211.api.CPU;
+import se.liu.ferpe211.api.CPUPool;
+import se.liu.ferpe211.api.execution.EngineType;
+import se.liu.ferpe211.api.memory.MappedMemory;
+import se.liu.ferpe211.api.memory.MemoryDevice;
+import se.liu.ferpe211.api.register.RegisterFile;
+import se.liu.ferpe211.api.state.SaveStateFile;
+import se.liu.ferpe211.api.trace.TraceIndex;
+import se.liu.ferpe211.api.trace.TraceRecorder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.logging.Level;
+
+/**
+ * Command line entry point that runs binaries without a GUI
+ * <p>
+ *     Every binary is loaded into a freshly reset CPU and executed until BREAK is reached or one of the limits is hit,
+ *     after which the final registers, the amount of cycles executed and the instructions per second are printed.
+ *     No AWT or Swing classes are touched, so this works on machines without a display. The CPUs keep their settings in
+ *     memory, so nothing but the optional memory dump, save state and trace is written to disk.
+ * </p>
+ * Usage: {@code HeadlessRunner [options] <binary>...}
+ */
+public class HeadlessRunner
+{
+    private static final String USAGE = "HeadlessRunner [options] <binary>...";
+    private static final int EXIT_USAGE = 2;
+    private static final int EXIT_LOAD_FAILED = 1;
+    private static final int HEX_RADIX = 16;
+    private static final double NANOS_PER_SECOND = 1.0e9;
+    private static final double NANOS_PER_MILLI = 1.0e6;
+
+    /**
+     * Cycles executed between checks of the time limit
+     */
+    private static final long SLICE_CYCLES = 1_000_000L;
+
+    private final long maxCycles;
+    private final long maxNanos;
+    private final int origin;
+    private final String dumpPath;
+    private final String memoryPath;
+    private final String saveStatePath;
+    private final String tracePath;
+    private final boolean indexTrace;
+    private final EngineType engineType;
+
+    /**
+     * CPUs reused between the binaries, only used without a memory file since every binary maps its own
+     */
+    private CPUPool pool = null;
+
+    private HeadlessRunner(final long maxCycles, final long maxNanos, final int origin, final String dumpPath,
+			   final String memoryPath, final String saveStatePath, final String tracePath, final boolean indexTrace,
+			   final EngineType engineType)
+    {
+	this.maxCycles = maxCycles;
+	this.maxNanos = maxNanos;
+	this.origin = origin;
+	this.dumpPath = dumpPath;
+	this.memoryPath = memoryPath;
+	this.saveStatePath = saveStatePath;
+	this.tracePath = tracePath;
+	this.indexTrace = indexTrace;
+	this.engineType = engineType;
+    }
+
+    public static void main(String... args) {
+	Options options = createOptions();
+	CommandLine commandLine;
+	try {
+	    CommandLineParser parser = new DefaultParser();
+	    commandLine = parser.parse(options, args);
+	} catch (ParseException e) {
+	    System.err.println(e.getMessage());
+	    printHelp(options);
+	    System.exit(EXIT_USAGE);
+	    return;
+	}
+
+	if (commandLine.hasOption("help") || commandLine.getArgList().isEmpty()) {
+	    printHelp(options);
+	    if (!commandLine.hasOption("help")) {
+		System.exit(EXIT_USAGE);
+	    }
+	    return;
+	}
+
+	HeadlessRunner runner;
+	try {
+	    long maxCycles = Long.parseLong(commandLine.getOptionValue("max-cycles", "0"));
+	    double maxSeconds = Double.parseDouble(commandLine.getOptionValue("max-time", "0"));
+	    int origin = Integer.parseInt(commandLine.getOptionValue("origin", "0"), HEX_RADIX);
+	    EngineType engineType = EngineType.valueOf(
+		    commandLine.getOptionValue("engine", EngineType.BLOCK_CACHE.name()).toUpperCase(Locale.ROOT).replace('-', '_'));
+	    runner = new HeadlessRunner(maxCycles, (long) (maxSeconds * NANOS_PER_SECOND), origin,
+					commandLine.getOptionValue("dump"), commandLine.getOptionValue("memory-file"),
+					commandLine.getOptionValue("save-state"), commandLine.getOptionValue("trace"),
+					commandLine.hasOption("index"), engineType);
+	} catch (NumberFormatException e) {
+	    System.err.println("Invalid number: " + e.getMessage());
+	    System.exit(EXIT_USAGE);
+	    return;
+	} catch (IllegalArgumentException e) {
+	    System.err.println("Invalid engine: " + commandLine.getOptionValue("engine"));
+	    System.exit(EXIT_USAGE);
+	    return;
+	}
+
+	// Informational logging is mostly about events meant for the GUI, keep it out of the output unless asked for
+	if (!commandLine.hasOption("verbose")) {
+	    Emulator.LOGGER.setLevel(Level.WARNING);
+	}
+
+	boolean loaded = true;
+	for (String path : commandLine.getArgList()) {
+	    loaded &= runner.run(new File(path), commandLine.getArgList().size() > 1);
+	}
+	if (!loaded) {
+	    System.exit(EXIT_LOAD_FAILED);
+	}
+    }
+
+    private static Options createOptions() {
+	Options options = new Options();
+	options.addOption(Option.builder("c").longOpt("max-cycles").hasArg().argName("cycles")
+				  .desc("stop after this many cycles, 0 for no limit").build());
+	options.addOption(Option.builder("t").longOpt("max-time").hasArg().argName("seconds")
+				  .desc("stop after this many seconds of wall clock time, 0 for no limit").build());
+	options.addOption(Option.builder("o").longOpt("origin").hasArg().argName("address")
+				  .desc("hexadecimal address to load the binary at and start executing from, default 0").build());
+	options.addOption(Option.builder("d").longOpt("dump").hasArg().argName("file")
+				  .desc("write the memory to this file when done, the binary name is appended when running several")
+				  .build());
+	options.addOption(Option.builder("e").longOpt("engine").hasArg().argName("engine")
+				  .desc("execution engine, block-cache (default) or switch").build());
+	options.addOption(Option.builder("m").longOpt("memory-file").hasArg().argName("file")
+				  .desc("keep the memory in this file while running, so it persists and can be inspected by other "
+					+ "processes, the binary name is appended when running several").build());
+	options.addOption(Option.builder("s").longOpt("save-state").hasArg().argName("file")
+				  .desc("write a compressed save state of the whole machine to this file when done, the binary name "
+					+ "is appended when running several").build());
+	options.addOption(Option.builder("r").longOpt("trace").hasArg().argName("file")
+				  .desc("record every executed instruction to this binary trace file, the binary name is appended "
+					+ "when running several").build());
+	options.addOption("i", "index", false, "also index the trace for queries with TraceQuery, written to the trace file "
+					       + "name with .idx appended");
+	options.addOption("v", "verbose", false, "log informational messages");
+	options.addOption("h", "help", false, "print this message");
+	return options;
+    }
+
+    private static void printHelp(final Options options) {
+	new HelpFormatter().printHelp(USAGE, options);
+    }
+
+    /**
+     * Loads and executes a single binary and prints the result
+     * @param binary file to execute
+     * @param suffixDump true if the names of the dump, memory, save state and trace files should include the name of the binary
+     * @return false if the binary could not be loaded
+     */
+    private boolean run(final File binary, final boolean suffixDump) {
+	CPU cpu;
+	if (memoryPath != null) {
+	    try {
+		cpu = CPU.builder().engine(engineType)
+			.memoryFile(new File(suffixDump ? memoryPath + "." + binary.getName() : memoryPath).toPath()).build();
+	    } catch (UncheckedIOException e) {
+		System.err.println(e.getMessage());
+		return false;
+	    }
+	} else {
+	    if (pool == null) {
+		pool = new CPUPool(CPU.builder().engine(engineType), 1);
+	    }
+	    cpu = pool.borrow();
+	}
+	try {
+	    return run(binary, suffixDump, cpu);
+	} finally {
+	    if (memoryPath == null) {
+		pool.giveBack(cpu);
+	    }
+	}
+    }
+
+    /**
+     * @param cpu reset CPU to load the binary into
+     * @see #run(File, boolean)
+     */
+    private boolean run(final File binary, final boolean suffixDump, final CPU cpu) {
+	if (!cpu.loadFile(binary, origin)) {
+	    System.err.println(binary + ": could not be loaded");
+	    return false;
+	}
+	cpu.getProgramCounter().setValue(origin);
+
+	TraceRecorder trace = null;
+	if (tracePath != null) {
+	    File traceFile = new File(suffixDump ? tracePath + "." + binary.getName() : tracePath);
+	    try {
+		trace = TraceRecorder.create(cpu, traceFile.toPath(),
+					     indexTrace ? new File(traceFile.getPath() + TraceIndex.FILE_SUFFIX).toPath() : null);
+		trace.start();
+	    } catch (IOException e) {
+		System.err.println(traceFile + ": could not create trace: " + e.getMessage());
+	    }
+	}
+
+	long start = System.nanoTime();
+	long elapsed = 0;
+	String reason = null;
+	while (reason == null) {
+	    long slice = SLICE_CYCLES;
+	    if (maxCycles > 0) {
+		slice = Math.min(slice, maxCycles - cpu.getCycleCount());
+	    }
+	    cpu.runCycles(slice);
+	    elapsed = System.nanoTime() - start;
+
+	    if (!cpu.isExecuting()) {
+		reason = "halted";
+	    } else if (maxCycles > 0 && cpu.getCycleCount() >= maxCycles) {
+		reason = "cycle limit reached";
+	    } else if (maxNanos > 0 && elapsed >= maxNanos) {
+		reason = "time limit reached";
+	    }
+	}
+
+	if (trace != null) {
+	    try {
+		trace.close();
+	    } catch (IOException e) {
+		System.err.println(binary + ": could not finish trace: " + e.getMessage());
+	    }
+	}
+
+	MemoryDevice device = cpu.getMemory().getDevice(0);
+	if (device instanceof MappedMemory mappedMemory) {
+	    mappedMemory.flush();
+	}
+	printResult(binary, cpu, reason, elapsed);
+	if (dumpPath != null) {
+	    cpu.dump(new File(suffixDump ? dumpPath + "." + binary.getName() : dumpPath));
+	}
+	if (saveStatePath != null) {
+	    File saveState = new File(suffixDump ? saveStatePath + "." + binary.getName() : saveStatePath);
+	    try {
+		SaveStateFile.write(cpu.snapshot(), saveState.toPath(), true);
+	    } catch (IOException e) {
+		System.err.println(saveState + ": could not write save state: " + e.getMessage());
+	    }
+	}
+	return true;
+    }
+
+    private static void printResult(final File binary, final CPU cpu, final String reason, final long elapsed) {
+	RegisterFile registers = cpu.getRegisterFile();
+	double instructionsPerSecond = elapsed > 0 ? cpu.getInstructionCount() * NANOS_PER_SECOND / elapsed : 0;
+	System.out.printf("%s: %s%n", binary, reason);
+	System.out.printf("  PC=%04X SP=%02X A=%02X X=%02X Y=%02X P=%02X%n", registers.getProgramCounter(),
+			  registers.getStackPointer(), registers.getAccumulator(), registers.getIndexX(), registers.getIndexY(),
+			  registers.getStatus());
+	System.out.printf("  %d instructions, %d cycles in %.3f ms (%.0f instructions per second)%n",
+			  cpu.getInstructionCount(), cpu.getCycleCount(), elapsed / NANOS_PER_MILLI, instructionsPerSecond);
+    }
+}
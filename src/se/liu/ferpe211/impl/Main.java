@@ -9,6 +9,7 @@ import se.liu.ferpe211.impl.gui.CPUViewer;
 public class Main
 {
     public static void main(String... args){
+        Emulator.enableFileLogging();
         Emulator emu = new Emulator();
         CPUViewer viewer = new CPUViewer(emu);
         viewer.show();
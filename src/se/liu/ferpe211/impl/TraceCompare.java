@@ -0,0 +1,294 @@
+package se.liu.ferpe211.impl;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import se.liu.ferpe211.api.CPU;
+import se.liu.ferpe211.api.execution.EngineType;
+import se.liu.ferpe211.api.memory.RAM;
+import se.liu.ferpe211.api.operation.OpCode;
+import se.liu.ferpe211.api.operation.OpCodeMapper;
+import se.liu.ferpe211.api.register.RegisterState;
+import se.liu.ferpe211.api.trace.TraceDiff;
+import se.liu.ferpe211.api.trace.TraceReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+
+/**
+ * Command line entry point that compares two traces recorded with {@code HeadlessRunner --trace} and reports the first
+ * instruction where they differ
+ * <p>
+ *     The registers of both traces are printed at the first record that differs and at the instruction before it, which is
+ *     the last one both runs agree on and usually the one that went wrong. Traces hold no memory, so given the binary the
+ *     runs executed the memory is rebuilt by running it again up to the divergence, with the engine each trace was
+ *     recorded with, and the bytes that differ between the two runs are printed. The replay steps one instruction at a
+ *     time like a traced run does, so it executes the same code as the recording.
+ * </p>
+ * <p>
+ *     The exit status is 0 if the traces are the same, 1 if they diverge and 2 if they could not be compared, like diff.
+ * </p>
+ * Usage: {@code TraceCompare [options] <first trace> <second trace>}
+ */
+public final class TraceCompare
+{
+    private static final String USAGE = "TraceCompare [options] <first trace> <second trace>";
+    private static final int EXIT_SAME = 0;
+    private static final int EXIT_DIVERGED = 1;
+    private static final int EXIT_FAILED = 2;
+    private static final int HEX_RADIX = 16;
+    private static final int ARGUMENTS = 2;
+    private static final double NANOS_PER_MILLI = 1.0e6;
+    private static final int ROW_SIZE = 16;
+    private static final int MAX_ROWS = 16;
+    private static final int STACK_BYTES = 8;
+    private static final int BYTE_MASK = 0xFF;
+    private static final int ADDRESS_MASK = 0xFFFF;
+
+    private TraceCompare() {}
+
+    public static void main(String... args) {
+	int status = run(System.out, System.err, args);
+	if (status != EXIT_SAME) {
+	    System.exit(status);
+	}
+    }
+
+    /**
+     * Compares the traces named by the arguments of {@link #main(String...)}
+     * @return the exit status
+     */
+    static int run(final PrintStream out, final PrintStream err, final String... args) {
+	Options options = createOptions();
+	CommandLine commandLine;
+	try {
+	    CommandLineParser parser = new DefaultParser();
+	    commandLine = parser.parse(options, args);
+	} catch (ParseException e) {
+	    err.println(e.getMessage());
+	    printHelp(options, out);
+	    return EXIT_FAILED;
+	}
+
+	List<String> arguments = commandLine.getArgList();
+	if (commandLine.hasOption("help") || arguments.size() != ARGUMENTS) {
+	    printHelp(options, out);
+	    return commandLine.hasOption("help") ? EXIT_SAME : EXIT_FAILED;
+	}
+
+	int origin;
+	EngineType firstEngine;
+	EngineType secondEngine;
+	try {
+	    origin = Integer.parseInt(commandLine.getOptionValue("origin", "0"), HEX_RADIX);
+	    firstEngine = parseEngine(commandLine.getOptionValue("engine", EngineType.BLOCK_CACHE.name()));
+	    secondEngine = parseEngine(commandLine.getOptionValue("second-engine", firstEngine.name()));
+	} catch (NumberFormatException e) {
+	    err.println("Invalid number: " + e.getMessage());
+	    return EXIT_FAILED;
+	} catch (IllegalArgumentException e) {
+	    err.println("Invalid engine: " + e.getMessage());
+	    return EXIT_FAILED;
+	}
+
+	// Informational logging is mostly about events meant for the GUI, keep it out of the output
+	Emulator.LOGGER.setLevel(Level.WARNING);
+
+	TraceDiff.Divergence divergence;
+	try (TraceReader first = TraceReader.open(Path.of(arguments.get(0)));
+	     TraceReader second = TraceReader.open(Path.of(arguments.get(1))))
+	{
+	    long start = System.nanoTime();
+	    divergence = TraceDiff.findDivergence(first, second);
+	    double elapsed = (System.nanoTime() - start) / NANOS_PER_MILLI;
+	    if (divergence == null) {
+		out.printf("The traces are the same, compared in %.3f ms%n", elapsed);
+		return EXIT_SAME;
+	    }
+	    out.printf("The traces diverge at instruction %d, found in %.3f ms%n", divergence.instruction(), elapsed);
+	    printRecords(out, first, second, divergence);
+	} catch (IOException | IllegalArgumentException e) {
+	    err.println(e.getMessage());
+	    return EXIT_FAILED;
+	}
+
+	if (commandLine.hasOption("binary")) {
+	    File firstBinary = new File(commandLine.getOptionValue("binary"));
+	    File secondBinary = new File(commandLine.getOptionValue("second-binary", firstBinary.getPath()));
+	    CPU firstCPU = replay(firstBinary, origin, firstEngine, divergence.instruction());
+	    CPU secondCPU = replay(secondBinary, origin, secondEngine, divergence.instruction());
+	    if (firstCPU == null || secondCPU == null) {
+		err.println("The binaries could not be loaded");
+		return EXIT_FAILED;
+	    }
+	    printMemory(out, firstCPU, secondCPU, divergence.instruction());
+	}
+	return EXIT_DIVERGED;
+    }
+
+    private static Options createOptions() {
+	Options options = new Options();
+	options.addOption(Option.builder("b").longOpt("binary").hasArg().argName("file")
+				  .desc("binary the runs executed, run again to print the memory at the divergence").build());
+	options.addOption(Option.builder("2").longOpt("second-binary").hasArg().argName("file")
+				  .desc("binary of the second run if it differs from the first").build());
+	options.addOption(Option.builder("o").longOpt("origin").hasArg().argName("address")
+				  .desc("hexadecimal address the binaries were loaded at, default 0").build());
+	options.addOption(Option.builder("e").longOpt("engine").hasArg().argName("engine")
+				  .desc("engine the first trace was recorded with, block-cache (default) or switch").build());
+	options.addOption(Option.builder("E").longOpt("second-engine").hasArg().argName("engine")
+				  .desc("engine the second trace was recorded with, the first one by default").build());
+	options.addOption("h", "help", false, "print this message");
+	return options;
+    }
+
+    private static void printHelp(final Options options, final PrintStream out) {
+	HelpFormatter formatter = new HelpFormatter();
+	PrintWriter writer = new PrintWriter(out);
+	formatter.printHelp(writer, formatter.getWidth(), USAGE, null, options, formatter.getLeftPadding(),
+			    formatter.getDescPadding(), null);
+	writer.flush();
+    }
+
+    private static EngineType parseEngine(final String name) {
+	return EngineType.valueOf(name.toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+
+    private static void printRecords(final PrintStream out, final TraceReader first, final TraceReader second,
+				     final TraceDiff.Divergence divergence)
+    {
+	long firstRecord = divergence.firstRecord();
+	long secondRecord = divergence.secondRecord();
+	if (divergence.instruction() > Math.max(first.getFirstInstruction(), second.getFirstInstruction())) {
+	    out.printf("  last agreed  %s%n", describe(first, firstRecord - 1));
+	}
+	out.printf("  first        %s%n", describe(first, firstRecord));
+	out.printf("  second       %s%n", describe(second, secondRecord));
+	if (firstRecord < first.getCount() && secondRecord < second.getCount()) {
+	    out.printf("  differs in   %s%n", String.join(", ", differences(first, firstRecord, second, secondRecord)));
+	}
+    }
+
+    private static String describe(final TraceReader trace, final long record) {
+	if (record >= trace.getCount()) {
+	    return "ended";
+	}
+	RegisterState registers = trace.getRegisters(record);
+	byte opcode = trace.getOpcode(record);
+	OpCode opCode = OpCodeMapper.getOpCodeFromByte(opcode);
+	int operands = trace.getOperands(record);
+	return String.format("record %d, cycle %d, PC=%04X SP=%02X A=%02X X=%02X Y=%02X P=%02X, %s %02X %02X", record,
+			     trace.getCycleCount(record), registers.programCounter(), registers.stackPointer(),
+			     registers.accumulator(), registers.indexX(), registers.indexY(), registers.status(),
+			     opCode != null ? opCode.name() : String.format("%02X", opcode), operands & BYTE_MASK,
+			     operands >>> Byte.SIZE);
+    }
+
+    private static List<String> differences(final TraceReader first, final long firstRecord, final TraceReader second,
+					    final long secondRecord)
+    {
+	List<String> differences = new ArrayList<>();
+	RegisterState firstRegisters = first.getRegisters(firstRecord);
+	RegisterState secondRegisters = second.getRegisters(secondRecord);
+	if (first.getCycleCount(firstRecord) != second.getCycleCount(secondRecord)) {
+	    differences.add("cycles");
+	}
+	if (firstRegisters.programCounter() != secondRegisters.programCounter()) {
+	    differences.add("PC");
+	}
+	if (first.getOpcode(firstRecord) != second.getOpcode(secondRecord)) {
+	    differences.add("opcode");
+	}
+	if (first.getOperands(firstRecord) != second.getOperands(secondRecord)) {
+	    differences.add("operands");
+	}
+	if (firstRegisters.stackPointer() != secondRegisters.stackPointer()) {
+	    differences.add("SP");
+	}
+	if (firstRegisters.accumulator() != secondRegisters.accumulator()) {
+	    differences.add("A");
+	}
+	if (firstRegisters.indexX() != secondRegisters.indexX()) {
+	    differences.add("X");
+	}
+	if (firstRegisters.indexY() != secondRegisters.indexY()) {
+	    differences.add("Y");
+	}
+	if (firstRegisters.status() != secondRegisters.status()) {
+	    differences.add("P");
+	}
+	return differences;
+    }
+
+    /**
+     * Runs a binary up to an instruction, one instruction at a time like a traced run
+     * @return the CPU right before the instruction, or earlier if it reached BREAK first, null if the binary could not be
+     * loaded
+     */
+    private static CPU replay(final File binary, final int origin, final EngineType engineType, final long instruction) {
+	CPU cpu = CPU.builder().engine(engineType).build();
+	if (!cpu.loadFile(binary, origin)) {
+	    return null;
+	}
+	cpu.getProgramCounter().setValue(origin);
+	cpu.runUntil(replayed -> replayed.getInstructionCount() >= instruction);
+	return cpu;
+    }
+
+    private static void printMemory(final PrintStream out, final CPU first, final CPU second, final long instruction) {
+	out.printf("Memory before instruction %d, run again from the binaries%n", instruction);
+	RAM firstMemory = first.getMemory();
+	RAM secondMemory = second.getMemory();
+	int rows = 0;
+	for (int row = 0; row <= ADDRESS_MASK && rows < MAX_ROWS; row += ROW_SIZE) {
+	    boolean differs = false;
+	    for (int address = row; address < row + ROW_SIZE; address++) {
+		differs |= firstMemory.peekByte(address) != secondMemory.peekByte(address);
+	    }
+	    if (differs) {
+		out.printf("  %04X  first  %s%n", row, hex(firstMemory, row, ROW_SIZE));
+		out.printf("        second %s%n", hex(secondMemory, row, ROW_SIZE));
+		rows++;
+	    }
+	}
+	if (rows == 0) {
+	    out.println("  the memory of both runs is the same");
+	}
+	out.printf("  stack  first  %s%n", stack(first));
+	out.printf("         second %s%n", stack(second));
+    }
+
+    /**
+     * @return the bytes on the stack from the one that was pushed last, at most {@link #STACK_BYTES} of them
+     */
+    private static String stack(final CPU cpu) {
+	byte stackPointer = cpu.getRegisterFile().getStackPointer();
+	int pushed = BYTE_MASK - Byte.toUnsignedInt(stackPointer);
+	if (pushed == 0) {
+	    return "empty";
+	}
+	return hex(cpu.getMemory(), CPU.stackAddress((byte) (stackPointer + 1)), Math.min(STACK_BYTES, pushed));
+    }
+
+    private static String hex(final RAM memory, final int start, final int length) {
+	StringBuilder builder = new StringBuilder();
+	for (int address = start; address < start + length; address++) {
+	    if (address > start) {
+		builder.append(' ');
+	    }
+	    builder.append(String.format("%02X", memory.peekByte(address & ADDRESS_MASK)));
+	}
+	return builder.toString();
+    }
+}
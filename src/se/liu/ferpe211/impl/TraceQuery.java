@@ -0,0 +1,144 @@
+package se.liu.ferpe211.impl;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import se.liu.ferpe211.api.register.RegisterState;
+import se.liu.ferpe211.api.trace.TraceIndex;
+import se.liu.ferpe211.api.trace.TraceReader;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Command line entry point that looks up records of a trace recorded with {@code HeadlessRunner --trace --index}
+ * <p>
+ *     A query names a kind of posting and a hexadecimal address or value, e.g. {@code written 0200} for the instructions
+ *     that wrote to $0200, {@code executed C000 --before-cycle 5000000} for the last instruction at $C000 before a cycle or
+ *     {@code accumulator FF --first} for the first instruction that set the accumulator to $FF. A query reads the entry of
+ *     its key in the index and binary searches the records of the key, so it reads a handful of pages of the index and the
+ *     trace however long the trace is; printing every record reads one page of the trace per record.
+ * </p>
+ * Usage: {@code TraceQuery [options] <trace> <posting> <key>}
+ */
+public final class TraceQuery
+{
+    private static final String USAGE = "TraceQuery [options] <trace> <posting> <key>";
+    private static final int EXIT_USAGE = 2;
+    private static final int EXIT_FAILED = 1;
+    private static final int HEX_RADIX = 16;
+    private static final int ARGUMENTS = 3;
+    private static final double NANOS_PER_MILLI = 1.0e6;
+    private static final String DEFAULT_LIMIT = "20";
+
+    private TraceQuery() {}
+
+    public static void main(String... args) {
+	Options options = createOptions();
+	CommandLine commandLine;
+	try {
+	    CommandLineParser parser = new DefaultParser();
+	    commandLine = parser.parse(options, args);
+	} catch (ParseException e) {
+	    System.err.println(e.getMessage());
+	    printHelp(options);
+	    System.exit(EXIT_USAGE);
+	    return;
+	}
+
+	List<String> arguments = commandLine.getArgList();
+	if (commandLine.hasOption("help") || arguments.size() != ARGUMENTS) {
+	    printHelp(options);
+	    if (!commandLine.hasOption("help")) {
+		System.exit(EXIT_USAGE);
+	    }
+	    return;
+	}
+
+	TraceIndex.Posting posting;
+	int key;
+	long limit;
+	try {
+	    posting = TraceIndex.Posting.valueOf(arguments.get(1).toUpperCase(Locale.ROOT).replace('-', '_'));
+	    key = Integer.parseInt(arguments.get(2), HEX_RADIX);
+	    limit = Long.parseLong(commandLine.getOptionValue("limit", DEFAULT_LIMIT));
+	} catch (NumberFormatException e) {
+	    System.err.println("Invalid number: " + e.getMessage());
+	    System.exit(EXIT_USAGE);
+	    return;
+	} catch (IllegalArgumentException e) {
+	    System.err.println("Invalid posting: " + arguments.get(1));
+	    System.exit(EXIT_USAGE);
+	    return;
+	}
+
+	if (key < 0 || key >= posting.getKeys()) {
+	    System.err.printf("Invalid key: %s, keys of %s go up to %X%n", arguments.get(2), arguments.get(1),
+			      posting.getKeys() - 1);
+	    printHelp(options);
+	    System.exit(EXIT_USAGE);
+	    return;
+	}
+
+	Path tracePath = Path.of(arguments.get(0));
+	try (TraceReader trace = TraceReader.open(tracePath);
+	     TraceIndex index = TraceIndex.open(Path.of(arguments.get(0) + TraceIndex.FILE_SUFFIX)))
+	{
+	    long start = System.nanoTime();
+	    if (commandLine.hasOption("before-cycle")) {
+		long before = trace.findRecordAtCycle(Long.parseLong(commandLine.getOptionValue("before-cycle")));
+		printRecord(trace, index.findLast(posting, key, before));
+	    } else if (commandLine.hasOption("first")) {
+		printRecord(trace, index.findFirst(posting, key, 0));
+	    } else {
+		System.out.printf("%d records%n", index.count(posting, key));
+		long record = index.findFirst(posting, key, 0);
+		for (long printed = 0; record >= 0 && printed < limit; printed++) {
+		    printRecord(trace, record);
+		    record = index.findFirst(posting, key, record + 1);
+		}
+	    }
+	    System.out.printf("%.3f ms%n", (System.nanoTime() - start) / NANOS_PER_MILLI);
+	} catch (NumberFormatException e) {
+	    System.err.println("Invalid number: " + e.getMessage());
+	    System.exit(EXIT_USAGE);
+	} catch (IOException e) {
+	    System.err.println(tracePath + ": " + e.getMessage());
+	    System.exit(EXIT_FAILED);
+	}
+    }
+
+    private static Options createOptions() {
+	Options options = new Options();
+	options.addOption(Option.builder("b").longOpt("before-cycle").hasArg().argName("cycle")
+				  .desc("print the last record before this cycle").build());
+	options.addOption("f", "first", false, "print the first record");
+	options.addOption(Option.builder("n").longOpt("limit").hasArg().argName("records")
+				  .desc("print at most this many records when printing all of them, default " + DEFAULT_LIMIT)
+				  .build());
+	options.addOption("h", "help", false, "print this message");
+	return options;
+    }
+
+    private static void printHelp(final Options options) {
+	new HelpFormatter().printHelp(USAGE, "postings: executed, read, written, accumulator, index-x, index-y", options, "");
+    }
+
+    private static void printRecord(final TraceReader trace, final long record) {
+	if (record < 0) {
+	    System.out.println("no record");
+	    return;
+	}
+	RegisterState registers = trace.getRegisters(record);
+	System.out.printf("record %d: instruction %d, cycle %d, PC=%04X SP=%02X A=%02X X=%02X Y=%02X P=%02X%n", record,
+			  trace.getFirstInstruction() + record, trace.getCycleCount(record), registers.programCounter(),
+			  registers.stackPointer(), registers.accumulator(), registers.indexX(), registers.indexY(),
+			  registers.status());
+    }
+}
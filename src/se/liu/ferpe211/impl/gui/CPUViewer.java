@@ -1,12 +1,15 @@
 package se.liu.ferpe211.impl.gui;
 
 import se.liu.ferpe211.api.CPU;
+import se.liu.ferpe211.api.RewindBuffer;
+import se.liu.ferpe211.api.state.SaveStateFile;
 import se.liu.ferpe211.impl.Emulator;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.io.File;
+import java.io.IOException;
 import java.util.logging.Level;
 
 /**
@@ -18,6 +21,7 @@ public class CPUViewer
 {
     private JFrame frame = null;
     private MemoryPanel memoryPanel = null;
+    private RewindBuffer rewindBuffer = null;
     private Emulator emulator;
 
     /**
@@ -27,6 +31,11 @@ public class CPUViewer
     private static final int HEIGHT = 600;
     private static final int RADIX = 16;
 
+    /**
+     * Amount of instructions that can be stepped back
+     */
+    private static final int REWIND_CAPACITY = 1 << 16;
+
     public CPUViewer(Emulator emulator) {
 	this.emulator = emulator;
     }
@@ -62,6 +71,36 @@ public class CPUViewer
 	});
 	fileMenu.add(exportMenuItem);
 
+	JMenuItem saveStateMenuItem = new JMenuItem("Save State");
+	saveStateMenuItem.addActionListener((ActionEvent e) -> {
+	    JFileChooser fileChooser = new JFileChooser();
+	    int result = fileChooser.showSaveDialog(frame);
+	    if (result == JFileChooser.APPROVE_OPTION) {
+		File selectedFile = fileChooser.getSelectedFile();
+		try {
+		    SaveStateFile.write(cpu.snapshot(), selectedFile.toPath(), true);
+		} catch (IOException ex) {
+		    Emulator.LOGGER.log(Level.SEVERE, "Error writing save state", ex);
+		}
+	    }
+	});
+	fileMenu.add(saveStateMenuItem);
+
+	JMenuItem loadStateMenuItem = new JMenuItem("Load State");
+	loadStateMenuItem.addActionListener((ActionEvent e) -> {
+	    JFileChooser fileChooser = new JFileChooser();
+	    int result = fileChooser.showOpenDialog(frame);
+	    if (result == JFileChooser.APPROVE_OPTION) {
+		File selectedFile = fileChooser.getSelectedFile();
+		try {
+		    cpu.restore(SaveStateFile.read(selectedFile.toPath()));
+		} catch (IOException ex) {
+		    Emulator.LOGGER.log(Level.SEVERE, "Error reading save state", ex);
+		}
+	    }
+	});
+	fileMenu.add(loadStateMenuItem);
+
 	JMenuItem exitMenuItem = new JMenuItem("Exit");
 	exitMenuItem.addActionListener((ActionEvent e) -> System.exit(0));
 	fileMenu.add(exitMenuItem);
@@ -82,6 +121,37 @@ public class CPUViewer
 	});
 	editMenu.add(stepMenuItem);
 
+	rewindBuffer = new RewindBuffer(cpu, REWIND_CAPACITY);
+
+	JMenuItem stepBackMenuItem = new JMenuItem("Step Back");
+	stepBackMenuItem.addActionListener((ActionEvent e) -> {
+	    cpu.stop();
+	    rewindBuffer.stepBack();
+	});
+	stepBackMenuItem.setEnabled(false);
+
+	JMenuItem rewindMenuItem = new JMenuItem("Rewind");
+	rewindMenuItem.addActionListener((ActionEvent e) -> handleRewind());
+	rewindMenuItem.setEnabled(false);
+
+	// Recording slows down unthrottled runs, so it is off until asked for
+	JCheckBoxMenuItem recordMenuItem = new JCheckBoxMenuItem("Record for Step Back");
+	recordMenuItem.addActionListener((ActionEvent e) -> {
+	    cpu.stop();
+	    if (recordMenuItem.isSelected()) {
+		rewindBuffer.start();
+	    } else {
+		// What was recorded no longer leads up to the state once execution goes on without recording
+		rewindBuffer.stop();
+		rewindBuffer.clear();
+	    }
+	    stepBackMenuItem.setEnabled(rewindBuffer.isRecording());
+	    rewindMenuItem.setEnabled(rewindBuffer.isRecording());
+	});
+	editMenu.add(recordMenuItem);
+	editMenu.add(stepBackMenuItem);
+	editMenu.add(rewindMenuItem);
+
 	JMenuItem executeMenuItem = new JMenuItem("Execute");
 	executeMenuItem.addActionListener((ActionEvent e) -> cpu.executeThread());
 	editMenu.add(executeMenuItem);
@@ -135,6 +205,25 @@ public class CPUViewer
 	}
     }
 
+    /**
+     * Method for handling when user wants to undo several instructions at once
+     * Stops the CPU first, at most the amount of recorded instructions are undone
+     */
+    private void handleRewind(){
+	String input = JOptionPane.showInputDialog(frame, "Enter the amount of instructions to undo (at most " + rewindBuffer.size() + "):");
+	if (input != null && !input.isEmpty()) {
+	    try {
+		int count = Integer.parseInt(input.trim());
+		emulator.getCpu().stop();
+		rewindBuffer.rewind(count);
+	    } catch (NumberFormatException ex) {
+		String errorMessage = "Encountered exception when parsing instruction count: " + ex;
+		Emulator.LOGGER.log(Level.SEVERE, errorMessage);
+		JOptionPane.showMessageDialog(frame, errorMessage, "Error", JOptionPane.ERROR_MESSAGE);
+	    }
+	}
+    }
+
     public void show(){
 	frame = new JFrame();
 
@@ -3,6 +3,8 @@ package se.liu.ferpe211.impl.gui;
 import se.liu.ferpe211.api.CPU;
 import se.liu.ferpe211.api.event.CPUListener;
 import se.liu.ferpe211.api.event.EventType;
+import se.liu.ferpe211.api.memory.DirtyPageTracker;
+import se.liu.ferpe211.api.memory.RAM;
 import se.liu.ferpe211.impl.Emulator;
 import se.liu.jonkv82.annotations.BorrowedCode;
 
@@ -27,6 +29,7 @@ public class MemoryPanel extends JPanel implements CPUListener
     private JTable memoryTable;
     private DefaultTableModel tableModel;
     private Map<Integer, String> memoryValues;
+    private DirtyPageTracker dirtyPages;
     private int highlightedAddress = -1;
     private boolean patching;
     private static final int WIDTH = 200;
@@ -35,6 +38,7 @@ public class MemoryPanel extends JPanel implements CPUListener
 
     public MemoryPanel(CPU cpu) {
 	this.cpu = cpu;
+	this.dirtyPages = cpu.getMemory().trackDirtyPages();
 	initializeMemoryValues();
 	setUpUI();
 	patching = (boolean) cpu.getSettingsManager().getSetting("patching").getValue();
@@ -43,7 +47,25 @@ public class MemoryPanel extends JPanel implements CPUListener
     private void initializeMemoryValues() {
 	memoryValues = new HashMap<>();
 	for (int i = 0; i < cpu.getMemory().size(); i++) {
-	    memoryValues.put(i, String.format("%02X", cpu.getMemory().readByte(i)));
+	    memoryValues.put(i, String.format("%02X", cpu.getMemory().peekByte(i)));
+	}
+	dirtyPages.takeDirtyPages();
+    }
+
+    /**
+     * Re-reads the values of the pages that changed since the last update, and only repaints their rows
+     */
+    private void updateDirtyPages() {
+	long[] dirty = dirtyPages.takeDirtyPages();
+	for (int page = 0; page < RAM.PAGE_COUNT; page++) {
+	    if (!DirtyPageTracker.isDirty(dirty, page)) {
+		continue;
+	    }
+	    int start = page << RAM.PAGE_SHIFT;
+	    for (int i = start; i < start + RAM.PAGE_SIZE; i++) {
+		memoryValues.put(i, String.format("%02X", cpu.getMemory().peekByte(i)));
+	    }
+	    tableModel.fireTableRowsUpdated(start, start + RAM.PAGE_SIZE - 1);
 	}
     }
 
@@ -67,6 +89,14 @@ public class MemoryPanel extends JPanel implements CPUListener
 		return patching && column == 1;
 	    }
 
+	    @Override
+	    public Object getValueAt(int row, int column) {
+		if (column == 1) {
+		    return memoryValues.get(row);
+		}
+		return super.getValueAt(row, column);
+	    }
+
 	    @Override
 	    public void setValueAt(Object newValue, int row, int column)
 	    {
@@ -145,16 +175,16 @@ public class MemoryPanel extends JPanel implements CPUListener
 
     /**
      * Method for handling cpu change events
-     * When memory is changed, we update the memory values and memory table
+     * When memory is changed or instructions are executed or undone, we update the values of the pages that were written to
      * When settings are changed, we update the patching boolean in order to make the user able to modify the memory contents
      * @param eventType
      */
     @Override public void cpuChanged(final EventType eventType) {
 	this.highlightedAddress = cpu.getProgramCounter().getValue();
-	if(eventType == EventType.MEMORY_CHANGED || eventType == EventType.CPU_RESET){
-	    initializeMemoryValues();
-	    updateMemoryTable();
-	    tableModel.fireTableDataChanged();
+	if(eventType == EventType.MEMORY_CHANGED || eventType == EventType.CPU_RESET ||
+	   eventType == EventType.INSTRUCTION_EXECUTED || eventType == EventType.BATCH_EXECUTED ||
+	   eventType == EventType.INSTRUCTIONS_UNDONE){
+	    updateDirtyPages();
 	}
 
 	if(eventType == EventType.SETTINGS_CHANGED){
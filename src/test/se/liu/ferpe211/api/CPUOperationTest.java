@@ -3,11 +3,16 @@ package se.liu.ferpe211.api;
 import junit.framework.TestCase;
 import org.junit.Assert;
 import org.junit.Test;
+import se.liu.ferpe211.api.event.EventType;
+import se.liu.ferpe211.api.execution.EngineType;
 import se.liu.ferpe211.api.operation.OpCode;
 import se.liu.ferpe211.api.operation.OpCodeMapper;
 import se.liu.ferpe211.api.register.IndexRegisterType;
 import se.liu.ferpe211.api.register.ProcessorFlag;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * This class stores different test cases related to the CPU
  */
@@ -1278,4 +1283,237 @@ public class CPUOperationTest extends TestCase
 
         Assert.assertTrue(cpu.getProcessorStatus().getFlag(ProcessorFlag.INTERRUPT_DISABLE));
     }
+
+    /** Tests that undefined opcodes decode to a handler that halts execution */
+    @Test
+    public void testIllegalOpcode() {
+        CPU cpu = new CPU();
+        cpu.reset();
+
+        for (int opcode = 0; opcode < 256; opcode++) {
+            Assert.assertNotNull(cpu.getOperationManager().getInstruction((byte) opcode));
+        }
+
+        // 0x02 is one of the JAM opcodes on the 6502 and is not supported
+        cpu.getMemory().writeByte(0, (byte) 0x02);
+        cpu.getMemory().writeByte(1, OpCodeMapper.getByteFromOpCode(OpCode.LDA_IM));
+        cpu.getMemory().writeByte(2, (byte) 0x69);
+        cpu.execute();
+
+        Assert.assertEquals(1, cpu.getProgramCounter().getValue());
+        Assert.assertEquals((byte) 0x00, cpu.getAccumulator().getValue());
+    }
+
+    /** Tests the batched execution methods and that they only notify listeners once per batch */
+    @Test
+    public void testBatchExecution() {
+        CPU cpu = new CPU();
+        cpu.reset();
+        List<EventType> events = new ArrayList<>();
+        cpu.addListener(events::add);
+
+        // NOP NOP NOP NOP BRK
+        for (int address = 0; address < 4; address++) {
+            cpu.getMemory().writeByte(address, OpCodeMapper.getByteFromOpCode(OpCode.NOP));
+        }
+        cpu.getMemory().writeByte(4, OpCodeMapper.getByteFromOpCode(OpCode.BRK));
+
+        Assert.assertEquals(2, cpu.runInstructions(2));
+        Assert.assertEquals(2, cpu.getProgramCounter().getValue());
+        Assert.assertTrue(cpu.isExecuting());
+        Assert.assertEquals(List.of(EventType.BATCH_EXECUTED), events);
+
+        // Each NOP takes 2 cycles, so a budget of 3 cycles executes both of the remaining ones
+        Assert.assertEquals(4, cpu.runCycles(3));
+        Assert.assertEquals(4, cpu.getProgramCounter().getValue());
+        Assert.assertEquals(8, cpu.getCycleCount());
+
+        Assert.assertEquals(1, cpu.runUntil(c -> false));
+        Assert.assertFalse(cpu.isExecuting());
+        Assert.assertEquals(5, cpu.getInstructionCount());
+
+        // The program counter is moved back instead of resetting since reset also clears the memory
+        cpu.getProgramCounter().setValue(0);
+        events.clear();
+        cpu.setNotificationInterval(2);
+        Assert.assertEquals(3, cpu.runUntil(c -> c.getProgramCounter().getValue() == 3));
+        Assert.assertEquals(8, cpu.getInstructionCount());
+        Assert.assertEquals(List.of(EventType.BATCH_EXECUTED, EventType.BATCH_EXECUTED), events);
+    }
+
+    /** Tests that the lazily evaluated negative and zero flags are visible to every reader of the status register */
+    @Test
+    public void testLazyNegativeZeroFlags() {
+        CPU cpu = new CPU();
+        cpu.reset();
+
+        // LDA #$00, PHP, SEC, LDA #$80, BEQ +2, BMI +1, NOP, BRK
+        cpu.getMemory().writeByte(0, OpCodeMapper.getByteFromOpCode(OpCode.LDA_IM));
+        cpu.getMemory().writeByte(1, (byte) 0x00);
+        cpu.getMemory().writeByte(2, OpCodeMapper.getByteFromOpCode(OpCode.PHP));
+        cpu.getMemory().writeByte(3, OpCodeMapper.getByteFromOpCode(OpCode.SEC));
+        cpu.getMemory().writeByte(4, OpCodeMapper.getByteFromOpCode(OpCode.LDA_IM));
+        cpu.getMemory().writeByte(5, (byte) 0x80);
+        cpu.getMemory().writeByte(6, OpCodeMapper.getByteFromOpCode(OpCode.BEQ));
+        cpu.getMemory().writeByte(7, (byte) 0x02);
+        cpu.getMemory().writeByte(8, OpCodeMapper.getByteFromOpCode(OpCode.BMI));
+        cpu.getMemory().writeByte(9, (byte) 0x01);
+        cpu.getMemory().writeByte(10, OpCodeMapper.getByteFromOpCode(OpCode.NOP));
+        cpu.getMemory().writeByte(11, OpCodeMapper.getByteFromOpCode(OpCode.BRK));
+
+        Assert.assertEquals(3, cpu.runInstructions(3));
+        byte pushed = cpu.getMemory().readByte(0xFF);
+        Assert.assertEquals(ProcessorFlag.ZERO.getMask(), (byte) (pushed & (ProcessorFlag.ZERO.getMask() | ProcessorFlag.NEGATIVE.getMask())));
+        Assert.assertTrue(cpu.getProcessorStatus().getFlag(ProcessorFlag.CARRY));
+
+        // BEQ is not taken and BMI skips the NOP
+        Assert.assertEquals(3, cpu.runInstructions(3));
+        Assert.assertEquals(11, cpu.getProgramCounter().getValue());
+        Assert.assertTrue(cpu.getProcessorStatus().getFlag(ProcessorFlag.NEGATIVE));
+        Assert.assertFalse(cpu.getProcessorStatus().getFlag(ProcessorFlag.ZERO));
+        Assert.assertTrue(cpu.getProcessorStatus().getFlag(ProcessorFlag.CARRY));
+
+        // Setting one of the lazy flags explicitly keeps the other one
+        cpu.getProcessorStatus().setFlag(ProcessorFlag.ZERO, true);
+        Assert.assertTrue(cpu.getProcessorStatus().getFlag(ProcessorFlag.NEGATIVE));
+        Assert.assertTrue(cpu.getProcessorStatus().getFlag(ProcessorFlag.ZERO));
+    }
+
+    /** Tests that the CPU builder sets up the settings from memory and builds working CPUs */
+    @Test
+    public void testBuilder() {
+        CPU cpu = CPU.builder().setting("ClockFrequency", 1000.0).build();
+        Assert.assertEquals(1000.0, cpu.getSettingsManager().getSetting("clockfrequency").getValue());
+        Assert.assertEquals(false, cpu.getSettingsManager().getSetting("patching").getValue());
+
+        CPU copy = CPU.builder().settings(cpu.getSettingsManager().getSnapshot()).setting("Patching", true).build();
+        Assert.assertEquals(1000.0, copy.getSettingsManager().getSetting("clockfrequency").getValue());
+        Assert.assertEquals(true, copy.getSettingsManager().getSetting("patching").getValue());
+
+        copy.getMemory().writeByte(0, OpCodeMapper.getByteFromOpCode(OpCode.LDA_IM));
+        copy.getMemory().writeByte(1, (byte) 0x42);
+        copy.execute();
+        Assert.assertEquals((byte) 0x42, copy.getAccumulator().getValue());
+    }
+
+    /** Tests that every CPU decodes to the same stateless instructions while keeping its own state */
+    @Test
+    public void testSharedInstructions() {
+        CPU first = CPU.builder().build();
+        CPU second = CPU.builder().build();
+        Assert.assertSame(first.getOperationManager(), second.getOperationManager());
+
+        // The CPUs take turns executing the same instruction objects with different operands
+        first.getMemory().writeByte(0, OpCodeMapper.getByteFromOpCode(OpCode.LDA_IM));
+        first.getMemory().writeByte(1, (byte) 0x11);
+        second.getMemory().writeByte(0, OpCodeMapper.getByteFromOpCode(OpCode.LDA_IM));
+        second.getMemory().writeByte(1, (byte) 0x22);
+        first.executeNextInstruction();
+        second.executeNextInstruction();
+
+        Assert.assertEquals((byte) 0x11, first.getAccumulator().getValue());
+        Assert.assertEquals((byte) 0x22, second.getAccumulator().getValue());
+    }
+
+    /** Tests that a CPU given back to a pool is handed out again in the state of a new CPU */
+    @Test
+    public void testPool() {
+        CPUPool pool = new CPUPool(CPU.builder(), 1);
+        CPU cpu = pool.borrow();
+        Assert.assertEquals(0, pool.getIdleCount());
+
+        // LDX #$42, STX $1234, BRK
+        cpu.getMemory().writeByte(0, OpCodeMapper.getByteFromOpCode(OpCode.LDX_IM));
+        cpu.getMemory().writeByte(1, (byte) 0x42);
+        cpu.getMemory().writeByte(2, OpCodeMapper.getByteFromOpCode(OpCode.STX_ABS));
+        cpu.getMemory().writeByte(3, (byte) 0x34);
+        cpu.getMemory().writeByte(4, (byte) 0x12);
+        cpu.getMemory().writeByte(5, OpCodeMapper.getByteFromOpCode(OpCode.BRK));
+        cpu.setEngine(EngineType.SWITCH);
+        cpu.execute();
+        Assert.assertEquals((byte) 0x42, cpu.getMemory().readByte(0x1234));
+        pool.giveBack(cpu);
+
+        CPU reused = pool.borrow();
+        Assert.assertSame(cpu, reused);
+        Assert.assertEquals(EngineType.BLOCK_CACHE, reused.getEngineType());
+        Assert.assertEquals((byte) 0, reused.getIndexRegister(IndexRegisterType.X).getValue());
+        Assert.assertEquals(0, reused.getProgramCounter().getValue());
+        Assert.assertArrayEquals(new byte[reused.getMemory().size()], reused.getMemory().getData());
+
+        // An empty pool builds a new CPU instead of waiting
+        Assert.assertNotSame(reused, pool.borrow());
+    }
+
+    /** Tests that a forked CPU continues from the state of its parent without either affecting the other */
+    @Test
+    public void testFork() {
+        CPU parent = TestPrograms.createCounter();
+        parent.runInstructions(21);
+        Assert.assertEquals((byte) 0x05, parent.getMemory().readByte(0x0400));
+
+        // The child counts to $10 instead, from where the parent is now
+        CPU child = parent.fork();
+        child.getMemory().writeByte(TestPrograms.COUNTER_LIMIT, (byte) 0x10);
+        Assert.assertEquals(parent.getInstructionCount(), child.getInstructionCount());
+        Assert.assertEquals(parent.getProgramCounter().getValue(), child.getProgramCounter().getValue());
+
+        parent.execute();
+        child.execute();
+        Assert.assertEquals((byte) 0x20, parent.getMemory().readByte(0x0400));
+        Assert.assertEquals((byte) 0x10, child.getMemory().readByte(0x0400));
+        Assert.assertEquals((byte) 0x20, parent.getMemory().readByte(TestPrograms.COUNTER_LIMIT));
+        // Four instructions per remaining iteration and the BRK
+        Assert.assertEquals(21 + (0x20 - 0x05) * 4 + 1, parent.getInstructionCount());
+        Assert.assertEquals(21 + (0x10 - 0x05) * 4 + 1, child.getInstructionCount());
+    }
+
+    /** Tests stepping back with a rewind buffer, both within and past its capacity */
+    @Test
+    public void testRewind() {
+        CPU cpu = TestPrograms.createCounter();
+        RewindBuffer rewindBuffer = new RewindBuffer(cpu, 16);
+        rewindBuffer.start();
+        cpu.runInstructions(21);
+        long instructionCount = cpu.getInstructionCount();
+        long cycleCount = cpu.getCycleCount();
+        int programCounter = cpu.getProgramCounter().getValue();
+        byte accumulator = cpu.getRegisterFile().getAccumulator();
+        byte status = cpu.getRegisterFile().getStatus();
+        Assert.assertEquals((byte) 0x05, cpu.getMemory().readByte(0x0400));
+
+        cpu.runInstructions(9);
+        Assert.assertEquals((byte) 0x07, cpu.getMemory().readByte(0x0400));
+        Assert.assertEquals(9, rewindBuffer.rewind(9));
+        Assert.assertEquals(instructionCount, cpu.getInstructionCount());
+        Assert.assertEquals(cycleCount, cpu.getCycleCount());
+        Assert.assertEquals(programCounter, cpu.getProgramCounter().getValue());
+        Assert.assertEquals(accumulator, cpu.getRegisterFile().getAccumulator());
+        Assert.assertEquals(status, cpu.getRegisterFile().getStatus());
+        Assert.assertEquals((byte) 0x05, cpu.getMemory().readByte(0x0400));
+
+        // A run leaves only a checkpoint every interval, going back in between executes the rest again
+        cpu.execute();
+        Assert.assertEquals((byte) 0x20, cpu.getMemory().readByte(0x0400));
+        Assert.assertEquals(21 + (0x20 - 0x05) * 4 + 1, rewindBuffer.size());
+        Assert.assertEquals(100, rewindBuffer.rewind(100));
+        Assert.assertEquals(21 + (0x20 - 0x05) * 4 + 1 - 100, cpu.getInstructionCount());
+        Assert.assertEquals((byte) 0x07, cpu.getMemory().readByte(0x0400));
+
+        // Single steps leave a checkpoint each, only the last 16 of them are kept
+        for (int i = 0; i < 20; i++) {
+            cpu.executeNextInstruction();
+        }
+        Assert.assertEquals(16, rewindBuffer.rewind(100));
+        Assert.assertFalse(rewindBuffer.stepBack());
+
+        // Running on from the rewound state ends up where the first run did
+        cpu.execute();
+        Assert.assertEquals((byte) 0x20, cpu.getMemory().readByte(0x0400));
+        Assert.assertEquals(21 + (0x20 - 0x05) * 4 + 1, cpu.getInstructionCount());
+
+        cpu.reset();
+        Assert.assertEquals(0, rewindBuffer.size());
+        rewindBuffer.stop();
+    }
 }
@@ -0,0 +1,54 @@
+package se.liu.ferpe211.api;
+
+import se.liu.ferpe211.api.execution.EngineType;
+import se.liu.ferpe211.api.operation.OpCode;
+import se.liu.ferpe211.api.operation.OpCodeMapper;
+
+/**
+ * Small programs shared by the test cases
+ */
+public final class TestPrograms
+{
+    /**
+     * Address the counter stores its value at
+     */
+    public static final int COUNTER = 0x0400;
+
+    /**
+     * Address of the operand of the compare, the value the counter counts to
+     */
+    public static final int COUNTER_LIMIT = 7;
+
+    private TestPrograms() {}
+
+    /**
+     * CLC, loop: ADC #$01, STA $0400, CMP #$20, BNE loop, BRK
+     * Four instructions per iteration, so after 21 instructions the counter is 5
+     */
+    public static CPU createCounter() {
+        return createCounter(EngineType.BLOCK_CACHE, 0x20);
+    }
+
+    /**
+     * @see #createCounter()
+     */
+    public static CPU createCounter(final EngineType engineType) {
+        return createCounter(engineType, 0x20);
+    }
+
+    /**
+     * CLC, loop: ADC #$01, STA $0400, CMP #limit, BNE loop, BRK
+     */
+    public static CPU createCounter(final EngineType engineType, final int limit) {
+        CPU cpu = CPU.builder().engine(engineType).build();
+        cpu.getMemory().load(0, new byte[] {
+                OpCodeMapper.getByteFromOpCode(OpCode.CLC),
+                OpCodeMapper.getByteFromOpCode(OpCode.ADC_IM), 0x01,
+                OpCodeMapper.getByteFromOpCode(OpCode.STA_ABS), (byte) COUNTER, (byte) (COUNTER >>> Byte.SIZE),
+                OpCodeMapper.getByteFromOpCode(OpCode.CMP_IM), (byte) limit,
+                OpCodeMapper.getByteFromOpCode(OpCode.BNE), (byte) 0xF7,
+                OpCodeMapper.getByteFromOpCode(OpCode.BRK)
+        });
+        return cpu;
+    }
+}
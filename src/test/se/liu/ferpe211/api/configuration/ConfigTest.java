@@ -0,0 +1,59 @@
+package se.liu.ferpe211.api.configuration;
+
+import junit.framework.TestCase;
+import org.junit.Assert;
+import org.junit.Test;
+import se.liu.ferpe211.api.CPU;
+import se.liu.ferpe211.api.configuration.settings.SettingsManager;
+import se.liu.ferpe211.api.configuration.settings.impl.SettingBoolean;
+import se.liu.ferpe211.api.event.EventType;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Test cases for the Config {@link Config}
+ * Here we test that only setting changes are persisted and that the written file can be loaded again
+ */
+public class ConfigTest extends TestCase
+{
+
+    @Test
+    public void testSettingChangesArePersisted() throws IOException {
+        Path directory = Files.createTempDirectory("config-test");
+        String configFile = directory.resolve("config").toString();
+        Path configPath = directory.resolve("config.json");
+
+        try {
+            CPU cpu = CPU.builder().build();
+            SettingsManager settingsManager = new SettingsManager(cpu);
+            settingsManager.register(new SettingBoolean("Patching", "Enable patching of memory"));
+            Config config = new Config(configFile, settingsManager);
+            cpu.addListener(config);
+            Assert.assertTrue(Files.exists(configPath));
+
+            // Executing instructions must not touch the config file
+            Files.delete(configPath);
+            config.cpuChanged(EventType.INSTRUCTION_EXECUTED);
+            config.cpuChanged(EventType.BATCH_EXECUTED);
+            config.flush();
+            Assert.assertFalse(Files.exists(configPath));
+
+            settingsManager.setSettingValue("patching", true);
+            config.flush();
+            Assert.assertTrue(Files.exists(configPath));
+            Assert.assertFalse(Files.exists(directory.resolve("config.temp.json")));
+
+            SettingsManager reloadedManager = new SettingsManager(cpu);
+            reloadedManager.register(new SettingBoolean("Patching", "Enable patching of memory"));
+            new Config(configFile, reloadedManager);
+            Assert.assertEquals(Boolean.TRUE, reloadedManager.getSetting("patching").getValue());
+        } finally {
+            Files.deleteIfExists(configPath);
+            Files.deleteIfExists(directory.resolve("config.temp.json"));
+            Files.delete(directory);
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+package se.liu.ferpe211.api.execution;
+
+import junit.framework.TestCase;
+import org.junit.Assert;
+import org.junit.Test;
+import se.liu.ferpe211.api.CPU;
+import se.liu.ferpe211.api.operation.OpCode;
+import se.liu.ferpe211.api.operation.OpCodeMapper;
+import se.liu.ferpe211.api.register.RegisterState;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test cases for the {@link BatchExecutor}
+ * Here we test that every job runs in isolation and that the results are returned in the order of the jobs
+ */
+public class BatchExecutorTest extends TestCase
+{
+    private static final int JOB_COUNT = 1000;
+    private static final int PARALLELISM = 4;
+
+    @Test
+    public void testResultsMatchJobs() {
+        List<BatchExecutor.Job> jobs = new ArrayList<>();
+        for (int i = 0; i < JOB_COUNT; i++) {
+            if (i % 10 == 0) {
+                // JMP $0000, never halts so it has to be stopped by the cycle limit
+                byte[] loop = { OpCodeMapper.getByteFromOpCode(OpCode.JMP_ABS), 0x00, 0x00 };
+                jobs.add(new BatchExecutor.Job(loop, 300));
+            } else {
+                // LDA #i, ADC $10, BRK where $10 is only set by the previous job if memory is not cleared
+                byte[] program = { OpCodeMapper.getByteFromOpCode(OpCode.LDA_IM), (byte) i,
+                        OpCodeMapper.getByteFromOpCode(OpCode.ADC_ZP), 0x10, OpCodeMapper.getByteFromOpCode(OpCode.BRK) };
+                RegisterState registers = new RegisterState(0x0100, (byte) 0, (byte) i, (byte) 0, (byte) 0xFF, (byte) 0);
+                jobs.add(new BatchExecutor.Job(program, 0x0100, registers, 0));
+            }
+        }
+
+        List<BatchExecutor.Result> results;
+        try (BatchExecutor executor = new BatchExecutor(PARALLELISM, () -> CPU.builder().build())) {
+            results = executor.execute(jobs);
+        }
+
+        Assert.assertEquals(JOB_COUNT, results.size());
+        for (int i = 0; i < JOB_COUNT; i++) {
+            BatchExecutor.Result result = results.get(i);
+            if (i % 10 == 0) {
+                Assert.assertFalse(result.halted());
+                Assert.assertEquals(300, result.cycles());
+                Assert.assertEquals(100, result.instructions());
+            } else {
+                Assert.assertTrue(result.halted());
+                Assert.assertEquals(3, result.instructions());
+                Assert.assertEquals((byte) i, result.registers().accumulator());
+                Assert.assertEquals((byte) i, result.registers().indexX());
+                Assert.assertEquals(0x0105, result.registers().programCounter());
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package se.liu.ferpe211.api.execution;
+
+import junit.framework.TestCase;
+import org.junit.Assert;
+import org.junit.Test;
+import se.liu.ferpe211.api.CPU;
+import se.liu.ferpe211.api.memory.RAM;
+import se.liu.ferpe211.api.operation.OpCode;
+import se.liu.ferpe211.api.operation.OpCodeMapper;
+import se.liu.ferpe211.api.operation.instruction.Instruction;
+import se.liu.ferpe211.api.register.IndexRegisterType;
+
+/**
+ * Test cases for the {@link BlockCache}
+ * Here we test that cached blocks are dropped when the memory they were decoded from changes
+ */
+public class BlockCacheTest extends TestCase
+{
+    @Test
+    public void testSelfModifyingCode() {
+        CPU cpu = CPU.builder().build();
+        RAM memory = cpu.getMemory();
+
+        // LDA #$42, STA $0006, LDX #$00, BRK where the STA overwrites the operand of the LDX in the same block
+        memory.writeByte(0, OpCodeMapper.getByteFromOpCode(OpCode.LDA_IM));
+        memory.writeByte(1, (byte) 0x42);
+        memory.writeByte(2, OpCodeMapper.getByteFromOpCode(OpCode.STA_ABS));
+        memory.writeByte(3, (byte) 0x06);
+        memory.writeByte(4, (byte) 0x00);
+        memory.writeByte(5, OpCodeMapper.getByteFromOpCode(OpCode.LDX_IM));
+        memory.writeByte(6, (byte) 0x00);
+        memory.writeByte(7, OpCodeMapper.getByteFromOpCode(OpCode.BRK));
+        cpu.execute();
+        Assert.assertEquals((byte) 0x42, cpu.getIndexRegister(IndexRegisterType.X).getValue());
+
+        // Changing the program from outside between runs is picked up as well
+        memory.writeByte(1, (byte) 0x17);
+        cpu.getProgramCounter().setValue(0);
+        cpu.execute();
+        Assert.assertEquals((byte) 0x17, cpu.getIndexRegister(IndexRegisterType.X).getValue());
+        Assert.assertEquals(8, cpu.getInstructionCount());
+    }
+
+    @Test
+    public void testLoopMatchesInterpreter() {
+        CPU cached = CPU.builder().build();
+        CPU interpreted = CPU.builder().build();
+        for (CPU cpu : new CPU[] { cached, interpreted }) {
+            // LDA #$00, loop: ADC #$03, CMP #$30, BNE loop, BRK
+            RAM memory = cpu.getMemory();
+            memory.writeByte(0, OpCodeMapper.getByteFromOpCode(OpCode.LDA_IM));
+            memory.writeByte(1, (byte) 0x00);
+            memory.writeByte(2, OpCodeMapper.getByteFromOpCode(OpCode.ADC_IM));
+            memory.writeByte(3, (byte) 0x03);
+            memory.writeByte(4, OpCodeMapper.getByteFromOpCode(OpCode.CMP_IM));
+            memory.writeByte(5, (byte) 0x30);
+            memory.writeByte(6, OpCodeMapper.getByteFromOpCode(OpCode.BNE));
+            memory.writeByte(7, (byte) 0xFA);
+            memory.writeByte(8, OpCodeMapper.getByteFromOpCode(OpCode.BRK));
+        }
+
+        cached.execute();
+
+        // Fetch and decode every instruction again, the way the CPU did before the cache
+        int instructions = 0;
+        interpreted.setExecuting(true);
+        while (interpreted.isExecuting()) {
+            int address = interpreted.getProgramCounter().getValue();
+            interpreted.getProgramCounter().setValue(address + 1);
+            Instruction instruction = interpreted.getOperationManager().getInstruction(interpreted.getMemory().readByte(address));
+            instruction.execute(interpreted);
+            instructions++;
+        }
+
+        Assert.assertEquals(instructions, cached.getInstructionCount());
+        Assert.assertEquals(interpreted.getProgramCounter().getValue(), cached.getProgramCounter().getValue());
+        Assert.assertEquals(interpreted.getRegisterFile().getStatus(), cached.getRegisterFile().getStatus());
+        Assert.assertEquals((byte) 0x30, cached.getAccumulator().getValue());
+    }
+}
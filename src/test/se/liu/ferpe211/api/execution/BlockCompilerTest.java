@@ -0,0 +1,79 @@
+package se.liu.ferpe211.api.execution;
+
+import junit.framework.TestCase;
+import org.junit.Assert;
+import org.junit.Test;
+import se.liu.ferpe211.api.CPU;
+import se.liu.ferpe211.api.memory.RAM;
+import se.liu.ferpe211.api.operation.OpCode;
+import se.liu.ferpe211.api.operation.OpCodeMapper;
+import se.liu.ferpe211.api.register.IndexRegisterType;
+
+/**
+ * Test cases for the {@link BlockCompiler}
+ * Here we test that compiled blocks give the same results as interpreted ones and that they are dropped when their code changes
+ */
+public class BlockCompilerTest extends TestCase
+{
+    private static final int ITERATION_INSTRUCTIONS = 7;
+    private static final int COUNTER = 0xF0;
+    private static final int POINTER = 0x80;
+    private static final int LDX_OPERAND = 0x020A;
+
+    /**
+     * Writes a loop at $0200 that increments the counter at $F0 and stores it through the pointer at $80
+     * LDA $F0, CLC, ADC #$01, STA $F0, STA ($80),Y, LDX #$00, JMP $0200
+     */
+    private static CPU createLoop(int compileThreshold) {
+        CPU cpu = CPU.builder().build();
+        cpu.getBlockCache().setCompileThreshold(compileThreshold);
+        RAM memory = cpu.getMemory();
+        int address = 0x0200;
+        byte[] program = { OpCodeMapper.getByteFromOpCode(OpCode.LDA_ZP), (byte) COUNTER,
+                OpCodeMapper.getByteFromOpCode(OpCode.CLC),
+                OpCodeMapper.getByteFromOpCode(OpCode.ADC_IM), 0x01,
+                OpCodeMapper.getByteFromOpCode(OpCode.STA_ZP), (byte) COUNTER,
+                OpCodeMapper.getByteFromOpCode(OpCode.STA_INDY), (byte) POINTER,
+                OpCodeMapper.getByteFromOpCode(OpCode.LDX_IM), 0x00,
+                OpCodeMapper.getByteFromOpCode(OpCode.JMP_ABS), 0x00, 0x02 };
+        memory.load(address, program);
+        // The pointer starts out at $0300, away from the code
+        memory.writeByte(POINTER, (byte) 0x00);
+        memory.writeByte(POINTER + 1, (byte) 0x03);
+        cpu.getProgramCounter().setValue(address);
+        return cpu;
+    }
+
+    @Test
+    public void testCompiledMatchesInterpreted() {
+        CPU compiled = createLoop(10);
+        CPU interpreted = createLoop(0);
+
+        compiled.runInstructions(ITERATION_INSTRUCTIONS * 1000);
+        interpreted.runInstructions(ITERATION_INSTRUCTIONS * 1000);
+
+        Assert.assertTrue(compiled.getBlockCache().getCompiledBlocks() > 0);
+        Assert.assertEquals(0, interpreted.getBlockCache().getCompiledBlocks());
+        Assert.assertEquals(interpreted.getInstructionCount(), compiled.getInstructionCount());
+        Assert.assertEquals(interpreted.getCycleCount(), compiled.getCycleCount());
+        Assert.assertEquals(interpreted.getMemory().readByte(COUNTER), compiled.getMemory().readByte(COUNTER));
+        Assert.assertEquals(interpreted.getRegisterFile().getStatus(), compiled.getRegisterFile().getStatus());
+        Assert.assertEquals(interpreted.getProgramCounter().getValue(), compiled.getProgramCounter().getValue());
+    }
+
+    @Test
+    public void testCompiledBlockModifyingItself() {
+        CPU cpu = createLoop(10);
+        cpu.runInstructions(ITERATION_INSTRUCTIONS * 100);
+        Assert.assertTrue(cpu.getBlockCache().getCompiledBlocks() > 0);
+        Assert.assertEquals((byte) 0x00, cpu.getIndexRegister(IndexRegisterType.X).getValue());
+
+        // Point the store at the operand of the LDX that follows it in the same, already compiled, block
+        cpu.getMemory().writeByte(POINTER, (byte) LDX_OPERAND);
+        cpu.getMemory().writeByte(POINTER + 1, (byte) (LDX_OPERAND >> 8));
+        cpu.runInstructions(ITERATION_INSTRUCTIONS);
+
+        Assert.assertEquals((byte) 101, cpu.getMemory().readByte(COUNTER));
+        Assert.assertEquals((byte) 101, cpu.getIndexRegister(IndexRegisterType.X).getValue());
+    }
+}
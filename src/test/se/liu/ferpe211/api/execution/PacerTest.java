@@ -0,0 +1,130 @@
+package se.liu.ferpe211.api.execution;
+
+import junit.framework.TestCase;
+import org.junit.Assert;
+import org.junit.Test;
+import se.liu.ferpe211.api.CPU;
+import se.liu.ferpe211.api.operation.OpCode;
+import se.liu.ferpe211.api.operation.OpCodeMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test cases for the Pacer {@link Pacer}
+ * Here we test the deadlines of a paced run against a simulated clock and that runs end at BREAK
+ */
+public class PacerTest extends TestCase
+{
+    private static final double FREQUENCY = 50_000;
+    private static final long NANOS_PER_CYCLE = 20_000;
+    private static final long SLICE_CYCLES = Pacer.SLICE_NANOS / NANOS_PER_CYCLE;
+    private static final long JMP_CYCLES = 3;
+
+    /**
+     * Clock that only moves when the pacer waits, to the deadline plus an oversleep, and stops the pacer after a number of
+     * waits. The deadline and the cycle count of the CPU are recorded at every wait.
+     */
+    private static final class SimulatedClock implements Pacer.Clock
+    {
+        private final CPU cpu;
+        private final long oversleep;
+        private final int stallAt;
+        private final long stall;
+        private final int waits;
+        private final List<Long> deadlines = new ArrayList<>();
+        private final List<Long> cycles = new ArrayList<>();
+        private Pacer pacer = null;
+        private long now = 0;
+
+        /**
+         * @param stallAt wait after which the clock jumps ahead by the stall, like a host that froze
+         */
+        private SimulatedClock(final CPU cpu, final long oversleep, final int stallAt, final long stall, final int waits) {
+            this.cpu = cpu;
+            this.oversleep = oversleep;
+            this.stallAt = stallAt;
+            this.stall = stall;
+            this.waits = waits;
+        }
+
+        @Override public long nanoTime() {
+            return now;
+        }
+
+        @Override public void waitUntil(final long deadline) {
+            deadlines.add(deadline);
+            cycles.add(cpu.getCycleCount());
+            now = Math.max(now, deadline) + oversleep;
+            if (deadlines.size() == stallAt) {
+                now += stall;
+            }
+            if (deadlines.size() == waits) {
+                pacer.stop();
+            }
+        }
+    }
+
+    /**
+     * Runs JMP $0000, an endless loop of 3 cycle instructions, until the clock stops the pacer
+     */
+    private static void run(final SimulatedClock clock) throws InterruptedException {
+        clock.pacer = new Pacer(clock.cpu, FREQUENCY, clock);
+        clock.cpu.getMemory().writeByte(0, OpCodeMapper.getByteFromOpCode(OpCode.JMP_ABS));
+        clock.pacer.start();
+        for (int i = 0; i < 500 && clock.pacer.isRunning(); i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertFalse(clock.pacer.isRunning());
+        Assert.assertEquals(clock.waits, clock.deadlines.size());
+    }
+
+    @Test
+    public void testOversleepDoesNotDrift() throws InterruptedException {
+        CPU cpu = CPU.builder().build();
+        long startCycles = cpu.getCycleCount();
+        // Every wait oversleeps by a tenth of a slice
+        SimulatedClock clock = new SimulatedClock(cpu, Pacer.SLICE_NANOS / 10, -1, 0, 50);
+        run(clock);
+
+        // Every deadline is where the emulated clock is, however late the waits before it returned
+        for (int i = 0; i < clock.waits; i++) {
+            long emulatedCycles = clock.cycles.get(i) - startCycles;
+            Assert.assertEquals(emulatedCycles * NANOS_PER_CYCLE, (long) clock.deadlines.get(i));
+            Assert.assertTrue(emulatedCycles >= (i + 1) * SLICE_CYCLES);
+            Assert.assertTrue(emulatedCycles < (i + 1) * (SLICE_CYCLES + JMP_CYCLES));
+        }
+    }
+
+    @Test
+    public void testSkipsTimeTheHostFellBehind() throws InterruptedException {
+        CPU cpu = CPU.builder().build();
+        long stall = Pacer.MAX_LAG_NANOS * 10;
+        SimulatedClock clock = new SimulatedClock(cpu, 0, 5, stall, 10);
+        run(clock);
+
+        // After the stall the pacer waits again after at most one skipped wait instead of catching up in a burst
+        for (int i = 1; i < clock.waits; i++) {
+            long sliceCycles = clock.cycles.get(i) - clock.cycles.get(i - 1);
+            Assert.assertTrue("Ran " + sliceCycles + " cycles without waiting", sliceCycles <= 2 * (SLICE_CYCLES + JMP_CYCLES));
+        }
+        Assert.assertTrue(clock.deadlines.get(5) > clock.deadlines.get(4) + stall);
+    }
+
+    @Test
+    public void testTurboStopsAtBreak() throws InterruptedException {
+        CPU cpu = CPU.builder().build();
+        cpu.getMemory().writeByte(0, OpCodeMapper.getByteFromOpCode(OpCode.NOP));
+        cpu.getMemory().writeByte(1, OpCodeMapper.getByteFromOpCode(OpCode.BRK));
+
+        Pacer pacer = new Pacer(cpu, 0);
+        Assert.assertTrue(pacer.isTurbo());
+        pacer.start();
+        for (int i = 0; i < 100 && pacer.isRunning(); i++) {
+            Thread.sleep(10);
+        }
+
+        Assert.assertFalse(pacer.isRunning());
+        Assert.assertEquals(2, cpu.getInstructionCount());
+    }
+}
@@ -0,0 +1,144 @@
+package se.liu.ferpe211.api.execution;
+
+import junit.framework.TestCase;
+import org.junit.Assert;
+import org.junit.Test;
+import se.liu.ferpe211.api.CPU;
+import se.liu.ferpe211.api.memory.RAM;
+import se.liu.ferpe211.api.operation.OpCode;
+import se.liu.ferpe211.api.operation.OpCodeMapper;
+import se.liu.ferpe211.api.operation.instruction.Instruction;
+import se.liu.ferpe211.api.register.RegisterState;
+import se.liu.ferpe211.impl.Emulator;
+
+import java.util.Random;
+import java.util.logging.Level;
+
+/**
+ * Test cases for the {@link SwitchInterpreter}
+ * Here we test that every opcode does exactly what its {@link Instruction} handler does
+ */
+public class SwitchInterpreterTest extends TestCase
+{
+    private static final int OPCODE_COUNT = 256;
+    private static final int RUNS_PER_OPCODE = 16;
+
+    @Test
+    public void testOpcodesMatchHandlers() {
+        Random random = new Random(6502);
+        CPU switched = CPU.builder().engine(EngineType.SWITCH).build();
+        CPU handled = CPU.builder().build();
+        byte[] image = new byte[switched.getMemory().size()];
+
+        // Keep the illegal opcodes from flooding the output
+        Level level = Emulator.LOGGER.getLevel();
+        Emulator.LOGGER.setLevel(Level.OFF);
+        try {
+            compareOpcodes(random, switched, handled, image);
+        } finally {
+            Emulator.LOGGER.setLevel(level);
+        }
+    }
+
+    private static void compareOpcodes(Random random, CPU switched, CPU handled, byte[] image) {
+        for (int opcode = 0; opcode < OPCODE_COUNT; opcode++) {
+            for (int run = 0; run < RUNS_PER_OPCODE; run++) {
+                random.nextBytes(image);
+                // Operands and effective addresses past the end of the memory wrap around
+                int address = random.nextInt(image.length);
+                image[address] = (byte) opcode;
+                RegisterState registers = new RegisterState(address, (byte) random.nextInt(), (byte) random.nextInt(),
+                                                            (byte) random.nextInt(), (byte) random.nextInt(),
+                                                            (byte) random.nextInt());
+                String context = String.format("opcode %02X at %04X with %s", opcode, address, registers);
+
+                for (CPU cpu : new CPU[] { switched, handled }) {
+                    cpu.getMemory().load(0, image);
+                    registers.applyTo(cpu.getRegisterFile());
+                    cpu.setExecuting(true);
+                }
+
+                int switchedCycles = switched.getEngine().step();
+
+                // Fetch and execute the instruction with its handler, without any engine
+                handled.getRegisterFile().setProgramCounter(address + 1);
+                Instruction instruction = handled.getOperationManager().getInstruction((byte) opcode);
+                instruction.execute(handled);
+
+                Assert.assertEquals(context, instruction.getCycles(), switchedCycles);
+                Assert.assertEquals(context, RegisterState.capture(handled.getRegisterFile()),
+                                    RegisterState.capture(switched.getRegisterFile()));
+                Assert.assertEquals(context, handled.isExecuting(), switched.isExecuting());
+                Assert.assertArrayEquals(context, handled.getMemory().getData(), switched.getMemory().getData());
+            }
+        }
+    }
+
+    @Test
+    public void testEnginesAgree() {
+        CPU cached = CPU.builder().build();
+        CPU switched = CPU.builder().engine(EngineType.SWITCH).build();
+        Assert.assertEquals(EngineType.SWITCH, switched.getEngineType());
+        for (CPU cpu : new CPU[] { cached, switched }) {
+            // LDA #$00, loop: ADC #$03, STA ($80),Y, CMP #$30, BNE loop, BRK with the pointer at $80 = $0200
+            RAM memory = cpu.getMemory();
+            memory.writeByte(0, OpCodeMapper.getByteFromOpCode(OpCode.LDA_IM));
+            memory.writeByte(1, (byte) 0x00);
+            memory.writeByte(2, OpCodeMapper.getByteFromOpCode(OpCode.ADC_IM));
+            memory.writeByte(3, (byte) 0x03);
+            memory.writeByte(4, OpCodeMapper.getByteFromOpCode(OpCode.STA_INDY));
+            memory.writeByte(5, (byte) 0x80);
+            memory.writeByte(6, OpCodeMapper.getByteFromOpCode(OpCode.CMP_IM));
+            memory.writeByte(7, (byte) 0x30);
+            memory.writeByte(8, OpCodeMapper.getByteFromOpCode(OpCode.BNE));
+            memory.writeByte(9, (byte) 0xF8);
+            memory.writeByte(10, OpCodeMapper.getByteFromOpCode(OpCode.BRK));
+            memory.writeByte(0x81, (byte) 0x02);
+            cpu.execute();
+        }
+
+        Assert.assertEquals(cached.getInstructionCount(), switched.getInstructionCount());
+        Assert.assertEquals(cached.getCycleCount(), switched.getCycleCount());
+        Assert.assertEquals(RegisterState.capture(cached.getRegisterFile()), RegisterState.capture(switched.getRegisterFile()));
+        Assert.assertArrayEquals(cached.getMemory().getData(), switched.getMemory().getData());
+        Assert.assertEquals((byte) 0x30, switched.getMemory().readByte(0x0200));
+
+        // The engine can be changed between runs
+        switched.setEngine(EngineType.BLOCK_CACHE);
+        Assert.assertSame(switched.getBlockCache(), switched.getEngine());
+    }
+
+    @Test
+    public void testIndirectPointersAreUnsigned() {
+        CPU cached = CPU.builder().build();
+        CPU switched = CPU.builder().engine(EngineType.SWITCH).build();
+        for (CPU cpu : new CPU[] { cached, switched }) {
+            // LDY #$90, LDA ($20),Y, STA $0700, LDX #$10, LDA ($EF,X), STA $0701, BRK at $0600
+            RAM memory = cpu.getMemory();
+            memory.load(0x0600, new byte[] {
+                    OpCodeMapper.getByteFromOpCode(OpCode.LDY_IM), (byte) 0x90,
+                    OpCodeMapper.getByteFromOpCode(OpCode.LDA_INDY), 0x20,
+                    OpCodeMapper.getByteFromOpCode(OpCode.STA_ABS), 0x00, 0x07,
+                    OpCodeMapper.getByteFromOpCode(OpCode.LDX_IM), 0x10,
+                    OpCodeMapper.getByteFromOpCode(OpCode.LDA_INDX), (byte) 0xEF,
+                    OpCodeMapper.getByteFromOpCode(OpCode.STA_ABS), 0x01, 0x07,
+                    OpCodeMapper.getByteFromOpCode(OpCode.BRK)
+            });
+            // Pointers with a low byte of $80 and above, the second one at $FF with its high byte at $00
+            memory.load(0x20, new byte[] { (byte) 0x80, 0x02 });
+            memory.writeByte(0xFF, (byte) 0x85);
+            memory.writeByte(0x00, (byte) 0x03);
+            memory.writeByte(0x0310, (byte) 0x42);
+            memory.writeByte(0x0385, (byte) 0x24);
+            cpu.getProgramCounter().setValue(0x0600);
+            cpu.execute();
+        }
+
+        for (CPU cpu : new CPU[] { cached, switched }) {
+            Assert.assertEquals((byte) 0x42, cpu.getMemory().readByte(0x0700));
+            Assert.assertEquals((byte) 0x24, cpu.getMemory().readByte(0x0701));
+        }
+        Assert.assertEquals(RegisterState.capture(cached.getRegisterFile()), RegisterState.capture(switched.getRegisterFile()));
+        Assert.assertArrayEquals(cached.getMemory().getData(), switched.getMemory().getData());
+    }
+}
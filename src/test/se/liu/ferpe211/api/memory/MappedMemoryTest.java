@@ -0,0 +1,55 @@
+package se.liu.ferpe211.api.memory;
+
+import junit.framework.TestCase;
+import org.junit.Assert;
+import org.junit.Test;
+import se.liu.ferpe211.api.CPU;
+import se.liu.ferpe211.api.operation.OpCode;
+import se.liu.ferpe211.api.operation.OpCodeMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Test cases for the {@link MappedMemory}
+ * Here we test that the memory image lives in the file and that code stored in it runs like code in plain RAM
+ */
+public class MappedMemoryTest extends TestCase
+{
+    @Test
+    public void testImageIsKeptInFile() throws IOException {
+        Path file = Files.createTempFile("jcpu", ".mem");
+        try {
+            CPU cpu = CPU.builder().memoryFile(file).build();
+            RAM memory = cpu.getMemory();
+
+            // LDA #$A9, STA $1234, STA $07, BRK where the last STA turns the BRK into LDA #$17
+            byte loadImmediate = OpCodeMapper.getByteFromOpCode(OpCode.LDA_IM);
+            memory.writeByte(0, loadImmediate);
+            memory.writeByte(1, loadImmediate);
+            memory.writeByte(2, OpCodeMapper.getByteFromOpCode(OpCode.STA_ABS));
+            memory.writeByte(3, (byte) 0x34);
+            memory.writeByte(4, (byte) 0x12);
+            memory.writeByte(5, OpCodeMapper.getByteFromOpCode(OpCode.STA_ZP));
+            memory.writeByte(6, (byte) 0x07);
+            memory.writeByte(7, OpCodeMapper.getByteFromOpCode(OpCode.BRK));
+            memory.writeByte(8, (byte) 0x17);
+            memory.writeByte(9, OpCodeMapper.getByteFromOpCode(OpCode.BRK));
+            cpu.execute();
+            Assert.assertEquals((byte) 0x17, cpu.getAccumulator().getValue());
+
+            // The image is in the file without any dump, and a new CPU continues from it
+            MappedMemory mappedMemory = (MappedMemory) memory.getDevice(0);
+            mappedMemory.flush();
+            Assert.assertEquals(loadImmediate, mappedMemory.getBuffer().get(0x1234));
+            Assert.assertEquals(loadImmediate, Files.readAllBytes(file)[0x1234]);
+
+            CPU resumed = CPU.builder().memoryFile(file).build();
+            resumed.reset();
+            Assert.assertEquals(loadImmediate, resumed.getMemory().readByte(0x1234));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
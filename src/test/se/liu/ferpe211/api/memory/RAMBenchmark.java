@@ -0,0 +1,56 @@
+package se.liu.ferpe211.api.memory;
+
+/**
+ * Microbenchmark of the cost of a single {@link RAM#readByte(int)} and {@link RAM#writeByte(int, byte)}
+ * The addresses are precomputed in a scattered order the JIT can not see through, so every access goes through the
+ * address wrapping and the page table. The best of several rounds is reported to leave out warmup and other noise; run it
+ * on two revisions in separate JVMs to compare them.
+ * Usage: {@code RAMBenchmark [rounds]}
+ */
+public final class RAMBenchmark
+{
+    private static final int ADDRESSES = RAM.ADDRESS_MASK + 1;
+    private static final int DEFAULT_ROUNDS = 15;
+    private static final int PASSES = 3000;
+    private static final int SCATTER = 40503;
+    private static final double ACCESSES_PER_ROUND = PASSES * (double) ADDRESSES;
+
+    /**
+     * Keeps the reads from being removed as dead code
+     */
+    private static int sink = 0;
+
+    private RAMBenchmark() {}
+
+    public static void main(String... args) {
+	int rounds = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROUNDS;
+	RAM memory = new RAM();
+	int[] addresses = new int[ADDRESSES];
+	for (int i = 0; i < addresses.length; i++) {
+	    addresses[i] = (i * SCATTER) & RAM.ADDRESS_MASK;
+	}
+
+	double bestRead = Double.MAX_VALUE;
+	double bestWrite = Double.MAX_VALUE;
+	for (int round = 0; round < rounds; round++) {
+	    long start = System.nanoTime();
+	    int sum = 0;
+	    for (int pass = 0; pass < PASSES; pass++) {
+		for (int address : addresses) {
+		    sum += memory.readByte(address);
+		}
+	    }
+	    bestRead = Math.min(bestRead, (System.nanoTime() - start) / ACCESSES_PER_ROUND);
+	    sink += sum;
+
+	    start = System.nanoTime();
+	    for (int pass = 0; pass < PASSES; pass++) {
+		for (int address : addresses) {
+		    memory.writeByte(address, (byte) pass);
+		}
+	    }
+	    bestWrite = Math.min(bestWrite, (System.nanoTime() - start) / ACCESSES_PER_ROUND);
+	}
+	System.out.printf("read %.3f ns, write %.3f ns (%d)%n", bestRead, bestWrite, sink & 1);
+    }
+}
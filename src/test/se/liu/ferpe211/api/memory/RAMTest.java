@@ -0,0 +1,221 @@
+package se.liu.ferpe211.api.memory;
+
+import junit.framework.TestCase;
+import org.junit.Assert;
+import org.junit.Test;
+import se.liu.ferpe211.api.CPU;
+import se.liu.ferpe211.api.operation.OpCode;
+import se.liu.ferpe211.api.operation.OpCodeMapper;
+
+import java.util.Arrays;
+
+/**
+ * Test cases for the page table of the {@link RAM}
+ * Here we test that accesses to device pages reach the device and that plain RAM is unaffected by it
+ */
+public class RAMTest extends TestCase
+{
+    /**
+     * Device that holds one page of values and counts the reads of the CPU
+     */
+    private static class TestDevice implements MemoryDevice
+    {
+        private final byte[] values = new byte[RAM.PAGE_SIZE];
+        private int reads = 0;
+
+        @Override public byte read(final int address) {
+            reads++;
+            return values[address & RAM.PAGE_MASK];
+        }
+
+        @Override public void write(final int address, final byte value) {
+            values[address & RAM.PAGE_MASK] = value;
+        }
+
+        @Override public byte peek(final int address) {
+            return values[address & RAM.PAGE_MASK];
+        }
+    }
+
+    @Test
+    public void testDeviceAccess() {
+        CPU cpu = CPU.builder().build();
+        RAM memory = cpu.getMemory();
+        TestDevice device = new TestDevice();
+        memory.map(0xD000, RAM.PAGE_SIZE, device);
+        Assert.assertSame(device, memory.getDevice(0xD0FF));
+        Assert.assertNull(memory.getDevice(0xD100));
+
+        // LDA #$42, STA $D010, LDX $D011, STA $D110, BRK
+        memory.writeByte(0, OpCodeMapper.getByteFromOpCode(OpCode.LDA_IM));
+        memory.writeByte(1, (byte) 0x42);
+        memory.writeByte(2, OpCodeMapper.getByteFromOpCode(OpCode.STA_ABS));
+        memory.writeByte(3, (byte) 0x10);
+        memory.writeByte(4, (byte) 0xD0);
+        memory.writeByte(5, OpCodeMapper.getByteFromOpCode(OpCode.LDX_ABS));
+        memory.writeByte(6, (byte) 0x11);
+        memory.writeByte(7, (byte) 0xD0);
+        memory.writeByte(8, OpCodeMapper.getByteFromOpCode(OpCode.STA_ABS));
+        memory.writeByte(9, (byte) 0x10);
+        memory.writeByte(10, (byte) 0xD1);
+        memory.writeByte(11, OpCodeMapper.getByteFromOpCode(OpCode.BRK));
+        device.values[0x11] = (byte) 0x17;
+        cpu.execute();
+
+        Assert.assertEquals((byte) 0x42, device.values[0x10]);
+        Assert.assertEquals((byte) 0x17, cpu.getRegisterFile().getIndexX());
+        Assert.assertEquals(1, device.reads);
+        Assert.assertEquals((byte) 0x42, memory.readByte(0xD110));
+
+        // Peeking and copying the memory leaves the device alone
+        Assert.assertEquals((byte) 0x42, memory.peekByte(0xD010));
+        Assert.assertEquals((byte) 0x17, memory.getData()[0xD011]);
+        Assert.assertEquals(1, device.reads);
+
+        // Unmapped pages are plain RAM again
+        memory.unmap(0xD000, RAM.PAGE_SIZE);
+        Assert.assertNull(memory.getDevice(0xD010));
+        Assert.assertEquals((byte) 0x00, memory.readByte(0xD010));
+    }
+
+    @Test
+    public void testCodeOnDevicePage() {
+        CPU cpu = CPU.builder().build();
+        TestDevice rom = new TestDevice();
+        cpu.getMemory().map(0x0200, RAM.PAGE_SIZE, rom);
+
+        // LDA #$01, BRK changed behind the back of the CPU, as a device may do
+        rom.values[0] = OpCodeMapper.getByteFromOpCode(OpCode.LDA_IM);
+        rom.values[1] = (byte) 0x01;
+        rom.values[2] = OpCodeMapper.getByteFromOpCode(OpCode.BRK);
+        cpu.getProgramCounter().setValue(0x0200);
+        cpu.execute();
+        Assert.assertEquals((byte) 0x01, cpu.getAccumulator().getValue());
+
+        rom.values[1] = (byte) 0x02;
+        cpu.getProgramCounter().setValue(0x0200);
+        cpu.execute();
+        Assert.assertEquals((byte) 0x02, cpu.getAccumulator().getValue());
+    }
+
+    @Test
+    public void testMapWholePages() {
+        RAM memory = new RAM();
+        try {
+            memory.map(0x0210, RAM.PAGE_SIZE, new TestDevice());
+            fail("Mapping a range that does not start at a page should fail");
+        } catch (IllegalArgumentException e) {
+            Assert.assertNull(memory.getDevice(0x0210));
+        }
+    }
+
+    @Test
+    public void testAddressesWrapAround() {
+        CPU cpu = CPU.builder().build();
+        RAM memory = cpu.getMemory();
+        memory.writeByte(0x10001, (byte) 0x42);
+        Assert.assertEquals((byte) 0x42, memory.readByte(0x0001));
+        memory.writeByte(-1, (byte) 0x17);
+        Assert.assertEquals((byte) 0x17, memory.readByte(0xFFFF));
+
+        // LDA $FFFF,X with X = 2 reads $0001, and the program counter wraps from the NOP at $FFFF to $0000
+        memory.writeByte(0xFFFC, OpCodeMapper.getByteFromOpCode(OpCode.LDA_ABSX));
+        memory.writeByte(0xFFFD, (byte) 0xFF);
+        memory.writeByte(0xFFFE, (byte) 0xFF);
+        memory.writeByte(0xFFFF, OpCodeMapper.getByteFromOpCode(OpCode.NOP));
+        memory.writeByte(0x0000, OpCodeMapper.getByteFromOpCode(OpCode.BRK));
+        cpu.getRegisterFile().setIndexX((byte) 0x02);
+        cpu.getProgramCounter().setValue(0xFFFC);
+        cpu.execute();
+
+        Assert.assertEquals((byte) 0x42, cpu.getAccumulator().getValue());
+        Assert.assertEquals(0x0001, cpu.getProgramCounter().getValue());
+    }
+
+    @Test
+    public void testDirtyPages() {
+        RAM memory = new RAM();
+        DirtyPageTracker first = memory.trackDirtyPages();
+        DirtyPageTracker second = memory.trackDirtyPages();
+        Assert.assertTrue(DirtyPageTracker.isDirty(first.takeDirtyPages(), 0xFF));
+        Assert.assertArrayEquals(new long[DirtyPageTracker.WORDS], first.takeDirtyPages());
+
+        memory.writeByte(0x1234, (byte) 0x42);
+        memory.writeByte(0xFF00, (byte) 0x17);
+        memory.load(0x02F0, new byte[0x20]);
+        long[] dirty = first.takeDirtyPages();
+        for (int page = 0; page < RAM.PAGE_COUNT; page++) {
+            boolean written = page == 0x12 || page == 0xFF || page == 0x02 || page == 0x03;
+            Assert.assertEquals(written, DirtyPageTracker.isDirty(dirty, page));
+        }
+        Assert.assertArrayEquals(new long[DirtyPageTracker.WORDS], first.takeDirtyPages());
+
+        // Taking the pages of one tracker leaves them for the others
+        second.takeDirtyPages();
+        memory.writeByte(0x0080, (byte) 0x01);
+        first.takeDirtyPages();
+        Assert.assertTrue(DirtyPageTracker.isDirty(second.takeDirtyPages(), 0x00));
+
+        memory.stopTracking(second);
+        memory.map(0xD000, RAM.PAGE_SIZE, new TestDevice());
+        memory.writeByte(0xD001, (byte) 0x01);
+        Assert.assertTrue(DirtyPageTracker.isDirty(first.takeDirtyPages(), 0xD0));
+    }
+
+    @Test
+    public void testInitClearsWrittenPages() {
+        RAM memory = new RAM();
+        TestDevice device = new TestDevice();
+        memory.map(0xD000, RAM.PAGE_SIZE, device);
+        memory.writeByte(0x0310, (byte) 0x42);
+        memory.writeByte(0xD010, (byte) 0x17);
+        memory.load(0x80FF, new byte[]{1, 2});
+        DirtyPageTracker tracker = memory.trackDirtyPages();
+        tracker.takeDirtyPages();
+
+        memory.init();
+        Assert.assertEquals((byte) 0x00, memory.readByte(0x0310));
+        Assert.assertEquals((byte) 0x00, memory.readByte(0x8100));
+        Assert.assertEquals((byte) 0x17, memory.readByte(0xD010));
+        long[] cleared = tracker.takeDirtyPages();
+        for (int page = 0; page < RAM.PAGE_COUNT; page++) {
+            Assert.assertEquals(page == 0x03 || page == 0x80 || page == 0x81, DirtyPageTracker.isDirty(cleared, page));
+        }
+
+        // Pages are only cleared again once they are written again
+        memory.writeByte(0x0311, (byte) 0x01);
+        memory.init();
+        cleared = tracker.takeDirtyPages();
+        Assert.assertTrue(DirtyPageTracker.isDirty(cleared, 0x03));
+        Assert.assertFalse(DirtyPageTracker.isDirty(cleared, 0x80));
+        Assert.assertArrayEquals(new byte[RAM.PAGE_SIZE], Arrays.copyOfRange(memory.getData(), 0x0300, 0x0400));
+    }
+
+    @Test
+    public void testForkCopiesOnWrite() {
+        RAM parent = new RAM();
+        TestDevice device = new TestDevice();
+        parent.map(0xD000, RAM.PAGE_SIZE, device);
+        parent.writeByte(0x0010, (byte) 0x01);
+        parent.writeByte(0x0110, (byte) 0x02);
+        parent.writeByte(0x0210, (byte) 0x03);
+
+        RAM child = parent.fork();
+        Assert.assertEquals((byte) 0x02, child.readByte(0x0110));
+        Assert.assertSame(device, child.getDevice(0xD000));
+
+        // Writes, loads and clears of either copy stay in that copy
+        child.writeByte(0x0010, (byte) 0x11);
+        parent.load(0x0110, new byte[] { 0x12 });
+        child.init();
+        Assert.assertEquals((byte) 0x01, parent.readByte(0x0010));
+        Assert.assertEquals((byte) 0x12, parent.readByte(0x0110));
+        Assert.assertEquals((byte) 0x03, parent.readByte(0x0210));
+        Assert.assertArrayEquals(new byte[0xD000], Arrays.copyOf(child.getData(), 0xD000));
+
+        // A copy that is forked again shares its pages once more
+        RAM grandchild = parent.fork();
+        parent.writeByte(0x0110, (byte) 0x22);
+        Assert.assertEquals((byte) 0x12, grandchild.readByte(0x0110));
+    }
+}
@@ -0,0 +1,76 @@
+package se.liu.ferpe211.api.operation.instruction;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import se.liu.ferpe211.api.CPU;
+import se.liu.ferpe211.api.memory.RAM;
+import se.liu.ferpe211.api.operation.OpCode;
+import se.liu.ferpe211.api.operation.OpCodeMapper;
+import se.liu.ferpe211.api.operation.OperationManager;
+import se.liu.ferpe211.api.register.ProgramCounter;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Test cases for the allocation behaviour of {@link Instruction#execute(CPU)}
+ * Here we make sure that decoding and executing instructions does not produce any garbage once the code is warmed up
+ * It runs as a plain JUnit 4 test so it is reported as skipped on JVMs that can not measure allocations
+ */
+public class InstructionAllocationTest
+{
+    private static final int WARMUP_INSTRUCTIONS = 2_000_000;
+    private static final int MEASURED_INSTRUCTIONS = 1_000_000;
+
+    @Test
+    public void testSteadyStateExecutionDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue("The JVM does not measure allocations per thread", threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        CPU cpu = CPU.builder().build();
+        RAM memory = cpu.getMemory();
+
+        // A loop covering immediate, zero page, absolute and indirect operands of every size
+        memory.writeByte(0, OpCodeMapper.getByteFromOpCode(OpCode.LDA_IM));
+        memory.writeByte(1, (byte) 0x01);
+        memory.writeByte(2, OpCodeMapper.getByteFromOpCode(OpCode.ADC_ZP));
+        memory.writeByte(3, (byte) 0x10);
+        memory.writeByte(4, OpCodeMapper.getByteFromOpCode(OpCode.STA_ABS));
+        memory.writeByte(5, (byte) 0x00);
+        memory.writeByte(6, (byte) 0x02);
+        memory.writeByte(7, OpCodeMapper.getByteFromOpCode(OpCode.ORA_INDY));
+        memory.writeByte(8, (byte) 0x20);
+        memory.writeByte(9, OpCodeMapper.getByteFromOpCode(OpCode.NOP));
+        memory.writeByte(10, OpCodeMapper.getByteFromOpCode(OpCode.JMP_ABS));
+        memory.writeByte(11, (byte) 0x00);
+        memory.writeByte(12, (byte) 0x00);
+        memory.writeByte(0x20, (byte) 0x00);
+        memory.writeByte(0x21, (byte) 0x03);
+
+        run(cpu, WARMUP_INSTRUCTIONS);
+
+        long before = threadMXBean.getCurrentThreadAllocatedBytes();
+        run(cpu, MEASURED_INSTRUCTIONS);
+        long allocated = threadMXBean.getCurrentThreadAllocatedBytes() - before;
+
+        // A single allocation in the loop would allocate at least 16 bytes per instruction, so this allows only incidental
+        // allocations such as JIT bookkeeping
+        Assert.assertTrue("Allocated " + allocated + " bytes over " + MEASURED_INSTRUCTIONS + " instructions",
+                          allocated < 1024);
+    }
+
+    /**
+     * Runs the fetch, decode and execute steps without notifying any listeners
+     */
+    private static void run(CPU cpu, int instructions) {
+        RAM memory = cpu.getMemory();
+        ProgramCounter programCounter = cpu.getProgramCounter();
+        OperationManager operationManager = cpu.getOperationManager();
+        for (int i = 0; i < instructions; i++) {
+            byte opcode = memory.readByte(programCounter.getValue());
+            programCounter.increment();
+            operationManager.getInstruction(opcode).execute(cpu);
+        }
+    }
+}
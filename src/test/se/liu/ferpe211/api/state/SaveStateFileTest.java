@@ -0,0 +1,147 @@
+package se.liu.ferpe211.api.state;
+
+import junit.framework.TestCase;
+import org.junit.Assert;
+import org.junit.Test;
+import se.liu.ferpe211.api.CPU;
+import se.liu.ferpe211.api.TestPrograms;
+import se.liu.ferpe211.api.memory.MemoryDevice;
+import se.liu.ferpe211.api.memory.RAM;
+import se.liu.ferpe211.api.operation.OpCode;
+import se.liu.ferpe211.api.operation.OpCodeMapper;
+import se.liu.ferpe211.api.register.RegisterState;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Test cases for {@link CPU#snapshot()}, {@link CPU#restore(MachineState)} and the {@link SaveStateFile}
+ * Here we test that a restored machine continues exactly like the one the state was taken from
+ */
+public class SaveStateFileTest extends TestCase
+{
+    /**
+     * Device with a single register as state besides its value
+     */
+    private static class LatchDevice implements MemoryDevice
+    {
+        private byte latch = 0;
+
+        @Override public byte read(final int address) {
+            return latch;
+        }
+
+        @Override public void write(final int address, final byte value) {
+            latch = value;
+        }
+
+        @Override public byte[] saveState() {
+            return new byte[] { latch };
+        }
+
+        @Override public void restoreState(final byte[] state) {
+            latch = state[0];
+        }
+    }
+
+    @Test
+    public void testRestoreContinuesRun() {
+        CPU cpu = TestPrograms.createCounter();
+        cpu.runInstructions(50);
+        MachineState checkpoint = cpu.snapshot();
+        cpu.execute();
+        RegisterState finished = RegisterState.capture(cpu.getRegisterFile());
+        long cycles = cpu.getCycleCount();
+        byte[] memory = cpu.getMemory().getData();
+        Assert.assertEquals((byte) 0x20, cpu.getMemory().readByte(0x0400));
+
+        // The checkpoint is unaffected by the rest of the run, and both this CPU and a new one continue from it the same way
+        Assert.assertEquals(50, checkpoint.instructionCount());
+        Assert.assertEquals((byte) 0x0C, checkpoint.memory()[0x0400]);
+        for (CPU restored : new CPU[] { cpu, CPU.builder().build() }) {
+            restored.restore(checkpoint);
+            Assert.assertEquals(checkpoint.registers(), RegisterState.capture(restored.getRegisterFile()));
+            restored.execute();
+            Assert.assertEquals(finished, RegisterState.capture(restored.getRegisterFile()));
+            Assert.assertEquals(cycles, restored.getCycleCount());
+            Assert.assertArrayEquals(memory, restored.getMemory().getData());
+        }
+    }
+
+    @Test
+    public void testFileRoundTrip() throws IOException {
+        CPU cpu = TestPrograms.createCounter();
+        LatchDevice device = new LatchDevice();
+        cpu.getMemory().map(0xD000, RAM.PAGE_SIZE, device);
+        cpu.getMemory().writeByte(0xD000, (byte) 0x42);
+        cpu.runInstructions(20);
+        MachineState state = cpu.snapshot();
+
+        Path file = Files.createTempFile("jcpu", ".state");
+        try {
+            for (boolean compress : new boolean[] { false, true }) {
+                SaveStateFile.write(state, file, compress);
+                MachineState read = SaveStateFile.read(file);
+                Assert.assertEquals(state.registers(), read.registers());
+                Assert.assertEquals(state.instructionCount(), read.instructionCount());
+                Assert.assertEquals(state.cycleCount(), read.cycleCount());
+                Assert.assertArrayEquals(state.memory(), read.memory());
+                Assert.assertArrayEquals(new byte[] { 0x42 }, read.deviceStates().get(0xD000));
+
+                device.write(0xD000, (byte) 0x00);
+                cpu.restore(read);
+                Assert.assertEquals((byte) 0x42, device.latch);
+            }
+            // Mostly empty memory compresses well
+            Assert.assertTrue(Files.size(file) < RAM.PAGE_SIZE * 4);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testRejectsOtherFiles() throws IOException {
+        Path file = Files.createTempFile("jcpu", ".state");
+        try {
+            SaveStateFile.write(CPU.builder().build().snapshot(), file, false);
+            byte[] bytes = Files.readAllBytes(file);
+
+            // Another version
+            bytes[5] = 2;
+            Files.write(file, bytes);
+            try {
+                SaveStateFile.read(file);
+                fail("A save state of another version should be rejected");
+            } catch (IOException e) {
+                Assert.assertTrue(e.getMessage().contains("version"));
+            }
+
+            // Cut off in the middle of the memory
+            bytes[5] = 1;
+            Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+            try {
+                SaveStateFile.read(file);
+                fail("A truncated save state should be rejected");
+            } catch (IOException e) {
+                Assert.assertTrue(e.getMessage().contains("damaged"));
+            }
+
+            // A compressed payload whose zlib header asks for a preset dictionary
+            SaveStateFile.write(CPU.builder().build().snapshot(), file, true);
+            bytes = Files.readAllBytes(file);
+            Assert.assertEquals((byte) 0x78, bytes[12]);
+            bytes[13] = (byte) 0xBB;
+            Files.write(file, bytes);
+            try {
+                SaveStateFile.read(file);
+                fail("A compressed save state with a damaged header should be rejected");
+            } catch (IOException e) {
+                Assert.assertTrue(e.getMessage().contains("damaged"));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package se.liu.ferpe211.api.trace;
+
+import junit.framework.TestCase;
+import org.junit.Assert;
+import org.junit.Test;
+import se.liu.ferpe211.api.CPU;
+import se.liu.ferpe211.api.TestPrograms;
+import se.liu.ferpe211.api.execution.EngineType;
+import se.liu.ferpe211.api.operation.OpCode;
+import se.liu.ferpe211.api.operation.OpCodeMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Test cases for the {@link TraceDiff}
+ * Here we test that two traces are aligned by instruction and the first record that differs is found
+ */
+public class TraceDiffTest extends TestCase
+{
+    private static void record(final CPU cpu, final Path file) throws IOException {
+        try (TraceRecorder recorder = TraceRecorder.create(cpu, file)) {
+            recorder.start();
+            cpu.execute();
+        }
+    }
+
+    @Test
+    public void testFindsFirstDifference() throws IOException {
+        Path firstFile = Files.createTempFile("jcpu", ".trace");
+        Path secondFile = Files.createTempFile("jcpu", ".trace");
+        try {
+            record(TestPrograms.createCounter(EngineType.BLOCK_CACHE, 0x20), firstFile);
+            record(TestPrograms.createCounter(EngineType.SWITCH, 0x20), secondFile);
+            try (TraceReader first = TraceReader.open(firstFile); TraceReader second = TraceReader.open(secondFile)) {
+                Assert.assertNull(TraceDiff.findDivergence(first, second));
+            }
+
+            // A different image differs in the operand of the first compare
+            record(TestPrograms.createCounter(EngineType.SWITCH, 0x30), secondFile);
+            try (TraceReader first = TraceReader.open(firstFile); TraceReader second = TraceReader.open(secondFile)) {
+                TraceDiff.Divergence divergence = TraceDiff.findDivergence(first, second);
+                Assert.assertEquals(new TraceDiff.Divergence(3, 3, 3), divergence);
+                Assert.assertNotEquals(first.getOperands(3), second.getOperands(3));
+            }
+        } finally {
+            Files.delete(firstFile);
+            Files.delete(secondFile);
+        }
+    }
+
+    @Test
+    public void testAlignsByInstruction() throws IOException {
+        Path firstFile = Files.createTempFile("jcpu", ".trace");
+        Path secondFile = Files.createTempFile("jcpu", ".trace");
+        try {
+            record(TestPrograms.createCounter(EngineType.BLOCK_CACHE, 0x20), firstFile);
+            CPU cpu = TestPrograms.createCounter(EngineType.BLOCK_CACHE, 0x20);
+            cpu.runInstructions(10);
+            record(cpu, secondFile);
+            try (TraceReader first = TraceReader.open(firstFile); TraceReader second = TraceReader.open(secondFile)) {
+                Assert.assertNull(TraceDiff.findDivergence(first, second));
+            }
+
+            // A run that stops early diverges where it ends
+            cpu = TestPrograms.createCounter(EngineType.BLOCK_CACHE, 0x20);
+            try (TraceRecorder recorder = TraceRecorder.create(cpu, secondFile)) {
+                recorder.start();
+                cpu.runInstructions(50);
+            }
+            try (TraceReader first = TraceReader.open(firstFile); TraceReader second = TraceReader.open(secondFile)) {
+                TraceDiff.Divergence divergence = TraceDiff.findDivergence(first, second);
+                Assert.assertEquals(new TraceDiff.Divergence(50, 50, 50), divergence);
+                Assert.assertEquals(second.getCount(), divergence.secondRecord());
+            }
+        } finally {
+            Files.delete(firstFile);
+            Files.delete(secondFile);
+        }
+    }
+
+    @Test
+    public void testComparesWindowsInOrder() throws IOException {
+        Path firstFile = Files.createTempFile("jcpu", ".trace");
+        Path secondFile = Files.createTempFile("jcpu", ".trace");
+        try {
+            // loop: CLC, ADC #$01, JMP loop
+            byte[] program = {
+                    OpCodeMapper.getByteFromOpCode(OpCode.CLC),
+                    OpCodeMapper.getByteFromOpCode(OpCode.ADC_IM), 0x01,
+                    OpCodeMapper.getByteFromOpCode(OpCode.JMP_ABS), 0x00, 0x00
+            };
+            long instructions = TraceDiff.WINDOW_RECORDS * 2L + 100;
+            long changed = TraceDiff.WINDOW_RECORDS + 7;
+
+            CPU cpu = CPU.builder().build();
+            cpu.getMemory().load(0, program);
+            try (TraceRecorder recorder = TraceRecorder.create(cpu, firstFile)) {
+                recorder.start();
+                cpu.runInstructions(instructions);
+            }
+            // The second run has its index register changed in the second window, and again in the third one
+            cpu = CPU.builder().build();
+            cpu.getMemory().load(0, program);
+            try (TraceRecorder recorder = TraceRecorder.create(cpu, secondFile)) {
+                recorder.start();
+                cpu.runInstructions(changed);
+                cpu.getRegisterFile().setIndexX((byte) 1);
+                cpu.runInstructions(instructions - changed - 10);
+                cpu.getRegisterFile().setIndexX((byte) 2);
+                cpu.runInstructions(10);
+            }
+
+            try (TraceReader first = TraceReader.open(firstFile); TraceReader second = TraceReader.open(secondFile)) {
+                TraceDiff.Divergence divergence = TraceDiff.findDivergence(first, second);
+                Assert.assertEquals(new TraceDiff.Divergence(changed, changed, changed), divergence);
+                Assert.assertEquals((byte) 0, first.getIndexX(changed));
+                Assert.assertEquals((byte) 1, second.getIndexX(changed));
+            }
+        } finally {
+            Files.delete(firstFile);
+            Files.delete(secondFile);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package se.liu.ferpe211.api.trace;
+
+import junit.framework.TestCase;
+import org.junit.Assert;
+import org.junit.Test;
+import se.liu.ferpe211.api.CPU;
+import se.liu.ferpe211.api.execution.EngineType;
+import se.liu.ferpe211.api.operation.OpCode;
+import se.liu.ferpe211.api.operation.OpCodeMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.LongStream;
+
+/**
+ * Test cases for the {@link TraceIndex}
+ * Here we test that the queries of an index find the same records as going through the whole trace
+ */
+public class TraceIndexTest extends TestCase
+{
+    private static final int COUNTER = 0x0400;
+    private static final int POINTER = 0x0010;
+
+    /**
+     * loop: CLC, ADC #$01, STA $0400, LDY $0400, STA ($10),Y, CMP #$20, BNE loop, BRK
+     * Unlike {@link se.liu.ferpe211.api.TestPrograms#createCounter()} it reads the counter back and stores through a
+     * pointer, so it has postings of reads and of the index registers
+     */
+    private static CPU createPointerCounter(final EngineType engineType) {
+        CPU cpu = CPU.builder().engine(engineType).build();
+        cpu.getMemory().load(0, new byte[] {
+                OpCodeMapper.getByteFromOpCode(OpCode.CLC),
+                OpCodeMapper.getByteFromOpCode(OpCode.ADC_IM), 0x01,
+                OpCodeMapper.getByteFromOpCode(OpCode.STA_ABS), 0x00, 0x04,
+                OpCodeMapper.getByteFromOpCode(OpCode.LDY_ABS), 0x00, 0x04,
+                OpCodeMapper.getByteFromOpCode(OpCode.STA_INDY), POINTER,
+                OpCodeMapper.getByteFromOpCode(OpCode.CMP_IM), 0x20,
+                OpCodeMapper.getByteFromOpCode(OpCode.BNE), (byte) 0xF1,
+                OpCodeMapper.getByteFromOpCode(OpCode.BRK)
+        });
+        cpu.getMemory().load(POINTER, new byte[] { 0x00, 0x05 });
+        return cpu;
+    }
+
+    @Test
+    public void testQueriesMatchTrace() throws IOException {
+        Path file = Files.createTempFile("jcpu", ".trace");
+        Path indexFile = Path.of(file + TraceIndex.FILE_SUFFIX);
+        try {
+            CPU cpu = createPointerCounter(EngineType.BLOCK_CACHE);
+            try (TraceRecorder recorder = TraceRecorder.create(cpu, file, indexFile)) {
+                recorder.start();
+                cpu.execute();
+            }
+
+            try (TraceReader reader = TraceReader.open(file); TraceIndex index = TraceIndex.open(indexFile)) {
+                for (int address : new int[] { 0, 1, 3, 6, 9, 0x0B, 0x0D, 0x0F, 0x10, COUNTER }) {
+                    Assert.assertArrayEquals(findExecuted(reader, address),
+                                             index.findAll(TraceIndex.Posting.EXECUTED, address));
+                }
+
+                long[] counterWrites = index.findAll(TraceIndex.Posting.WRITTEN, COUNTER);
+                Assert.assertEquals(0x20, counterWrites.length);
+                for (long record : counterWrites) {
+                    Assert.assertEquals(3, reader.getProgramCounter(record));
+                }
+                // Indirect stores are found by the address they wrote to
+                long lastStore = index.findFirst(TraceIndex.Posting.WRITTEN, 0x0520, 0);
+                Assert.assertEquals(9, reader.getProgramCounter(lastStore));
+                Assert.assertEquals((byte) 0x20, reader.getIndexY(lastStore));
+                Assert.assertEquals(-1, index.findFirst(TraceIndex.Posting.WRITTEN, 0x0500, 0));
+
+                // Immediate operands and the pointers of indirect stores are not reads
+                Assert.assertEquals(0, index.count(TraceIndex.Posting.READ, 2));
+                Assert.assertEquals(0, index.count(TraceIndex.Posting.READ, POINTER));
+                Assert.assertEquals(0x20, index.count(TraceIndex.Posting.READ, COUNTER));
+                Assert.assertEquals(6, reader.getProgramCounter(index.findFirst(TraceIndex.Posting.READ, COUNTER, 0)));
+
+                long becameSixteen = index.findFirst(TraceIndex.Posting.ACCUMULATOR, 0x10, 0);
+                Assert.assertEquals(1, reader.getProgramCounter(becameSixteen));
+                Assert.assertEquals((byte) 0x0F, reader.getAccumulator(becameSixteen));
+                Assert.assertEquals((byte) 0x10, reader.getAccumulator(becameSixteen + 1));
+                Assert.assertEquals(1, index.count(TraceIndex.Posting.ACCUMULATOR, 0x10));
+                Assert.assertEquals(1, index.count(TraceIndex.Posting.INDEX_Y, 0x20));
+                Assert.assertEquals(0, index.count(TraceIndex.Posting.INDEX_X, 0x20));
+
+                // The last time the store ran before a cycle is the last one before the record at that cycle
+                long middle = reader.getCount() / 2;
+                Assert.assertEquals(middle, reader.findRecordAtCycle(reader.getCycleCount(middle)));
+                long expected = middle - 1;
+                while (reader.getProgramCounter(expected) != 3) {
+                    expected--;
+                }
+                Assert.assertEquals(expected, index.findLast(TraceIndex.Posting.EXECUTED, 3,
+                                                             reader.findRecordAtCycle(reader.getCycleCount(middle))));
+                Assert.assertEquals(-1, index.findLast(TraceIndex.Posting.EXECUTED, 3, 2));
+                Assert.assertEquals(reader.getCount(), reader.findRecordAtCycle(Long.MAX_VALUE));
+
+                // Keys out of range would otherwise be read as keys of another posting
+                for (int key : new int[] { -1, 0x10000, 0x10400 }) {
+                    try {
+                        index.count(TraceIndex.Posting.EXECUTED, key);
+                        fail("Address " + key + " should be rejected");
+                    } catch (IllegalArgumentException e) {
+                        Assert.assertTrue(e.getMessage().contains("EXECUTED"));
+                    }
+                }
+                try {
+                    index.findFirst(TraceIndex.Posting.ACCUMULATOR, 0x100, 0);
+                    fail("Values above $FF should be rejected");
+                } catch (IllegalArgumentException e) {
+                    Assert.assertTrue(e.getMessage().contains("ACCUMULATOR"));
+                }
+            }
+        } finally {
+            Files.delete(file);
+            Files.deleteIfExists(indexFile);
+        }
+    }
+
+    @Test
+    public void testQueriesSpanSegments() throws IOException {
+        Path file = Files.createTempFile("jcpu", ".trace");
+        Path indexFile = Path.of(file + TraceIndex.FILE_SUFFIX);
+        try {
+            CPU cpu = CPU.builder().build();
+            // loop: CLC, ADC #$01, JMP loop
+            cpu.getMemory().load(0, new byte[] {
+                    OpCodeMapper.getByteFromOpCode(OpCode.CLC),
+                    OpCodeMapper.getByteFromOpCode(OpCode.ADC_IM), 0x01,
+                    OpCodeMapper.getByteFromOpCode(OpCode.JMP_ABS), 0x00, 0x00
+            });
+            // Four postings per iteration fill two segments
+            long iterations = TraceIndexWriter.SEGMENT_POSTINGS / 2;
+            long instructions = iterations * 3;
+            try (TraceRecorder recorder = TraceRecorder.create(cpu, file, indexFile)) {
+                recorder.start();
+                cpu.runInstructions(instructions);
+            }
+
+            try (TraceIndex index = TraceIndex.open(indexFile)) {
+                Assert.assertEquals(iterations, index.count(TraceIndex.Posting.EXECUTED, 0));
+                Assert.assertEquals(iterations, index.findAll(TraceIndex.Posting.EXECUTED, 3).length);
+                Assert.assertEquals(instructions - 1, index.findLast(TraceIndex.Posting.EXECUTED, 3, Long.MAX_VALUE));
+                Assert.assertEquals(instructions - 2, index.findLast(TraceIndex.Posting.EXECUTED, 1, instructions - 1));
+                Assert.assertEquals(instructions / 2 + 2, index.findFirst(TraceIndex.Posting.EXECUTED, 3, instructions / 2));
+                // The accumulator wraps around every 256 iterations
+                Assert.assertEquals(iterations / 0x100, index.count(TraceIndex.Posting.ACCUMULATOR, 0));
+                Assert.assertEquals(0x7F * 3 + 1, index.findFirst(TraceIndex.Posting.ACCUMULATOR, 0x80, 0));
+            }
+        } finally {
+            Files.delete(file);
+            Files.deleteIfExists(indexFile);
+        }
+    }
+
+    @Test
+    public void testRejectsIncompleteIndex() throws IOException {
+        Path file = Files.createTempFile("jcpu", ".trace");
+        Path indexFile = Path.of(file + TraceIndex.FILE_SUFFIX);
+        try {
+            CPU cpu = createPointerCounter(EngineType.SWITCH);
+            TraceRecorder recorder = TraceRecorder.create(cpu, file, indexFile);
+            recorder.start();
+            cpu.execute();
+            try {
+                TraceIndex.open(indexFile).close();
+                fail("An index that is still being written should be rejected");
+            } catch (IOException e) {
+                Assert.assertTrue(e.getMessage().contains("incomplete"));
+            }
+            recorder.close();
+            TraceIndex.open(indexFile).close();
+            // The segments are merged into the index when it is closed
+            Assert.assertFalse(Files.exists(Path.of(indexFile + ".segments")));
+        } finally {
+            Files.delete(file);
+            Files.deleteIfExists(indexFile);
+        }
+    }
+
+    private static long[] findExecuted(final TraceReader reader, final int address) {
+        return LongStream.range(0, reader.getCount())
+                .filter(record -> reader.getProgramCounter(record) == address).toArray();
+    }
+}
@@ -0,0 +1,147 @@
+package se.liu.ferpe211.api.trace;
+
+import junit.framework.TestCase;
+import org.junit.Assert;
+import org.junit.Test;
+import se.liu.ferpe211.api.CPU;
+import se.liu.ferpe211.api.RewindBuffer;
+import se.liu.ferpe211.api.TestPrograms;
+import se.liu.ferpe211.api.execution.EngineType;
+import se.liu.ferpe211.api.operation.OpCode;
+import se.liu.ferpe211.api.operation.OpCodeMapper;
+import se.liu.ferpe211.api.register.RegisterState;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Test cases for the {@link TraceRecorder} and the {@link TraceReader}
+ * Here we test that a trace holds the state before every executed instruction
+ */
+public class TraceRecorderTest extends TestCase
+{
+    @Test
+    public void testRecordsEveryInstruction() throws IOException {
+        Path file = Files.createTempFile("jcpu", ".trace");
+        try {
+            CPU cpu = TestPrograms.createCounter(EngineType.BLOCK_CACHE);
+            cpu.runInstructions(21);
+            try (TraceRecorder recorder = TraceRecorder.create(cpu, file)) {
+                recorder.start();
+                cpu.execute();
+                Assert.assertEquals(cpu.getInstructionCount() - 21, recorder.getCount());
+            }
+            // Nothing is recorded after closing
+            cpu.reset();
+            cpu.getMemory().load(0, new byte[] { OpCodeMapper.getByteFromOpCode(OpCode.BRK) });
+            cpu.execute();
+
+            try (TraceReader reader = TraceReader.open(file)) {
+                Assert.assertEquals(21 + (0x20 - 0x05) * 4 + 1 - 21, reader.getCount());
+                Assert.assertEquals(21, reader.getFirstInstruction());
+                Assert.assertEquals(1, reader.getProgramCounter(0));
+                Assert.assertEquals(OpCodeMapper.getByteFromOpCode(OpCode.ADC_IM), reader.getOpcode(0));
+                Assert.assertEquals(0x01, reader.getOperands(0));
+                Assert.assertEquals((byte) 0x05, reader.getAccumulator(0));
+                Assert.assertEquals(3, reader.getProgramCounter(1));
+                Assert.assertEquals(0x0400, reader.getOperands(1));
+
+                long last = reader.getCount() - 1;
+                Assert.assertEquals(10, reader.getProgramCounter(last));
+                Assert.assertEquals(OpCodeMapper.getByteFromOpCode(OpCode.BRK), reader.getOpcode(last));
+                Assert.assertEquals((byte) 0x20, reader.getAccumulator(last));
+                for (long record = 1; record < reader.getCount(); record++) {
+                    Assert.assertTrue(reader.getCycleCount(record) > reader.getCycleCount(record - 1));
+                }
+
+                // The state of a record is the state of a CPU that executed the instructions before it
+                CPU replay = TestPrograms.createCounter(EngineType.BLOCK_CACHE);
+                replay.runInstructions(21 + 50);
+                Assert.assertEquals(RegisterState.capture(replay.getRegisterFile()), reader.getRegisters(50));
+                Assert.assertEquals(replay.getCycleCount(), reader.getCycleCount(50));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testEnginesRecordSameTrace() throws IOException {
+        Path blockCacheFile = Files.createTempFile("jcpu", ".trace");
+        Path switchFile = Files.createTempFile("jcpu", ".trace");
+        try {
+            for (EngineType engineType : EngineType.values()) {
+                CPU cpu = TestPrograms.createCounter(engineType);
+                Path file = engineType == EngineType.SWITCH ? switchFile : blockCacheFile;
+                try (TraceRecorder recorder = TraceRecorder.create(cpu, file)) {
+                    recorder.start();
+                    cpu.execute();
+                }
+            }
+            Assert.assertArrayEquals(Files.readAllBytes(blockCacheFile), Files.readAllBytes(switchFile));
+        } finally {
+            Files.delete(blockCacheFile);
+            Files.delete(switchFile);
+        }
+    }
+
+    @Test
+    public void testRejectsOtherFiles() throws IOException {
+        Path file = Files.createTempFile("jcpu", ".trace");
+        try {
+            Files.write(file, new byte[] { 1, 2, 3 });
+            try {
+                TraceReader.open(file).close();
+                fail("A file that is not a trace should be rejected");
+            } catch (IOException e) {
+                Assert.assertTrue(e.getMessage().contains("not a trace"));
+            }
+
+            try (TraceRecorder recorder = TraceRecorder.create(TestPrograms.createCounter(EngineType.BLOCK_CACHE), file)) {
+                recorder.start();
+            }
+            byte[] bytes = Files.readAllBytes(file);
+            bytes[5] = 2;
+            Files.write(file, bytes);
+            try {
+                TraceReader.open(file).close();
+                fail("A trace of another version should be rejected");
+            } catch (IOException e) {
+                Assert.assertTrue(e.getMessage().contains("version"));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testRejectsRewinding() throws IOException {
+        Path file = Files.createTempFile("jcpu", ".trace");
+        try {
+            CPU cpu = TestPrograms.createCounter(EngineType.BLOCK_CACHE);
+            RewindBuffer rewindBuffer = new RewindBuffer(cpu, 16);
+            rewindBuffer.start();
+            try (TraceRecorder recorder = TraceRecorder.create(cpu, file)) {
+                try {
+                    recorder.start();
+                    fail("Undone instructions would be recorded twice");
+                } catch (IllegalStateException e) {
+                    Assert.assertFalse(recorder.isRecording());
+                }
+                rewindBuffer.stop();
+                recorder.start();
+                try {
+                    rewindBuffer.start();
+                    fail("A rewind buffer can not be started while tracing");
+                } catch (IllegalStateException e) {
+                    Assert.assertFalse(rewindBuffer.isRecording());
+                }
+                cpu.execute();
+                Assert.assertEquals(cpu.getInstructionCount(), recorder.getCount());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package se.liu.ferpe211.impl;
+
+import junit.framework.TestCase;
+import org.junit.Assert;
+import org.junit.Test;
+import se.liu.ferpe211.api.CPU;
+import se.liu.ferpe211.api.operation.OpCode;
+import se.liu.ferpe211.api.operation.OpCodeMapper;
+import se.liu.ferpe211.api.trace.TraceRecorder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Test cases for the {@link TraceCompare}
+ * Here we test the registers, memory and stack printed at the divergence of two runs
+ */
+public class TraceCompareTest extends TestCase
+{
+    private static final int DATA = 0x0200;
+
+    /**
+     * LDA #$AB, PHA, LDA $0200, STA $0300, BRK with a byte of data at $0200
+     */
+    private static Path writeBinary(final byte data) throws IOException {
+        byte[] binary = new byte[DATA + 1];
+        System.arraycopy(new byte[] {
+                OpCodeMapper.getByteFromOpCode(OpCode.LDA_IM), (byte) 0xAB,
+                OpCodeMapper.getByteFromOpCode(OpCode.PHA),
+                OpCodeMapper.getByteFromOpCode(OpCode.LDA_ABS), 0x00, 0x02,
+                OpCodeMapper.getByteFromOpCode(OpCode.STA_ABS), 0x00, 0x03,
+                OpCodeMapper.getByteFromOpCode(OpCode.BRK)
+        }, 0, binary, 0, 10);
+        binary[DATA] = data;
+        Path file = Files.createTempFile("jcpu", ".bin");
+        Files.write(file, binary);
+        return file;
+    }
+
+    private static Path record(final Path binary) throws IOException {
+        Path file = Files.createTempFile("jcpu", ".trace");
+        CPU cpu = CPU.builder().build();
+        Assert.assertTrue(cpu.loadFile(binary.toFile(), 0));
+        try (TraceRecorder recorder = TraceRecorder.create(cpu, file)) {
+            recorder.start();
+            cpu.execute();
+        }
+        return file;
+    }
+
+    @Test
+    public void testPrintsContextOfDivergence() throws IOException {
+        Path firstBinary = writeBinary((byte) 0x11);
+        Path secondBinary = writeBinary((byte) 0x22);
+        Path firstTrace = record(firstBinary);
+        Path secondTrace = record(secondBinary);
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            PrintStream out = new PrintStream(output, true, StandardCharsets.UTF_8);
+            Assert.assertEquals(0, TraceCompare.run(out, out, firstTrace.toString(), firstTrace.toString()));
+
+            output.reset();
+            int status = TraceCompare.run(out, out, "--binary", firstBinary.toString(), "--second-binary",
+                                          secondBinary.toString(), firstTrace.toString(), secondTrace.toString());
+            String printed = output.toString(StandardCharsets.UTF_8);
+            Assert.assertEquals(printed, 1, status);
+
+            // The loaded values differ from the store on, only in the accumulator
+            Assert.assertTrue(printed, printed.contains("The traces diverge at instruction 3,"));
+            Assert.assertTrue(printed, printed.contains("  last agreed  record 2,"));
+            Assert.assertTrue(printed, printed.contains("A=11 X=00 Y=00 P=00, STA_ABS 00 03"));
+            Assert.assertTrue(printed, printed.contains("A=22 X=00 Y=00 P=00, STA_ABS 00 03"));
+            Assert.assertTrue(printed, printed.contains("  differs in   A\n"));
+
+            // The replay rebuilds the memory before the store, where only the data differs
+            Assert.assertTrue(printed, printed.contains("  0200  first  11 00 00 00 00 00 00 00 00 00 00 00 00 00 00 00"));
+            Assert.assertTrue(printed, printed.contains("        second 22 00 00 00 00 00 00 00 00 00 00 00 00 00 00 00"));
+            Assert.assertFalse(printed, printed.contains("  0300  "));
+
+            // The pushed byte is at the top of the stack, which is in page zero
+            Assert.assertTrue(printed, printed.contains("  stack  first  AB\n"));
+            Assert.assertTrue(printed, printed.contains("         second AB\n"));
+        } finally {
+            Files.delete(firstBinary);
+            Files.delete(secondBinary);
+            Files.delete(firstTrace);
+            Files.delete(secondTrace);
+        }
+    }
+}